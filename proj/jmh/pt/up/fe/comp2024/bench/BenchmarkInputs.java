@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.bench;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inputs of the benchmarks. An input is either the path of a .jmm file, relative to the project folder, or
+ * 'synthetic-N' for a generated program with N methods.
+ */
+public class BenchmarkInputs {
+
+    public static final String CORPUS_FOLDER = "test/pt/up/fe/comp";
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    // Fixed, so that results of different runs are comparable
+    static final long SEED = 2024;
+
+    // Sizes of the synthetic programs benchmarked by default, in methods
+    public static final List<Integer> SYNTHETIC_SIZES = List.of(10, 100, 500);
+
+    /**
+     * @return the code of the given input
+     */
+    public static String read(String input) {
+        if (input.startsWith(SYNTHETIC_PREFIX)) {
+            return synthetic(Integer.parseInt(input.substring(SYNTHETIC_PREFIX.length())));
+        }
+
+        var file = new File(input);
+        if (!file.isFile()) {
+            throw new RuntimeException("Could not find benchmark input '" + input + "'");
+        }
+
+        return SpecsIo.read(file);
+    }
+
+    /**
+     * @return the .jmm files of the test corpus that go through the whole pipeline without errors, since the
+     * benchmarks of the later stages need valid programs
+     */
+    public static List<String> corpus() {
+        var files = new ArrayList<>(SpecsIo.getFilesRecursive(new File(CORPUS_FOLDER), "jmm"));
+        files.sort(Comparator.comparing(File::getPath));
+
+        List<String> inputs = new ArrayList<>();
+        for (var file : files) {
+            if (JmmCompiler.compile(file, CompilerConfig.getDefault()).isSuccess()) {
+                inputs.add(file.getPath());
+            }
+        }
+
+        return inputs;
+    }
+
+    /**
+     * @return the names of the default synthetic inputs
+     */
+    public static List<String> synthetics() {
+        return SYNTHETIC_SIZES.stream().map(size -> SYNTHETIC_PREFIX + size).toList();
+    }
+
+    /**
+     * Generates a valid program with the given number of methods, and the default sizes of {@link ProgramGenerator}
+     * for everything else.
+     */
+    public static String synthetic(int methods) {
+        return new ProgramGenerator(SEED).methods(methods).generate();
+    }
+}
@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the usual JMH command-line options, and the defaults we use to compare branches:
+ * <ul>
+ *     <li>every valid program of the test corpus, and the synthetic programs, as inputs (unless '-p input=...' is
+ *     given);</li>
+ *     <li>results in JSON, in build/reports/jmh/results.json (unless '-rff' is given);</li>
+ *     <li>the gc profiler, for the allocation rate of each stage.</li>
+ * </ul>
+ */
+public class BenchmarkMain {
+
+    private static final String RESULTS_FILE = "build/reports/jmh/results.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        var commandLine = new CommandLineOptions(args);
+
+        // Help and listings do not run anything
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        var options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .addProfiler(GCProfiler.class);
+
+        if (commandLine.getResult().hasValue()) {
+            options.result(commandLine.getResult().get());
+        } else {
+            new File(RESULTS_FILE).getParentFile().mkdirs();
+            options.result(RESULTS_FILE);
+        }
+
+        if (commandLine.getParameter("input").hasValue()) {
+            options.param("input", commandLine.getParameter("input").get().toArray(String[]::new));
+        } else {
+            List<String> inputs = new ArrayList<>(BenchmarkInputs.corpus());
+            inputs.addAll(BenchmarkInputs.synthetics());
+            options.param("input", inputs.toArray(String[]::new));
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package pt.up.fe.comp2024.bench;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput, in tokens per second, of {@link JmmParserImpl} against the parser it replaced, which created a
+ * new lexer and parser for each input and always used full LL prediction.
+ * <p>
+ * The 'tokens' counter of the results is the throughput in tokens per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"synthetic-100", "synthetic-500", "synthetic-2000"})
+        public String input;
+
+        String code;
+        int tokens;
+        Map<String, String> config;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            code = BenchmarkInputs.read(input);
+            config = CompilerConfig.getDefault();
+
+            var tokenStream = new CommonTokenStream(new JavammLexer(new ANTLRInputStream(code)));
+            tokenStream.fill();
+            tokens = tokenStream.size();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Tokens {
+        public long tokens;
+    }
+
+    @Benchmark
+    public JmmParserResult twoStage(Input input, Tokens tokens) {
+        tokens.tokens += input.tokens;
+        return new JmmParserImpl().parse(input.code, input.config);
+    }
+
+    @Benchmark
+    public JmmParserResult baseline(Input input, Tokens tokens) {
+        tokens.tokens += input.tokens;
+
+        var lex = new JavammLexer(new ANTLRInputStream(input.code));
+        var parser = new JavammParser(new CommonTokenStream(lex));
+        return AntlrParser.parse(lex, parser, "program", input.config);
+    }
+}
@@ -0,0 +1,163 @@
+package pt.up.fe.comp2024.bench;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.RegAlloc;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Compiles synthetic programs of growing size, one dimension at a time, and records the time and the peak heap of
+ * each stage. The results are written as CSV, one line per dimension, size and stage, ready to be plotted.
+ * <p>
+ * Unlike the JMH benchmarks, each measurement is the best of a few runs after a short warm-up on a small program,
+ * which is much less precise but enough to see how a stage grows with the input.
+ */
+public class ScalingSuite {
+
+    private static final Path RESULTS_FILE = Path.of("build/reports/scaling/scaling.csv");
+
+    // Runs of each stage, the fastest is kept
+    private static final int REPETITIONS = 3;
+
+    private static final List<Integer> SIZES = List.of(1, 2, 4, 8, 16, 32, 64);
+
+    /**
+     * How each dimension grows with the size, from the default program of {@link ProgramGenerator}.
+     */
+    private static final Map<String, Function<Integer, ProgramGenerator>> DIMENSIONS = Map.of(
+            "methods", size -> generator().methods(10 * size),
+            "statements", size -> generator().statements(10 * size),
+            "locals", size -> generator().locals(4 * size),
+            "loopDepth", size -> generator().loopDepth(size).statements(Math.max(20, 2 * size)),
+            "expressionDepth", size -> generator().expressionDepth(Math.min(size, 12)),
+            "imports", size -> generator().imports(4 * size).statements(Math.max(20, 4 * size + 1)));
+
+    private final Map<String, String> config = CompilerConfig.getDefault();
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+    private static ProgramGenerator generator() {
+        return new ProgramGenerator(BenchmarkInputs.SEED);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Only the given dimensions, or all of them
+        var dimensions = args.length > 0 ? List.of(args) : DIMENSIONS.keySet().stream().sorted().toList();
+
+        Files.createDirectories(RESULTS_FILE.getParent());
+        try (var csv = new PrintStream(Files.newOutputStream(RESULTS_FILE), true, StandardCharsets.UTF_8)) {
+            new ScalingSuite().run(dimensions, csv);
+        }
+
+        System.out.println("Results written to " + RESULTS_FILE);
+    }
+
+    private void run(List<String> dimensions, PrintStream csv) {
+        // Warm-up, so the first sizes do not measure class loading and the JIT
+        for (int i = 0; i < 5; i++) {
+            measure(generator().generate(), (stage, millis, heap) -> {
+            });
+        }
+
+        csv.println("dimension,size,lines,stage,millis,peakHeapBytes");
+        System.out.printf("%-16s %6s %8s %-12s %12s %14s%n", "dimension", "size", "lines", "stage", "millis",
+                "peak heap MiB");
+
+        for (var dimension : dimensions) {
+            var generatorOfSize = DIMENSIONS.get(dimension);
+            if (generatorOfSize == null) {
+                throw new RuntimeException("Unknown dimension '" + dimension + "', expected one of "
+                        + DIMENSIONS.keySet());
+            }
+
+            for (var size : SIZES) {
+                var code = generatorOfSize.apply(size).generate();
+                long lines = code.lines().count();
+
+                measure(code, (stage, millis, heap) -> {
+                    csv.printf("%s,%d,%d,%s,%.3f,%d%n", dimension, size, lines, stage, millis, heap);
+                    System.out.printf("%-16s %6d %8d %-12s %12.3f %14.1f%n", dimension, size, lines, stage, millis,
+                            heap / (1024.0 * 1024.0));
+                });
+            }
+        }
+    }
+
+    private interface Sink {
+        void accept(String stage, double millis, long peakHeapBytes);
+    }
+
+    /**
+     * Runs each stage on the output of the previous one, reporting its measurements.
+     */
+    private void measure(String code, Sink sink) {
+        Supplier<JmmParserResult> parsed = () -> new JmmParserImpl().parse(code, config);
+        stage("parse", () -> code, unused -> parsed.get(), sink);
+
+        JmmSemanticsResult semanticsResult = stage("analysis", parsed,
+                parserResult -> new JmmAnalysisImpl().semanticAnalysis(parserResult), sink);
+        if (!semanticsResult.getReports().isEmpty()) {
+            throw new RuntimeException("Generated program is not valid: " + semanticsResult.getReports());
+        }
+
+        // The optimizations change the AST, each repetition needs a fresh one
+        Supplier<JmmSemanticsResult> analysed = () -> new JmmAnalysisImpl().semanticAnalysis(parsed.get());
+        stage("optimize", analysed, result -> new JmmOptimizationImpl().optimize(result), sink);
+        var ollirCode = stage("ollir", () -> new JmmOptimizationImpl().optimize(analysed.get()),
+                result -> new JmmOptimizationImpl().toOllir(result), sink).getOllirCode();
+
+        Supplier<OllirResult> ollir = () -> {
+            var ollirResult = new OllirResult(ollirCode, config);
+            ollirResult.getOllirClass().buildCFGs();
+            return ollirResult;
+        };
+        stage("regAlloc", ollir, result -> new RegAlloc(result.getOllirClass(), 0).allocateRegisters(), sink);
+        stage("jasmin", ollir, result -> new JasminGenerator(result).build(), sink);
+    }
+
+    /**
+     * Measures a stage on fresh inputs, which are built before the measurement starts.
+     */
+    private <I, T> T stage(String name, Supplier<I> input, Function<I, T> stage, Sink sink) {
+        T result = null;
+        double bestMillis = Double.MAX_VALUE;
+        long peakHeap = 0;
+
+        for (int i = 0; i < REPETITIONS; i++) {
+            var stageInput = input.get();
+
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            long start = System.nanoTime();
+            result = stage.apply(stageInput);
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+
+            bestMillis = Math.min(bestMillis, millis);
+            peakHeap = Math.max(peakHeap, heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum());
+        }
+
+        sink.accept(name, bestMillis, peakHeap);
+        return result;
+    }
+}
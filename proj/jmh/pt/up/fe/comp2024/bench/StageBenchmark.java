@@ -0,0 +1,163 @@
+package pt.up.fe.comp2024.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.RegAlloc;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark per compiler stage, each measuring only its stage on the output of the previous ones.
+ * <p>
+ * The optimization stages change the AST and the OLLIR they receive, so their inputs are rebuilt before each
+ * invocation. That setup is not measured, but makes these benchmarks unreliable for inputs that take less than a few
+ * microseconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+    /**
+     * The code of the benchmarked program. {@link BenchmarkMain} replaces the default inputs by the whole corpus.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"test/pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+                "test/pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm",
+                "synthetic-10", "synthetic-100", "synthetic-500"})
+        public String input;
+
+        String code;
+        Map<String, String> config;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            code = BenchmarkInputs.read(input);
+            config = CompilerConfig.getDefault();
+        }
+
+        JmmParserResult parse() {
+            return new JmmParserImpl().parse(code, config);
+        }
+
+        JmmSemanticsResult analyse() {
+            return new JmmAnalysisImpl().semanticAnalysis(parse());
+        }
+
+        OllirResult toOllir() {
+            var optimization = new JmmOptimizationImpl();
+            return optimization.toOllir(optimization.optimize(analyse()));
+        }
+    }
+
+    /**
+     * Stages that do not change the AST.
+     */
+    @State(Scope.Benchmark)
+    public static class Parsed {
+        JmmParserResult parserResult;
+
+        @Setup(Level.Trial)
+        public void setUp(Input input) {
+            parserResult = input.parse();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Analysed {
+        JmmSemanticsResult semanticsResult;
+
+        @Setup(Level.Invocation)
+        public void setUp(Input input) {
+            semanticsResult = input.analyse();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Optimized {
+        JmmSemanticsResult semanticsResult;
+
+        @Setup(Level.Invocation)
+        public void setUp(Input input) {
+            var analysed = input.analyse();
+            semanticsResult = new JmmOptimizationImpl().optimize(analysed);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Ollir {
+        String ollirCode;
+        OllirResult ollirResult;
+
+        @Setup(Level.Trial)
+        public void generate(Input input) {
+            ollirCode = input.toOllir().getOllirCode();
+        }
+
+        @Setup(Level.Invocation)
+        public void setUp(Input input) {
+            ollirResult = new OllirResult(ollirCode, input.config);
+            ollirResult.getOllirClass().buildCFGs();
+        }
+    }
+
+    @Benchmark
+    public JmmParserResult parse(Input input) {
+        return input.parse();
+    }
+
+    @Benchmark
+    public JmmSymbolTable symbolTable(Parsed parsed) {
+        return JmmSymbolTableBuilder.build(parsed.parserResult.getRootNode());
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(Parsed parsed) {
+        return new JmmAnalysisImpl().semanticAnalysis(parsed.parserResult);
+    }
+
+    @Benchmark
+    public JmmSemanticsResult optimizeAst(Analysed analysed) {
+        return new JmmOptimizationImpl().optimize(analysed.semanticsResult);
+    }
+
+    @Benchmark
+    public OllirResult toOllir(Optimized optimized) {
+        return new JmmOptimizationImpl().toOllir(optimized.semanticsResult);
+    }
+
+    @Benchmark
+    public boolean allocateRegisters(Ollir ollir) {
+        // 0 is no limit, so the allocation always succeeds at the first try
+        return new RegAlloc(ollir.ollirResult.getOllirClass(), 0).allocateRegisters();
+    }
+
+    @Benchmark
+    public String jasmin(Ollir ollir) {
+        return new JasminGenerator(ollir.ollirResult).build();
+    }
+}
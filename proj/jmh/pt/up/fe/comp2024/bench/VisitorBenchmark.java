@@ -0,0 +1,90 @@
+package pt.up.fe.comp2024.bench;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.analysis.ParallelAnalysis;
+import pt.up.fe.comp2024.optimization.OllirGeneratorVisitor;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the visitors over a large AST, with the nodes of our parser, which are dispatched by the ordinal of their
+ * kind, and with the nodes of the library converter, which go through the lookup by strings. The analysis is also
+ * measured with each method on a task of the common pool, as with '-j'.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisitorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Tree {
+        @Param({"synthetic-500", "synthetic-2000"})
+        public String input;
+
+        @Param({"compact", "library"})
+        public String nodes;
+
+        JmmParserResult parserResult;
+        SymbolTable table;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            var code = BenchmarkInputs.read(input);
+            var config = CompilerConfig.getDefault();
+
+            if (nodes.equals("compact")) {
+                parserResult = new JmmParserImpl().parse(code, config);
+            } else {
+                var lex = new JavammLexer(new ANTLRInputStream(code));
+                var parser = new JavammParser(new CommonTokenStream(lex));
+                parserResult = AntlrParser.parse(lex, parser, "program", config);
+            }
+
+            table = JmmSymbolTableBuilder.build(parserResult.getRootNode());
+        }
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(Tree tree) {
+        return new JmmAnalysisImpl().semanticAnalysis(tree.parserResult);
+    }
+
+    @Benchmark
+    public List<Report> parallelAnalysis(Tree tree) {
+        return new ParallelAnalysis(JmmAnalysisImpl::createPasses, ForkJoinPool.commonPool())
+                .analyze(tree.parserResult.getRootNode(), tree.table);
+    }
+
+    @Benchmark
+    public String ollirGeneration(Tree tree) {
+        return new OllirGeneratorVisitor(tree.table).visit(tree.parserResult.getRootNode());
+    }
+}
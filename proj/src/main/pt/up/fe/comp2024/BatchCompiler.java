@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several Java-- files in parallel, one {@link JmmCompiler#compile} per file, on a work-stealing pool that
+ * uses every available core.
+ */
+public class BatchCompiler {
+
+    private final Map<String, String> config;
+    private final int parallelism;
+
+    public BatchCompiler(Map<String, String> config) {
+        this(config, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCompiler(Map<String, String> config, int parallelism) {
+        this.config = config;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Compiles the given files.
+     *
+     * @param inputFiles the files to compile
+     * @return one result per file, in the same order as the given files
+     */
+    public List<CompilationResult> compile(List<File> inputFiles) {
+
+        List<Callable<CompilationResult>> tasks = new ArrayList<>();
+        for (var inputFile : inputFiles) {
+            var fileConfig = CompilerConfig.forInputFile(config, inputFile);
+            tasks.add(() -> JmmCompiler.compile(inputFile, fileConfig));
+        }
+
+        ExecutorService pool = Executors.newWorkStealingPool(parallelism);
+        try {
+            List<CompilationResult> results = new ArrayList<>();
+            for (Future<CompilationResult> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling " + inputFiles.size() + " files", e);
+        } catch (ExecutionException e) {
+            // JmmCompiler turns exceptions into reports, so this should not happen
+            throw new RuntimeException("Unexpected exception during batch compilation", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
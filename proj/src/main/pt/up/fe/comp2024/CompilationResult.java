@@ -0,0 +1,123 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The outcome of compiling a single Java-- file: the reports of every stage that ran, the generated code (if the
+ * pipeline reached that stage), how long it took and, with '-t', the measurements of each stage.
+ */
+public class CompilationResult {
+
+    private final File inputFile;
+    private final List<Report> reports;
+    private final OllirResult ollirResult;
+    private final String ollirCode;
+    private final JasminResult jasminResult;
+    private final ClassFileResult classFileResult;
+    private final Telemetry telemetry;
+    private final long elapsedNanos;
+
+    public CompilationResult(File inputFile,
+                             List<Report> reports,
+                             OllirResult ollirResult,
+                             JasminResult jasminResult,
+                             ClassFileResult classFileResult,
+                             Telemetry telemetry,
+                             long elapsedNanos) {
+        this(inputFile, reports, ollirResult, ollirResult != null ? ollirResult.getOllirCode() : null, jasminResult,
+                classFileResult, telemetry, elapsedNanos);
+    }
+
+    private CompilationResult(File inputFile,
+                              List<Report> reports,
+                              OllirResult ollirResult,
+                              String ollirCode,
+                              JasminResult jasminResult,
+                              ClassFileResult classFileResult,
+                              Telemetry telemetry,
+                              long elapsedNanos) {
+        this.inputFile = inputFile;
+        this.reports = reports;
+        this.ollirResult = ollirResult;
+        this.ollirCode = ollirCode;
+        this.jasminResult = jasminResult;
+        this.classFileResult = classFileResult;
+        this.telemetry = telemetry;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Creates a result from cached outputs. The OLLIR code is not parsed again, so there is no OllirResult.
+     */
+    public static CompilationResult fromCache(File inputFile,
+                                              List<Report> reports,
+                                              String ollirCode,
+                                              JasminResult jasminResult,
+                                              ClassFileResult classFileResult,
+                                              Telemetry telemetry,
+                                              long elapsedNanos) {
+        return new CompilationResult(inputFile, reports, null, ollirCode, jasminResult, classFileResult, telemetry,
+                elapsedNanos);
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public Optional<OllirResult> getOllirResult() {
+        return Optional.ofNullable(ollirResult);
+    }
+
+    /**
+     * @return the generated OLLIR code, also available when the result came from the build cache
+     */
+    public Optional<String> getOllirCode() {
+        return Optional.ofNullable(ollirCode);
+    }
+
+    public Optional<JasminResult> getJasminResult() {
+        return Optional.ofNullable(jasminResult);
+    }
+
+    /**
+     * @return the class file, if the pipeline ran with '-b=class' instead of generating Jasmin code
+     */
+    public Optional<ClassFileResult> getClassFileResult() {
+        return Optional.ofNullable(classFileResult);
+    }
+
+    /**
+     * @return the measurements of each stage, if telemetry was enabled with '-t'
+     */
+    public Optional<Telemetry> getTelemetry() {
+        return Optional.ofNullable(telemetry).filter(Telemetry::isEnabled);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    /**
+     * @return true if no stage produced an error report
+     */
+    public boolean isSuccess() {
+        return !ReportUtils.anyError(reports);
+    }
+}
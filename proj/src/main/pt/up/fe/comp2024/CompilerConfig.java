@@ -1,15 +1,41 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.comp2024.optimization.passes.OptimizationLevel;
+import pt.up.fe.specs.util.SpecsIo;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class CompilerConfig {
 
     private static final String INPUT_FILE = "inputFile";
+    private static final String INPUT_FILES = "inputFiles";
     private static final String OPTIMIZE = "optimize";
+    private static final String OPTIMIZATION_LEVEL = "optimizationLevel";
+    private static final String PASSES = "passes";
     private static final String REGISTER = "registerAllocation";
+    private static final String SERVER = "server";
+    private static final String CACHE_DIR = "cacheDir";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String TELEMETRY = "telemetry";
+    private static final String BACKEND = "backend";
+    private static final String CLASSPATH = "classpath";
+    private static final String PARALLEL_ANALYSIS = "parallelAnalysis";
+
+    // Values of '-b'
+    private static final String JASMIN_BACKEND = "jasmin";
+    private static final String CLASS_FILE_BACKEND = "class";
+
+    // Default bound of the build cache, in MiB
+    private static final String DEFAULT_CACHE_SIZE = "256";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -17,7 +43,16 @@ public class CompilerConfig {
     static {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
+        shortToLong.put("O", CompilerConfig.OPTIMIZATION_LEVEL);
+        shortToLong.put("p", CompilerConfig.PASSES);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("s", CompilerConfig.SERVER);
+        shortToLong.put("c", CompilerConfig.CACHE_DIR);
+        shortToLong.put("m", CompilerConfig.CACHE_SIZE);
+        shortToLong.put("t", CompilerConfig.TELEMETRY);
+        shortToLong.put("b", CompilerConfig.BACKEND);
+        shortToLong.put("l", CompilerConfig.CLASSPATH);
+        shortToLong.put("j", CompilerConfig.PARALLEL_ANALYSIS);
     }
 
 
@@ -32,15 +67,150 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    /**
+     * @return the files to compile in batch mode, or the single input file if only one was given
+     */
+    public static List<File> getInputFiles(Map<String, String> config) {
+        var inputFiles = config.get(INPUT_FILES);
+
+        if (inputFiles == null) {
+            return getInputFile(config).map(List::of).orElse(List.of());
+        }
+
+        return Arrays.stream(inputFiles.split(File.pathSeparator))
+                .map(File::new)
+                .toList();
+    }
+
+    /**
+     * @return true if several input files, or a folder, were given with '-i'
+     */
+    public static boolean isBatch(Map<String, String> config) {
+        return config.containsKey(INPUT_FILES);
+    }
+
+    /**
+     * Creates a copy of the given config that compiles only the given file, as if it was the single '-i' option.
+     */
+    public static Map<String, String> forInputFile(Map<String, String> config, File inputFile) {
+        var fileConfig = new HashMap<>(config);
+
+        fileConfig.remove(INPUT_FILES);
+        fileConfig.put(INPUT_FILE, inputFile.getAbsolutePath());
+
+        return fileConfig;
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
 
+    /**
+     * @return the level given with '-O', e.g. '-O2', otherwise '-O1' if '-o' was given and '-O0' if not
+     */
+    public static OptimizationLevel getOptimizationLevel(Map<String, String> config) {
+        var level = config.get(OPTIMIZATION_LEVEL);
+
+        if (level == null) {
+            return getOptimize(config) ? OptimizationLevel.O1 : OptimizationLevel.O0;
+        }
+
+        return OptimizationLevel.fromName(level);
+    }
+
+    /**
+     * @return the passes enabled or disabled with '-p', e.g. '-p=-constants,+regAlloc', mapped to true if enabled
+     */
+    public static Map<String, Boolean> getPassOptions(Map<String, String> config) {
+        var passes = config.get(PASSES);
+        Map<String, Boolean> options = new LinkedHashMap<>();
+
+        if (passes == null) {
+            return options;
+        }
+
+        for (var pass : passes.split(",")) {
+            if (pass.length() < 2 || (pass.charAt(0) != '+' && pass.charAt(0) != '-')) {
+                throw new RuntimeException("Option '-p' expects passes starting with '+' to enable or '-' to disable"
+                        + " them, got '" + pass + "'");
+            }
+
+            options.put(pass.substring(1), pass.charAt(0) == '+');
+        }
+
+        return options;
+    }
+
     public static int getRegisterAllocation(Map<String, String> config) {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
 
+    /**
+     * @return the address given with '-s', a TCP port on the loopback interface
+     */
+    public static Optional<String> getServerAddress(Map<String, String> config) {
+        return Optional.ofNullable(config.get(SERVER));
+    }
+
+    /**
+     * @return the folder of the build cache given with '-c', if any
+     */
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        return Optional.ofNullable(config.get(CACHE_DIR)).map(File::new);
+    }
+
+    /**
+     * @return the maximum size of the build cache in bytes, given in MiB with '-m'
+     */
+    public static long getCacheSize(Map<String, String> config) {
+        return Long.parseLong(config.getOrDefault(CACHE_SIZE, DEFAULT_CACHE_SIZE)) * 1024 * 1024;
+    }
+
+    /**
+     * @return true if '-t' was given, to record the time and allocations of each stage
+     */
+    public static boolean getTelemetry(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(TELEMETRY, "false"));
+    }
+
+    /**
+     * @return true if '-b=class' was given, to write class files directly instead of generating Jasmin code
+     */
+    public static boolean isClassFileBackend(Map<String, String> config) {
+        var backend = config.getOrDefault(BACKEND, JASMIN_BACKEND);
+
+        if (!backend.equals(JASMIN_BACKEND) && !backend.equals(CLASS_FILE_BACKEND)) {
+            throw new RuntimeException("Option '-b' expects '" + JASMIN_BACKEND + "' or '" + CLASS_FILE_BACKEND
+                    + "', got '" + backend + "'");
+        }
+
+        return backend.equals(CLASS_FILE_BACKEND);
+    }
+
+    /**
+     * @return the folders and jars with the compiled classes that can be imported, given with '-l'
+     */
+    public static List<File> getClasspath(Map<String, String> config) {
+        var classpath = config.get(CLASSPATH);
+
+        if (classpath == null || classpath.isEmpty()) {
+            return List.of();
+        }
+
+        return Arrays.stream(classpath.split(File.pathSeparator))
+                .filter(entry -> !entry.isEmpty())
+                .map(File::new)
+                .toList();
+    }
+
+    /**
+     * @return true if '-j' was given, to analyse the methods of a class in parallel
+     */
+    public static boolean isParallelAnalysis(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PARALLEL_ANALYSIS, "false"));
+    }
+
     public static Map<String, String> getDefault() {
 
         var config = new HashMap<String, String>();
@@ -66,6 +236,9 @@ public class CompilerConfig {
         // default options for config
         var config = getDefault();
 
+        // '-i' can be given several times, so inputs are collected separately
+        List<String> inputs = new ArrayList<>();
+
         for (String arg : args) {
 
             if (!arg.startsWith("-")) {
@@ -83,32 +256,82 @@ public class CompilerConfig {
                 if (equalSign.equals("=")) {
 
                     value = arg.substring(3);
+                } else if (getLongOpt(shortOption).equals(OPTIMIZATION_LEVEL)) {
+                    // The level follows '-O' directly, as in '-O2'
+                    value = arg.substring(2);
                 }
             }
 
+            if (getLongOpt(shortOption).equals(INPUT_FILE)) {
+                inputs.add(value);
+                continue;
+            }
+
             config.put(getLongOpt(shortOption), value);
         }
 
-        if (!config.containsKey(INPUT_FILE)) {
+        // The server receives the input files with each request
+        if (inputs.isEmpty() && config.containsKey(SERVER)) {
+            return config;
+        }
+
+        if (inputs.isEmpty()) {
 
             throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
         }
 
-        // make sure we save the absolute path of the input file
-        var inputFile = new File(config.get(INPUT_FILE));
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Could not find input file '" + inputFile + "'");
-        }
+        // A single file keeps the original behaviour
+        var firstInput = new File(inputs.get(0));
+        if (inputs.size() == 1 && !firstInput.isDirectory()) {
+            if (!firstInput.isFile()) {
+                throw new RuntimeException("Could not find input file '" + firstInput + "'");
+            }
 
-        var absolutePath = inputFile.getAbsolutePath();
-        config.put(INPUT_FILE, absolutePath);
+            // make sure we save the absolute path of the input file
+            config.put(INPUT_FILE, firstInput.getAbsolutePath());
+        } else {
+            config.put(INPUT_FILES, collectInputFiles(inputs).stream()
+                    .map(File::getAbsolutePath)
+                    .collect(Collectors.joining(File.pathSeparator)));
+        }
 
         // Verify if values are valid
         getOptimize(config);
+        getOptimizationLevel(config);
+        getPassOptions(config);
         getRegisterAllocation(config);
+        getCacheSize(config);
+        isClassFileBackend(config);
 
         return config;
     }
 
+    /**
+     * Expands the given inputs into a list of files, where folders are replaced by every .jmm file inside them.
+     */
+    private static List<File> collectInputFiles(List<String> inputs) {
+        List<File> files = new ArrayList<>();
+
+        for (var input : inputs) {
+            var inputFile = new File(input);
+
+            if (inputFile.isDirectory()) {
+                var jmmFiles = new ArrayList<>(SpecsIo.getFilesRecursive(inputFile, "jmm"));
+                jmmFiles.sort(Comparator.comparing(File::getAbsolutePath));
+                files.addAll(jmmFiles);
+            } else if (inputFile.isFile()) {
+                files.add(inputFile);
+            } else {
+                throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            }
+        }
+
+        if (files.isEmpty()) {
+            throw new RuntimeException("No .jmm files found in " + inputs);
+        }
+
+        return files;
+    }
+
 
 }
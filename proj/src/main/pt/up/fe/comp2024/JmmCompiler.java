@@ -0,0 +1,185 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.cache.BuildCache;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the whole pipeline (parsing, semantic analysis, optimization and code generation) for one Java-- file.
+ * <p>
+ * Each call creates its own stage instances, so several files can be compiled at the same time.
+ */
+public class JmmCompiler {
+
+    /**
+     * Compiles the given file. The pipeline stops at the first stage that reports an error.
+     *
+     * @param inputFile the Java-- file to compile
+     * @param config    the compiler options
+     * @return the reports and results of every stage that ran
+     */
+    public static CompilationResult compile(File inputFile, Map<String, String> config) {
+        return compile(SpecsIo.read(inputFile), inputFile, config);
+    }
+
+    /**
+     * Compiles the given code. The pipeline stops at the first stage that reports an error.
+     *
+     * @param code      the Java-- code to compile
+     * @param inputFile the file the code came from, used to identify the result
+     * @param config    the compiler options
+     * @return the reports and results of every stage that ran
+     */
+    public static CompilationResult compile(String code, File inputFile, Map<String, String> config) {
+        var cache = BuildCache.fromConfig(config);
+
+        if (cache.isPresent()) {
+            return compileCached(code, inputFile, config, cache.get());
+        }
+
+        return runPipeline(code, inputFile, config, Telemetry.fromConfig(config));
+    }
+
+    /**
+     * Returns the cached outputs if the same code was already compiled with the same options, otherwise runs the
+     * pipeline and caches its outputs if it succeeded.
+     */
+    private static CompilationResult compileCached(String code, File inputFile, Map<String, String> config,
+                                                   BuildCache cache) {
+        long start = System.nanoTime();
+
+        var telemetry = Telemetry.fromConfig(config);
+        var key = BuildCache.key(code, config);
+        var entry = telemetry.measure("cache/lookup", () -> cache.get(key));
+
+        if (entry.isPresent()) {
+            var cached = entry.get();
+
+            // Warnings and logs of the compilation that wrote the entry are shown again
+            List<Report> reports = new ArrayList<>(cached.getReports());
+            reports.add(buildCacheReport(cache, "hit"));
+
+            var jasminResult = cached.getJasminCode() != null ?
+                    new JasminResult(cached.getClassName(), cached.getJasminCode(), reports, config) :
+                    null;
+            var classFileResult = cached.getClassFile() != null ?
+                    new ClassFileResult(cached.getClassName(), cached.getClassFile(), reports, config) :
+                    null;
+            return CompilationResult.fromCache(inputFile, reports, cached.getOllirCode(), jasminResult,
+                    classFileResult, telemetry, System.nanoTime() - start);
+        }
+
+        var result = runPipeline(code, inputFile, config, telemetry);
+        List<Report> reports = new ArrayList<>(result.getReports());
+        reports.add(buildCacheReport(cache, "miss"));
+
+        if (result.isSuccess()) {
+            var className = result.getOllirResult().orElseThrow().getOllirClass().getClassName();
+            var cached = new BuildCache.Entry(className,
+                    result.getOllirCode().orElse(null),
+                    result.getJasminResult().map(JasminResult::getJasminCode).orElse(null),
+                    result.getClassFileResult().map(ClassFileResult::getClassFile).orElse(null),
+                    result.getReports());
+            try {
+                telemetry.measure("cache/store", () -> cache.put(key, cached));
+            } catch (UncheckedIOException e) {
+                // The compilation succeeded, only the next one will not be faster
+                reports.add(Report.newWarn(Stage.OTHER, -1, -1,
+                        e.getMessage() + ": " + e.getCause().getMessage(), e));
+            }
+        }
+
+        return new CompilationResult(inputFile, reports, result.getOllirResult().orElse(null),
+                result.getJasminResult().orElse(null), result.getClassFileResult().orElse(null), telemetry,
+                System.nanoTime() - start);
+    }
+
+    private static Report buildCacheReport(BuildCache cache, String outcome) {
+        var message = String.format("Build cache %s (%d hits, %d misses)", outcome, cache.getHits(),
+                cache.getMisses());
+        return Report.newLog(Stage.OTHER, -1, -1, message, null);
+    }
+
+    private static CompilationResult runPipeline(String code, File inputFile, Map<String, String> config,
+                                                 Telemetry telemetry) {
+        long start = System.nanoTime();
+
+        List<Report> reports = new ArrayList<>();
+        OllirResult ollirResult = null;
+        JasminResult jasminResult = null;
+        ClassFileResult classFileResult = null;
+
+        try {
+            // Parsing stage
+            JmmParserImpl parser = new JmmParserImpl(telemetry);
+            JmmParserResult parserResult = parser.parse(code, config);
+            reports = parserResult.getReports();
+            if (ReportUtils.anyError(reports)) {
+                return new CompilationResult(inputFile, reports, null, null, null, telemetry,
+                        System.nanoTime() - start);
+            }
+
+            // Semantic Analysis stage
+            JmmAnalysisImpl sema = new JmmAnalysisImpl(telemetry);
+            JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
+            reports = semanticsResult.getReports();
+            if (ReportUtils.anyError(reports)) {
+                return new CompilationResult(inputFile, reports, null, null, null, telemetry,
+                        System.nanoTime() - start);
+            }
+
+            // Optimization stage
+            JmmOptimizationImpl optimization = new JmmOptimizationImpl(telemetry);
+            semanticsResult = optimization.optimize(semanticsResult);
+            ollirResult = optimization.toOllir(semanticsResult);
+            ollirResult = optimization.optimize(ollirResult);
+            reports = ollirResult.getReports();
+            if (ReportUtils.anyError(reports)) {
+                return new CompilationResult(inputFile, reports, ollirResult, null, null, telemetry,
+                        System.nanoTime() - start);
+            }
+
+            // Code generation stage, Jasmin code by default or class files with '-b=class'
+            if (CompilerConfig.isClassFileBackend(config)) {
+                ClassFileBackendImpl classFileGen = new ClassFileBackendImpl(telemetry);
+                classFileResult = classFileGen.toClassFile(ollirResult);
+                reports = classFileResult.getReports();
+            } else {
+                JasminBackendImpl jasminGen = new JasminBackendImpl(telemetry);
+                jasminResult = jasminGen.toJasmin(ollirResult);
+                reports = jasminResult.getReports();
+            }
+
+        } catch (Exception e) {
+            // Keep the reports collected so far, one failing file should not stop a batch
+            reports = new ArrayList<>(reports);
+            reports.add(Report.newError(Stage.OTHER, -1, -1, "Exception during compilation", e));
+        } finally {
+            // The signatures read from the classpath are written to the build cache once per compilation
+            ClassSignatureIndex.fromConfig(config).ifPresent(ClassSignatureIndex::flush);
+        }
+
+        return new CompilationResult(inputFile, reports, ollirResult, jasminResult, classFileResult, telemetry,
+                System.nanoTime() - start);
+    }
+}
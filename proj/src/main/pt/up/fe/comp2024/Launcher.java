@@ -1,17 +1,11 @@
 package pt.up.fe.comp2024;
 
-import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
-import pt.up.fe.comp2024.backend.JasminBackendImpl;
-import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
-import pt.up.fe.comp2024.parser.JmmParserImpl;
-import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.comp2024.server.CompileServer;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
 import java.util.Map;
 
 public class Launcher {
@@ -21,41 +15,65 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
-        var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
+        // Keep the compiler resident and serve compile requests
+        if (CompilerConfig.getServerAddress(config).isPresent()) {
+            new CompileServer(CompilerConfig.getServerAddress(config).get()).run();
+            return;
         }
-        String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
+        if (!CompilerConfig.isBatch(config)) {
+            var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
+            if (!inputFile.isFile()) {
+                throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0]
+                        + "'.");
+            }
+        }
+
+        if (compile(config, System.out) > 0) {
+            System.exit(1);
+        }
+    }
 
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
+    /**
+     * Compiles the input files given in the config through {@link JmmCompiler}, several inputs or a folder in
+     * parallel, and prints the results.
+     *
+     * @return the number of files that failed to compile
+     */
+    public static int compile(Map<String, String> config, PrintStream out) {
+        List<File> inputFiles = CompilerConfig.getInputFiles(config);
 
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+        long start = System.nanoTime();
+        List<CompilationResult> results = CompilerConfig.isBatch(config) ?
+                new BatchCompiler(config).compile(inputFiles) :
+                List.of(JmmCompiler.compile(inputFiles.get(0), config));
+        double totalMillis = (System.nanoTime() - start) / 1_000_000.0;
 
+        return printResults(results, totalMillis, out);
+    }
 
-        // Optimization stage
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+    /**
+     * Prints the reports of each compilation, grouped by file in the order the files were given.
+     *
+     * @return the number of files that failed to compile
+     */
+    public static int printResults(List<CompilationResult> results, double totalMillis, PrintStream out) {
+        int failed = 0;
+        for (var result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+            }
 
-        // Print OLLIR code
-        //System.out.println(ollirResult.getOllirCode());
+            out.println(String.format("%s (%s, %.2f ms)", result.getInputFile().getPath(),
+                    result.isSuccess() ? "ok" : "failed", result.getElapsedMillis()));
+            result.getReports().forEach(report -> out.println("    " + report));
+            result.getTelemetry().ifPresent(telemetry ->
+                    out.println("    TELEMETRY " + telemetry.toJson(result.getInputFile().getPath())));
+        }
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+        out.println(String.format("Compiled %d file(s) in %.2f ms, %d failed", results.size(), totalMillis, failed));
 
-        // Print Jasmin code
-        //System.out.println(jasminResult.getJasminCode());
+        return failed;
     }
 
 }
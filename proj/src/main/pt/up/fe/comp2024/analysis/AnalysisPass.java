@@ -20,4 +20,13 @@ public interface AnalysisPass {
      */
     List<Report> analyze(JmmNode root, SymbolTable table);
 
+    /**
+     * @return true if the pass looks at one method declaration at a time, besides the symbol table and the nodes
+     * outside methods, so that other instances of it can analyse each method in parallel. Passes that compare
+     * several methods, or the class with its imports, must return false
+     */
+    default boolean isMethodLocal() {
+        return true;
+    }
+
 }
\ No newline at end of file
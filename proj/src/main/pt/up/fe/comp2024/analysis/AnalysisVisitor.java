@@ -4,22 +4,46 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.KindDispatch;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiFunction;
 
 /**
  *
  */
 public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
 
+    private final KindDispatch<SymbolTable, Void> dispatch = new KindDispatch<>();
+
     private List<Report> reports;
 
+    private BiFunction<JmmNode, SymbolTable, Void> defaultVisit;
+
     public AnalysisVisitor() {
         reports = new ArrayList<>();
         setDefaultValue(() -> null);
     }
 
+    @Override
+    protected BiFunction<JmmNode, SymbolTable, Void> getVisit(JmmNode node) {
+        return dispatch.get(node, super::getVisit);
+    }
+
+    @Override
+    public void setDefaultVisit(BiFunction<JmmNode, SymbolTable, Void> defaultVisit) {
+        this.defaultVisit = defaultVisit;
+        super.setDefaultVisit(defaultVisit);
+    }
+
+    /**
+     * @return true if this pass has a visit method for nodes of the kind of the given one
+     */
+    boolean visits(JmmNode node) {
+        return getVisit(node) != defaultVisit;
+    }
+
     protected void addReport(Report report) {
         reports.add(report);
     }
@@ -0,0 +1,307 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Runs analysis passes in a single preorder traversal of the AST, instead of one traversal per pass.
+ * <p>
+ * Each node is given to the passes that visit its kind, in the order of the passes, so every pass sees the nodes in
+ * the same order as in its own traversal. The reports are then merged as if the passes had run one after the other,
+ * stopping after the first pass with semantic errors. Passes after it are no longer given nodes, since their reports
+ * would be dropped. A pass that throws stops receiving nodes, and is reported as when it ran alone. The bodies of
+ * methods are skipped when no pass given their nodes visits anything below the declaration of a method.
+ * <p>
+ * Passes that are not an {@link AnalysisVisitor} run alone, in their place in the order.
+ * <p>
+ * When timed, the time each pass spends on its nodes is added up, and recorded as a stage 'analysis/PASS' of the
+ * telemetry given to {@link #analyze(JmmNode, SymbolTable, Telemetry)}.
+ */
+public class FusedAnalysis {
+
+    /**
+     * What one pass found: its reports, or the exception it threw, and the time it took.
+     */
+    record PassResult(List<Report> reports, Exception error, long nanos) {
+        PassResult(List<Report> reports, Exception error) {
+            this(reports, error, 0);
+        }
+    }
+
+    // Kinds of the nodes that are not inside method bodies, or are the method declaration itself
+    private static final Set<Kind> DECLARATIONS = EnumSet.of(Kind.PROGRAM, Kind.IMPORT_DECL, Kind.CLASS_DECL,
+            Kind.METHOD_DECL);
+
+    private final List<AnalysisPass> passes;
+
+    // The passes that are fused, null for the ones that run alone
+    private final AnalysisVisitor[] visitors;
+
+    // Indexes of the fused passes that visit each kind, by ordinal, null while not known
+    private final int[][] passesByKind;
+
+    // If the time of each pass is measured, which costs two reads of the clock per node and pass
+    private final boolean timed;
+
+    public FusedAnalysis(List<AnalysisPass> passes) {
+        this(passes, false);
+    }
+
+    public FusedAnalysis(List<AnalysisPass> passes, boolean timed) {
+        this.passes = passes;
+        this.timed = timed;
+        this.visitors = passes.stream()
+                .map(pass -> pass instanceof AnalysisVisitor visitor ? visitor : null)
+                .toArray(AnalysisVisitor[]::new);
+        this.passesByKind = new int[Kind.values().length][];
+    }
+
+    List<AnalysisPass> getPasses() {
+        return passes;
+    }
+
+    /**
+     * State of one analysis, so that the same passes can analyse several trees.
+     */
+    private class Traversal {
+        private final SymbolTable table;
+
+        // Which passes are given the nodes outside and inside methods
+        private final boolean[] outsideMethods;
+        private final boolean[] insideMethods;
+
+        // Reports of each fused pass before this analysis
+        private final int[] reportStarts;
+        private final Exception[] errors;
+
+        // Time spent in each fused pass, if timed
+        private final long[] nanos;
+
+        // Index of the first pass with errors, the ones after it are skipped
+        private int lastPass;
+
+        // If the passes given the nodes inside methods visit more than the declarations, null while not known
+        private Boolean visitsMethodBodies;
+
+        Traversal(SymbolTable table, boolean[] outsideMethods, boolean[] insideMethods) {
+            this.table = table;
+            this.outsideMethods = outsideMethods;
+            this.insideMethods = insideMethods;
+            this.reportStarts = new int[visitors.length];
+            this.errors = new Exception[visitors.length];
+            this.nanos = new long[visitors.length];
+            this.lastPass = visitors.length - 1;
+
+            for (int i = 0; i < visitors.length; i++) {
+                if (visitors[i] != null) {
+                    reportStarts[i] = visitors[i].getReports().size();
+                }
+            }
+        }
+
+        void visit(JmmNode node, boolean inMethod) {
+            inMethod = inMethod || Kind.METHOD_DECL.check(node);
+            var enabled = inMethod ? insideMethods : outsideMethods;
+
+            for (int index : getPasses(node)) {
+                if (index > lastPass) {
+                    break;
+                }
+                if (errors[index] != null || !enabled[index]) {
+                    continue;
+                }
+
+                var visitor = visitors[index];
+                int reportCount = visitor.getReports().size();
+                long start = timed ? System.nanoTime() : 0;
+                try {
+                    visitor.getVisit(node).apply(node, table);
+                } catch (RuntimeException e) {
+                    // Reported after the next pass that does not fail, which is not known yet, so nothing is skipped
+                    errors[index] = e;
+                    continue;
+                } finally {
+                    if (timed) {
+                        nanos[index] += System.nanoTime() - start;
+                    }
+                }
+
+                if (hasErrors(visitor.getReports().subList(reportCount, visitor.getReports().size()))) {
+                    lastPass = Math.min(lastPass, index);
+                }
+            }
+
+            if (Kind.METHOD_DECL.check(node) && !visitsMethodBodies()) {
+                return;
+            }
+
+            // Passes do not change the tree, so the children of our nodes are not copied
+            if (node instanceof CompactJmmNode compactNode) {
+                for (int i = 0; i < compactNode.getNumChildren(); i++) {
+                    visit(compactNode.getChild(i), inMethod);
+                }
+                return;
+            }
+
+            for (var child : node.getChildren()) {
+                visit(child, inMethod);
+            }
+        }
+
+        private boolean visitsMethodBodies() {
+            if (visitsMethodBodies == null) {
+                visitsMethodBodies = Arrays.stream(Kind.values())
+                        .filter(kind -> !DECLARATIONS.contains(kind))
+                        .flatMapToInt(kind -> Arrays.stream(getPasses(new CompactJmmNode(kind))))
+                        .anyMatch(index -> insideMethods[index]);
+            }
+
+            return visitsMethodBodies;
+        }
+
+        PassResult getResult(int index) {
+            if (errors[index] != null) {
+                return new PassResult(List.of(), errors[index], nanos[index]);
+            }
+
+            var reports = visitors[index].getReports();
+            return new PassResult(reports.subList(reportStarts[index], reports.size()), null, nanos[index]);
+        }
+    }
+
+    /**
+     * Analyses the tree with every pass.
+     *
+     * @return the reports of the passes, in their order, up to the first pass with semantic errors
+     */
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        return analyze(root, table, Telemetry.disabled());
+    }
+
+    /**
+     * Analyses the tree with every pass, recording the time of each pass that is merged.
+     *
+     * @return the reports of the passes, in their order, up to the first pass with semantic errors
+     */
+    public List<Report> analyze(JmmNode root, SymbolTable table, Telemetry telemetry) {
+        var everyPass = new boolean[passes.size()];
+        Arrays.fill(everyPass, true);
+
+        var results = traverse(root, table, everyPass, everyPass);
+
+        return merge(passes, index -> results[index] != null ? results[index] : runAlone(index, root, table),
+                telemetry);
+    }
+
+    /**
+     * Gives the nodes of the tree to the fused passes.
+     *
+     * @param outsideMethods the passes given the nodes outside method declarations, by index
+     * @param insideMethods  the passes given the method declarations and their nodes, by index
+     * @return the result of each fused pass, null for the passes that run alone
+     */
+    PassResult[] traverse(JmmNode root, SymbolTable table, boolean[] outsideMethods, boolean[] insideMethods) {
+        var traversal = new Traversal(table, outsideMethods, insideMethods);
+        traversal.visit(root, false);
+
+        var results = new PassResult[visitors.length];
+        for (int i = 0; i < visitors.length; i++) {
+            if (visitors[i] != null) {
+                results[i] = traversal.getResult(i);
+            }
+        }
+
+        return results;
+    }
+
+    PassResult runAlone(int index, JmmNode root, SymbolTable table) {
+        long start = System.nanoTime();
+        try {
+            var reports = passes.get(index).analyze(root, table);
+            return new PassResult(reports, null, System.nanoTime() - start);
+        } catch (Exception e) {
+            return new PassResult(List.of(), e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Merges the results of the passes as if they had run one after the other, stopping after the first pass with
+     * semantic errors.
+     *
+     * @param results the result of each pass by index, only asked for the passes that are merged
+     */
+    static List<Report> merge(List<AnalysisPass> passes, IntFunction<PassResult> results) {
+        return merge(passes, results, Telemetry.disabled());
+    }
+
+    /**
+     * Merges the results of the passes, recording the time of each merged pass as a stage 'analysis/PASS'.
+     */
+    static List<Report> merge(List<AnalysisPass> passes, IntFunction<PassResult> results, Telemetry telemetry) {
+        List<Report> reports = new ArrayList<>();
+
+        for (int i = 0; i < passes.size(); i++) {
+            var result = results.apply(i);
+            telemetry.record("analysis/" + passes.get(i).getClass().getSimpleName(), result.nanos());
+
+            if (result.error() != null) {
+                reports.add(Report.newError(Stage.SEMANTIC,
+                        -1,
+                        -1,
+                        "Problem while executing analysis pass '" + passes.get(i).getClass() + "'",
+                        result.error())
+                );
+                continue;
+            }
+
+            reports.addAll(result.reports());
+            if (hasErrors(reports)) {
+                break;
+            }
+        }
+
+        return reports;
+    }
+
+    /**
+     * @return the indexes of the fused passes that visit nodes of the kind of the given node
+     */
+    private int[] getPasses(JmmNode node) {
+        // Nodes not created by our parser may have other hierarchies
+        if (!(node instanceof CompactJmmNode compactNode)) {
+            return findPasses(node);
+        }
+
+        int ordinal = compactNode.getKindEnum().ordinal();
+        var kindPasses = passesByKind[ordinal];
+        if (kindPasses == null) {
+            kindPasses = findPasses(node);
+            passesByKind[ordinal] = kindPasses;
+        }
+
+        return kindPasses;
+    }
+
+    private int[] findPasses(JmmNode node) {
+        return IntStream.range(0, visitors.length)
+                .filter(index -> visitors[index] != null && visitors[index].visits(node))
+                .toArray();
+    }
+
+    private static boolean hasErrors(List<Report> reports) {
+        return reports.stream().anyMatch(report -> report.getStage() == Stage.SEMANTIC);
+    }
+}
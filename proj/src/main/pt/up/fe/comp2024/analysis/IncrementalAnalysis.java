@@ -0,0 +1,397 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Analyses a program again after an edit, for editors that analyse the code as it is typed.
+ * <p>
+ * When the edit is inside a method, only that method is parsed again, and it replaces the old one in the tree. The
+ * symbol table is rebuilt with the entries of the new method and the ones the other methods already had. The passes
+ * that look at one method at a time, see {@link AnalysisPass#isMethodLocal()}, run again on the edited method, and on
+ * the methods that call it if its signature changed. The other methods keep their results, moved to their new lines,
+ * and the class-level passes go through the whole tree again. The results are merged as in {@link ParallelAnalysis},
+ * so the reports are the same as the ones of a full analysis.
+ * <p>
+ * Any other edit, or one after which the text of the method is no longer a whole method, is analysed from scratch.
+ * The tree of the previous result is changed in place, so only the last result can be updated. Not thread-safe.
+ */
+public class IncrementalAnalysis {
+
+    /**
+     * Text that replaced a range of the previous code. Lines start at 1 and columns at 0, as in the positions of the
+     * nodes, and the end is exclusive.
+     */
+    public record TextEdit(int startLine, int startColumn, int endLine, int endColumn, String text) {
+
+        /**
+         * @return true if the given position of the previous code is after the replaced text
+         */
+        boolean isAfter(int line, int column) {
+            return line > endLine || (line == endLine && column >= endColumn);
+        }
+
+        /**
+         * @return true if the given position of the previous code is before the replaced text
+         */
+        boolean isBefore(int line, int column) {
+            return line < startLine || (line == startLine && column < startColumn);
+        }
+
+        /**
+         * @return the line, in the new code, of a position after the replaced text
+         */
+        int shiftLine(int line) {
+            return line + countLines(text) - (endLine - startLine);
+        }
+
+        /**
+         * @return the column, in the new code, of a position after the replaced text
+         */
+        int shiftColumn(int line, int column) {
+            if (line != endLine) {
+                return column;
+            }
+
+            // On the last line of the new text
+            int lastLineStart = text.lastIndexOf('\n') + 1;
+            int newEndColumn = lastLineStart == 0 ? startColumn + text.length() : text.length() - lastLineStart;
+            return newEndColumn + column - endColumn;
+        }
+
+        /**
+         * @return true if the node, which starts after the replaced text, has positions that change in the new code
+         */
+        boolean movesLine(JmmNode node) {
+            // Without new lines, only the rest of the last line moves
+            return shiftLine(endLine) != endLine || !(node instanceof CompactJmmNode compactNode)
+                    || compactNode.getLine() <= endLine;
+        }
+
+        /**
+         * @return true if positions after the replaced text are not the same in the new code
+         */
+        boolean movesText() {
+            return shiftLine(endLine) != endLine || shiftColumn(endLine, endColumn) != endColumn;
+        }
+
+        private static int countLines(String text) {
+            int lines = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    lines++;
+                }
+            }
+
+            return lines;
+        }
+    }
+
+    /**
+     * The results of the method-local passes in one method, and the names of the methods it calls.
+     */
+    private record MethodResult(FusedAnalysis.PassResult[] passResults, Set<String> calls) {
+    }
+
+    private final Supplier<List<AnalysisPass>> passFactory;
+
+    // State of the last result, only that one can be updated
+    private JmmSemanticsResult lastResult;
+    private Map<JmmNode, MethodResult> methodResults;
+
+    public IncrementalAnalysis() {
+        this(JmmAnalysisImpl::createPasses);
+    }
+
+    /**
+     * @param passFactory creates new instances of the passes, always in the same order
+     */
+    public IncrementalAnalysis(Supplier<List<AnalysisPass>> passFactory) {
+        this.passFactory = passFactory;
+    }
+
+    /**
+     * Parses and analyses the whole code.
+     *
+     * @return the result of the analysis, without a tree if the code has syntax errors
+     */
+    public JmmSemanticsResult analyze(String code, Map<String, String> config) {
+        lastResult = null;
+        methodResults = new IdentityHashMap<>();
+
+        var parserResult = new JmmParserImpl().parse(code, config);
+        var root = parserResult.getRootNode();
+        if (root == null) {
+            return new JmmSemanticsResult(parserResult, null, List.of());
+        }
+
+        var table = JmmSymbolTableBuilder.build(root);
+        ClassSignatureIndex.fromConfig(config).ifPresent(table::setClassSignatures);
+
+        for (var method : getMethods(root)) {
+            methodResults.put(method, analyzeMethod(method, table));
+        }
+
+        return finish(root, table, config);
+    }
+
+    /**
+     * Analyses the code after an edit.
+     *
+     * @param previous the last result of this analysis
+     * @param code     the whole code, after the edit
+     * @param edit     the change from the code of the previous result
+     * @return the result of the analysis, as the one of {@link #analyze} for the new code
+     */
+    public JmmSemanticsResult update(JmmSemanticsResult previous, String code, TextEdit edit) {
+        var config = previous.getConfig();
+        if (previous != lastResult) {
+            return analyze(code, config);
+        }
+
+        var root = previous.getRootNode();
+        var method = findEditedMethod(root, edit);
+        if (method == null) {
+            return analyze(code, config);
+        }
+
+        var table = (JmmSymbolTable) previous.getSymbolTable();
+        String oldName = method.get("name");
+        var newMethod = parseMethod(code, method, edit, config);
+        if (newMethod == null || !isDeclaredOnce(table, oldName, newMethod.get("name"))) {
+            return analyze(code, config);
+        }
+        String newName = newMethod.get("name");
+
+        var classDecl = method.getParent();
+        int index = method.getIndexOfSelf();
+        classDecl.setChild(newMethod, index);
+
+        // The text after the method moves with the edit
+        if (edit.movesText()) {
+            for (int i = index + 1; i < classDecl.getNumChildren() && edit.movesLine(classDecl.getChild(i)); i++) {
+                shiftPositions(classDecl.getChild(i), edit, true);
+            }
+            for (var ancestor = classDecl; ancestor != null; ancestor = ancestor.getParent()) {
+                shiftPositions(ancestor, edit, false);
+            }
+        }
+
+        var newTable = JmmSymbolTableBuilder.replaceMethod(table, oldName, newMethod);
+        boolean signatureChanged = !getSignature(table, oldName, method)
+                .equals(getSignature(newTable, newName, newMethod));
+
+        methodResults.remove(method);
+        methodResults.put(newMethod, analyzeMethod(newMethod, newTable));
+
+        for (int i = 0; i < classDecl.getNumChildren(); i++) {
+            var other = classDecl.getChild(i);
+            if (i == index || !Kind.METHOD_DECL.check(other)) {
+                continue;
+            }
+
+            var result = methodResults.get(other);
+            if (signatureChanged && (result.calls().contains(oldName) || result.calls().contains(newName))) {
+                methodResults.put(other, analyzeMethod(other, newTable));
+            } else if (edit.movesText() && i > index && edit.movesLine(other)) {
+                methodResults.put(other, shiftReports(result, edit));
+            }
+        }
+
+        return finish(root, newTable, config);
+    }
+
+    private JmmSemanticsResult finish(JmmNode root, JmmSymbolTable table, Map<String, String> config) {
+        var classAnalysis = new FusedAnalysis(passFactory.get());
+        var classResults = ParallelAnalysis.traverseClass(classAnalysis, root, table,
+                ParallelAnalysis.getMethodLocal(classAnalysis.getPasses()));
+
+        var orderedResults = getMethods(root).stream()
+                .map(method -> methodResults.get(method).passResults())
+                .toList();
+        var reports = ParallelAnalysis.merge(classAnalysis, root, table, classResults, orderedResults);
+
+        lastResult = new JmmSemanticsResult(root, table, reports, config);
+        return lastResult;
+    }
+
+    private MethodResult analyzeMethod(JmmNode method, JmmSymbolTable table) {
+        var passes = passFactory.get();
+        var methodLocal = ParallelAnalysis.getMethodLocal(passes);
+        var passResults = new FusedAnalysis(passes).traverse(method, table, methodLocal, methodLocal);
+
+        // Every name after a dot, which is enough to know which methods may be called
+        var calls = method.getDescendantsStream()
+                .filter(node -> Kind.FUNCTION_CALL.check(node) || Kind.LENGTH_CALL.check(node))
+                .map(node -> node.get("func"))
+                .collect(Collectors.toSet());
+
+        return new MethodResult(passResults, calls);
+    }
+
+    private static List<JmmNode> getMethods(JmmNode root) {
+        return root.getChildren(Kind.CLASS_DECL).stream()
+                .flatMap(classDecl -> classDecl.getChildren(Kind.METHOD_DECL).stream())
+                .toList();
+    }
+
+    /**
+     * @return the method whose text contains the whole edit, without its first character and its closing brace, or
+     * null if there is none
+     */
+    private static CompactJmmNode findEditedMethod(JmmNode root, TextEdit edit) {
+        for (var method : getMethods(root)) {
+            if (method instanceof CompactJmmNode compactMethod
+                    && edit.isBefore(compactMethod.getLine(), compactMethod.getColumn())
+                    && edit.isAfter(compactMethod.getLineEnd(), compactMethod.getColumnEnd())) {
+                return compactMethod;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the text of the method after the edit, with the positions it has in the whole code.
+     *
+     * @return the new method, or null if the text is not exactly one method
+     */
+    private static CompactJmmNode parseMethod(String code, CompactJmmNode method, TextEdit edit,
+                                              Map<String, String> config) {
+        // The closing brace is after the edit
+        int endLine = edit.shiftLine(method.getLineEnd());
+        int endColumn = edit.shiftColumn(method.getLineEnd(), method.getColumnEnd());
+
+        int startOffset = getOffset(code, method.getLine(), method.getColumn());
+        int endOffset = getOffset(code, endLine, endColumn) + 1;
+        if (startOffset < 0 || endOffset <= startOffset || endOffset > code.length()) {
+            return null;
+        }
+
+        var parserResult = new JmmParserImpl().parse(code.substring(startOffset, endOffset), "methodDecl", config);
+        if (!(parserResult.getRootNode() instanceof CompactJmmNode newMethod)
+                || !Kind.METHOD_DECL.check(newMethod)) {
+            return null;
+        }
+
+        int lineOffset = method.getLine() - 1;
+        int columnOffset = method.getColumn();
+        newMethod.getDescendantsAndSelfStream()
+                .map(CompactJmmNode.class::cast)
+                .forEach(node -> node.setPosition(
+                        node.getLine() + lineOffset,
+                        node.getLine() == 1 ? node.getColumn() + columnOffset : node.getColumn(),
+                        node.getLineEnd() + lineOffset,
+                        node.getLineEnd() == 1 ? node.getColumnEnd() + columnOffset : node.getColumnEnd()));
+
+        // The parser stops after the first method, which may not go up to the closing brace
+        if (newMethod.getLineEnd() != endLine || newMethod.getColumnEnd() != endColumn) {
+            return null;
+        }
+
+        return newMethod;
+    }
+
+    /**
+     * @return the offset of the given position in the code, or -1 if the code does not have it
+     */
+    private static int getOffset(String code, int line, int column) {
+        int lineStart = 0;
+        for (int currentLine = 1; currentLine < line; currentLine++) {
+            lineStart = code.indexOf('\n', lineStart) + 1;
+            if (lineStart == 0) {
+                return -1;
+            }
+        }
+
+        return lineStart + column;
+    }
+
+    private static boolean isDeclaredOnce(JmmSymbolTable table, String oldName, String newName) {
+        var methods = table.getMethods();
+        return methods.indexOf(oldName) == methods.lastIndexOf(oldName)
+                && (newName.equals(oldName) || !methods.contains(newName));
+    }
+
+    /**
+     * @return what the calls to the method depend on: its name, return type, parameters, and if it is static
+     */
+    private static String getSignature(JmmSymbolTable table, String name, JmmNode method) {
+        var parameters = table.getParameters(name).stream()
+                .map(param -> describe(param.getType()) + " " + param.getName())
+                .collect(Collectors.joining(", "));
+
+        var modifier = method instanceof CompactJmmNode compactMethod && compactMethod.isStatic() ? "static " : "";
+        return modifier + describe(table.getReturnType(name)) + " " + name + "(" + parameters + ")";
+    }
+
+    private static String describe(Type type) {
+        return type.print() + (Boolean.TRUE.equals(type.getObject("isVarargs")) ? "..." : "");
+    }
+
+    private static void shiftPositions(JmmNode node, TextEdit edit, boolean descendants) {
+        if (node instanceof CompactJmmNode compactNode) {
+            int line = compactNode.getLine();
+            int column = compactNode.getColumn();
+            if (edit.isAfter(line, column)) {
+                column = edit.shiftColumn(line, column);
+                line = edit.shiftLine(line);
+            }
+
+            int lineEnd = compactNode.getLineEnd();
+            int columnEnd = compactNode.getColumnEnd();
+            if (edit.isAfter(lineEnd, columnEnd)) {
+                columnEnd = edit.shiftColumn(lineEnd, columnEnd);
+                lineEnd = edit.shiftLine(lineEnd);
+            }
+
+            compactNode.setPosition(line, column, lineEnd, columnEnd);
+        }
+
+        if (descendants) {
+            for (var child : node.getChildren()) {
+                if (edit.movesLine(child)) {
+                    shiftPositions(child, edit, true);
+                }
+            }
+        }
+    }
+
+    private static MethodResult shiftReports(MethodResult result, TextEdit edit) {
+        var passResults = Arrays.stream(result.passResults())
+                // Passes that run alone have no results per method
+                .map(passResult -> passResult == null ? null : new FusedAnalysis.PassResult(
+                        passResult.reports().stream().map(report -> shiftReport(report, edit)).toList(),
+                        passResult.error()))
+                .toArray(FusedAnalysis.PassResult[]::new);
+
+        return new MethodResult(passResults, result.calls());
+    }
+
+    private static Report shiftReport(Report report, TextEdit edit) {
+        if (!edit.isAfter(report.getLine(), report.getColumn())) {
+            return report;
+        }
+
+        var shifted = new Report(report.getType(), report.getStage(), edit.shiftLine(report.getLine()),
+                edit.shiftColumn(report.getLine(), report.getColumn()), report.getMessage());
+        report.getException().ifPresent(shifted::setException);
+        return shifted;
+    }
+}
@@ -2,11 +2,10 @@ package pt.up.fe.comp2024.analysis;
 
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
 import pt.up.fe.comp2024.analysis.passes.DuplicatedMisc;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredMethod;
@@ -25,19 +24,38 @@ import pt.up.fe.comp2024.analysis.passes.IncompatibleArguments;
 import pt.up.fe.comp2024.analysis.passes.IncompatibleArrayInit;
 import pt.up.fe.comp2024.analysis.passes.IncorrectVarargs;
 import pt.up.fe.comp2024.analysis.passes.IncorrectMainDeclaration;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.telemetry.Telemetry;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
 
-    private final List<AnalysisPass> analysisPasses;
+    private final FusedAnalysis analysis;
+    private final ParallelAnalysis parallelAnalysis;
+    private final Telemetry telemetry;
 
     public JmmAnalysisImpl() {
+        this(Telemetry.disabled());
+    }
+
+    public JmmAnalysisImpl(Telemetry telemetry) {
+
+        this.telemetry = telemetry;
+
+        this.analysis = new FusedAnalysis(createPasses(), telemetry.isEnabled());
+        this.parallelAnalysis = new ParallelAnalysis(JmmAnalysisImpl::createPasses, ForkJoinPool.commonPool());
+    }
 
-        this.analysisPasses = List.of(
+    /**
+     * @return new instances of the analysis passes, in the order they run
+     */
+    public static List<AnalysisPass> createPasses() {
+        return List.of(
                 new IncorrectMainDeclaration(),
                 new ExtendsNotImported(),
                 new UndeclaredVariable(),
@@ -57,7 +75,6 @@ public class JmmAnalysisImpl implements JmmAnalysis {
                 new IncompatibleArguments(),
                 new IncompatibleReturn()
         );
-
     }
 
     @Override
@@ -65,34 +82,16 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
-
-        List<Report> reports = new ArrayList<>();
-
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                reports.addAll(passReports);
-                if(hasErrors(reports)){
-                    break;
-                }
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
-            }
+        JmmSymbolTable table = telemetry.measure("symbolTable", () -> JmmSymbolTableBuilder.build(rootNode));
+        ClassSignatureIndex.fromConfig(parserResult.getConfig()).ifPresent(table::setClassSignatures);
 
-        }
+        // Visit all nodes in the AST once, with every pass, or each method on another thread with '-j'. The time of
+        // each pass is recorded inside the stage of the whole analysis
+        boolean parallel = CompilerConfig.isParallelAnalysis(parserResult.getConfig());
+        List<Report> reports = telemetry.measure("analysis", () -> parallel
+                ? parallelAnalysis.analyze(rootNode, table, telemetry)
+                : analysis.analyze(rootNode, table, telemetry));
 
         return new JmmSemanticsResult(parserResult, table, reports);
     }
-
-    // Checks if there are any errors in the reports
-    private boolean hasErrors(List<Report> reports) {
-        return reports.stream().anyMatch(report -> report.getStage() == Stage.SEMANTIC);
-    }
 }
@@ -0,0 +1,161 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Analyses the methods of a class in parallel, each one on a task of a {@link ForkJoinPool}.
+ * <p>
+ * The passes that look at one method at a time, see {@link AnalysisPass#isMethodLocal()}, are given the nodes outside
+ * methods in the same traversal where the class-level passes go through the whole tree. Each method declaration is
+ * then analysed by new instances of them, since they keep the current method in fields. The reports of each pass are
+ * put back in source order, the nodes outside methods first, since imports and fields come before methods, and then
+ * each method. They are merged as in {@link FusedAnalysis}, so the result is the same as the sequential analysis. The
+ * time of a pass is added up over the class and every method, whatever thread analysed them.
+ */
+public class ParallelAnalysis {
+
+    private final Supplier<List<AnalysisPass>> passFactory;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param passFactory creates new instances of the passes, always in the same order
+     */
+    public ParallelAnalysis(Supplier<List<AnalysisPass>> passFactory, ForkJoinPool pool) {
+        this.passFactory = passFactory;
+        this.pool = pool;
+    }
+
+    /**
+     * Analyses the tree with every pass.
+     *
+     * @return the reports of the passes, in their order, up to the first pass with semantic errors
+     */
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        return analyze(root, table, Telemetry.disabled());
+    }
+
+    /**
+     * Analyses the tree with every pass, recording the time of each pass that is merged.
+     *
+     * @return the reports of the passes, in their order, up to the first pass with semantic errors
+     */
+    public List<Report> analyze(JmmNode root, SymbolTable table, Telemetry telemetry) {
+        boolean timed = telemetry.isEnabled();
+        var classAnalysis = new FusedAnalysis(passFactory.get(), timed);
+        var methods = root.getChildren(Kind.CLASS_DECL).stream()
+                .flatMap(classDecl -> classDecl.getChildren(Kind.METHOD_DECL).stream())
+                .toList();
+
+        // Tasks are only worth it for several methods
+        if (methods.size() < 2) {
+            return classAnalysis.analyze(root, table, telemetry);
+        }
+
+        var passes = classAnalysis.getPasses();
+        var methodLocal = getMethodLocal(passes);
+
+        List<ForkJoinTask<FusedAnalysis.PassResult[]>> tasks = new ArrayList<>();
+        for (var method : methods) {
+            tasks.add(pool.submit(() -> analyzeMethod(passes, method, table, methodLocal, timed)));
+        }
+
+        // Meanwhile, this thread goes through the class
+        var classResults = traverseClass(classAnalysis, root, table, methodLocal);
+
+        List<FusedAnalysis.PassResult[]> methodResults = new ArrayList<>();
+        for (var task : tasks) {
+            methodResults.add(task.join());
+        }
+
+        return merge(classAnalysis, root, table, classResults, methodResults, telemetry);
+    }
+
+    /**
+     * @return which of the passes look at one method at a time, by index
+     */
+    static boolean[] getMethodLocal(List<AnalysisPass> passes) {
+        var methodLocal = new boolean[passes.size()];
+        for (int i = 0; i < passes.size(); i++) {
+            methodLocal[i] = passes.get(i).isMethodLocal();
+        }
+
+        return methodLocal;
+    }
+
+    /**
+     * Gives the whole tree to the class-level passes, and the nodes outside methods to the method-local ones.
+     */
+    static FusedAnalysis.PassResult[] traverseClass(FusedAnalysis classAnalysis, JmmNode root, SymbolTable table,
+                                                    boolean[] methodLocal) {
+        var everyPass = new boolean[methodLocal.length];
+        var classLevel = new boolean[methodLocal.length];
+        for (int i = 0; i < methodLocal.length; i++) {
+            everyPass[i] = true;
+            classLevel[i] = !methodLocal[i];
+        }
+
+        return classAnalysis.traverse(root, table, everyPass, classLevel);
+    }
+
+    /**
+     * Merges the results of {@link #traverseClass} with the ones of each method, given in source order.
+     */
+    static List<Report> merge(FusedAnalysis classAnalysis, JmmNode root, SymbolTable table,
+                              FusedAnalysis.PassResult[] classResults, List<FusedAnalysis.PassResult[]> methodResults) {
+        return merge(classAnalysis, root, table, classResults, methodResults, Telemetry.disabled());
+    }
+
+    private static List<Report> merge(FusedAnalysis classAnalysis, JmmNode root, SymbolTable table,
+                                      FusedAnalysis.PassResult[] classResults,
+                                      List<FusedAnalysis.PassResult[]> methodResults, Telemetry telemetry) {
+        var passes = classAnalysis.getPasses();
+
+        return FusedAnalysis.merge(passes, index -> {
+            if (classResults[index] == null) {
+                return classAnalysis.runAlone(index, root, table);
+            }
+            if (!passes.get(index).isMethodLocal()) {
+                return classResults[index];
+            }
+
+            // The nodes outside methods, then each method in source order
+            List<Report> reports = new ArrayList<>(classResults[index].reports());
+            var error = classResults[index].error();
+            long nanos = classResults[index].nanos();
+            for (var results : methodResults) {
+                if (error == null) {
+                    error = results[index].error();
+                }
+                reports.addAll(results[index].reports());
+                nanos += results[index].nanos();
+            }
+
+            return new FusedAnalysis.PassResult(reports, error, nanos);
+        }, telemetry);
+    }
+
+    private FusedAnalysis.PassResult[] analyzeMethod(List<AnalysisPass> classPasses, JmmNode method,
+                                                     SymbolTable table, boolean[] methodLocal, boolean timed) {
+        var methodPasses = passFactory.get();
+
+        for (int i = 0; i < Math.max(classPasses.size(), methodPasses.size()); i++) {
+            if (i >= classPasses.size() || i >= methodPasses.size()
+                    || methodPasses.get(i).getClass() != classPasses.get(i).getClass()) {
+                throw new RuntimeException("Expected the factory to create the same passes, got " + methodPasses
+                        + " after " + classPasses);
+            }
+        }
+
+        return new FusedAnalysis(methodPasses, timed).traverse(method, table, methodLocal, methodLocal);
+    }
+}
@@ -23,7 +23,7 @@ public class ArrayIndexNotInt extends AnalysisVisitor{
     private Void visitArrAccessExpr(JmmNode arrAccessExpr, SymbolTable table){
 
         // Get the variable name and index of the array access expression
-        if(arrAccessExpr.getChild(0).getKind().equals(Kind.ARRAY_INIT.toString())){
+        if(Kind.ARRAY_INIT.check(arrAccessExpr.getChild(0))){
             var indexType = TypeUtils.getExprType(arrAccessExpr.getChild(1), table);
             if(indexType.getName().equals(TypeUtils.getIntTypeName())) return null;
             else {
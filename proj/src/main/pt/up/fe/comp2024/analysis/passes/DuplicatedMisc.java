@@ -18,6 +18,12 @@ import java.util.Set;
  */
 public class DuplicatedMisc extends AnalysisVisitor{
 
+    // Compares the methods of the class with each other
+    @Override
+    public boolean isMethodLocal() {
+        return false;
+    }
+
     @Override
     public void buildVisitor(){
         addVisit(Kind.PROGRAM, this::visitProgram);
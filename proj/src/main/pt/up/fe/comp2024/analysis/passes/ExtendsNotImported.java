@@ -8,14 +8,20 @@ import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
-import java.util.Arrays;
 
 /**
  * Checks if the array index is of type int
  */
 public class ExtendsNotImported extends AnalysisVisitor{
 
+    // Checks the class declaration against the imports
+    @Override
+    public boolean isMethodLocal() {
+        return false;
+    }
+
     @Override
     public void buildVisitor(){
 
@@ -31,9 +37,7 @@ public class ExtendsNotImported extends AnalysisVisitor{
             return null;
 
         // Check if it's imported
-        if(table.getImports().stream()
-                .flatMap(importName -> Arrays.stream(importName.substring(1, importName.length() - 1).split(","))) // Remove the square brackets and split by comma
-                .anyMatch(importName -> importName.trim().equals(superClass))){
+        if(JmmSymbolTable.of(table).getImportIndex().isImported(superClass)){
             return null;
         }
 
@@ -10,8 +10,8 @@ import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -36,9 +36,7 @@ public class IncompatibleArguments extends AnalysisVisitor{
         }
 
         // If type is in imports, assume the arguments are correct
-        if(table.getImports().stream()
-                .flatMap(importName -> Arrays.stream(importName.substring(1, importName.length() - 1).split(","))) // Remove the square brackets and split by comma
-                .anyMatch(importName -> importName.trim().equals(varType.getName()))){
+        if(JmmSymbolTable.of(table).getImportIndex().isImported(varType.getName())){
             return null;
         }
 
@@ -22,7 +22,7 @@ public class IncompatibleArrayInit extends AnalysisVisitor{
     private Void visitArrayInit(JmmNode arrayInit, SymbolTable table){
 
         // Checks if every element in the array is an int literal
-        if(arrayInit.getChildren().stream().allMatch(child -> child.getKind().equals(Kind.INT_LITERAL.toString()))){
+        if(arrayInit.getChildren().stream().allMatch(child -> Kind.INT_LITERAL.check(child))){
             return null;
         }
 
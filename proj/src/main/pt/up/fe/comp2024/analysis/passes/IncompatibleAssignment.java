@@ -9,8 +9,8 @@ import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
-import java.util.Arrays;
 
 /**
  * Checks if the array index is of type int
@@ -29,8 +29,8 @@ public class IncompatibleAssignment extends AnalysisVisitor{
 
         // Get the assigned variable and the assignee
         var assignedVar = assigntStmt.getChild(0);
-        if(!assignedVar.getKind().equals(Kind.ARR_ACCESS_EXPR.toString()) &&
-            !assignedVar.getKind().equals(Kind.VAR.toString())){
+        if(!Kind.ARR_ACCESS_EXPR.check(assignedVar) &&
+            !Kind.VAR.check(assignedVar)){
             // Create error report
             var message = String.format("Cannot assign to '%s'.", assignedVar.getKind());
             addReport(Report.newError(
@@ -46,7 +46,7 @@ public class IncompatibleAssignment extends AnalysisVisitor{
         var assignee = assigntStmt.getChild(1);
 
         // If assignee is an array initializer
-        if(assignee.getKind().equals(Kind.ARRAY_INIT.toString())){
+        if(Kind.ARRAY_INIT.check(assignee)){
             // If assigned variable is an array, return
             if(TypeUtils.getExprType(assignedVar, table).isArray())
                 return null;
@@ -74,9 +74,7 @@ public class IncompatibleAssignment extends AnalysisVisitor{
         }
 
         // Check if the assigned variable type is in the imports
-        if(table.getImports().stream()
-                .flatMap(importName -> Arrays.stream(importName.substring(1, importName.length() - 1).split(","))) // Remove the square brackets and split by comma
-                .anyMatch(importName -> importName.trim().equals(assignedVarType.getName()))){
+        if(JmmSymbolTable.of(table).getImportIndex().isImported(assignedVarType.getName())){
 
             // If the assignee is the class object and extends the assigned variable type class, return
             if(table.getClassName().equals(assigneeType.getName())
@@ -85,9 +83,7 @@ public class IncompatibleAssignment extends AnalysisVisitor{
             }
 
             // If both are in the imports, return
-            if(table.getImports().stream()
-                    .flatMap(importName -> Arrays.stream(importName.substring(1, importName.length() - 1).split(","))) // Remove the square brackets and split by comma
-                    .anyMatch(importName -> importName.trim().equals(assigneeType.getName()))){
+            if(JmmSymbolTable.of(table).getImportIndex().isImported(assigneeType.getName())){
                 return null;
             }
         }
@@ -42,7 +42,7 @@ public class IncompatibleReturn extends AnalysisVisitor{
             }
             var children = method.getChildren();
             var lastChild = children.get(children.size() - 1);
-            if(!lastChild.getKind().equals(Kind.RETURN_STMT.toString())){
+            if(!Kind.RETURN_STMT.check(lastChild)){
                 // Create error report
                 var message = String.format("Last statement in method '%s' is not return", currentMethod);
                 addReport(Report.newError(
@@ -9,8 +9,8 @@ import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
-import java.util.Arrays;
 
 /**
  * Checks if the array index is of type int
@@ -29,7 +29,7 @@ public class IncorrectStatic extends AnalysisVisitor{
 
     private Void visitMethodDecl(JmmNode methodDecl, SymbolTable table){
         currentMethod = methodDecl.get("name");
-        isStatic = methodDecl.get("isStatic").equals("true");
+        isStatic = NodeUtils.getBooleanAttribute(methodDecl, "isStatic", "false");
 
         if(!currentMethod.equals("main") && isStatic){
             // Create error report
@@ -51,21 +51,14 @@ public class IncorrectStatic extends AnalysisVisitor{
             return null;
 
         var varName = varNode.get("name");
-        // Check if variable is local
-        if(table.getLocalVariables(currentMethod).stream()
-                .anyMatch(localVar -> localVar.getName().equals(varName))){
-            return null;
-        }
-
-        if(table.getParameters(currentMethod).stream()
-                .anyMatch(param -> param.getName().equals(varName))){
+        // Check if variable is local or a parameter
+        var symbol = JmmSymbolTable.of(table).resolve(currentMethod, varName);
+        if(symbol != null && symbol.scope() != JmmSymbolTable.Scope.FIELD){
             return null;
         }
 
         // Checks if the class with name varName is in the imports list
-        if(table.getImports().stream()
-                .flatMap(importName -> Arrays.stream(importName.substring(1, importName.length() - 1).split(","))) // Remove the square brackets and split by comma
-                .anyMatch(importName -> importName.trim().equals(varName))){
+        if(JmmSymbolTable.of(table).getImportIndex().isImported(varName)){
             return null;
         }
 
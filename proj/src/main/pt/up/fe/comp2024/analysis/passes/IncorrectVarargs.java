@@ -22,7 +22,7 @@ public class IncorrectVarargs extends AnalysisVisitor{
 
     private Void visitVarDecl(JmmNode varDecl, SymbolTable table){
         // Check if variable is varargs
-        if(varDecl.getChild(0).get("isVarargs").equals("true")){
+        if(NodeUtils.getBooleanAttribute(varDecl.getChild(0), "isVarargs", "false")){
             // Create error report
             var message = String.format("Incorrect varargs usage. Variable '%s' was declared as varargs", varDecl.get("name"));
             addReport(Report.newError(
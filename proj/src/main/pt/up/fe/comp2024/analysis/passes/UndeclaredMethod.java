@@ -9,7 +9,7 @@ import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
-import java.util.Arrays;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 public class UndeclaredMethod extends AnalysisVisitor{
 
@@ -31,7 +31,7 @@ public class UndeclaredMethod extends AnalysisVisitor{
     public Void visitFunctionCall(JmmNode functionCall, SymbolTable table){
         String methodName = functionCall.get("func");
 
-        if (table.getMethods().stream().noneMatch(method -> method.equals(methodName))) {
+        if (!JmmSymbolTable.of(table).hasMethod(methodName)) {
 
             // if the class extends another class, we assume that said method is in the super class
             if (table.getSuper() != null) {
@@ -41,8 +41,7 @@ public class UndeclaredMethod extends AnalysisVisitor{
             var varType = TypeUtils.getExprType(functionCall.getChild(0), table);
 
             // if varType is from import    s, we accept
-            if (table.getImports().stream().flatMap(importName -> Arrays.stream(importName.substring(1, importName.length() - 1).split(",")))
-                    .anyMatch(importName -> importName.trim().equals(varType.getName()))) {
+            if (JmmSymbolTable.of(table).getImportIndex().isImported(varType.getName())) {
                 return null;
             }
 
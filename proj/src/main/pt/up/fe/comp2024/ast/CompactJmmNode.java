@@ -0,0 +1,723 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * AST node of our pipeline, which keeps the attributes the parser creates in typed fields instead of a map of strings:
+ * <ul>
+ *     <li>the one name-like attribute of each kind ('name', 'func' or 'op'), interned;</li>
+ *     <li>the value of int and boolean literals;</li>
+ *     <li>'numArgs' or 'numParams', and 'numArrayArgs';</li>
+ *     <li>the flags 'isArray', 'isVarargs', 'isPublic' and 'isStatic';</li>
+ *     <li>the source position, packed in a long.</li>
+ * </ul>
+ * Any other attribute, and values that do not fit, are kept in a map created on first use.
+ * <p>
+ * Through the {@link JmmNode} interface the node behaves as the nodes of the library converter did: the same
+ * attributes, returned as strings, integers or booleans as before. The typed getters skip the conversions.
+ * <p>
+ * Expressions also keep the type {@link TypeUtils#getExprType} computed for them. It is not an attribute, and it is
+ * dropped when the node, or a node below it, changes.
+ */
+public class CompactJmmNode implements JmmNode {
+
+    private static final String VALUE = "value";
+    private static final String NUM_ARGS = "numArgs";
+    private static final String NUM_PARAMS = "numParams";
+    private static final String NUM_ARRAY_ARGS = "numArrayArgs";
+    private static final String IS_ARRAY = "isArray";
+    private static final String IS_VARARGS = "isVarargs";
+    private static final String IS_PUBLIC = "isPublic";
+    private static final String IS_STATIC = "isStatic";
+
+    // Bits of 'flags', each attribute has a bit for its value and one for its presence
+    private static final int ARRAY = 1;
+    private static final int VARARGS = 1 << 1;
+    private static final int PUBLIC = 1 << 2;
+    private static final int STATIC = 1 << 3;
+    private static final int TRUE = 1 << 4;
+    private static final int HAS_ARRAY = 1 << 8;
+    private static final int HAS_VARARGS = 1 << 9;
+    private static final int HAS_PUBLIC = 1 << 10;
+    private static final int HAS_STATIC = 1 << 11;
+    private static final int HAS_VALUE = 1 << 12;
+    private static final int HAS_COUNT = 1 << 13;
+    private static final int HAS_ARRAY_COUNT = 1 << 14;
+    private static final int HAS_POSITION = 1 << 15;
+
+    // Bits of each part of 'position': line start, column start, line end and column end
+    private static final int LINE_BITS = 20;
+    private static final int COLUMN_BITS = 12;
+
+    // Attribute kept in 'text' for each kind, if any
+    private static final Map<Kind, String> TEXT_ATTRIBUTES = new EnumMap<>(Kind.class);
+    private static final Map<Kind, List<String>> HIERARCHIES = new EnumMap<>(Kind.class);
+
+    static {
+        for (var kind : List.of(Kind.CLASS_DECL, Kind.VAR_DECL, Kind.TYPE, Kind.METHOD_DECL, Kind.PARAM,
+                Kind.NEW_CLASS_OBJ, Kind.VAR, Kind.THIS)) {
+            TEXT_ATTRIBUTES.put(kind, "name");
+        }
+        TEXT_ATTRIBUTES.put(Kind.FUNCTION_CALL, "func");
+        TEXT_ATTRIBUTES.put(Kind.LENGTH_CALL, "func");
+        TEXT_ATTRIBUTES.put(Kind.BINARY_EXPR, "op");
+        TEXT_ATTRIBUTES.put(Kind.UNARY_EXPR, "op");
+
+        for (var kind : Kind.values()) {
+            if (kind.isExpr()) {
+                HIERARCHIES.put(kind, List.of(kind.getNodeName(), "Expr"));
+            } else if (kind.isStmt()) {
+                HIERARCHIES.put(kind, List.of(kind.getNodeName(), "Stmt"));
+            } else {
+                HIERARCHIES.put(kind, List.of(kind.getNodeName()));
+            }
+        }
+    }
+
+    private final Kind kind;
+    private JmmNode parent;
+    private List<JmmNode> children;
+
+    private String text;
+    private int value;
+    private int count;
+    private int arrayCount;
+    private int flags;
+    private long position;
+    private Map<String, Object> extraAttributes;
+    // Type of the expression and id of the symbol table it was computed with, 0 while there is none
+    private Type type;
+    private int typeTableId;
+
+    public CompactJmmNode(Kind kind) {
+        this.kind = kind;
+        this.children = Collections.emptyList();
+    }
+
+    public static CompactJmmNode intLiteral(int value) {
+        var literal = new CompactJmmNode(Kind.INT_LITERAL);
+        literal.setIntValue(value);
+        literal.setNumArgs(0);
+        literal.setNumArrayArgs(0);
+        return literal;
+    }
+
+    public static CompactJmmNode boolLiteral(boolean value) {
+        var literal = new CompactJmmNode(Kind.BOOL_LITERAL);
+        literal.setBoolValue(value);
+        literal.setNumArgs(0);
+        literal.setNumArrayArgs(0);
+        return literal;
+    }
+
+    public Kind getKindEnum() {
+        return kind;
+    }
+
+    @Override
+    public String getKind() {
+        return kind.getNodeName();
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return HIERARCHIES.get(kind);
+    }
+
+    @Override
+    public boolean isInstance(Object kind) {
+        if (kind instanceof Kind otherKind) {
+            return this.kind == otherKind;
+        }
+
+        return isInstance(kind.toString());
+    }
+
+    // Typed attributes
+
+    /**
+     * @return 'name', 'func' or 'op', depending on the kind, or null if not set
+     */
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text == null ? null : text.intern();
+        invalidateTypes();
+    }
+
+    public int getIntValue() {
+        return value;
+    }
+
+    public void setIntValue(int value) {
+        this.value = value;
+        this.flags |= HAS_VALUE;
+    }
+
+    public boolean getBoolValue() {
+        return (flags & TRUE) != 0;
+    }
+
+    public void setBoolValue(boolean value) {
+        setFlag(TRUE, HAS_VALUE, value);
+    }
+
+    /**
+     * @return 'numArgs' of expressions, or 'numParams' of method declarations
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public void setNumArgs(int numArgs) {
+        this.count = numArgs;
+        this.flags |= HAS_COUNT;
+    }
+
+    public void setNumParams(int numParams) {
+        setNumArgs(numParams);
+    }
+
+    public int getNumArrayArgs() {
+        return arrayCount;
+    }
+
+    public void setNumArrayArgs(int numArrayArgs) {
+        this.arrayCount = numArrayArgs;
+        this.flags |= HAS_ARRAY_COUNT;
+    }
+
+    public boolean isArray() {
+        return (flags & ARRAY) != 0;
+    }
+
+    public void setArray(boolean isArray) {
+        setFlag(ARRAY, HAS_ARRAY, isArray);
+    }
+
+    public boolean isVarargs() {
+        return (flags & VARARGS) != 0;
+    }
+
+    public void setVarargs(boolean isVarargs) {
+        setFlag(VARARGS, HAS_VARARGS, isVarargs);
+    }
+
+    public boolean isPublic() {
+        return (flags & PUBLIC) != 0;
+    }
+
+    public void setPublic(boolean isPublic) {
+        setFlag(PUBLIC, HAS_PUBLIC, isPublic);
+    }
+
+    public boolean isStatic() {
+        return (flags & STATIC) != 0;
+    }
+
+    public void setStatic(boolean isStatic) {
+        setFlag(STATIC, HAS_STATIC, isStatic);
+    }
+
+    private void setFlag(int valueBit, int presenceBit, boolean value) {
+        flags = value ? flags | valueBit : flags & ~valueBit;
+        flags |= presenceBit;
+    }
+
+    public boolean hasPosition() {
+        return (flags & HAS_POSITION) != 0;
+    }
+
+    /**
+     * @return the line where the node starts, or -1 if unknown
+     */
+    public int getLine() {
+        return hasPosition() ? (int) (position >>> (COLUMN_BITS + LINE_BITS + COLUMN_BITS)) :
+                getInt(NodePosition.LINE_START.getKey(), -1);
+    }
+
+    /**
+     * @return the column where the node starts, or -1 if unknown
+     */
+    public int getColumn() {
+        return hasPosition() ? (int) (position >>> (LINE_BITS + COLUMN_BITS)) & ((1 << COLUMN_BITS) - 1) :
+                getInt(NodePosition.COL_START.getKey(), -1);
+    }
+
+    public int getLineEnd() {
+        return hasPosition() ? (int) (position >>> COLUMN_BITS) & ((1 << LINE_BITS) - 1) :
+                getInt(NodePosition.LINE_END.getKey(), -1);
+    }
+
+    public int getColumnEnd() {
+        return hasPosition() ? (int) position & ((1 << COLUMN_BITS) - 1) :
+                getInt(NodePosition.COL_END.getKey(), -1);
+    }
+
+    public void setPosition(int lineStart, int colStart, int lineEnd, int colEnd) {
+        if (fits(lineStart, LINE_BITS) && fits(colStart, COLUMN_BITS) && fits(lineEnd, LINE_BITS)
+                && fits(colEnd, COLUMN_BITS)) {
+            position = ((long) lineStart << (COLUMN_BITS + LINE_BITS + COLUMN_BITS))
+                    | ((long) colStart << (LINE_BITS + COLUMN_BITS))
+                    | ((long) lineEnd << COLUMN_BITS)
+                    | colEnd;
+            flags |= HAS_POSITION;
+            return;
+        }
+
+        // Too large to pack, kept as the library converter does
+        flags &= ~HAS_POSITION;
+        putExtra(NodePosition.LINE_START.getKey(), Integer.toString(lineStart));
+        putExtra(NodePosition.COL_START.getKey(), Integer.toString(colStart));
+        putExtra(NodePosition.LINE_END.getKey(), Integer.toString(lineEnd));
+        putExtra(NodePosition.COL_END.getKey(), Integer.toString(colEnd));
+    }
+
+    private static boolean fits(int value, int bits) {
+        return value >= 0 && value < (1 << bits);
+    }
+
+    /**
+     * Reads an int attribute without creating strings when it is typed.
+     */
+    public int getInt(String attribute, int defaultValue) {
+        switch (attribute) {
+            case "lineStart":
+                if (hasPosition()) return getLine();
+                break;
+            case "colStart":
+                if (hasPosition()) return getColumn();
+                break;
+            case NUM_ARGS, NUM_PARAMS:
+                if (isCountAttribute(attribute) && (flags & HAS_COUNT) != 0) return count;
+                break;
+            case NUM_ARRAY_ARGS:
+                if ((flags & HAS_ARRAY_COUNT) != 0) return arrayCount;
+                break;
+            case VALUE:
+                if (kind == Kind.INT_LITERAL && (flags & HAS_VALUE) != 0) return value;
+                break;
+        }
+
+        var value = getExtra(attribute);
+        return value == null ? defaultValue : Integer.parseInt(value.toString());
+    }
+
+    /**
+     * Reads a boolean attribute without creating strings when it is typed.
+     */
+    public boolean getBoolean(String attribute, boolean defaultValue) {
+        int bit = switch (attribute) {
+            case IS_ARRAY -> ARRAY;
+            case IS_VARARGS -> VARARGS;
+            case IS_PUBLIC -> PUBLIC;
+            case IS_STATIC -> STATIC;
+            case VALUE -> kind == Kind.BOOL_LITERAL ? TRUE : 0;
+            default -> 0;
+        };
+
+        if (bit != 0 && (flags & presenceBit(bit)) != 0) {
+            return (flags & bit) != 0;
+        }
+
+        var value = getExtra(attribute);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.toString());
+    }
+
+    private static int presenceBit(int bit) {
+        return bit == TRUE ? HAS_VALUE : bit << 8;
+    }
+
+    private boolean isCountAttribute(String attribute) {
+        // Method declarations count parameters, expressions count arguments
+        return attribute.equals(kind == Kind.METHOD_DECL ? NUM_PARAMS : NUM_ARGS);
+    }
+
+    // Adapter to the string-keyed attributes
+
+    @Override
+    public Collection<String> getAttributes() {
+        List<String> attributes = new ArrayList<>();
+
+        if (text != null) attributes.add(TEXT_ATTRIBUTES.get(kind));
+        if ((flags & HAS_VALUE) != 0) attributes.add(VALUE);
+        if ((flags & HAS_COUNT) != 0) attributes.add(kind == Kind.METHOD_DECL ? NUM_PARAMS : NUM_ARGS);
+        if ((flags & HAS_ARRAY_COUNT) != 0) attributes.add(NUM_ARRAY_ARGS);
+        if ((flags & HAS_ARRAY) != 0) attributes.add(IS_ARRAY);
+        if ((flags & HAS_VARARGS) != 0) attributes.add(IS_VARARGS);
+        if ((flags & HAS_PUBLIC) != 0) attributes.add(IS_PUBLIC);
+        if ((flags & HAS_STATIC) != 0) attributes.add(IS_STATIC);
+        if (hasPosition()) {
+            attributes.add(NodePosition.LINE_START.getKey());
+            attributes.add(NodePosition.COL_START.getKey());
+            attributes.add(NodePosition.LINE_END.getKey());
+            attributes.add(NodePosition.COL_END.getKey());
+        }
+        if (extraAttributes != null) attributes.addAll(extraAttributes.keySet());
+
+        return attributes;
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        return getTyped(attribute) != null || (extraAttributes != null && extraAttributes.containsKey(attribute));
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        var value = getTyped(attribute);
+        if (value == null) {
+            value = getExtra(attribute);
+        }
+
+        if (value == null) {
+            throw new NullPointerException("Node " + getKind() + " does not contain attribute '" + attribute + "'");
+        }
+
+        return value;
+    }
+
+    /**
+     * @return the value of a typed attribute, as the library converter would have stored it, or null if the
+     * attribute is not typed or not set
+     */
+    private Object getTyped(String attribute) {
+        if (text != null && attribute.equals(TEXT_ATTRIBUTES.get(kind))) {
+            return text;
+        }
+
+        switch (attribute) {
+            case VALUE:
+                if ((flags & HAS_VALUE) == 0) return null;
+                return kind == Kind.BOOL_LITERAL ? Boolean.toString(getBoolValue()) : Integer.toString(value);
+            case NUM_ARGS, NUM_PARAMS:
+                return isCountAttribute(attribute) && (flags & HAS_COUNT) != 0 ? count : null;
+            case NUM_ARRAY_ARGS:
+                return (flags & HAS_ARRAY_COUNT) != 0 ? arrayCount : null;
+            case IS_ARRAY:
+                return (flags & HAS_ARRAY) != 0 ? isArray() : null;
+            case IS_VARARGS:
+                return (flags & HAS_VARARGS) != 0 ? isVarargs() : null;
+            case IS_PUBLIC:
+                return (flags & HAS_PUBLIC) != 0 ? isPublic() : null;
+            case IS_STATIC:
+                return (flags & HAS_STATIC) != 0 ? isStatic() : null;
+            case "lineStart":
+                return hasPosition() ? Integer.toString(getLine()) : null;
+            case "colStart":
+                return hasPosition() ? Integer.toString(getColumn()) : null;
+            case "lineEnd":
+                return hasPosition() ? Integer.toString(getLineEnd()) : null;
+            case "colEnd":
+                return hasPosition() ? Integer.toString(getColumnEnd()) : null;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Object putObject(String attribute, Object value) {
+        var previous = hasAttribute(attribute) ? getObject(attribute) : null;
+        invalidateTypes();
+
+        if (!putTyped(attribute, value)) {
+            putExtra(attribute, value);
+        }
+
+        return previous;
+    }
+
+    /**
+     * @return true if the attribute has a typed field and the value fits it
+     */
+    private boolean putTyped(String attribute, Object value) {
+        if (attribute.equals(TEXT_ATTRIBUTES.get(kind)) && value instanceof String string) {
+            setText(string);
+            return true;
+        }
+
+        switch (attribute) {
+            case VALUE:
+                if (kind == Kind.BOOL_LITERAL) {
+                    setBoolValue(Boolean.parseBoolean(value.toString()));
+                    return true;
+                }
+                if (kind != Kind.INT_LITERAL) return false;
+
+                var intValue = toInteger(value);
+                if (intValue == null) {
+                    // Kept as text, e.g. a literal too large for an int
+                    flags &= ~HAS_VALUE;
+                    return false;
+                }
+                setIntValue(intValue);
+                return true;
+            case NUM_ARGS, NUM_PARAMS:
+                var count = toInteger(value);
+                if (!isCountAttribute(attribute) || count == null) return false;
+                setNumArgs(count);
+                return true;
+            case NUM_ARRAY_ARGS:
+                var arrayCount = toInteger(value);
+                if (arrayCount == null) return false;
+                setNumArrayArgs(arrayCount);
+                return true;
+            case IS_ARRAY:
+                setArray(Boolean.parseBoolean(value.toString()));
+                return true;
+            case IS_VARARGS:
+                setVarargs(Boolean.parseBoolean(value.toString()));
+                return true;
+            case IS_PUBLIC:
+                setPublic(Boolean.parseBoolean(value.toString()));
+                return true;
+            case IS_STATIC:
+                setStatic(Boolean.parseBoolean(value.toString()));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Integer toInteger(Object value) {
+        if (value instanceof Integer integer) {
+            return integer;
+        }
+
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Object getExtra(String attribute) {
+        return extraAttributes == null ? null : extraAttributes.get(attribute);
+    }
+
+    private void putExtra(String attribute, Object value) {
+        if (extraAttributes == null) {
+            extraAttributes = new HashMap<>(4);
+        }
+
+        extraAttributes.put(attribute, value);
+    }
+
+    // Type of the expression
+
+    /**
+     * @return the type computed for this node, or null if there is none
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the id of the symbol table the type was computed with, the node does not keep the table itself
+     */
+    public int getTypeTableId() {
+        return typeTableId;
+    }
+
+    public void setType(int tableId, Type type) {
+        this.type = type;
+        this.typeTableId = tableId;
+    }
+
+    /**
+     * Drops the type of this node and of the ancestors whose type was computed from it. Types are computed from the
+     * types of children, which are kept first, so the ancestors above a node without a type did not use it.
+     */
+    private void invalidateTypes() {
+        for (var node = this; node != null && node.typeTableId != 0;
+             node = node.parent instanceof CompactJmmNode compactParent ? compactParent : null) {
+            node.type = null;
+            node.typeTableId = 0;
+        }
+    }
+
+    // Tree structure, as in JmmNodeImpl
+
+    @Override
+    public JmmNode getParent() {
+        return parent;
+    }
+
+    // Required by the interface, same as getParent()
+    @Deprecated
+    @Override
+    public JmmNode getJmmParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        invalidateTypes();
+        this.parent = parent;
+    }
+
+    @Override
+    public void removeParent() {
+        invalidateTypes();
+        this.parent = null;
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        // A copy, since callers change the tree while going through the children
+        return new ArrayList<>(children);
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public JmmNode getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public int getNumChildren() {
+        return children.size();
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        if (children.isEmpty() && !(children instanceof ArrayList)) {
+            children = new ArrayList<>(2);
+        }
+
+        children.add(index, child);
+        child.setParent(this);
+        invalidateTypes();
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        var currentChild = children.get(index);
+
+        // Remove parent before setting
+        var newNodeParent = newNode.getParent();
+        int newNodeCurrentIndex = -1;
+        if (newNodeParent != null) {
+            newNodeCurrentIndex = newNode.getIndexOfSelf();
+            newNode.removeParent();
+        }
+
+        children.set(index, newNode);
+        newNode.setParent(this);
+        currentChild.removeParent();
+        invalidateTypes();
+
+        // If the new node had a parent, the current child takes its old place
+        if (newNodeParent != null) {
+            newNodeParent.removeJmmChild(newNodeCurrentIndex);
+            newNodeParent.add(currentChild, newNodeCurrentIndex);
+        }
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        if (index >= children.size()) {
+            throw new RuntimeException("Tried to remove child at index " + index + ", but node only has "
+                    + children.size() + " children");
+        }
+
+        var removedChild = children.remove(index);
+        removedChild.removeParent();
+        invalidateTypes();
+        return removedChild;
+    }
+
+    @Override
+    public int removeChild(JmmNode node) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == node) {
+                removeJmmChild(i);
+                return i;
+            }
+        }
+
+        throw new RuntimeException("Tried to remove child from node, but could not find it.\nChild:" + node
+                + "\nParent:" + this);
+    }
+
+    // Required by the interface, same as removeChild(JmmNode)
+    @Deprecated
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        return removeChild(node);
+    }
+
+    @Override
+    public int getIndexOfSelf() {
+        if (parent == null) {
+            return -1;
+        }
+
+        // Avoids the copy of getChildren()
+        for (int i = 0; i < parent.getNumChildren(); i++) {
+            if (parent.getJmmChild(i) == this) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public JmmNode detach() {
+        if (parent == null) {
+            throw new RuntimeException("Tried to remove itself from the tree, but node has no parent");
+        }
+
+        parent.removeChild(this);
+        return this;
+    }
+
+    @Override
+    public JmmNode copyNode() {
+        var copy = new CompactJmmNode(kind);
+
+        copy.text = text;
+        copy.value = value;
+        copy.count = count;
+        copy.arrayCount = arrayCount;
+        copy.flags = flags;
+        copy.position = position;
+        if (extraAttributes != null) {
+            copy.extraAttributes = new HashMap<>(extraAttributes);
+        }
+
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        var attributes = getAttributes().stream()
+                .filter(attribute -> !attribute.equals(NodePosition.LINE_START.getKey())
+                        && !attribute.equals(NodePosition.COL_START.getKey())
+                        && !attribute.equals(NodePosition.LINE_END.getKey())
+                        && !attribute.equals(NodePosition.COL_END.getKey())
+                        && !attribute.equals(NodePosition.FILE.getKey()))
+                .map(attribute -> attribute + ": " + get(attribute))
+                .collect(Collectors.joining(", "));
+
+        return attributes.isEmpty() ? getKind() : getKind() + " (" + attributes + ")";
+    }
+}
@@ -4,6 +4,9 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public enum Kind {
@@ -34,10 +37,18 @@ public enum Kind {
     THIS,
     VAR;
 
-    private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, RETURN_STMT, IF_STMT, WHILE_STMT, EXPR_STMT, MULT_STMT);
-    private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_EXPR, UNARY_EXPR, INT_LITERAL, BOOL_LITERAL, VAR,
+    private static final Set<Kind> STATEMENTS = EnumSet.of(ASSIGN_STMT, RETURN_STMT, IF_STMT, WHILE_STMT, EXPR_STMT, MULT_STMT);
+    private static final Set<Kind> EXPRESSIONS = EnumSet.of(BINARY_EXPR, UNARY_EXPR, INT_LITERAL, BOOL_LITERAL, VAR,
             NEW_CLASS_OBJ, FUNCTION_CALL, ARR_ACCESS_EXPR, ARRAY_INIT, PAREN_EXPR, THIS, LENGTH_CALL, NEW_ARRAY);
 
+    private static final Map<String, Kind> BY_NAME = new HashMap<>();
+
+    static {
+        for (Kind k : Kind.values()) {
+            BY_NAME.put(k.getNodeName(), k);
+        }
+    }
+
     private final String name;
 
     private Kind(String name) {
@@ -49,13 +60,24 @@ public enum Kind {
     }
 
     public static Kind fromString(String kind) {
+        var k = BY_NAME.get(kind);
 
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
-            }
+        if (k == null) {
+            throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+        }
+
+        return k;
+    }
+
+    /**
+     * @return the kind of the node, without comparing strings if the parser created it
+     */
+    public static Kind of(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return compactNode.getKindEnum();
         }
-        throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+
+        return fromString(node.getKind());
     }
 
     public String getNodeName() {
@@ -88,6 +110,10 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return compactNode.getKindEnum() == this;
+        }
+
         return node.getKind().equals(getNodeName());
     }
 
@@ -0,0 +1,60 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Visit method of each {@link Kind}, in an array indexed by ordinal.
+ * <p>
+ * {@link pt.up.fe.comp.jmm.ast.AJmmVisitor} looks up the visit of each node by going through its hierarchy in a map
+ * of strings. All nodes of the same kind have the same hierarchy, so visitors keep here the method found for the first
+ * node of each kind, and skip the lookup for the others, by overriding getVisit with
+ * {@code return dispatch.get(node, super::getVisit);}.
+ * <p>
+ * Visit methods must all be added before the first visit, as in {@code buildVisitor}.
+ */
+public class KindDispatch<D, R> {
+
+    private final BiFunction<JmmNode, D, R>[] visits;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public KindDispatch() {
+        this.visits = new BiFunction[Kind.values().length];
+    }
+
+    /**
+     * @return the visit method of the kind of the node, or null if not known yet
+     */
+    public BiFunction<JmmNode, D, R> get(JmmNode node) {
+        // Nodes not created by our parser may have other hierarchies
+        if (!(node instanceof CompactJmmNode compactNode)) {
+            return null;
+        }
+
+        return visits[compactNode.getKindEnum().ordinal()];
+    }
+
+    /**
+     * @param lookup finds the visit method of a node whose kind is not known yet, usually the getVisit of the visitor
+     * @return the visit method of the kind of the node
+     */
+    public BiFunction<JmmNode, D, R> get(JmmNode node, Function<JmmNode, BiFunction<JmmNode, D, R>> lookup) {
+        var visit = get(node);
+        return visit != null ? visit : put(node, lookup.apply(node));
+    }
+
+    /**
+     * Keeps the visit method of the kind of the node.
+     *
+     * @return the visit method
+     */
+    public BiFunction<JmmNode, D, R> put(JmmNode node, BiFunction<JmmNode, D, R> visit) {
+        if (node instanceof CompactJmmNode compactNode) {
+            visits[compactNode.getKindEnum().ordinal()] = visit;
+        }
+
+        return visit;
+    }
+}
@@ -15,11 +15,19 @@ public class NodeUtils {
     }
 
     public static int getIntegerAttribute(JmmNode node, String attribute, String defaultVal) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return compactNode.getInt(attribute, Integer.parseInt(defaultVal));
+        }
+
         String line = node.getOptional(attribute).orElse(defaultVal);
         return Integer.parseInt(line);
     }
 
     public static boolean getBooleanAttribute(JmmNode node, String attribute, String defaultVal) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return compactNode.getBoolean(attribute, Boolean.parseBoolean(defaultVal));
+        }
+
         String line = node.getOptional(attribute).orElse(defaultVal);
         return Boolean.parseBoolean(line);
     }
@@ -3,9 +3,12 @@ package pt.up.fe.comp2024.ast;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.classpath.MethodSignature;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 public class TypeUtils {
@@ -24,7 +27,7 @@ public class TypeUtils {
 
     public static Type getType(JmmNode type_node) {
         String type_name = type_node.get("name");
-        boolean isArray = Boolean.parseBoolean(type_node.get("isArray")); // Receives a string and turns it into a boolean
+        boolean isArray = NodeUtils.getBooleanAttribute(type_node, "isArray", "false"); // Receives a string and turns it into a boolean
         return switch (type_name) {
             case INT_TYPE_NAME -> new Type(INT_TYPE_NAME, isArray);
             case BOOLEAN_TYPE_NAME -> new Type(BOOLEAN_TYPE_NAME, isArray);
@@ -41,8 +44,44 @@ public class TypeUtils {
      * @return
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
+        // Computed once per node, every stage asks for the types of the same expressions
+        if (!(expr instanceof CompactJmmNode compactExpr) || !(table instanceof JmmSymbolTable jmmTable)) {
+            return computeExprType(expr, table);
+        }
+
+        var cached = compactExpr.getType();
+        if (cached != null && compactExpr.getTypeTableId() == jmmTable.getId()) {
+            return cached;
+        }
+
+        // With another table the type is usually the same, and the node keeps the one it already had
+        var type = computeExprType(expr, table);
+        if (cached != null && sameType(cached, type)) {
+            type = cached;
+        }
+        compactExpr.setType(jmmTable.getId(), type);
+
+        return type;
+    }
+
+    private static boolean sameType(Type type, Type other) {
+        var attributes = type.getAttributes();
+        if (!type.equals(other) || attributes.size() != other.getAttributes().size()) {
+            return false;
+        }
+
+        for (var attribute : attributes) {
+            if (!other.hasAttribute(attribute) || !type.getObject(attribute).equals(other.getObject(attribute))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 
-        var kind = Kind.fromString(expr.getKind());
+    private static Type computeExprType(JmmNode expr, SymbolTable table) {
+
+        var kind = Kind.of(expr);
 
         Type type = switch (kind) {
             case BINARY_EXPR -> getBinExprType(expr);
@@ -83,6 +122,13 @@ public class TypeUtils {
         String methodName = functionCall.get("func");
         Type returnType = table.getReturnType(methodName);
         Type importType = new Type("import", false);
+
+        // Imported methods whose signature is in the classpath have an exact type, except void ones
+        var importedType = getImportedReturnType(functionCall, table);
+        if (importedType.isPresent() && !importedType.get().getName().equals("void")) {
+            return importedType.get();
+        }
+
         if (returnType == null) {
             return importType;
         } else {
@@ -94,13 +140,73 @@ public class TypeUtils {
         }
     }
     
+    /**
+     * Gets the return type of a call to a method of an imported class, or inherited from one, from the signatures
+     * of the classpath given with '-l'.
+     *
+     * @return the type, which may be void, or empty if there is no classpath, the method is not in it, or it returns
+     * a type that does not exist in Java--
+     */
+    public static Optional<Type> getImportedReturnType(JmmNode functionCall, SymbolTable table) {
+        var jmmTable = JmmSymbolTable.of(table);
+        var classSignatures = jmmTable.getClassSignatures();
+        if (classSignatures.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // The class of the caller if it is imported, or the imported super class for methods of this class
+        String className = null;
+        Type callerType = getExprType(functionCall.getJmmChild(0), table);
+        String methodName = functionCall.get("func");
+        if (callerType != null && isImported(callerType, table)) {
+            className = callerType.getName();
+        } else if (callerType != null && callerType.getName().equals(table.getClassName())
+                && table.getReturnType(methodName) == null && table.getSuper() != null) {
+            className = table.getSuper();
+        }
+
+        if (className == null) {
+            return Optional.empty();
+        }
+
+        var method = classSignatures.get().findMethod(jmmTable.getImportIndex().getInternalName(className),
+                methodName, functionCall.getNumChildren() - 1);
+
+        return method.map(MethodSignature::getReturnDescriptor).map(TypeUtils::fromDescriptor);
+    }
+
+    /**
+     * @return the Java-- type of a JVM descriptor, or null if there is none, e.g. for 'J'
+     */
+    private static Type fromDescriptor(String descriptor) {
+        boolean isArray = descriptor.startsWith("[");
+        var elementDescriptor = isArray ? descriptor.substring(1) : descriptor;
+
+        var typeName = switch (elementDescriptor) {
+            case "I" -> INT_TYPE_NAME;
+            case "Z" -> BOOLEAN_TYPE_NAME;
+            case "V" -> isArray ? null : "void";
+            case "Ljava/lang/String;" -> STRING_TYPE_NAME;
+            default -> elementDescriptor.startsWith("L") && !isArray
+                    ? elementDescriptor.substring(elementDescriptor.lastIndexOf('/') + 1, elementDescriptor.length() - 1)
+                    : null;
+        };
+
+        // Only arrays of int exist in Java--
+        if (typeName == null || (isArray && !typeName.equals(INT_TYPE_NAME))) {
+            return null;
+        }
+
+        return new Type(typeName, isArray);
+    }
+
     private static Type getVarExprType(JmmNode varRefExpr, SymbolTable table) {
         Type type = null;
 
         // Get the variable name
         var varName = varRefExpr.get("name");
 
-        if(table.getImports().stream().anyMatch(imported -> isImported(varName, table))){
+        if(isImported(varName, table)){
             var importType = new Type(varName, false);
             importType.putObject("import", true);
             return importType;
@@ -110,40 +216,12 @@ public class TypeUtils {
         JmmNode method = varRefExpr.getAncestor(Kind.METHOD_DECL).get();
         var methodName = method.get("name");
 
-        // If the variable is a local variable
-        if(table.getLocalVariables(methodName).stream()
-                .anyMatch(localVar -> localVar.getName().equals(varName))){
-            type = table.getLocalVariables(methodName).stream()
-                    .filter(varDecl -> varDecl.getName().equals(varName))
-                    .findFirst()
-                    .get()
-                    .getType();
-            return type;
-        }
-
-        // If the variable is a parameter
-        if(table.getParameters(methodName).stream()
-                .anyMatch(param -> param.getName().equals(varName))){
-            type = table.getParameters(methodName).stream()
-                    .filter(param -> param.getName().equals(varName))
-                    .findFirst()
-                    .get()
-                    .getType();
-            return type;
-        }
-
-        // If the variable is a field
-        if(table.getFields().stream()
-                .anyMatch(field -> field.getName().equals(varName))){
-            type = table.getFields().stream()
-                    .filter(field -> field.getName().equals(varName))
-                    .findFirst()
-                    .get()
-                    .getType();
-            return type;
+        // A local variable, else a parameter, else a field
+        var symbol = JmmSymbolTable.of(table).resolve(methodName, varName);
+        if (symbol != null) {
+            type = symbol.getType();
         }
 
-
         return type;
     }
 
@@ -153,6 +231,11 @@ public class TypeUtils {
      * @return
      */
     public static List<String> getImportNames(JmmNode node) {
+        // The parser keeps the parts in a list, no need to go through its string
+        if (node.getObject("name") instanceof List<?> parts) {
+            return parts.stream().map(Object::toString).collect(Collectors.toList());
+        }
+
         String name = node.get("name");
         name = name.substring(1, name.length() - 1); // Remove the brackets
         return Arrays.stream(name.split(","))
@@ -171,12 +254,10 @@ public class TypeUtils {
     }
 
     private static boolean isImported(Type type, SymbolTable table){
-        return table.getImports().stream().flatMap(importName -> List.of(importName.substring(1, importName.length() - 1).split(",")).stream())
-                .anyMatch(importName -> importName.trim().equals(type.getName()));
+        return JmmSymbolTable.of(table).getImportIndex().isImported(type.getName());
     }
 
     private static boolean isImported(String typeName, SymbolTable table){
-        return table.getImports().stream().flatMap(importName -> List.of(importName.substring(1, importName.length() - 1).split(",")).stream())
-                .anyMatch(importName -> importName.trim().equals(typeName));
+        return JmmSymbolTable.of(table).getImportIndex().isImported(typeName);
     }
 }
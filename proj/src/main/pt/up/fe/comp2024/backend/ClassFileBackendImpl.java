@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+import pt.up.fe.specs.util.SpecsCollections;
+
+/**
+ * Backend that writes class files directly from the OLLIR, without generating and assembling Jasmin code.
+ * {@link JasminBackendImpl} generates the same instructions as text, which is easier to inspect when debugging.
+ */
+public class ClassFileBackendImpl {
+
+    private final Telemetry telemetry;
+
+    public ClassFileBackendImpl() {
+        this(Telemetry.disabled());
+    }
+
+    public ClassFileBackendImpl(Telemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    public ClassFileResult toClassFile(OllirResult ollirResult) {
+
+        var classFileGenerator = new ClassFileGenerator(ollirResult);
+        var classFile = telemetry.measure("classFile", classFileGenerator::build);
+
+        return new ClassFileResult(ollirResult.getOllirClass().getClassName(), classFile,
+                SpecsCollections.concat(ollirResult.getReports(), classFileGenerator.getReports()),
+                ollirResult.getConfig());
+    }
+}
@@ -0,0 +1,506 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.backend.classfile.ClassFileOutput;
+import pt.up.fe.comp2024.backend.classfile.CodeBuilder;
+import pt.up.fe.comp2024.backend.classfile.ConstantPool;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
+import pt.up.fe.comp2024.classpath.MethodSignature;
+import pt.up.fe.comp2024.symboltable.ImportIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Generates the bytes of a class file from an OllirResult, selecting the same instructions as
+ * {@link JasminGenerator} without going through Jasmin text.
+ * <p>
+ * One ClassFileGenerator instance per OllirResult.
+ */
+public class ClassFileGenerator {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    // Java 5, the last version whose methods do not need StackMapTable frames
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final OllirResult ollirResult;
+
+    private final ImportIndex imports;
+
+    private final Optional<ClassSignatureIndex> classSignatures;
+
+    private final List<Report> reports;
+
+    private final ConstantPool constantPool;
+
+    private final BiConsumerClassMap<TreeNode, CodeBuilder> generators;
+
+    private byte[] classFile;
+
+    private Method currentMethod;
+
+    public ClassFileGenerator(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+        this.imports = ImportIndex.fromQualifiedNames(ollirResult.getOllirClass().getImports());
+        this.classSignatures = ClassSignatureIndex.fromConfig(ollirResult.getConfig());
+
+        reports = new ArrayList<>();
+        constantPool = new ConstantPool();
+        classFile = null;
+        currentMethod = null;
+
+        this.generators = new BiConsumerClassMap<>();
+        generators.put(AssignInstruction.class, this::generateAssign);
+        generators.put(SingleOpInstruction.class, this::generateSingleOp);
+        generators.put(LiteralElement.class, this::generateLiteral);
+        generators.put(Operand.class, this::generateOperand);
+        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
+        generators.put(ReturnInstruction.class, this::generateReturn);
+        generators.put(GetFieldInstruction.class, this::getField);
+        generators.put(PutFieldInstruction.class, this::putField);
+        generators.put(CallInstruction.class, this::callMethod);
+        generators.put(SingleOpCondInstruction.class, this::generateSingleOpCondition);
+        generators.put(GotoInstruction.class, this::generateGoto);
+        generators.put(OpCondInstruction.class, this::generateOpCondition);
+        generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public byte[] build() {
+        // This way, build is idempotent
+        if (classFile == null) {
+            classFile = generateClassUnit(ollirResult.getOllirClass());
+        }
+
+        return classFile;
+    }
+
+    private String translateType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case ARRAYREF -> "[I";
+            default -> "L" + translateClassPath(((ClassType) type).getName()) + ";";
+        };
+    }
+
+    private int translateAccessModifier(AccessModifier accessModifier) {
+        return switch (accessModifier) {
+            case DEFAULT -> 0;
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+        };
+    }
+
+    private String translateClassPath(String className) {
+        return imports.getInternalName(className);
+    }
+
+    private String methodDescriptor(Method method) {
+        if (method.getMethodName().equals("main")) {
+            return "([Ljava/lang/String;)V";
+        }
+
+        var descriptor = new StringBuilder("(");
+        for (Element param : method.getParams()) {
+            descriptor.append(translateType(param.getType()));
+        }
+        return descriptor.append(")").append(translateType(method.getReturnType())).toString();
+    }
+
+    private int getRegister(Operand operand) {
+        return currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
+    }
+
+    private byte[] generateClassUnit(ClassUnit classUnit) {
+        String className = classUnit.getClassName();
+        String superClass = classUnit.getSuperClass() == null || classUnit.getSuperClass().equals("Object") ?
+                "java/lang/Object" :
+                translateClassPath(classUnit.getSuperClass());
+
+        // Fields and methods are generated first, they add the constants they use to the pool
+        var body = new ClassFileOutput();
+        body.u2(translateAccessModifier(classUnit.getClassAccessModifier()) | ACC_SUPER);
+        body.u2(constantPool.classRef(className));
+        body.u2(constantPool.classRef(superClass));
+        // interfaces_count
+        body.u2(0);
+
+        body.u2(classUnit.getNumFields());
+        for (var field : classUnit.getFields()) {
+            body.u2(translateAccessModifier(field.getFieldAccessModifier()));
+            body.u2(constantPool.utf8(field.getFieldName()));
+            body.u2(constantPool.utf8(translateType(field.getFieldType())));
+            // attributes_count
+            body.u2(0);
+        }
+
+        // Like in the Jasmin backend, there is always a single constructor that receives no arguments
+        var methods = classUnit.getMethods().stream()
+                .filter(method -> !method.isConstructMethod())
+                .toList();
+        body.u2(methods.size() + 1);
+        generateDefaultConstructor(superClass, body);
+        for (var method : methods) {
+            generateMethod(method, body);
+        }
+
+        // attributes_count
+        body.u2(0);
+
+        var out = new ClassFileOutput();
+        out.u4(MAGIC);
+        out.u2(0);
+        out.u2(MAJOR_VERSION);
+        constantPool.write(out);
+        out.bytes(body);
+
+        return out.toByteArray();
+    }
+
+    private void generateDefaultConstructor(String superClass, ClassFileOutput out) {
+        var code = new CodeBuilder(constantPool);
+        code.aload(0);
+        code.invokespecial(superClass, "<init>", "()V");
+        code.returnVoid();
+
+        writeMethod(ACC_PUBLIC, "<init>", "()V", code, 1, out);
+    }
+
+    private void generateMethod(Method method, ClassFileOutput out) {
+
+        // set method
+        currentMethod = method;
+
+        int accessFlags = translateAccessModifier(method.getMethodAccessModifier());
+        boolean isStatic = method.getMethodName().equals("main");
+        if (isStatic) {
+            accessFlags |= ACC_STATIC;
+        }
+
+        var code = new CodeBuilder(constantPool);
+        for (var inst : method.getInstructions()) {
+            for (var label : method.getLabels(inst)) {
+                code.label(label);
+            }
+
+            generators.accept(inst, code);
+
+            // The value of a call used as a statement is discarded
+            if (inst instanceof CallInstruction call && call.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                code.pop();
+            }
+        }
+
+        // 'this' or the arguments of main, and the parameters, even if they are not in the var table
+        int maxLocals = 1 + method.getParams().size();
+        for (Descriptor var : method.getVarTable().values()) {
+            if (var.getScope() != VarScope.FIELD) {
+                maxLocals = Math.max(maxLocals, var.getVirtualReg() + 1);
+            }
+        }
+
+        writeMethod(accessFlags, method.getMethodName(), methodDescriptor(method), code, maxLocals, out);
+
+        // unset method
+        currentMethod = null;
+    }
+
+    private void writeMethod(int accessFlags, String name, String descriptor, CodeBuilder code, int maxLocals,
+                             ClassFileOutput out) {
+        byte[] bytecode = code.toByteArray();
+
+        out.u2(accessFlags);
+        out.u2(constantPool.utf8(name));
+        out.u2(constantPool.utf8(descriptor));
+
+        // A single Code attribute, without exception table nor attributes of its own
+        out.u2(1);
+        out.u2(constantPool.utf8("Code"));
+        out.u4(2 + 2 + 4 + bytecode.length + 2 + 2);
+        out.u2(code.getMaxStack());
+        out.u2(maxLocals);
+        out.u4(bytecode.length);
+        out.write(bytecode, 0, bytecode.length);
+        out.u2(0);
+        out.u2(0);
+    }
+
+    private void callMethod(CallInstruction instruction, CodeBuilder code) {
+        Operand caller = (Operand) instruction.getCaller();
+        if (currentMethod.getVarTable().get(caller.getName()) != null) {
+            generators.accept(caller, code);
+        }
+        //if the type is not castable to ClassType than it doesn't have a className, so it is an array
+        String className = "";
+        if (caller.getType() instanceof ClassType callerType) {
+            className = callerType.getName();
+        }
+
+        switch (instruction.getInvocationType()) {
+            case invokevirtual, invokestatic -> {
+                var guessed = new StringBuilder("(");
+                for (Element argument : instruction.getArguments()) {
+                    generators.accept(argument, code);
+                    guessed.append(translateType(argument.getType()));
+                }
+                guessed.append(")").append(translateType(instruction.getReturnType()));
+                String guessedDescriptor = guessed.toString();
+
+                String methodName = ((LiteralElement) instruction.getMethodName()).getLiteral().replace("\"", "");
+                boolean isStatic = instruction.getInvocationType() == CallType.invokestatic;
+                String owner = translateClassPath(isStatic ? caller.getName() : className);
+
+                // The descriptor of the method in the classpath, if any, else the one guessed from the types in OLLIR
+                String descriptor = classSignatures
+                        .flatMap(index -> index.findCall(owner, methodName, guessedDescriptor, isStatic))
+                        .map(MethodSignature::getDescriptor)
+                        .orElse(guessedDescriptor);
+
+                if (isStatic) {
+                    code.invokestatic(owner, methodName, descriptor);
+                } else {
+                    code.invokevirtual(owner, methodName, descriptor);
+                }
+
+                // The OLLIR code does not use the result
+                var returnDescriptor = descriptor.substring(descriptor.indexOf(')') + 1);
+                if (guessedDescriptor.endsWith(")V") && !returnDescriptor.equals("V")) {
+                    if (returnDescriptor.equals("J") || returnDescriptor.equals("D")) {
+                        code.pop2();
+                    } else {
+                        code.pop();
+                    }
+                }
+            }
+            case invokespecial -> code.invokespecial(translateClassPath(className), "<init>", "()V");
+            case NEW -> {
+                if (className.isEmpty()) {
+                    if (!instruction.getArguments().isEmpty()) {
+                        generators.accept(instruction.getArguments().get(0), code);
+                        code.newIntArray();
+                    }
+                } else {
+                    code.newObject(translateClassPath(className));
+                }
+            }
+            case arraylength -> code.arraylength();
+            default -> throw new NotImplementedException(instruction.getInvocationType());
+        }
+    }
+
+    //get the field of a class
+    private void getField(GetFieldInstruction instruction, CodeBuilder code) {
+        String originClassName = ((ClassType) instruction.getOperands().get(0).getType()).getName();
+
+        code.aload(0);
+        code.getfield(originClassName, instruction.getField().getName(),
+                translateType(instruction.getField().getType()));
+    }
+
+    //put in the field of a class
+    private void putField(PutFieldInstruction instruction, CodeBuilder code) {
+        String originClassName = ((ClassType) instruction.getOperands().get(0).getType()).getName();
+
+        code.aload(0);
+        generators.accept(instruction.getOperands().get(2), code);
+        code.putfield(originClassName, instruction.getField().getName(),
+                translateType(instruction.getField().getType()));
+    }
+
+    private void generateAssign(AssignInstruction assign, CodeBuilder code) {
+        // store value in the stack in destination
+        Element lhs = assign.getDest();
+
+        if (!(lhs instanceof Operand)) {
+            throw new NotImplementedException(lhs.getClass());
+        }
+
+        // get register
+        int reg = getRegister((Operand) lhs);
+
+        if (assign.getRhs() instanceof BinaryOpInstruction rhs && generateIncrement(reg, rhs, code)) {
+            return;
+        }
+
+        if (lhs instanceof ArrayOperand lhsArray) {
+            code.aload(reg);
+            generators.accept(lhsArray.getIndexOperands().get(0), code);
+            generators.accept(assign.getRhs(), code);
+            code.iastore();
+            return;
+        }
+
+        // generate code for loading what's on the right
+        generators.accept(assign.getRhs(), code);
+
+        switch (lhs.getType().getTypeOfElement()) {
+            case INT32 -> code.istore(reg);
+            case BOOLEAN -> {
+                if (assign.getRhs() instanceof BinaryOpInstruction binaryOp) {
+                    // Turn the result of the comparison into 0 or 1
+                    String trueLabel = code.newLabel();
+                    String endLabel = code.newLabel();
+                    generateIf(binaryOp.getOperation().getOpType(), trueLabel, code);
+                    code.iconst(0);
+                    code.gotoLabel(endLabel);
+                    code.label(trueLabel);
+                    code.iconst(1);
+                    code.label(endLabel);
+                }
+                code.istore(reg);
+            }
+            default -> code.astore(reg);
+        }
+    }
+
+    /**
+     * Generates 'iinc' for an assignment that adds a constant to the variable it assigns.
+     *
+     * @return true if the assignment was generated
+     */
+    private boolean generateIncrement(int reg, BinaryOpInstruction rhs, CodeBuilder code) {
+        var opType = rhs.getOperation().getOpType();
+
+        if (rhs.getLeftOperand() instanceof Operand left && rhs.getRightOperand() instanceof LiteralElement right) {
+            if (getRegister(left) != reg) {
+                return false;
+            }
+
+            int literal = Integer.parseInt(right.getLiteral());
+            if (opType == OperationType.ADD && isByte(literal)) {
+                code.iinc(reg, literal);
+                return true;
+            }
+            if (opType == OperationType.SUB && isByte(-literal)) {
+                code.iinc(reg, -literal);
+                return true;
+            }
+        } else if (rhs.getLeftOperand() instanceof LiteralElement left
+                && rhs.getRightOperand() instanceof Operand right) {
+            // if the literal is on the left the operation has to be an add
+            int literal = Integer.parseInt(left.getLiteral());
+            if (getRegister(right) == reg && opType == OperationType.ADD && isByte(literal)) {
+                code.iinc(reg, literal);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isByte(int value) {
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    }
+
+    private void generateIf(OperationType opType, String label, CodeBuilder code) {
+        switch (opType) {
+            case EQ -> code.ifeq(label);
+            case NEQ, AND, OR, ANDB, ORB, NOT, NOTB -> code.ifne(label);
+            case LTH -> code.iflt(label);
+            case LTE -> code.ifle(label);
+            case GTH -> code.ifgt(label);
+            case GTE -> code.ifge(label);
+            default -> throw new NotImplementedException(opType);
+        }
+    }
+
+    private void generateSingleOp(SingleOpInstruction singleOp, CodeBuilder code) {
+        generators.accept(singleOp.getSingleOperand(), code);
+    }
+
+    private void generateLiteral(LiteralElement literal, CodeBuilder code) {
+        code.iconst(Integer.parseInt(literal.getLiteral()));
+    }
+
+    private void generateOperand(Operand operand, CodeBuilder code) {
+        if (operand.getName().equals("this")) {
+            code.aload(0);
+            return;
+        }
+
+        int reg = getRegister(operand);
+        if (operand instanceof ArrayOperand arrayOperand) {
+            code.aload(reg);
+            generators.accept(arrayOperand.getIndexOperands().get(0), code);
+            code.iaload();
+            return;
+        }
+
+        switch (operand.getType().getTypeOfElement()) {
+            case INT32, BOOLEAN -> code.iload(reg);
+            default -> code.aload(reg);
+        }
+    }
+
+    private void generateSingleOpCondition(SingleOpCondInstruction singleOpCond, CodeBuilder code) {
+        generators.accept(singleOpCond.getOperands().get(0), code);
+        code.ifne(singleOpCond.getLabel());
+    }
+
+    private void generateOpCondition(OpCondInstruction opCond, CodeBuilder code) {
+        generators.accept(opCond.getCondition(), code);
+        generateIf(opCond.getCondition().getOperation().getOpType(), opCond.getLabel(), code);
+    }
+
+    private void generateGoto(GotoInstruction gotoInst, CodeBuilder code) {
+        code.gotoLabel(gotoInst.getLabel());
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp, CodeBuilder code) {
+        if (unaryOp.getOperand().isLiteral()) {
+            code.iconst(((LiteralElement) unaryOp.getOperand()).getLiteral().equals("1") ? 0 : 1);
+        } else {
+            generators.accept(unaryOp.getOperand(), code);
+            code.iconst(1);
+            code.ixor();
+        }
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, CodeBuilder code) {
+        // load values on the left and on the right
+        generators.accept(binaryOp.getLeftOperand(), code);
+        generators.accept(binaryOp.getRightOperand(), code);
+
+        // apply operation, comparisons subtract the operands and the jump compares the result with zero
+        switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> code.iadd();
+            case SUB, EQ, NEQ, LTH, LTE, GTH, GTE -> code.isub();
+            case MUL -> code.imul();
+            case DIV -> code.idiv();
+            default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
+        }
+    }
+
+    private void generateReturn(ReturnInstruction returnInst, CodeBuilder code) {
+        if (returnInst.getOperand() == null) {
+            code.returnVoid();
+            return;
+        }
+
+        generators.accept(returnInst.getOperand(), code);
+        switch (returnInst.getReturnType().getTypeOfElement()) {
+            case INT32, BOOLEAN -> code.ireturn();
+            default -> code.areturn();
+        }
+    }
+}
@@ -3,16 +3,61 @@ package pt.up.fe.comp2024.backend;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+import pt.up.fe.specs.util.SpecsCollections;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 public class JasminBackendImpl implements JasminBackend {
 
+    private final Telemetry telemetry;
+
+    public JasminBackendImpl() {
+        this(Telemetry.disabled());
+    }
+
+    public JasminBackendImpl(Telemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
 
         var jasminGenerator = new JasminGenerator(ollirResult);
-        var jasminCode = jasminGenerator.build();
+        var jasminCode = telemetry.measure("jasmin", () -> jasminGenerator.build());
 
         return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
     }
 
+    /**
+     * Streams the Jasmin code to a file as it is generated, without building it in memory.
+     *
+     * @param ollirResult the OLLIR to generate code for
+     * @param outputFile  the .j file to write, replaced if it exists
+     * @return the reports of the previous stages and of the code generation
+     */
+    public List<Report> toJasminFile(OllirResult ollirResult, Path outputFile) {
+
+        var jasminGenerator = new JasminGenerator(ollirResult);
+
+        try (var channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             var writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            telemetry.measure("jasmin", () -> jasminGenerator.build(writer));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write Jasmin code to '" + outputFile + "'", e);
+        }
+
+        return SpecsCollections.concat(ollirResult.getReports(), jasminGenerator.getReports());
+    }
+
 }
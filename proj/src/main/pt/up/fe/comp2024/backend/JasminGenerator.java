@@ -1,35 +1,35 @@
 package pt.up.fe.comp2024.backend;
 
-import org.hamcrest.core.AnyOf;
 import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
+import pt.up.fe.comp2024.classpath.MethodSignature;
+import pt.up.fe.comp2024.symboltable.ImportIndex;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.Optional;
-import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
 /**
  * Generates Jasmin code from an OllirResult.
  * <p>
+ * The code is written line by line into a {@link JasminWriter}, so it can be streamed to a file without keeping it
+ * in memory.
+ * <p>
  * One JasminGenerator instance per OllirResult.
  */
 public class JasminGenerator {
 
-    private static final String NL = "\n";
-    private static final String TAB = "   ";
-
     private final OllirResult ollirResult;
 
+    private final ImportIndex imports;
+
+    private final Optional<ClassSignatureIndex> classSignatures;
+
     List<Report> reports;
 
     String code;
@@ -37,16 +37,18 @@ public class JasminGenerator {
     Method currentMethod;
     int stackSize = 0;
     int maxStackSize = 0;
-    private final FunctionClassMap<TreeNode, String> generators;
+    private final BiConsumerClassMap<TreeNode, JasminWriter> generators;
     int idCounter = 0;
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
-        
+        this.imports = ImportIndex.fromQualifiedNames(ollirResult.getOllirClass().getImports());
+        this.classSignatures = ClassSignatureIndex.fromConfig(ollirResult.getConfig());
+
         reports = new ArrayList<>();
         code = null;
         currentMethod = null;
 
-        this.generators = new FunctionClassMap<>();
+        this.generators = new BiConsumerClassMap<>();
         generators.put(ClassUnit.class, this::generateClassUnit);
         generators.put(Method.class, this::generateMethod);
         generators.put(AssignInstruction.class, this::generateAssign);
@@ -117,12 +119,10 @@ public class JasminGenerator {
         };
     }
 
-    public String callMethod(CallInstruction instruction) {
-        StringBuilder ret = new StringBuilder();
-
+    public void callMethod(CallInstruction instruction, JasminWriter out) {
         Operand caller = (Operand) instruction.getCaller();
         if(this.currentMethod.getVarTable().get(caller.getName()) != null){
-            ret.append(generators.apply(caller));
+            generators.accept(caller, out);
         }
         //if the type is not castable to ClassType than it doesn't have a className, so it is an array
         String className = "";
@@ -133,80 +133,87 @@ public class JasminGenerator {
         switch (instruction.getInvocationType()) {
             case invokevirtual, invokestatic: {
                 int added = stackSize;
-                String arguments = "";
-                if (!instruction.getArguments().isEmpty()) {
-                    for (Element argument : instruction.getArguments()) {
-                        ret.append(generators.apply(argument));
-                        arguments += translateType(argument.getType());
-                    }
+                StringBuilder arguments = new StringBuilder();
+                for (Element argument : instruction.getArguments()) {
+                    generators.accept(argument, out);
+                    arguments.append(translateType(argument.getType()));
                 }
                 checkStackSize();
                 stackSize = added;
-                if(instruction.getInvocationType().equals(CallType.invokevirtual)){
-                    ret.append("invokevirtual ").append(translateClassPath(className)).append("/").append(((LiteralElement) instruction.getMethodName()).getLiteral().replace("\"", "")).append("(").append(arguments).append(")").append(translateType(instruction.getReturnType())).append(NL);
-                }
-                else {
-                    ret.append("invokestatic ").append(translateClassPath(((Operand) instruction.getCaller()).getName())).append("/").append(((LiteralElement) instruction.getMethodName()).getLiteral().replace("\"", "")).append("(").append(arguments).append(")").append(translateType(instruction.getReturnType())).append(NL);
+                String methodName = ((LiteralElement) instruction.getMethodName()).getLiteral().replace("\"", "");
+                boolean isStatic = instruction.getInvocationType().equals(CallType.invokestatic);
+                String owner = translateClassPath(isStatic ? caller.getName() : className);
+
+                // The descriptor of the method in the classpath, if any, else the one guessed from the types in OLLIR
+                String guessedDescriptor = "(" + arguments + ")" + translateType(instruction.getReturnType());
+                String descriptor = classSignatures
+                        .flatMap(index -> index.findCall(owner, methodName, guessedDescriptor, isStatic))
+                        .map(MethodSignature::getDescriptor)
+                        .orElse(guessedDescriptor);
+
+                out.line((isStatic ? "invokestatic " : "invokevirtual ") + owner + "/" + methodName + descriptor);
+
+                // The OLLIR code does not use the result
+                var returnDescriptor = descriptor.substring(descriptor.indexOf(')') + 1);
+                if(guessedDescriptor.endsWith(")V") && !returnDescriptor.equals("V")){
+                    // Longs and doubles take two slots of the stack
+                    int slots = returnDescriptor.equals("J") || returnDescriptor.equals("D") ? 2 : 1;
+                    stackSize += slots;
+                    checkStackSize();
+                    out.line(slots == 2 ? "pop2" : "pop");
+                    stackSize -= slots;
                 }
                 break;
             }
             case invokespecial:{
                 checkStackSize();
                 stackSize--;
-                ret.append("invokespecial ").append(translateClassPath(className)).append("/<init>()V").append(NL);
+                out.line("invokespecial " + translateClassPath(className) + "/<init>()V");
                 break;
             }
             case NEW: {
                 if(className.isEmpty()){
                     if (!instruction.getArguments().isEmpty()) {
-                        ret.append(generators.apply(instruction.getArguments().get(0)));
-                        ret.append("newarray int").append(NL);
+                        generators.accept(instruction.getArguments().get(0), out);
+                        out.line("newarray int");
                     }
                 }
                 else {
-                    ret.append("new ").append(translateClassPath(className)).append(NL);
+                    out.line("new " + translateClassPath(className));
                     stackSize++;
                 }
                 break;
             }
             case arraylength: {
-                ret.append("arraylength").append(NL);
+                out.line("arraylength");
                 break;
             }
         }
-        return ret.toString();
     }
 
     //get the field of a class
-    public String getField(GetFieldInstruction instruction){
-        StringBuilder ret = new StringBuilder();
+    public void getField(GetFieldInstruction instruction, JasminWriter out){
         String originClassName = ((ClassType) instruction.getOperands().get(0).getType()).getName();
         String fieldName = instruction.getField().getName();
         String returnType = translateType(instruction.getField().getType());
         stackSize++;
-        ret.append("aload_0").append(NL)
-                .append("getfield ").append(originClassName).append("/").append(fieldName)
-                .append(" ").append(returnType).append(NL);
-        return ret.toString();
+        out.line("aload_0");
+        out.line("getfield " + originClassName + "/" + fieldName + " " + returnType);
     }
 
     //put in the field of a class
-    public String putField(PutFieldInstruction instruction){
-        StringBuilder ret = new StringBuilder();
-        ret.append("aload_0").append(NL);
+    public void putField(PutFieldInstruction instruction, JasminWriter out){
+        out.line("aload_0");
         stackSize++;
-        ret.append(generators.apply(instruction.getOperands().get(2)));
+        generators.accept(instruction.getOperands().get(2), out);
 
         String originClassName = ((ClassType) instruction.getOperands().get(0).getType()).getName();
         String fieldName = instruction.getField().getName();
         String inputType = translateType(instruction.getField().getType());
-        ret.append("putfield ").append(originClassName).append("/").append(fieldName)
-                .append(" ").append(inputType).append(NL);
+        out.line("putfield " + originClassName + "/" + fieldName + " " + inputType);
 
         checkStackSize();
         stackSize-=2;
-
-        return ret.toString();
     }
 
     public List<Report> getReports() {
@@ -216,45 +223,42 @@ public class JasminGenerator {
     public String build() {
         // This way, build is idempotent
         if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+            var builder = new StringBuilder();
+            build(builder);
+            code = builder.toString();
         }
 
         return code;
     }
 
+    /**
+     * Writes the Jasmin code to the given sink as it is generated, instead of building a string.
+     */
+    public void build(Appendable sink) {
+        generators.accept(ollirResult.getOllirClass(), new JasminWriter(sink));
+    }
+
     private String translateClassPath(String className){
-        for (String str : ollirResult.getOllirClass().getImports()){
-            String[] parts = str.split("\\.");
-            String lastWord = parts[parts.length - 1];
-            if (lastWord.startsWith(".")) {
-                lastWord = lastWord.substring(1);
-            }
-            if(lastWord.equals(className)){
-                return str.replace(".","/");
-            }
-        }
-        return className;
+        return imports.getInternalName(className);
     }
 
-    private String generateClassUnit(ClassUnit classUnit) {
-        var code = new StringBuilder();
+    private void generateClassUnit(ClassUnit classUnit, JasminWriter out) {
         // generate class name
         String className = ollirResult.getOllirClass().getClassName();
-        code.append(".class ").append(className).append(NL);
+        out.line(".class " + className);
         String extend;
         if (classUnit.getSuperClass() == null || classUnit.getSuperClass().equals("Object")){
             extend = "java/lang/Object";
-            code.append(".super java/lang/Object");
         }
         else {
             extend = translateClassPath(ollirResult.getOllirClass().getSuperClass().toString());
-            code.append(".super ").append(extend);
         }
-        code.append(NL).append(NL);
+        out.line(".super " + extend);
+        out.line("");
 
         for(var field : classUnit.getFields()){
-            code.append(".field ").append(translateAccessModifier(field.getFieldAccessModifier())).append(field.getFieldName())
-                    .append(" ").append(translateType(field.getFieldType())).append(NL);
+            out.line(".field " + translateAccessModifier(field.getFieldAccessModifier()) + field.getFieldName()
+                    + " " + translateType(field.getFieldType()));
         }
 
         // generate a single constructor method
@@ -268,7 +272,7 @@ public class JasminGenerator {
                         return
                     .end method
                     """;
-        code.append(defaultConstructor);
+        out.write(defaultConstructor);
 
         // generate code for all other methods
         for (var method : ollirResult.getOllirClass().getMethods()) {
@@ -280,81 +284,80 @@ public class JasminGenerator {
                 continue;
             }
 
-            code.append(generators.apply(method));
+            generators.accept(method, out);
         }
-
-        return code.toString();
     }
 
-    private String generateMethod(Method method) {
+    private void generateMethod(Method method, JasminWriter out) {
 
         // set method
         currentMethod = method;
 
-        var code = new StringBuilder();
-
         // calculate modifier
         var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
                 method.getMethodAccessModifier().name().toLowerCase() + " " :
                 "";
 
         String methodName = method.getMethodName();
-        code.append("\n.method ").append(modifier);
+        out.write("\n");
         if(methodName.equals("main")){
-            code.append("static ").append(methodName).append("([Ljava/lang/String;)V").append(NL);
+            out.line(".method " + modifier + "static " + methodName + "([Ljava/lang/String;)V");
         }
         else {
-            code.append(methodName).append("(");
+            var signature = new StringBuilder(".method ").append(modifier).append(methodName).append("(");
             for (Element param : method.getParams()) {
-                code.append(translateType(param.getType()));
+                signature.append(translateType(param.getType()));
             }
-            code.append(")").append(translateType(method.getReturnType())).append(NL);
+            signature.append(")").append(translateType(method.getReturnType()));
+            out.line(signature.toString());
         }
 
-        var temp = new StringBuilder();
-        for (var inst : method.getInstructions()) {
-            for(var label : method.getLabels(inst)){
-                temp.append(label).append(":").append(NL);
-            }
-            var instCode = StringLines.getLines(generators.apply(inst)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
-            temp.append(instCode);
-            if (inst instanceof CallInstruction && !(((CallInstruction) inst).getReturnType().toString().equals("VOID"))){
-
-                temp.append(TAB).append("pop").append(NL);
-                checkStackSize();
-                this.stackSize--;
-            }
-        }
-        temp.append(".end method\n");
+        // The limits come before the instructions, so a first pass that discards the code computes the stack size
+        int firstId = idCounter;
+        generateInstructions(method, JasminWriter.nullWriter());
+        int methodMaxStackSize = maxStackSize;
+        idCounter = firstId;
+        maxStackSize = 0;
+        stackSize = 0;
 
-        code.append(TAB).append(".limit stack ").append(maxStackSize).append(NL);
-        Set<Integer> registers = new HashSet<>();
+        out.setIndented(true);
+        out.line(".limit stack " + methodMaxStackSize);
+        // The highest register, since the register allocation can leave some unused, e.g. the one after the
+        // arguments of main
+        int maxLocals = 1 + method.getParams().size();
         for(Descriptor var : method.getVarTable().values()){
             if(var.getScope().toString().equals("FIELD")){
                 continue;
             }
-            if(!registers.contains(var.getVirtualReg())){
-                registers.add(var.getVirtualReg());
-            }
+            maxLocals = Math.max(maxLocals, var.getVirtualReg() + 1);
         }
-        if(!registers.contains(0) && !methodName.equals("main")){
-            code.append(TAB).append(".limit locals ").append(registers.size()+1).append(NL);
-        }
-        else {
-            code.append(TAB).append(".limit locals ").append(registers.size()).append(NL);
-        }
-        code.append(temp);
+        out.line(".limit locals " + maxLocals);
+        generateInstructions(method, out);
+        out.setIndented(false);
+        out.line(".end method");
+
         // unset method
         currentMethod = null;
         maxStackSize = 0;
         stackSize = 0;
-        return code.toString();
     }
 
-    private String generateAssign(AssignInstruction assign) {
-        var code = new StringBuilder();
+    private void generateInstructions(Method method, JasminWriter out) {
+        for (var inst : method.getInstructions()) {
+            for(var label : method.getLabels(inst)){
+                out.label(label);
+            }
+            generators.accept(inst, out);
+            if (inst instanceof CallInstruction && !(((CallInstruction) inst).getReturnType().toString().equals("VOID"))){
 
+                out.line("pop");
+                checkStackSize();
+                this.stackSize--;
+            }
+        }
+    }
+
+    private void generateAssign(AssignInstruction assign, JasminWriter out) {
         // store value in the stack in destination
         Element lhs = assign.getDest();
 
@@ -371,8 +374,8 @@ public class JasminGenerator {
                 int literalInt = Integer.parseInt(right.getLiteral());
                 literalInt = valueTranslation(literalInt, rhs.getOperation().getOpType());
                 if(leftReg == reg && literalInt >= -128 && literalInt <= 127){
-                    code.append("iinc ").append(reg).append(" ").append(literalInt).append(NL);
-                    return code.toString();
+                    out.line("iinc " + reg + " " + literalInt);
+                    return;
                 }
             } else if (rhs.getLeftOperand() instanceof LiteralElement left && rhs.getRightOperand() instanceof Operand right) {
                 int rightReg = currentMethod.getVarTable().get(right.getName()).getVirtualReg();
@@ -380,151 +383,136 @@ public class JasminGenerator {
                 literalInt = valueTranslation(literalInt, rhs.getOperation().getOpType());
                 //if the literal is on the left the operation has to be an add
                 if(rightReg == reg && rhs.getOperation().getOpType().equals(OperationType.ADD) && literalInt >= -128 && literalInt <= 127){
-                    code.append("iinc ").append(reg).append(" ").append(literalInt).append(NL);
-                    return code.toString();
+                    out.line("iinc " + reg + " " + literalInt);
+                    return;
                 }
             }
         }
         if(lhs instanceof ArrayOperand lhsArray){
             stackSize++;
-            code.append("aload").append(isByte(reg)).append(NL);
-            code.append(generators.apply(lhsArray.getIndexOperands().get(0)));
-            code.append(generators.apply(assign.getRhs()));
-            code.append("iastore").append(NL);
+            out.line("aload" + isByte(reg));
+            generators.accept(lhsArray.getIndexOperands().get(0), out);
+            generators.accept(assign.getRhs(), out);
+            out.line("iastore");
             checkStackSize();
             stackSize-=3;
 
-            return code.toString();
+            return;
         }
         // generate code for loading what's on the right
-        code.append(generators.apply(assign.getRhs()));
+        generators.accept(assign.getRhs(), out);
 
         if(lhs.getType().toString().equals("INT32")){
-            code.append("istore").append(isByte(reg)).append(NL);
+            out.line("istore" + isByte(reg));
         } else if (lhs.getType().toString().equals("BOOLEAN")) {
             if(assign.getRhs() instanceof BinaryOpInstruction binaryOp){
                 String op = extractIf(binaryOp.getOperation().getOpType());
-                code.append(op).append("boolSaveJump_").append(idCounter).append(NL);
-                code.append("iconst_0").append(NL);
-                code.append("goto ").append("boolSaveEnd_").append(idCounter).append(NL);
-                code.append("boolSaveJump_").append(idCounter).append(":").append(NL);
-                code.append("iconst_1").append(NL);
-                code.append("boolSaveEnd_").append(idCounter).append(":").append(NL);
-                code.append("istore").append(isByte(reg)).append(NL);
+                out.line(op + "boolSaveJump_" + idCounter);
+                out.line("iconst_0");
+                out.line("goto " + "boolSaveEnd_" + idCounter);
+                out.line("boolSaveJump_" + idCounter + ":");
+                out.line("iconst_1");
+                out.line("boolSaveEnd_" + idCounter + ":");
+                out.line("istore" + isByte(reg));
                 idCounter++;
-                checkStackSize();
-                stackSize--;
             }
             else {
-                code.append("istore").append(isByte(reg)).append(NL);
+                out.line("istore" + isByte(reg));
             }
         } else{
-            code.append("astore").append(isByte(reg)).append(NL);
+            out.line("astore" + isByte(reg));
         }
         checkStackSize();
         stackSize--;
-        return code.toString();
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
-        return generators.apply(singleOp.getSingleOperand());
+    private void generateSingleOp(SingleOpInstruction singleOp, JasminWriter out) {
+        generators.accept(singleOp.getSingleOperand(), out);
     }
 
-    private String generateLiteral(LiteralElement literal) {
+    private void generateLiteral(LiteralElement literal, JasminWriter out) {
         stackSize++;
         int literalInt = Integer.parseInt(literal.getLiteral());
         if(literalInt == -1){
-            return "iconst_m1" + NL;
+            out.line("iconst_m1");
         }
         else if (literalInt >= 0 && literalInt <= 5){
-            return "iconst_" + literalInt + NL;
+            out.line("iconst_" + literalInt);
         }
         else if (literalInt >= -128 && literalInt <= 127){
-            return "bipush " + literalInt + NL;
+            out.line("bipush " + literalInt);
         }
         else if (literalInt >= -32768 && literalInt <= 32767) {
-            return "sipush " + literalInt + NL;
+            out.line("sipush " + literalInt);
         }
         else {
-            return "ldc " + literal.getLiteral() + NL;
+            out.line("ldc " + literal.getLiteral());
         }
     }
 
-    private String generateOperand(Operand operand) {
-        var code = new StringBuilder();
-
+    private void generateOperand(Operand operand, JasminWriter out) {
         stackSize++;
         if(operand.getName().equals("this")){
-            return "aload_0" + NL;
+            out.line("aload_0");
+            return;
         }
         int reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
         if(operand instanceof ArrayOperand){
-            code.append("aload").append(isByte(reg)).append(NL);
-            code.append(generators.apply(((ArrayOperand) operand).getIndexOperands().get(0)));
-            code.append("iaload").append(NL);
+            out.line("aload" + isByte(reg));
+            generators.accept(((ArrayOperand) operand).getIndexOperands().get(0), out);
+            out.line("iaload");
             checkStackSize();
             stackSize--;
-            return code.toString();
+            return;
+        }
+        switch (operand.getType().toString()) {
+            case "INT32", "BOOLEAN" -> out.line("iload" + isByte(reg));
+            default -> out.line("aload" + isByte(reg));
         }
-        return switch (operand.getType().toString()) {
-            case "INT32", "BOOLEAN" -> "iload" + isByte(reg) + NL;
-            default -> "aload" + isByte(reg) + NL;
-        };
     }
 
-    private String generateSingleOpCondition(SingleOpCondInstruction singleOpCond) {
-        var code = new StringBuilder();
-
-        code.append(generators.apply(singleOpCond.getOperands().get(0)));
+    private void generateSingleOpCondition(SingleOpCondInstruction singleOpCond, JasminWriter out) {
+        generators.accept(singleOpCond.getOperands().get(0), out);
         // apply operation
-        code.append("ifne ").append(singleOpCond.getLabel()).append(NL);
-        return code.toString();
+        out.line("ifne " + singleOpCond.getLabel());
     }
 
-    private String generateOpCondition(OpCondInstruction opCond) {
-        var code = new StringBuilder();
-        code.append(generators.apply(opCond.getCondition()));
+    private void generateOpCondition(OpCondInstruction opCond, JasminWriter out) {
+        generators.accept(opCond.getCondition(), out);
 
         String op = extractIf(opCond.getCondition().getOperation().getOpType());
         checkStackSize();
         stackSize--;
-        code.append(op).append(opCond.getLabel()).append(NL);
-        return code.toString();
+        out.line(op + opCond.getLabel());
     }
 
-    private String generateGoto(GotoInstruction gotoInst) {
-        return "goto " + gotoInst.getLabel() + NL;
+    private void generateGoto(GotoInstruction gotoInst, JasminWriter out) {
+        out.line("goto " + gotoInst.getLabel());
     }
 
-    private String generateUnaryOp(UnaryOpInstruction unaryOp) {
-        var code = new StringBuilder();
-
+    private void generateUnaryOp(UnaryOpInstruction unaryOp, JasminWriter out) {
         if(unaryOp.getOperand().isLiteral()) {
             if (((LiteralElement) unaryOp.getOperand()).getLiteral().equals("1")) {
-                code.append("iconst_0");
+                out.line("iconst_0");
             } else {
-                code.append("iconst_1");
+                out.line("iconst_1");
             }
             stackSize++;
         }
         else{
-            code.append(generators.apply(unaryOp.getOperand()));
-            code.append("iconst_1\nixor");
+            generators.accept(unaryOp.getOperand(), out);
+            out.line("iconst_1");
+            out.line("ixor");
             stackSize++;
             checkStackSize();
             stackSize--;
         }
-        code.append(NL);
-
-        return code.toString();
     }
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
-        var code = new StringBuilder();
-
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, JasminWriter out) {
         // load values on the left and on the right
-        code.append(generators.apply(binaryOp.getLeftOperand()));
-        code.append(generators.apply(binaryOp.getRightOperand()));
+        generators.accept(binaryOp.getLeftOperand(), out);
+        generators.accept(binaryOp.getRightOperand(), out);
 
 
         // apply operation
@@ -537,30 +525,25 @@ public class JasminGenerator {
         };
         checkStackSize();
         stackSize--;
-        code.append(op).append(NL);
-
-        return code.toString();
+        out.line(op);
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        var code = new StringBuilder();
+    private void generateReturn(ReturnInstruction returnInst, JasminWriter out) {
         if (returnInst.getOperand() != null) {
-            code.append(generators.apply(returnInst.getOperand()));
+            generators.accept(returnInst.getOperand(), out);
             checkStackSize();
             switch (returnInst.getReturnType().getTypeOfElement().name().toString()) {
                 case "INT32", "BOOLEAN" -> {
-                    code.append("ireturn").append(NL);
+                    out.line("ireturn");
                 }
                 default -> {
-                    code.append("areturn").append(NL);
+                    out.line("areturn");
                 }
             }
             stackSize--;
         }
         else
-            code.append("return").append(NL);
-
-        return code.toString();
+            out.line("return");
     }
 
 }
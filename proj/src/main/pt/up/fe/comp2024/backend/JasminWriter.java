@@ -0,0 +1,81 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes Jasmin code line by line into a sink, indenting the lines inside a method.
+ */
+public class JasminWriter {
+
+    private static final String NL = "\n";
+    private static final String TAB = "   ";
+
+    // Discards everything, used to compute the limits of a method before writing it
+    private static final Appendable NULL_SINK = new Appendable() {
+        @Override
+        public Appendable append(CharSequence csq) {
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            return this;
+        }
+    };
+
+    private final Appendable sink;
+    private boolean indented;
+
+    public JasminWriter(Appendable sink) {
+        this.sink = sink;
+        this.indented = false;
+    }
+
+    /**
+     * @return a writer that discards everything that is written
+     */
+    public static JasminWriter nullWriter() {
+        return new JasminWriter(NULL_SINK);
+    }
+
+    /**
+     * Sets whether the following lines are indented, labels are never indented.
+     */
+    public void setIndented(boolean indented) {
+        this.indented = indented;
+    }
+
+    /**
+     * Writes one line, indented if inside a method.
+     */
+    public void line(String line) {
+        if (indented) {
+            write(TAB);
+        }
+        write(line);
+        write(NL);
+    }
+
+    public void label(String label) {
+        write(label);
+        write(":");
+        write(NL);
+    }
+
+    /**
+     * Writes the given text as it is.
+     */
+    public void write(String text) {
+        try {
+            sink.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write Jasmin code", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Byte buffer with the big-endian unsigned integer types used by the class file format.
+ */
+public class ClassFileOutput extends ByteArrayOutputStream {
+
+    public void u1(int value) {
+        write(value);
+    }
+
+    public void u2(int value) {
+        write(value >>> 8);
+        write(value);
+    }
+
+    public void u4(int value) {
+        u2(value >>> 16);
+        u2(value);
+    }
+
+    /**
+     * Writes a string in the modified UTF-8 format of CONSTANT_Utf8 entries, preceded by its length.
+     */
+    public void utf8(String value) {
+        try {
+            new DataOutputStream(this).writeUTF(value);
+        } catch (IOException e) {
+            // A ByteArrayOutputStream does not throw, only strings longer than 65535 bytes are rejected
+            throw new UncheckedIOException("Could not encode constant '" + value + "'", e);
+        }
+    }
+
+    public void bytes(ClassFileOutput other) {
+        other.copyTo(this);
+    }
+
+    /**
+     * Overwrites two bytes that were already written, used to patch jump offsets.
+     */
+    public void setU2(int position, int value) {
+        buf[position] = (byte) (value >>> 8);
+        buf[position + 1] = (byte) value;
+    }
+
+    /**
+     * @return the position of the next byte to be written
+     */
+    public int position() {
+        return count;
+    }
+
+    // ByteArrayOutputStream.writeTo(OutputStream) declares IOException
+    private void copyTo(ClassFileOutput target) {
+        target.write(buf, 0, count);
+    }
+}
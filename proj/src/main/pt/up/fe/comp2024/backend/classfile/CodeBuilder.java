@@ -0,0 +1,376 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the bytecode of one method, choosing the shortest encoding of each instruction and keeping track of the
+ * operand stack depth to compute max_stack.
+ * <p>
+ * Jumps refer to labels by name and are patched with the final offsets in {@link #toByteArray()}, so a label can be
+ * placed after the jumps that refer to it.
+ */
+public class CodeBuilder {
+
+    private static final int ICONST_M1 = 0x02;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD = 0x19;
+    private static final int ILOAD_0 = 0x1a;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int ASTORE = 0x3a;
+    private static final int ISTORE_0 = 0x3b;
+    private static final int ASTORE_0 = 0x4b;
+    private static final int IASTORE = 0x4f;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IDIV = 0x6c;
+    private static final int IXOR = 0x82;
+    private static final int IINC = 0x84;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int IRETURN = 0xac;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int NEW = 0xbb;
+    private static final int NEWARRAY = 0xbc;
+    private static final int ARRAYLENGTH = 0xbe;
+    private static final int WIDE = 0xc4;
+
+    // Operand of newarray for int[]
+    private static final int T_INT = 10;
+
+    private record Jump(int opcodePosition, String label) {
+    }
+
+    private final ConstantPool constantPool;
+    private final ClassFileOutput code;
+    private final Map<String, Integer> labelPositions;
+    private final List<Jump> jumps;
+
+    // Stack depth at the labels that are the target of a jump
+    private final Map<String, Integer> labelStackDepths;
+
+    private int stackDepth;
+    private int maxStackDepth;
+
+    // False after goto and return, until the next label
+    private boolean reachable;
+
+    private int anonymousLabels;
+
+    public CodeBuilder(ConstantPool constantPool) {
+        this.constantPool = constantPool;
+        this.code = new ClassFileOutput();
+        this.labelPositions = new HashMap<>();
+        this.jumps = new ArrayList<>();
+        this.labelStackDepths = new HashMap<>();
+        this.stackDepth = 0;
+        this.maxStackDepth = 0;
+        this.reachable = true;
+        this.anonymousLabels = 0;
+    }
+
+    public int getMaxStack() {
+        return maxStackDepth;
+    }
+
+    /**
+     * @return a label name that cannot clash with the labels of the OLLIR code
+     */
+    public String newLabel() {
+        return "$" + anonymousLabels++;
+    }
+
+    public void label(String name) {
+        if (labelPositions.put(name, code.position()) != null) {
+            throw new RuntimeException("Label '" + name + "' is defined more than once");
+        }
+
+        var jumpDepth = labelStackDepths.get(name);
+        if (jumpDepth != null) {
+            stackDepth = jumpDepth;
+        } else if (!reachable) {
+            // Only reached by backward jumps, which happen between statements
+            stackDepth = 0;
+        }
+
+        reachable = true;
+    }
+
+    public void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            code.u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            code.u2(value);
+        } else {
+            int index = constantPool.integer(value);
+            if (index <= 0xFF) {
+                op(LDC, 1);
+                code.u1(index);
+            } else {
+                op(LDC_W, 1);
+                code.u2(index);
+            }
+        }
+    }
+
+    public void iload(int register) {
+        local(ILOAD, ILOAD_0, register, 1);
+    }
+
+    public void aload(int register) {
+        local(ALOAD, ALOAD_0, register, 1);
+    }
+
+    public void istore(int register) {
+        local(ISTORE, ISTORE_0, register, -1);
+    }
+
+    public void astore(int register) {
+        local(ASTORE, ASTORE_0, register, -1);
+    }
+
+    public void iinc(int register, int increment) {
+        if (register <= 0xFF && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE) {
+            op(IINC, 0);
+            code.u1(register);
+            code.u1(increment);
+        } else {
+            op(WIDE, 0);
+            code.u1(IINC);
+            code.u2(register);
+            code.u2(increment);
+        }
+    }
+
+    public void iaload() {
+        op(IALOAD, -1);
+    }
+
+    public void iastore() {
+        op(IASTORE, -3);
+    }
+
+    public void pop() {
+        op(POP, -1);
+    }
+
+    public void pop2() {
+        op(POP2, -2);
+    }
+
+    public void iadd() {
+        op(IADD, -1);
+    }
+
+    public void isub() {
+        op(ISUB, -1);
+    }
+
+    public void imul() {
+        op(IMUL, -1);
+    }
+
+    public void idiv() {
+        op(IDIV, -1);
+    }
+
+    public void ixor() {
+        op(IXOR, -1);
+    }
+
+    public void ifeq(String label) {
+        jump(IFEQ, label, -1);
+    }
+
+    public void ifne(String label) {
+        jump(IFNE, label, -1);
+    }
+
+    public void iflt(String label) {
+        jump(IFLT, label, -1);
+    }
+
+    public void ifle(String label) {
+        jump(IFLE, label, -1);
+    }
+
+    public void ifgt(String label) {
+        jump(IFGT, label, -1);
+    }
+
+    public void ifge(String label) {
+        jump(IFGE, label, -1);
+    }
+
+    public void gotoLabel(String label) {
+        jump(GOTO, label, 0);
+        reachable = false;
+    }
+
+    public void ireturn() {
+        op(IRETURN, -1);
+        reachable = false;
+    }
+
+    public void areturn() {
+        op(ARETURN, -1);
+        reachable = false;
+    }
+
+    public void returnVoid() {
+        op(RETURN, 0);
+        reachable = false;
+    }
+
+    public void getfield(String owner, String name, String descriptor) {
+        op(GETFIELD, 0);
+        code.u2(constantPool.fieldRef(owner, name, descriptor));
+    }
+
+    public void putfield(String owner, String name, String descriptor) {
+        op(PUTFIELD, -2);
+        code.u2(constantPool.fieldRef(owner, name, descriptor));
+    }
+
+    public void invokevirtual(String owner, String name, String descriptor) {
+        invoke(INVOKEVIRTUAL, owner, name, descriptor, true);
+    }
+
+    public void invokespecial(String owner, String name, String descriptor) {
+        invoke(INVOKESPECIAL, owner, name, descriptor, true);
+    }
+
+    public void invokestatic(String owner, String name, String descriptor) {
+        invoke(INVOKESTATIC, owner, name, descriptor, false);
+    }
+
+    public void newObject(String internalName) {
+        op(NEW, 1);
+        code.u2(constantPool.classRef(internalName));
+    }
+
+    public void newIntArray() {
+        op(NEWARRAY, 0);
+        code.u1(T_INT);
+    }
+
+    public void arraylength() {
+        op(ARRAYLENGTH, 0);
+    }
+
+    /**
+     * @return the bytecode, with the offsets of every jump resolved
+     */
+    public byte[] toByteArray() {
+        for (var jump : jumps) {
+            var target = labelPositions.get(jump.label());
+            if (target == null) {
+                throw new RuntimeException("Jump to undefined label '" + jump.label() + "'");
+            }
+
+            int offset = target - jump.opcodePosition();
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Jump to label '" + jump.label() + "' is out of range (" + offset + ")");
+            }
+
+            code.setU2(jump.opcodePosition() + 1, offset);
+        }
+
+        if (code.size() > 0xFFFF) {
+            throw new RuntimeException("Method code has " + code.size() + " bytes, the limit is 65535");
+        }
+
+        return code.toByteArray();
+    }
+
+    private void local(int opcode, int shortOpcode, int register, int stackDelta) {
+        if (register <= 3) {
+            op(shortOpcode + register, stackDelta);
+        } else if (register <= 0xFF) {
+            op(opcode, stackDelta);
+            code.u1(register);
+        } else {
+            op(WIDE, stackDelta);
+            code.u1(opcode);
+            code.u2(register);
+        }
+    }
+
+    private void jump(int opcode, String label, int stackDelta) {
+        jumps.add(new Jump(code.position(), label));
+        op(opcode, stackDelta);
+        // Patched in toByteArray
+        code.u2(0);
+
+        labelStackDepths.putIfAbsent(label, stackDepth);
+    }
+
+    private void invoke(int opcode, String owner, String name, String descriptor, boolean hasReceiver) {
+        int stackDelta = returnSlots(descriptor) - argumentSlots(descriptor) - (hasReceiver ? 1 : 0);
+
+        op(opcode, stackDelta);
+        code.u2(constantPool.methodRef(owner, name, descriptor));
+    }
+
+    private void op(int opcode, int stackDelta) {
+        code.u1(opcode);
+
+        stackDepth += stackDelta;
+        maxStackDepth = Math.max(maxStackDepth, stackDepth);
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char type = descriptor.charAt(i);
+            slots += type == 'J' || type == 'D' ? 2 : 1;
+
+            // Skip array dimensions and the class name of object types
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+        }
+        return slots;
+    }
+
+    private static int returnSlots(String descriptor) {
+        char type = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return switch (type) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+}
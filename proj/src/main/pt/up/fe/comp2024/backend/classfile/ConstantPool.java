@@ -0,0 +1,107 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file. Each method returns the index of the requested constant, adding it the first time
+ * it is requested.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ClassFileOutput entries;
+    private final Map<String, Integer> indexes;
+
+    // Index 0 is not used
+    private int nextIndex;
+
+    public ConstantPool() {
+        this.entries = new ClassFileOutput();
+        this.indexes = new HashMap<>();
+        this.nextIndex = 1;
+    }
+
+    public int utf8(String value) {
+        return add(UTF8 + ":" + value, () -> {
+            entries.u1(UTF8);
+            entries.utf8(value);
+        });
+    }
+
+    public int integer(int value) {
+        return add(INTEGER + ":" + value, () -> {
+            entries.u1(INTEGER);
+            entries.u4(value);
+        });
+    }
+
+    /**
+     * @param internalName the name of the class with '/' as separator, e.g. 'java/lang/Object'
+     */
+    public int classRef(String internalName) {
+        int name = utf8(internalName);
+        return add(CLASS + ":" + internalName, () -> {
+            entries.u1(CLASS);
+            entries.u2(name);
+        });
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add(NAME_AND_TYPE + ":" + name + ":" + descriptor, () -> {
+            entries.u1(NAME_AND_TYPE);
+            entries.u2(nameIndex);
+            entries.u2(descriptorIndex);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int classIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        return add(tag + ":" + owner + "." + name + ":" + descriptor, () -> {
+            entries.u1(tag);
+            entries.u2(classIndex);
+            entries.u2(nameAndTypeIndex);
+        });
+    }
+
+    private int add(String key, Runnable writeEntry) {
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        if (nextIndex > 0xFFFF) {
+            throw new RuntimeException("Constant pool has more than 65535 entries");
+        }
+
+        writeEntry.run();
+        indexes.put(key, nextIndex);
+
+        return nextIndex++;
+    }
+
+    /**
+     * Writes the constant_pool_count followed by the entries.
+     */
+    public void write(ClassFileOutput out) {
+        out.u2(nextIndex);
+        out.bytes(entries);
+    }
+}
@@ -0,0 +1,374 @@
+package pt.up.fe.comp2024.cache;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of compiled outputs and their reports, keyed by a hash of the source code, the options that change the
+ * generated code and the classes of the compiler.
+ * <p>
+ * Entries are written atomically (temporary file + rename), so concurrent compilations and processes can share the
+ * same folder. The folder is kept under a size bound by evicting the least recently used entries, where an entry is
+ * used when it is written or hit.
+ */
+public class BuildCache {
+
+    private static final String ENTRY_EXTENSION = ".entry";
+
+    // One instance per folder, so counters are shared by every compilation of the same process
+    private static final Map<Path, BuildCache> CACHES = new ConcurrentHashMap<>();
+
+    private static final Gson GSON = new Gson();
+
+    // Computed once, hashing the classes takes a few milliseconds
+    private static String compilerBuild;
+
+    private final Path folder;
+    private final long maxBytes;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    // Bytes of the entries in the folder, -1 until it is first listed
+    private long totalBytes = -1;
+
+    public BuildCache(Path folder, long maxBytes) {
+        this.folder = folder;
+        this.maxBytes = maxBytes;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * @return the cache of the folder given in the config, or empty if caching is disabled
+     */
+    public static Optional<BuildCache> fromConfig(Map<String, String> config) {
+        return CompilerConfig.getCacheDir(config)
+                .map(File::toPath)
+                .map(Path::toAbsolutePath)
+                .map(folder -> CACHES.computeIfAbsent(folder,
+                        key -> new BuildCache(key, CompilerConfig.getCacheSize(config))));
+    }
+
+    /**
+     * Cached outputs of one compilation.
+     */
+    public static class Entry {
+        private final String className;
+        private final String ollirCode;
+        private final String jasminCode;
+        // Base64, only one of the Jasmin code and the class file is present, depending on the backend
+        private final String classFile;
+        private final List<CachedReport> reports;
+
+        public Entry(String className, String ollirCode, String jasminCode, byte[] classFile, List<Report> reports) {
+            this.className = className;
+            this.ollirCode = ollirCode;
+            this.jasminCode = jasminCode;
+            this.classFile = classFile != null ? Base64.getEncoder().encodeToString(classFile) : null;
+            this.reports = reports.stream().map(CachedReport::new).toList();
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getOllirCode() {
+            return ollirCode;
+        }
+
+        public String getJasminCode() {
+            return jasminCode;
+        }
+
+        public byte[] getClassFile() {
+            return classFile != null ? Base64.getDecoder().decode(classFile) : null;
+        }
+
+        /**
+         * @return the reports of the compilation that wrote the entry, without their exceptions
+         */
+        public List<Report> getReports() {
+            return reports != null ? reports.stream().map(CachedReport::toReport).toList() : List.of();
+        }
+    }
+
+    /**
+     * A report as written in an entry, since exceptions cannot be serialized.
+     */
+    private static class CachedReport {
+        private final ReportType type;
+        private final Stage stage;
+        private final int line;
+        private final int column;
+        private final String message;
+
+        CachedReport(Report report) {
+            this.type = report.getType();
+            this.stage = report.getStage();
+            this.line = report.getLine();
+            this.column = report.getColumn();
+            this.message = report.getMessage();
+        }
+
+        Report toReport() {
+            return new Report(type, stage, line, column, message);
+        }
+    }
+
+    /**
+     * Computes the key of a compilation.
+     *
+     * @param code   the Java-- code
+     * @param config the compiler options
+     * @return a hex SHA-256 of everything that affects the generated code
+     */
+    public static String key(String code, Map<String, String> config) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+
+            for (var part : List.of(getCompilerBuild(),
+                    String.valueOf(CompilerConfig.getOptimizationLevel(config)),
+                    String.valueOf(CompilerConfig.getPassOptions(config)),
+                    String.valueOf(CompilerConfig.getRegisterAllocation(config)),
+                    String.valueOf(CompilerConfig.isClassFileBackend(config)),
+                    getClasspathState(config),
+                    code)) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                // Separator, so that moving characters between parts changes the key
+                digest.update((byte) 0);
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the classpath given with '-l' and when each entry was modified, since the signatures of imported
+     * classes change the generated calls
+     */
+    private static String getClasspathState(Map<String, String> config) {
+        return CompilerConfig.getClasspath(config).stream()
+                .map(entry -> entry.getAbsolutePath() + "@" + entry.lastModified())
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /**
+     * @return a hash of the jar or the folder the compiler classes were loaded from, so that a rebuilt compiler does
+     * not use the entries of the previous build, even if its version did not change
+     */
+    private static synchronized String getCompilerBuild() {
+        if (compilerBuild == null) {
+            compilerBuild = hashCompilerBuild();
+        }
+
+        return compilerBuild;
+    }
+
+    private static String hashCompilerBuild() {
+        var codeSource = JmmCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            // Every process is a different build, so entries are only reused within it
+            return UUID.randomUUID().toString();
+        }
+
+        try {
+            var location = Path.of(codeSource.getLocation().toURI());
+            List<Path> files;
+            if (Files.isDirectory(location)) {
+                try (Stream<Path> walk = Files.walk(location)) {
+                    files = walk.filter(Files::isRegularFile).sorted().toList();
+                }
+            } else {
+                files = List.of(location);
+            }
+
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var file : files) {
+                digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(file));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | URISyntaxException | NoSuchAlgorithmException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Looks up an entry, counting a hit or a miss.
+     */
+    public Optional<Entry> get(String key) {
+        var entryFile = entryFile(key);
+
+        try {
+            var entry = GSON.fromJson(Files.readString(entryFile, StandardCharsets.UTF_8), Entry.class);
+
+            if (entry != null) {
+                // Mark as recently used for eviction
+                Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+
+                hits.incrementAndGet();
+                return Optional.of(entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Missing, corrupted or concurrently evicted entries are misses
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores an entry, then evicts old entries if the cache grew past its bound.
+     *
+     * @throws UncheckedIOException if the entry could not be written, which callers report as a warning since the
+     *                              cache is only an accelerator
+     */
+    public void put(String key, Entry entry) {
+        try {
+            Files.createDirectories(folder);
+            var entryFile = entryFile(key);
+
+            // Write to a temporary file in the same folder and rename it, so readers never see a partial entry
+            var tempFile = Files.createTempFile(folder, key, ".tmp");
+            try {
+                Files.writeString(tempFile, GSON.toJson(entry), StandardCharsets.UTF_8);
+                long size = Files.size(tempFile);
+                long replaced = sizeOf(entryFile);
+                move(tempFile, entryFile);
+
+                if (addBytes(size - replaced) > maxBytes) {
+                    evict();
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write build cache entry " + key, e);
+        }
+    }
+
+    /**
+     * Updates the size of the folder, which is only listed the first time and when entries are evicted.
+     *
+     * @return the new size of the folder
+     */
+    private synchronized long addBytes(long delta) throws IOException {
+        if (totalBytes < 0) {
+            // Includes the entry just written
+            totalBytes = sumSizes(listEntries());
+            return totalBytes;
+        }
+
+        totalBytes += delta;
+        return totalBytes;
+    }
+
+    private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within its size bound. The folder is listed again,
+     * since other processes may share it.
+     */
+    private synchronized void evict() throws IOException {
+        var entries = listEntries();
+        totalBytes = sumSizes(entries);
+
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong(this::lastModified));
+        for (var entry : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+
+            long size = sizeOf(entry);
+            if (Files.deleteIfExists(entry)) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return new ArrayList<>(files.filter(file -> file.toString().endsWith(ENTRY_EXTENSION)).toList());
+        }
+    }
+
+    private long sumSizes(List<Path> entries) {
+        long sum = 0;
+        for (var entry : entries) {
+            sum += sizeOf(entry);
+        }
+        return sum;
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            // Deleted by another process
+            return 0;
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path entryFile(String key) {
+        return folder.resolve(key + ENTRY_EXTENSION);
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2024.classpath;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the name, super class and methods of a class file, skipping everything else (fields, code, attributes).
+ */
+public class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_STATIC = 0x0008;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /**
+     * @param buffer the class file, e.g. a mapped file, read from its position
+     */
+    public static ClassSignature read(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Not a class file");
+        }
+        // Minor and major versions
+        buffer.getInt();
+
+        // Only the UTF-8 constants and the classes, which point to them, are kept
+        int poolCount = buffer.getShort() & 0xFFFF;
+        var utf8 = new String[poolCount];
+        var classNames = new int[poolCount];
+        for (int i = 1; i < poolCount; i++) {
+            int tag = buffer.get();
+            switch (tag) {
+                case CONSTANT_UTF8 -> utf8[i] = readUtf8(buffer);
+                case CONSTANT_CLASS -> classNames[i] = buffer.getShort() & 0xFFFF;
+                case CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE -> skip(buffer, 2);
+                case CONSTANT_METHOD_HANDLE -> skip(buffer, 3);
+                case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELD_REF, CONSTANT_METHOD_REF,
+                        CONSTANT_INTERFACE_METHOD_REF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC,
+                        CONSTANT_INVOKE_DYNAMIC -> skip(buffer, 4);
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    skip(buffer, 8);
+                    // Takes two entries
+                    i++;
+                }
+                default -> throw new RuntimeException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        // Access flags
+        buffer.getShort();
+        var name = utf8[classNames[buffer.getShort() & 0xFFFF]];
+        int superIndex = buffer.getShort() & 0xFFFF;
+        var superName = superIndex == 0 ? null : utf8[classNames[superIndex]];
+
+        int interfaceCount = buffer.getShort() & 0xFFFF;
+        skip(buffer, 2 * interfaceCount);
+
+        int fieldCount = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < fieldCount; i++) {
+            // Access flags, name and descriptor
+            skip(buffer, 6);
+            skipAttributes(buffer);
+        }
+
+        int methodCount = buffer.getShort() & 0xFFFF;
+        List<MethodSignature> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            int accessFlags = buffer.getShort() & 0xFFFF;
+            var methodName = utf8[buffer.getShort() & 0xFFFF];
+            var descriptor = utf8[buffer.getShort() & 0xFFFF];
+            skipAttributes(buffer);
+
+            methods.add(new MethodSignature(methodName, descriptor, (accessFlags & ACC_STATIC) != 0));
+        }
+
+        return new ClassSignature(name, superName, methods);
+    }
+
+    private static String readUtf8(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        var bytes = new byte[2 + length];
+        bytes[0] = (byte) (length >> 8);
+        bytes[1] = (byte) length;
+        buffer.get(bytes, 2, length);
+
+        // Class files use the modified UTF-8 of DataInput
+        try {
+            return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid string in constant pool", e);
+        }
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) {
+        int attributeCount = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < attributeCount; i++) {
+            // Name
+            buffer.getShort();
+            skip(buffer, buffer.getInt());
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+}
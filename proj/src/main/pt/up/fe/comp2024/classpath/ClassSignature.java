@@ -0,0 +1,43 @@
+package pt.up.fe.comp2024.classpath;
+
+import java.util.List;
+
+/**
+ * The methods of a compiled class, as read from its class file. Names are internal names, e.g. 'foo/bar/A'.
+ */
+public class ClassSignature {
+
+    private final String name;
+    private final String superName;
+    private final List<MethodSignature> methods;
+
+    public ClassSignature(String name, String superName, List<MethodSignature> methods) {
+        this.name = name;
+        this.superName = superName;
+        this.methods = methods;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the internal name of the super class, or null for java/lang/Object
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<MethodSignature> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return the methods of this class, not of its super classes, with the given name
+     */
+    public List<MethodSignature> getMethods(String methodName) {
+        return methods.stream()
+                .filter(method -> method.getName().equals(methodName))
+                .toList();
+    }
+}
@@ -0,0 +1,449 @@
+package pt.up.fe.comp2024.classpath;
+
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+
+/**
+ * Signatures of the classes in a classpath of folders and jars, so that calls to imported classes get their exact
+ * types and descriptors.
+ * <p>
+ * Classes are only read when first looked up, by mapping their class file. Each lookup checks the modification time
+ * and size of the class file, or jar, the class was read from, so a resident compiler sees the classes that changed.
+ * What was read is kept in a compact file in the build cache folder, if there is one, written by {@link #flush} at the
+ * end of each compilation, so other compilations only read the classes that changed.
+ */
+public class ClassSignatureIndex {
+
+    private static final String CACHE_FILE_PREFIX = "signatures-";
+    private static final int CACHE_MAGIC = 0x4A4D4D53;
+    private static final int CACHE_VERSION = 1;
+
+    // One instance per classpath and cache folder, so every compilation of the same process shares what was read
+    private static final Map<String, ClassSignatureIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final List<Path> classpath;
+    private final Path cacheFile;
+
+    private final Map<String, LoadedClass> classes;
+    private final Map<Path, JarEntries> jarEntries;
+
+    // Classes read by this or previous compilations, by location of their class file
+    private Map<String, CachedClass> cachedClasses;
+    // Classes read since the cache file was last written
+    private boolean cacheChanged;
+
+    /**
+     * The lookup of a class, with the class file or jar it was found in and the state of that file, or no file if the
+     * class was not found.
+     */
+    private record LoadedClass(Optional<ClassSignature> signature, Path file, long lastModified, long size) {
+    }
+
+    /**
+     * The names of the entries of a jar, and the state of the jar when they were listed.
+     */
+    private record JarEntries(long lastModified, long size, Set<String> names) {
+    }
+
+    /**
+     * A class read from a class file, and the state of the file when it was read.
+     */
+    private static class CachedClass {
+        private final long lastModified;
+        private final long size;
+        private final ClassSignature signature;
+
+        CachedClass(long lastModified, long size, ClassSignature signature) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * @param classpath folders and jars with the classes
+     * @param cacheFile file where the signatures are kept between compilations, or null to keep them only in memory
+     */
+    public ClassSignatureIndex(List<Path> classpath, Path cacheFile) {
+        this.classpath = classpath;
+        this.cacheFile = cacheFile;
+        this.classes = new ConcurrentHashMap<>();
+        this.jarEntries = new ConcurrentHashMap<>();
+        this.cachedClasses = null;
+        this.cacheChanged = false;
+    }
+
+    /**
+     * @return the index of the classpath given with '-l', or empty if there is none
+     */
+    public static Optional<ClassSignatureIndex> fromConfig(Map<String, String> config) {
+        var classpath = CompilerConfig.getClasspath(config).stream()
+                .map(File::toPath)
+                .map(Path::toAbsolutePath)
+                .toList();
+
+        if (classpath.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var cacheFolder = CompilerConfig.getCacheDir(config).map(File::toPath).map(Path::toAbsolutePath);
+        var key = classpath + "|" + cacheFolder.map(Path::toString).orElse("");
+
+        return Optional.of(INDEXES.computeIfAbsent(key, unused -> new ClassSignatureIndex(classpath,
+                cacheFolder.map(folder -> folder.resolve(CACHE_FILE_PREFIX
+                        + Integer.toHexString(classpath.hashCode()) + ".bin")).orElse(null))));
+    }
+
+    /**
+     * @param className the internal name of the class, e.g. 'foo/bar/A'
+     * @return the signature of the class, or empty if it is not in the classpath
+     */
+    public Optional<ClassSignature> getClass(String className) {
+        var loaded = classes.get(className);
+
+        if (loaded == null || !isCurrent(loaded)) {
+            loaded = load(className);
+            classes.put(className, loaded);
+        }
+
+        return loaded.signature();
+    }
+
+    /**
+     * @return true if the file the class was read from did not change since. Classes that were not found are looked
+     * up again, since they may have been added
+     */
+    private static boolean isCurrent(LoadedClass loaded) {
+        if (loaded.file() == null) {
+            return false;
+        }
+
+        try {
+            var attributes = Files.readAttributes(loaded.file(), BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() == loaded.lastModified()
+                    && attributes.size() == loaded.size();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the classes read since the last call to the cache file, if there is one. Called once at the end of each
+     * compilation, so the cache file is not written again for every class.
+     */
+    public synchronized void flush() {
+        if (cacheChanged) {
+            writeCacheFile();
+            cacheChanged = false;
+        }
+    }
+
+    /**
+     * Finds the method called with the given number of arguments, in the class or its super classes, for analysis,
+     * where the types of the arguments are not known yet.
+     *
+     * @return the method, or empty if there is none or the overloads with that many parameters return different types
+     */
+    public Optional<MethodSignature> findMethod(String className, String methodName, int numArgs) {
+        for (var signature = getClass(className); signature.isPresent();
+             signature = Optional.ofNullable(signature.get().getSuperName()).flatMap(this::getClass)) {
+
+            var candidates = signature.get().getMethods(methodName).stream()
+                    .filter(method -> method.getParameterDescriptors().size() == numArgs)
+                    .toList();
+
+            if (!candidates.isEmpty()) {
+                var returnDescriptor = candidates.get(0).getReturnDescriptor();
+                var sameReturn = candidates.stream()
+                        .allMatch(method -> method.getReturnDescriptor().equals(returnDescriptor));
+                return sameReturn ? Optional.of(candidates.get(0)) : Optional.empty();
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Finds the method a call refers to, for code generation.
+     *
+     * @param guessedDescriptor the descriptor built from the types of the arguments and of the result in OLLIR
+     * @return the method with the same parameters as the guessed descriptor, or else the only one whose parameters
+     * take the same kinds of values, or empty if there is none, or if the result it pushes does not fit the guessed
+     * one
+     */
+    public Optional<MethodSignature> findCall(String className, String methodName, String guessedDescriptor,
+                                              boolean isStatic) {
+        var guessedParameters = MethodSignature.parameterDescriptors(guessedDescriptor);
+        var guessedReturn = MethodSignature.returnDescriptor(guessedDescriptor);
+
+        for (var signature = getClass(className); signature.isPresent();
+             signature = Optional.ofNullable(signature.get().getSuperName()).flatMap(this::getClass)) {
+
+            var candidates = signature.get().getMethods(methodName).stream()
+                    .filter(method -> method.isStatic() == isStatic)
+                    .filter(method -> method.getParameterDescriptors().size() == guessedParameters.size())
+                    .toList();
+
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            var exact = candidates.stream()
+                    .filter(method -> method.getParameterDescriptors().equals(guessedParameters))
+                    .findFirst();
+            var compatible = candidates.stream()
+                    .filter(method -> fitParameters(method.getParameterDescriptors(), guessedParameters))
+                    .toList();
+            var method = exact.isPresent() ? exact : compatible.size() == 1 ? Optional.of(compatible.get(0)) :
+                    Optional.<MethodSignature>empty();
+
+            return method.filter(found -> guessedReturn.equals("V")
+                    || fits(found.getReturnDescriptor(), guessedReturn));
+        }
+
+        return Optional.empty();
+    }
+
+    private static boolean fitParameters(List<String> parameters, List<String> guessedParameters) {
+        for (int i = 0; i < parameters.size(); i++) {
+            if (!fits(parameters.get(i), guessedParameters.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if values of both types are handled by the same instructions, e.g. int and boolean, or two
+     * references
+     */
+    private static boolean fits(String descriptor, String guessedDescriptor) {
+        return descriptor.equals(guessedDescriptor)
+                || isIntLike(descriptor) && isIntLike(guessedDescriptor)
+                || isReference(descriptor) && isReference(guessedDescriptor);
+    }
+
+    private static boolean isIntLike(String descriptor) {
+        return descriptor.length() == 1 && "IZBCS".contains(descriptor);
+    }
+
+    private static boolean isReference(String descriptor) {
+        return descriptor.startsWith("L") || descriptor.startsWith("[");
+    }
+
+    private LoadedClass load(String className) {
+        var classFileName = className + ".class";
+
+        for (var entry : classpath) {
+            try {
+                if (Files.isDirectory(entry)) {
+                    var classFile = entry.resolve(classFileName);
+                    if (Files.isRegularFile(classFile)) {
+                        return loadClassFile(classFile);
+                    }
+                } else if (Files.isRegularFile(entry) && getJarEntries(entry).contains(classFileName)) {
+                    return loadJarEntry(entry, classFileName);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable classes are as if they were not there, and calls to them use the guessed descriptors,
+                // as without a classpath
+            }
+        }
+
+        return new LoadedClass(Optional.empty(), null, 0, 0);
+    }
+
+    private LoadedClass loadClassFile(Path classFile) throws IOException {
+        var location = classFile.toString();
+        var attributes = Files.readAttributes(classFile, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        var cached = getCachedClass(location, lastModified, size);
+        if (cached.isPresent()) {
+            return new LoadedClass(cached, classFile, lastModified, size);
+        }
+
+        ClassSignature signature;
+        try (var channel = FileChannel.open(classFile, StandardOpenOption.READ)) {
+            signature = ClassFileReader.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+
+        putCachedClass(location, new CachedClass(lastModified, size, signature));
+        return new LoadedClass(Optional.of(signature), classFile, lastModified, size);
+    }
+
+    private LoadedClass loadJarEntry(Path jar, String classFileName) throws IOException {
+        var location = jar + "!/" + classFileName;
+        var attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        var cached = getCachedClass(location, lastModified, size);
+        if (cached.isPresent()) {
+            return new LoadedClass(cached, jar, lastModified, size);
+        }
+
+        ClassSignature signature;
+        try (var jarFile = new JarFile(jar.toFile())) {
+            try (var input = jarFile.getInputStream(jarFile.getJarEntry(classFileName))) {
+                signature = ClassFileReader.read(ByteBuffer.wrap(input.readAllBytes()));
+            }
+        }
+
+        putCachedClass(location, new CachedClass(lastModified, size, signature));
+        return new LoadedClass(Optional.of(signature), jar, lastModified, size);
+    }
+
+    private Set<String> getJarEntries(Path jar) throws IOException {
+        var attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        var entries = jarEntries.get(jar);
+        if (entries != null && entries.lastModified() == lastModified && entries.size() == attributes.size()) {
+            return entries.names();
+        }
+
+        Set<String> names = new HashSet<>();
+        try (var jarFile = new JarFile(jar.toFile())) {
+            jarFile.stream().forEach(entry -> names.add(entry.getName()));
+        }
+
+        jarEntries.put(jar, new JarEntries(lastModified, attributes.size(), names));
+        return names;
+    }
+
+    private synchronized Optional<ClassSignature> getCachedClass(String location, long lastModified, long size) {
+        if (cachedClasses == null) {
+            cachedClasses = readCacheFile();
+        }
+
+        var cached = cachedClasses.get(location);
+        if (cached == null || cached.lastModified != lastModified || cached.size != size) {
+            return Optional.empty();
+        }
+
+        return Optional.of(cached.signature);
+    }
+
+    private synchronized void putCachedClass(String location, CachedClass cachedClass) {
+        cachedClasses.put(location, cachedClass);
+        cacheChanged = true;
+    }
+
+    private Map<String, CachedClass> readCacheFile() {
+        Map<String, CachedClass> cached = new HashMap<>();
+
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+            return cached;
+        }
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (input.readInt() != CACHE_MAGIC || input.readInt() != CACHE_VERSION) {
+                return cached;
+            }
+
+            int classCount = input.readInt();
+            for (int i = 0; i < classCount; i++) {
+                var location = input.readUTF();
+                long lastModified = input.readLong();
+                long size = input.readLong();
+                var name = input.readUTF();
+                var superName = input.readBoolean() ? input.readUTF() : null;
+
+                int methodCount = input.readInt();
+                List<MethodSignature> methods = new ArrayList<>(methodCount);
+                for (int j = 0; j < methodCount; j++) {
+                    methods.add(new MethodSignature(input.readUTF(), input.readUTF(), input.readBoolean()));
+                }
+
+                cached.put(location, new CachedClass(lastModified, size, new ClassSignature(name, superName, methods)));
+            }
+        } catch (IOException e) {
+            // A corrupted cache is discarded, its classes are read again
+            cached.clear();
+        }
+
+        return cached;
+    }
+
+    /**
+     * Writes the cache to a temporary file and renames it, so that other processes never read a partial cache.
+     * Failures are ignored, the cache is only an accelerator.
+     */
+    private void writeCacheFile() {
+        if (cacheFile == null) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(cacheFile.getParent());
+
+            var tempFile = Files.createTempFile(cacheFile.getParent(), CACHE_FILE_PREFIX, ".tmp");
+            try {
+                try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    output.writeInt(CACHE_MAGIC);
+                    output.writeInt(CACHE_VERSION);
+                    output.writeInt(cachedClasses.size());
+
+                    for (var entry : cachedClasses.entrySet()) {
+                        var cached = entry.getValue();
+                        output.writeUTF(entry.getKey());
+                        output.writeLong(cached.lastModified);
+                        output.writeLong(cached.size);
+                        output.writeUTF(cached.signature.getName());
+                        output.writeBoolean(cached.signature.getSuperName() != null);
+                        if (cached.signature.getSuperName() != null) {
+                            output.writeUTF(cached.signature.getSuperName());
+                        }
+
+                        output.writeInt(cached.signature.getMethods().size());
+                        for (var method : cached.signature.getMethods()) {
+                            output.writeUTF(method.getName());
+                            output.writeUTF(method.getDescriptor());
+                            output.writeBoolean(method.isStatic());
+                        }
+                    }
+                }
+
+                move(tempFile, cacheFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            // The next compilation reads the classes again
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
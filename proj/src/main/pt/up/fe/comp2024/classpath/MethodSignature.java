@@ -0,0 +1,71 @@
+package pt.up.fe.comp2024.classpath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method of a compiled class: its name, JVM descriptor, e.g. '(II)I', and whether it is static.
+ */
+public class MethodSignature {
+
+    private final String name;
+    private final String descriptor;
+    private final boolean isStatic;
+
+    public MethodSignature(String name, String descriptor, boolean isStatic) {
+        this.name = name;
+        this.descriptor = descriptor;
+        this.isStatic = isStatic;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    /**
+     * @return the descriptor of each parameter, e.g. ['I', '[I', 'Ljava/lang/String;'] for '(I[ILjava/lang/String;)V'
+     */
+    public List<String> getParameterDescriptors() {
+        return parameterDescriptors(descriptor);
+    }
+
+    public String getReturnDescriptor() {
+        return returnDescriptor(descriptor);
+    }
+
+    static List<String> parameterDescriptors(String descriptor) {
+        List<String> parameters = new ArrayList<>();
+
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+            parameters.add(descriptor.substring(start, i));
+        }
+
+        return parameters;
+    }
+
+    static String returnDescriptor(String descriptor) {
+        return descriptor.substring(descriptor.indexOf(')') + 1);
+    }
+
+    @Override
+    public String toString() {
+        return (isStatic ? "static " : "") + name + descriptor;
+    }
+}
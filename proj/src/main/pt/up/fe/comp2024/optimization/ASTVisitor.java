@@ -3,22 +3,31 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.KindDispatch;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.function.BiFunction;
 
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 public class ASTVisitor extends AJmmVisitor<Void, Void> {
 
+    private final KindDispatch<Void, Void> dispatch = new KindDispatch<>();
+
     private final SymbolTable table;
 
     public ASTVisitor(SymbolTable table) {
         this.table = table;
     }
 
+    @Override
+    protected BiFunction<JmmNode, Void, Void> getVisit(JmmNode node) {
+        return dispatch.get(node, super::getVisit);
+    }
+
     @Override
     protected void buildVisitor() {
         addVisit(FUNCTION_CALL, this::visitFunctionCall);
@@ -32,7 +41,7 @@ public class ASTVisitor extends AJmmVisitor<Void, Void> {
         var funcName = node.get("func");
 
         // Check if function is local method, if not we don't change the AST
-        if (!table.getMethods().contains(funcName)) return null;
+        if (!JmmSymbolTable.of(table).hasMethod(funcName)) return null;
 
         // Get the function arguments
         var arguments = table.getParameters(funcName);
@@ -62,18 +71,14 @@ public class ASTVisitor extends AJmmVisitor<Void, Void> {
         }
 
         // Create ArrayInitCall node
-        JmmNodeImpl arrayInit = new JmmNodeImpl(ARRAY_INIT.toString());
-        arrayInit.setChildren(varArgs);
+        var arrayInit = new CompactJmmNode(ARRAY_INIT);
+        for (var arg : varArgs) {
+            arrayInit.add(arg);
+        }
 
         // Set ArrayInit Attributes
-        arrayInit.putObject("isArray", true);
-        arrayInit.putObject("numArrayArgs", numVarArgs);
-
-        // Set ArrayInit Hierarchy
-        Collection<String> hierarchy = new ArrayList<>();
-        hierarchy.add(ARRAY_INIT.toString());
-        hierarchy.add("Expr");
-        arrayInit.setHierarchy(hierarchy);
+        arrayInit.setArray(true);
+        arrayInit.setNumArrayArgs(numVarArgs);
 
         node.add(arrayInit);
 
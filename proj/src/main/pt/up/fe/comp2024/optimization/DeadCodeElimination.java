@@ -0,0 +1,132 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the statements of a method that can never run: the branch of an if whose condition is a literal that is not
+ * taken, a while whose condition is false, and the statements after a return. Blocks left inside other blocks are
+ * flattened, since Java-- declares every local at the start of the method.
+ */
+public class DeadCodeElimination {
+
+    private boolean changed;
+
+    /**
+     * @return true if a statement was removed
+     */
+    public boolean run(JmmNode methodDecl) {
+        changed = false;
+        simplifyBlock(methodDecl);
+        return changed;
+    }
+
+    /**
+     * Simplifies the statements of a method or of a block, keeping the other children where they are.
+     */
+    private void simplifyBlock(JmmNode block) {
+        List<JmmNode> children = new ArrayList<>();
+        boolean returned = false;
+        boolean blockChanged = false;
+
+        for (int i = 0; i < block.getNumChildren(); i++) {
+            var child = block.getChild(i);
+            if (!Kind.of(child).isStmt()) {
+                children.add(child);
+                continue;
+            }
+
+            if (returned) {
+                blockChanged = true;
+                continue;
+            }
+
+            var replacement = simplify(child);
+            if (replacement.size() != 1 || replacement.get(0) != child) {
+                blockChanged = true;
+            }
+            for (var stmt : replacement) {
+                children.add(stmt);
+                returned |= Kind.RETURN_STMT.check(stmt);
+            }
+        }
+
+        if (blockChanged) {
+            changed = true;
+            block.setChildren(children);
+        }
+    }
+
+    /**
+     * @return the statements that replace the given one, which can be none
+     */
+    private List<JmmNode> simplify(JmmNode stmt) {
+        switch (Kind.of(stmt)) {
+            case IF_STMT -> {
+                var condition = stmt.getChild(0);
+                if (Kind.BOOL_LITERAL.check(condition)) {
+                    return simplify(stmt.getChild(getBoolValue(condition) ? 1 : 2));
+                }
+
+                simplifyChild(stmt, 1);
+                simplifyChild(stmt, 2);
+                return List.of(stmt);
+            }
+            case WHILE_STMT -> {
+                var condition = stmt.getChild(0);
+                if (Kind.BOOL_LITERAL.check(condition) && !getBoolValue(condition)) {
+                    return List.of();
+                }
+
+                simplifyChild(stmt, 1);
+                return List.of(stmt);
+            }
+            case MULT_STMT -> {
+                simplifyBlock(stmt);
+                return stmt.getChildren();
+            }
+            default -> {
+                return List.of(stmt);
+            }
+        }
+    }
+
+    /**
+     * Simplifies a statement that must stay a single one, such as the body of a while.
+     */
+    private void simplifyChild(JmmNode parent, int index) {
+        var stmt = parent.getChild(index);
+        if (Kind.MULT_STMT.check(stmt)) {
+            simplifyBlock(stmt);
+            return;
+        }
+
+        var replacement = simplify(stmt);
+        if (replacement.size() == 1 && replacement.get(0) == stmt) {
+            return;
+        }
+
+        // Detached first, since setChild swaps a node that still has a parent with the one it replaces
+        replacement.forEach(JmmNode::detach);
+
+        JmmNode newStmt;
+        if (replacement.size() == 1) {
+            newStmt = replacement.get(0);
+        } else {
+            newStmt = new CompactJmmNode(Kind.MULT_STMT);
+            replacement.forEach(newStmt::add);
+        }
+        parent.setChild(newStmt, index);
+        changed = true;
+    }
+
+    private static boolean getBoolValue(JmmNode literal) {
+        return literal instanceof CompactJmmNode compactNode
+                ? compactNode.getBoolValue()
+                : Boolean.parseBoolean(literal.get("value"));
+    }
+}
@@ -0,0 +1,146 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dominators of the instructions of a method, from the control-flow graph the 'cfg' pass built: an instruction
+ * dominates another if every path from the start of the method to the other goes through it.
+ */
+public class Dominators {
+
+    private final List<Instruction> instructions;
+    private final Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+    private final List<List<Integer>> successors = new ArrayList<>();
+    private final List<List<Integer>> predecessors = new ArrayList<>();
+    private final BitSet reachable = new BitSet();
+    private final BitSet[] dominators;
+
+    public Dominators(Method method) {
+        this.instructions = new ArrayList<>(method.getInstructions());
+
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+            successors.add(new ArrayList<>());
+            predecessors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < instructions.size(); i++) {
+            // The graph also goes from a return to the next instruction, which only a jump can reach
+            if (instructions.get(i).getInstType() == InstructionType.RETURN) {
+                continue;
+            }
+            for (var successor : instructions.get(i).getSuccessors()) {
+                var index = successor instanceof Instruction instruction ? indexes.get(instruction) : null;
+                if (index != null) {
+                    successors.get(i).add(index);
+                    predecessors.get(index).add(i);
+                }
+            }
+        }
+
+        findReachable();
+        dominators = findDominators();
+    }
+
+    private void findReachable() {
+        if (instructions.isEmpty()) {
+            return;
+        }
+
+        List<Integer> worklist = new ArrayList<>(List.of(0));
+        reachable.set(0);
+        while (!worklist.isEmpty()) {
+            int node = worklist.remove(worklist.size() - 1);
+            for (int successor : successors.get(node)) {
+                if (!reachable.get(successor)) {
+                    reachable.set(successor);
+                    worklist.add(successor);
+                }
+            }
+        }
+    }
+
+    private BitSet[] findDominators() {
+        var dominators = new BitSet[instructions.size()];
+        for (int i = 0; i < dominators.length; i++) {
+            dominators[i] = new BitSet();
+            if (i == 0) {
+                dominators[i].set(0);
+            } else if (reachable.get(i)) {
+                dominators[i].set(0, dominators.length);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < dominators.length; i++) {
+                if (!reachable.get(i)) {
+                    continue;
+                }
+
+                var newDominators = new BitSet();
+                newDominators.set(0, dominators.length);
+                for (int predecessor : predecessors.get(i)) {
+                    if (reachable.get(predecessor)) {
+                        newDominators.and(dominators[predecessor]);
+                    }
+                }
+                newDominators.set(i);
+
+                if (!newDominators.equals(dominators[i])) {
+                    dominators[i] = newDominators;
+                    changed = true;
+                }
+            }
+        }
+
+        return dominators;
+    }
+
+    /**
+     * @return the instructions of the method when the dominators were computed
+     */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the position of the instruction in {@link #getInstructions()}
+     */
+    public int indexOf(Instruction instruction) {
+        return indexes.get(instruction);
+    }
+
+    /**
+     * @return the positions of the instructions that can run right after the given one
+     */
+    public List<Integer> getSuccessors(int index) {
+        return successors.get(index);
+    }
+
+    /**
+     * @return the positions of the instructions that can run right before the given one
+     */
+    public List<Integer> getPredecessors(int index) {
+        return predecessors.get(index);
+    }
+
+    public boolean isReachable(int index) {
+        return reachable.get(index);
+    }
+
+    /**
+     * @return true if every path to the second instruction goes through the first, which dominates itself
+     */
+    public boolean dominates(int dominator, int index) {
+        return dominators[index].get(dominator);
+    }
+}
@@ -0,0 +1,245 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the computations of a value a method already has in a variable by that variable, e.g. the second 'a[i]'
+ * of 'a[i] + a[i]', using the control-flow graphs the 'cfg' pass built.
+ * <p>
+ * OLLIR is not in SSA form, so two computations have the same value number when they apply the same operation to the
+ * same variables and literals, and nothing assigns those variables, or the variable of the first computation, on the
+ * paths between them. The first computation must dominate the second one, and the closest one is taken, which inside a
+ * straight run of instructions is the local numbering. Array loads are also invalidated by stores to any array and by
+ * calls, and field reads by field writes and calls.
+ */
+public class GlobalValueNumbering {
+
+    /**
+     * A computation in an assignment, with what can change its value.
+     */
+    private record Value(String key, Set<String> operands, boolean readsArrays, boolean readsFields) {
+    }
+
+    private static final Set<OperationType> COMMUTATIVE = Set.of(OperationType.ADD, OperationType.MUL,
+            OperationType.AND, OperationType.OR, OperationType.XOR, OperationType.EQ, OperationType.NEQ,
+            OperationType.ANDB, OperationType.ORB);
+
+    private final ClassUnit ollirClass;
+
+    private int replaced;
+
+    public GlobalValueNumbering(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * @return true if a computation was replaced
+     */
+    public boolean run() {
+        replaced = 0;
+
+        for (var method : ollirClass.getMethods()) {
+            if (numberValues(method)) {
+                UnreachableCodeElimination.rebuildCFG(method);
+            }
+        }
+
+        return replaced > 0;
+    }
+
+    /**
+     * @return the number of computations replaced by the last run
+     */
+    public int getReplaced() {
+        return replaced;
+    }
+
+    private boolean numberValues(Method method) {
+        var dominators = new Dominators(method);
+        var instructions = dominators.getInstructions();
+        Map<String, List<Integer>> computations = new HashMap<>();
+        boolean changed = false;
+
+        for (int index = 0; index < instructions.size(); index++) {
+            if (!(instructions.get(index) instanceof AssignInstruction assign) || !dominators.isReachable(index)) {
+                continue;
+            }
+
+            var value = getValue(assign.getRhs());
+            if (value == null) {
+                continue;
+            }
+
+            var previous = computations.computeIfAbsent(value.key(), key -> new ArrayList<>());
+            var available = findAvailable(dominators, previous, index, value);
+            if (available != null) {
+                replace(method, assign, available);
+                replaced++;
+                changed = true;
+            }
+
+            // The variable must not be an operand, or the value changes right after it is computed
+            var dest = ((Operand) assign.getDest()).getName();
+            if (!(assign.getDest() instanceof ArrayOperand) && !value.operands().contains(dest)) {
+                previous.add(index);
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the assignment closest to the given one that computes the same value and still has it there, or null
+     */
+    private static AssignInstruction findAvailable(Dominators dominators, List<Integer> previous, int index,
+                                                   Value value) {
+        for (int i = previous.size() - 1; i >= 0; i--) {
+            int candidate = previous.get(i);
+            if (dominators.dominates(candidate, index) && !isKilledBetween(dominators, candidate, index, value)) {
+                return (AssignInstruction) dominators.getInstructions().get(candidate);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if an instruction on a path from the first instruction to the second, not including the first, can
+     * change the value or the variable the first one assigns
+     */
+    private static boolean isKilledBetween(Dominators dominators, int from, int to, Value value) {
+        var fromDest = OllirInstructions.getAssigned(dominators.getInstructions().get(from)).orElseThrow();
+        var visited = new BitSet();
+        List<Integer> worklist = new ArrayList<>(dominators.getPredecessors(to));
+
+        while (!worklist.isEmpty()) {
+            int node = worklist.remove(worklist.size() - 1);
+            if (node == from || visited.get(node)) {
+                continue;
+            }
+            visited.set(node);
+
+            var instruction = dominators.getInstructions().get(node);
+            var assigned = OllirInstructions.getAssigned(instruction).orElse(null);
+            if (fromDest.equals(assigned) || value.operands().contains(assigned)) {
+                return true;
+            }
+            if (value.readsArrays() && (OllirInstructions.writesArray(instruction)
+                    || OllirInstructions.callsMethod(instruction))) {
+                return true;
+            }
+            if (value.readsFields() && (instruction.getInstType() == InstructionType.PUTFIELD
+                    || OllirInstructions.callsMethod(instruction))) {
+                return true;
+            }
+
+            worklist.addAll(dominators.getPredecessors(node));
+        }
+
+        return false;
+    }
+
+    /**
+     * Makes the assignment copy the variable of the other one, keeping its labels.
+     */
+    private static void replace(Method method, AssignInstruction assign, AssignInstruction available) {
+        var availableDest = (Operand) available.getDest();
+        var copy = new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                new SingleOpInstruction(new Operand(availableDest.getName(), availableDest.getType())));
+
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) == assign) {
+                instructions.set(i, copy);
+            }
+        }
+        method.getLabels().replaceAll((label, instruction) -> instruction == assign ? copy : instruction);
+    }
+
+    /**
+     * @return the value the right side of an assignment computes, or null if it is not worth numbering or can change
+     * between two runs with the same operands
+     */
+    private static Value getValue(Instruction rhs) {
+        var operands = OllirInstructions.getUses(rhs);
+        boolean readsArrays = rhs.getDescendantsStream().anyMatch(ArrayOperand.class::isInstance);
+
+        return switch (rhs.getInstType()) {
+            case BINARYOPER -> {
+                var binary = (BinaryOpInstruction) rhs;
+                var opType = binary.getOperation().getOpType();
+                var left = getKey(binary.getLeftOperand());
+                var right = getKey(binary.getRightOperand());
+                if (COMMUTATIVE.contains(opType) && left.compareTo(right) > 0) {
+                    var swap = left;
+                    left = right;
+                    right = swap;
+                }
+                yield new Value(opType + " " + left + " " + right, operands, readsArrays, false);
+            }
+            case UNARYOPER -> {
+                var unary = (UnaryOpInstruction) rhs;
+                yield new Value(unary.getOperation().getOpType() + " " + getKey(unary.getOperand()), operands,
+                        readsArrays, false);
+            }
+            case NOPER -> {
+                // Copies and literals are already as cheap as they get
+                if (!(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand array)) {
+                    yield null;
+                }
+                yield new Value("load " + getKey(array), operands, true, false);
+            }
+            case GETFIELD -> {
+                var getField = (GetFieldInstruction) rhs;
+                yield new Value("getfield " + getKey(getField.getObject()) + " " + getField.getField().getName(),
+                        operands, false, true);
+            }
+            case CALL -> {
+                var call = (CallInstruction) rhs;
+                if (call.getInvocationType() != CallType.arraylength) {
+                    yield null;
+                }
+                yield new Value("arraylength " + getKey(call.getCaller()), operands, false, false);
+            }
+            default -> null;
+        };
+    }
+
+    private static String getKey(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + "." + literal.getType();
+        }
+        if (element instanceof ArrayOperand array) {
+            List<String> indexes = new ArrayList<>();
+            array.getIndexOperands().forEach(index -> indexes.add(getKey(index)));
+            return array.getName() + indexes;
+        }
+        if (element instanceof Operand operand) {
+            return operand.getName();
+        }
+
+        throw new RuntimeException("Unexpected OLLIR element: " + element);
+    }
+}
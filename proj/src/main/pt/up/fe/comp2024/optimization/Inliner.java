@@ -0,0 +1,450 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the calls to small methods of the class by their statements.
+ * <p>
+ * A method can be inlined if it is not static, its statements have at most {@link #MAX_CALLEE_SIZE} nodes and its
+ * only return is its last statement. Its parameters and locals become new locals of the caller, named after them with
+ * the number of the inlined call, e.g. 'inlined0_x', the arguments are assigned to the parameters and the call is
+ * replaced by a new local with the value returned, e.g. 'inlined0_result'. Java-- has no private or final methods, so
+ * the class is taken as not extended: calls on 'this' are inlined, and calls on a local of the caller that is only
+ * assigned objects of the class created with 'new'.
+ * <p>
+ * The statements of the method are put before the statement of the call, so everything the statement evaluates
+ * before the call must not depend on them: only literals, locals and the operators on them that cannot throw.
+ * Calls in the condition of a while or in the right side of a '&&' are not inlined. Calls in the inlined statements
+ * are inlined again, up to {@link #MAX_DEPTH} levels, which also bounds recursion through other methods.
+ */
+public class Inliner {
+
+    // Nodes in the statements of a method that is inlined
+    private static final int MAX_CALLEE_SIZE = 40;
+    // Methods inlined inside the statements of an inlined method
+    private static final int MAX_DEPTH = 3;
+    // Nodes inlined in a single method, so that it does not grow without bound
+    private static final int MAX_INLINED_SIZE = 2000;
+
+    private final JmmSymbolTable table;
+    private final Map<String, JmmNode> methods = new HashMap<>();
+    private final Map<String, Integer> sizes = new HashMap<>();
+
+    // The method whose calls are inlined
+    private JmmNode caller;
+    private String callerName;
+    private Set<String> usedNames;
+    private int inlinedSize;
+    private int inlinedCalls;
+
+    private boolean changed;
+
+    public Inliner(JmmNode classDecl, JmmSymbolTable table) {
+        this.table = table;
+
+        for (var methodDecl : classDecl.getChildren(Kind.METHOD_DECL)) {
+            var name = methodDecl.get("name");
+            // A name declared twice is an error the analysis reports, so neither is inlined
+            if (methods.putIfAbsent(name, methodDecl) != null) {
+                methods.put(name, null);
+            }
+        }
+    }
+
+    /**
+     * @return true if a call of the method was inlined
+     */
+    public boolean run(JmmNode methodDecl) {
+        caller = methodDecl;
+        callerName = methodDecl.get("name");
+        usedNames = new HashSet<>();
+        table.getFields().forEach(field -> usedNames.add(field.getName()));
+        table.getParameters(callerName).forEach(param -> usedNames.add(param.getName()));
+        table.getLocalVariables(callerName).forEach(local -> usedNames.add(local.getName()));
+        inlinedSize = 0;
+        inlinedCalls = 0;
+        changed = false;
+
+        processList(methodDecl, 0);
+
+        return changed;
+    }
+
+    private void processList(JmmNode list, int depth) {
+        // The statements inlined before each one are already processed
+        for (var stmt : list.getChildren()) {
+            if (Kind.of(stmt).isStmt()) {
+                processStmt(stmt, depth);
+            }
+        }
+    }
+
+    private void processStmt(JmmNode stmt, int depth) {
+        switch (Kind.of(stmt)) {
+            case ASSIGN_STMT, EXPR_STMT, RETURN_STMT -> {
+                JmmNode call;
+                while (stmt.getParent() != null && (call = findInlinableCall(stmt, depth)) != null) {
+                    inline(call, stmt, depth);
+                }
+            }
+            case IF_STMT -> {
+                JmmNode call;
+                while ((call = findInlinableCall(stmt, depth)) != null) {
+                    inline(call, stmt, depth);
+                }
+                processBranch(stmt, 1, depth);
+                processBranch(stmt, 2, depth);
+            }
+            case WHILE_STMT -> processBranch(stmt, 1, depth);
+            case MULT_STMT -> processList(stmt, depth);
+            default -> throw new RuntimeException("Unexpected statement '" + stmt.getKind() + "'");
+        }
+    }
+
+    private void processBranch(JmmNode stmt, int index, int depth) {
+        processStmt(stmt.getChild(index), depth);
+    }
+
+    /**
+     * @return the first call the statement evaluates that can be inlined before it, or null if there is none
+     */
+    private JmmNode findInlinableCall(JmmNode stmt, int depth) {
+        List<JmmNode> evaluated = new ArrayList<>();
+        switch (Kind.of(stmt)) {
+            case ASSIGN_STMT -> {
+                // The array and the index of the element are evaluated before the value
+                var lhs = stmt.getChild(0);
+                if (!Kind.VAR.check(lhs)) {
+                    evaluated.addAll(lhs.getChildren());
+                }
+                evaluated.add(stmt.getChild(1));
+            }
+            // The condition of an if
+            default -> evaluated.add(stmt.getChild(0));
+        }
+
+        var search = new CallSearch(depth);
+        for (var expr : evaluated) {
+            var call = search.find(expr);
+            if (call != null) {
+                return call;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Goes through an expression in the order it is evaluated, until a call that can be inlined or something that
+     * the statements of a method could change.
+     */
+    private class CallSearch {
+        private final int depth;
+        private boolean impure;
+
+        CallSearch(int depth) {
+            this.depth = depth;
+        }
+
+        JmmNode find(JmmNode expr) {
+            boolean impureBefore = impure;
+
+            if (Kind.BINARY_EXPR.check(expr) && (expr.get("op").equals("&&") || expr.get("op").equals("||"))) {
+                var call = find(expr.getChild(0));
+                if (call != null) {
+                    return call;
+                }
+                // The right side is only evaluated sometimes, so its calls stay where they are
+                impure |= !isPure(expr.getChild(1));
+                return null;
+            }
+
+            for (int i = 0; i < expr.getNumChildren(); i++) {
+                var call = find(expr.getChild(i));
+                if (call != null) {
+                    return call;
+                }
+            }
+
+            if (!impureBefore && isInlinable(expr, depth)) {
+                return expr;
+            }
+
+            impure |= !isPureNode(expr);
+            return null;
+        }
+
+        private boolean isPure(JmmNode expr) {
+            return expr.getDescendantsAndSelfStream().allMatch(this::isPureNode);
+        }
+
+        /**
+         * @return true if the node cannot throw, and gives the same value before and after other statements
+         */
+        private boolean isPureNode(JmmNode expr) {
+            return switch (Kind.of(expr)) {
+                case INT_LITERAL, BOOL_LITERAL, THIS, PAREN_EXPR, UNARY_EXPR, ARRAY_INIT -> true;
+                case BINARY_EXPR -> !expr.get("op").equals("/");
+                // Fields can change, imported classes cannot
+                case VAR -> !isField(expr.get("name"));
+                default -> false;
+            };
+        }
+    }
+
+    private boolean isField(String name) {
+        var symbol = table.resolve(callerName, name);
+        return symbol != null && symbol.scope() == JmmSymbolTable.Scope.FIELD;
+    }
+
+    private boolean isCallerVariable(String name) {
+        var symbol = table.resolve(callerName, name);
+        return symbol != null && symbol.scope() != JmmSymbolTable.Scope.FIELD;
+    }
+
+    private boolean isInlinable(JmmNode call, int depth) {
+        if (!Kind.FUNCTION_CALL.check(call) || depth >= MAX_DEPTH) {
+            return false;
+        }
+
+        var name = call.get("func");
+        var callee = methods.get(name);
+        if (callee == null || name.equals(callerName) || NodeUtils.getBooleanAttribute(callee, "isStatic", "false")
+                || !isKnownObject(call.getChild(0))) {
+            return false;
+        }
+        // The varargs pass already put the arguments of a varargs method in an array
+        if (call.getNumChildren() - 1 != callee.getChildren(Kind.PARAM).size()) {
+            return false;
+        }
+
+        var size = sizes.computeIfAbsent(name, method -> getSize(callee));
+        if (size > MAX_CALLEE_SIZE || inlinedSize + size > MAX_INLINED_SIZE) {
+            return false;
+        }
+
+        // The statements of the callee must mean the same in the caller
+        boolean onThis = Kind.THIS.check(call.getChild(0));
+        for (var var : callee.getDescendants(Kind.VAR)) {
+            var symbol = table.resolve(name, var.get("name"));
+            boolean isCalleeVariable = symbol != null && symbol.scope() != JmmSymbolTable.Scope.FIELD;
+            if (isCalleeVariable) {
+                continue;
+            }
+            // Fields of another object, or hidden by a variable of the caller
+            if (symbol != null && !onThis || isCallerVariable(var.get("name"))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of nodes of the statements of the method, or more than the maximum if it cannot be inlined
+     */
+    private static int getSize(JmmNode methodDecl) {
+        int size = 0;
+        int returns = 0;
+        var children = methodDecl.getChildren();
+
+        for (var child : children) {
+            if (Kind.of(child).isStmt()) {
+                size += (int) child.getDescendantsAndSelfStream().count();
+                returns += (int) child.getDescendantsAndSelfStream().filter(Kind.RETURN_STMT::check).count();
+            }
+        }
+
+        var last = children.get(children.size() - 1);
+        boolean returnsAtEnd = returns == 0 || returns == 1 && Kind.RETURN_STMT.check(last);
+
+        return returnsAtEnd ? size : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the object is 'this', or a local only assigned new objects of the class
+     */
+    private boolean isKnownObject(JmmNode object) {
+        if (Kind.THIS.check(object)) {
+            return true;
+        }
+        if (!Kind.VAR.check(object)) {
+            return false;
+        }
+
+        var name = object.get("name");
+        var symbol = table.resolve(callerName, name);
+        if (symbol == null || symbol.scope() != JmmSymbolTable.Scope.LOCAL) {
+            return false;
+        }
+
+        return caller.getDescendants(Kind.ASSIGN_STMT).stream()
+                .filter(assignStmt -> Kind.VAR.check(assignStmt.getChild(0))
+                        && assignStmt.getChild(0).get("name").equals(name))
+                .allMatch(assignStmt -> Kind.NEW_CLASS_OBJ.check(assignStmt.getChild(1))
+                        && assignStmt.getChild(1).get("name").equals(table.getClassName()));
+    }
+
+    private void inline(JmmNode call, JmmNode stmt, int depth) {
+        var calleeName = call.get("func");
+        var callee = methods.get(calleeName);
+        var object = call.getChild(0);
+        inlinedSize += sizes.get(calleeName);
+        var prefix = "inlined" + inlinedCalls++ + "_";
+        changed = true;
+
+        // The statements are processed on their own, and then put before the one of the call
+        var inlined = new CompactJmmNode(Kind.MULT_STMT);
+
+        Map<String, String> renamed = new HashMap<>();
+        List<JmmNode> arguments = new ArrayList<>();
+        for (int i = 1; i < call.getNumChildren(); i++) {
+            arguments.add(call.getChild(i));
+        }
+
+        int param = 0;
+        JmmNode returned = null;
+        for (var child : callee.getChildren()) {
+            switch (Kind.of(child)) {
+                case PARAM -> {
+                    var local = addLocal(prefix + child.get("name"), child.getChild(0));
+                    renamed.put(child.get("name"), local);
+                    inlined.add(newAssignStmt(local, arguments.get(param++).detach()));
+                }
+                case VAR_DECL -> renamed.put(child.get("name"),
+                        addLocal(prefix + child.get("name"), child.getChild(0)));
+                case RETURN_STMT -> returned = child.getChild(0);
+                case TYPE -> {
+                }
+                default -> inlined.add(rename(child.copy(), renamed, object));
+            }
+        }
+
+        // A call that is a statement on its own is replaced by the statements of the method
+        boolean isStmt = call.getParent() == stmt && Kind.EXPR_STMT.check(stmt);
+        if (returned != null) {
+            var result = addLocal(prefix + "result", callee.getChild(0));
+            inlined.add(newAssignStmt(result, rename(returned.copy(), renamed, object)));
+            if (!isStmt) {
+                call.getParent().setChild(newVar(result), call.getIndexOfSelf());
+            }
+        }
+
+        processList(inlined, depth + 1);
+
+        var statements = inlined.getChildren();
+        statements.forEach(JmmNode::detach);
+        insertBefore(stmt, statements);
+
+        if (isStmt) {
+            stmt.detach();
+        }
+    }
+
+    private JmmNode rename(JmmNode node, Map<String, String> renamed, JmmNode object) {
+        if (Kind.THIS.check(node)) {
+            return object.copy();
+        }
+        if (Kind.VAR.check(node) && renamed.containsKey(node.get("name"))) {
+            node.put("name", renamed.get(node.get("name")));
+        }
+
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            var child = node.getChild(i);
+            var newChild = rename(child, renamed, object);
+            if (newChild != child) {
+                node.setChild(newChild, i);
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Declares a new local in the caller, with the given type and a name it does not use yet.
+     *
+     * @return the name of the local
+     */
+    private String addLocal(String baseName, JmmNode typeNode) {
+        // An imported class would be hidden by a local with its name
+        var imports = table.getImportIndex();
+        var name = baseName;
+        for (int i = 0; imports.isImported(name) || !usedNames.add(name); i++) {
+            name = baseName + "_" + i;
+        }
+
+        // A varargs parameter is an array in the caller
+        var localType = (CompactJmmNode) typeNode.copy();
+        localType.setVarargs(false);
+
+        var varDecl = new CompactJmmNode(Kind.VAR_DECL);
+        varDecl.put("name", name);
+        varDecl.add(localType);
+        caller.add(varDecl, getFirstStmtIndex(caller));
+
+        var type = TypeUtils.getType(localType);
+        type.putObject("isVarargs", false);
+        table.addLocalVariable(callerName, new Symbol(new Type(type.getName(), type.isArray()), name));
+
+        return name;
+    }
+
+    private static int getFirstStmtIndex(JmmNode methodDecl) {
+        for (int i = 0; i < methodDecl.getNumChildren(); i++) {
+            if (Kind.of(methodDecl.getChild(i)).isStmt()) {
+                return i;
+            }
+        }
+
+        return methodDecl.getNumChildren();
+    }
+
+    /**
+     * Puts the statements before the given one, in a new block if it is the only statement of an if or a while.
+     */
+    private static void insertBefore(JmmNode stmt, List<JmmNode> statements) {
+        var parent = stmt.getParent();
+        int index = stmt.getIndexOfSelf();
+
+        if (!Kind.check(parent, Kind.METHOD_DECL, Kind.MULT_STMT)) {
+            var block = new CompactJmmNode(Kind.MULT_STMT);
+            parent.setChild(block, index);
+            block.add(stmt);
+            parent = block;
+            index = 0;
+        }
+
+        for (var newStmt : statements) {
+            parent.add(newStmt, index++);
+        }
+    }
+
+    private static JmmNode newVar(String name) {
+        var var = new CompactJmmNode(Kind.VAR);
+        var.put("name", name);
+        var.setNumArgs(0);
+        var.setNumArrayArgs(0);
+        return var;
+    }
+
+    private static JmmNode newAssignStmt(String name, JmmNode value) {
+        var assignStmt = new CompactJmmNode(Kind.ASSIGN_STMT);
+        assignStmt.add(newVar(name));
+        assignStmt.add(value);
+        return assignStmt;
+    }
+}
@@ -3,78 +3,109 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.CompilerConfig;
-
+import pt.up.fe.comp2024.optimization.passes.ConstantsPass;
+import pt.up.fe.comp2024.optimization.passes.ControlFlowPass;
+import pt.up.fe.comp2024.optimization.passes.DeadCodePass;
+import pt.up.fe.comp2024.optimization.passes.GlobalValueNumberingPass;
+import pt.up.fe.comp2024.optimization.passes.InliningPass;
+import pt.up.fe.comp2024.optimization.passes.LoopInvariantCodeMotionPass;
+import pt.up.fe.comp2024.optimization.passes.OptimizationLevel;
+import pt.up.fe.comp2024.optimization.passes.PassManager;
+import pt.up.fe.comp2024.optimization.passes.RegisterAllocationPass;
+import pt.up.fe.comp2024.optimization.passes.UnreachableCodePass;
+import pt.up.fe.comp2024.optimization.passes.VarargsPass;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
+    private final Telemetry telemetry;
+
+    public JmmOptimizationImpl() {
+        this(Telemetry.disabled());
+    }
+
+    public JmmOptimizationImpl(Telemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
         var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        var ollirCode = telemetry.measure("ollir", () -> visitor.visit(semanticsResult.getRootNode()));
 
         return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
-
-        // Get the register allocation value from the config
-        int maxRegisters = CompilerConfig.getRegisterAllocation(ollirResult.getConfig());
-
-        // If it's -1, return the result without optimizing
-        if (maxRegisters == -1) return ollirResult;
-
-        // Otherwise, optimize the result
-        int ogMaxReg = maxRegisters;
-        boolean success;
-        do {
-            ollirResult.getOllirClass().buildCFGs();
-            var CFG = ollirResult.getOllirClass();
-
-            var regAlloc = new RegAlloc(CFG, maxRegisters);
-            success = regAlloc.allocateRegisters();
-
-            maxRegisters++;
-        } while (!success);
-        maxRegisters--;
-
-        //If we had to increment the max register
-        if (maxRegisters!=ogMaxReg) {
-            var message = String.format("%s register(s) is not enough. Cannot allocate with less than %s", ogMaxReg, maxRegisters);
-            Report error = Report.newError(
-                    Stage.OPTIMIZATION,
-                    0,
-                    0,
-                    message,
-                    null);
-            ollirResult.getReports().add(error);
-        }
+        checkPassOptions(ollirResult.getConfig());
+        ollirPasses(telemetry).run(ollirResult, ollirResult.getConfig());
         return ollirResult;
     }
 
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+        checkPassOptions(semanticsResult.getConfig());
+        astPasses(telemetry).run(semanticsResult, semanticsResult.getConfig());
+        return semanticsResult;
+    }
 
-        var visitor = new ASTVisitor(semanticsResult.getSymbolTable());
-        visitor.visit(semanticsResult.getRootNode());
-
-        if (CompilerConfig.getOptimize(semanticsResult.getConfig())) {
-            while (true) {
-                var constPropagationVisitor = new ASTConstPropagationVisitor();
-                constPropagationVisitor.visit(semanticsResult.getRootNode());
-
-                var constFoldingVisitor = new ASTConstFoldingVisitor();
-                constFoldingVisitor.visit(semanticsResult.getRootNode());
-
-                // If none of the visitors made changes we end the loop
-                if (!constPropagationVisitor.madeChanges() && !constFoldingVisitor.madeChanges()) break;
+    /**
+     * Fails if '-p' names a pass that is neither an AST nor an OLLIR pass.
+     */
+    private void checkPassOptions(Map<String, String> config) {
+        List<String> known = new ArrayList<>();
+        astPasses(telemetry).getPasses().forEach(registration -> known.add(registration.getPass().getName()));
+        ollirPasses(telemetry).getPasses().forEach(registration -> known.add(registration.getPass().getName()));
+
+        for (var pass : CompilerConfig.getPassOptions(config).keySet()) {
+            if (!known.contains(pass)) {
+                throw new RuntimeException("Unknown optimization pass '" + pass + "' in '-p', expected one of " + known);
             }
         }
-        return semanticsResult;
+    }
+
+    /**
+     * @return the passes over the AST, run before the OLLIR generation
+     */
+    public static PassManager<JmmSemanticsResult> astPasses(Telemetry telemetry) {
+        var passes = new PassManager<JmmSemanticsResult>(telemetry);
+
+        passes.register(new VarargsPass())
+                .atLevels(OptimizationLevel.values());
+        passes.register(new InliningPass(), VarargsPass.NAME)
+                .atLevels(OptimizationLevel.O2);
+        passes.register(new ConstantsPass())
+                .atLevels(OptimizationLevel.O1, OptimizationLevel.O2, OptimizationLevel.Os);
+        passes.register(new DeadCodePass())
+                .atLevels(OptimizationLevel.O1, OptimizationLevel.O2, OptimizationLevel.Os);
+
+        return passes;
+    }
+
+    /**
+     * @return the passes over the OLLIR, run before the backend
+     */
+    public static PassManager<OllirResult> ollirPasses(Telemetry telemetry) {
+        var passes = new PassManager<OllirResult>(telemetry);
+
+        passes.register(new ControlFlowPass());
+        passes.register(new UnreachableCodePass(), ControlFlowPass.NAME)
+                .atLevels(OptimizationLevel.O1, OptimizationLevel.O2, OptimizationLevel.Os);
+        passes.register(new GlobalValueNumberingPass(), ControlFlowPass.NAME)
+                .atLevels(OptimizationLevel.O2, OptimizationLevel.Os);
+        passes.register(new LoopInvariantCodeMotionPass(), ControlFlowPass.NAME)
+                .atLevels(OptimizationLevel.O2);
+        passes.register(new RegisterAllocationPass(telemetry), ControlFlowPass.NAME)
+                .atLevels(OptimizationLevel.O2, OptimizationLevel.Os);
+
+        return passes;
     }
 }
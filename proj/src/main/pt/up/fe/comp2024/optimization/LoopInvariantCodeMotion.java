@@ -0,0 +1,325 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Moves the instructions that compute the same value on every iteration of a loop to right before the loop, e.g. the
+ * 'arraylength' of the condition of a while, using the control-flow graphs the 'cfg' pass built.
+ * <p>
+ * The loops are the natural loops of the graph, the innermost first. An assignment is moved if its value only depends
+ * on literals, on variables not assigned in the loop and on assignments already moved, it cannot throw, and it is the
+ * only assignment of its variable in the loop, which is only used after it in the loop. Since the loop may run no
+ * iteration, the moved instructions must not throw, so divisions and array accesses stay, and field reads only move
+ * out of loops without calls or field writes. The length of a null array throws too, so it only moves if the loop
+ * already reads the length of that array every time it is entered, before anything else it does can be seen. The
+ * graphs are built again after each loop.
+ */
+public class LoopInvariantCodeMotion {
+
+    /**
+     * The instructions of a loop, with the first one of the loop, which every iteration runs.
+     */
+    private record Loop(int header, BitSet body) {
+    }
+
+    private final ClassUnit ollirClass;
+
+    // Instructions moved out of each loop, by the method and the label of the loop
+    private final Map<String, Integer> hoisted = new LinkedHashMap<>();
+
+    public LoopInvariantCodeMotion(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * @return true if an instruction was moved
+     */
+    public boolean run() {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            while (hoistFromLoop(method)) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the number of instructions moved out of each loop, by the method and the label of the loop, e.g.
+     * 'sum/whileCond0'
+     */
+    public Map<String, Integer> getHoisted() {
+        return Collections.unmodifiableMap(hoisted);
+    }
+
+    /**
+     * Moves the invariant instructions of the innermost loop that has them.
+     *
+     * @return true if an instruction was moved
+     */
+    private boolean hoistFromLoop(Method method) {
+        var dominators = new Dominators(method);
+
+        for (var loop : findLoops(dominators)) {
+            var invariant = findInvariant(method, dominators, loop);
+            if (!invariant.isEmpty() && insertPreheader(method, dominators, loop, invariant)) {
+                UnreachableCodeElimination.rebuildCFG(method);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the natural loops of the method, the ones with fewer instructions first
+     */
+    private static List<Loop> findLoops(Dominators dominators) {
+        Map<Integer, BitSet> bodies = new TreeMap<>();
+
+        for (int node = 0; node < dominators.getInstructions().size(); node++) {
+            if (!dominators.isReachable(node)) {
+                continue;
+            }
+
+            for (int header : dominators.getSuccessors(node)) {
+                // A back edge, to an instruction that runs before every run of the one it comes from
+                if (!dominators.dominates(header, node)) {
+                    continue;
+                }
+
+                var body = bodies.computeIfAbsent(header, index -> new BitSet());
+                body.set(header);
+                List<Integer> worklist = new ArrayList<>();
+                if (!body.get(node)) {
+                    body.set(node);
+                    worklist.add(node);
+                }
+                while (!worklist.isEmpty()) {
+                    int current = worklist.remove(worklist.size() - 1);
+                    for (int predecessor : dominators.getPredecessors(current)) {
+                        if (dominators.isReachable(predecessor) && !body.get(predecessor)) {
+                            body.set(predecessor);
+                            worklist.add(predecessor);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Loop> loops = new ArrayList<>();
+        bodies.forEach((header, body) -> loops.add(new Loop(header, body)));
+        loops.sort(Comparator.comparingInt(loop -> loop.body().cardinality()));
+
+        return loops;
+    }
+
+    /**
+     * @return the assignments of the loop that can run once before it, in the order they are in the method
+     */
+    private static List<Instruction> findInvariant(Method method, Dominators dominators, Loop loop) {
+        var instructions = dominators.getInstructions();
+        Set<Instruction> labelled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labelled.addAll(method.getLabels().values());
+
+        Map<String, Integer> assignments = new HashMap<>();
+        Map<String, List<Integer>> uses = new HashMap<>();
+        boolean fieldsChange = false;
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            for (var name : OllirInstructions.getUses(instruction)) {
+                uses.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+            }
+            if (loop.body().get(i)) {
+                OllirInstructions.getAssigned(instruction).ifPresent(name -> assignments.merge(name, 1, Integer::sum));
+                fieldsChange |= OllirInstructions.callsMethod(instruction)
+                        || instruction.getInstType() == InstructionType.PUTFIELD;
+            }
+        }
+
+        var checkedArrays = findCheckedArrays(instructions, labelled, loop);
+
+        List<Instruction> invariant = new ArrayList<>();
+        Set<String> invariantNames = new HashSet<>();
+        for (int i = loop.body().nextSetBit(0); i >= 0; i = loop.body().nextSetBit(i + 1)) {
+            var instruction = instructions.get(i);
+            // Labels other than the ones of the loop would have to stay in the loop
+            if (i != loop.header() && labelled.contains(instruction)
+                    || !(instruction instanceof AssignInstruction assign)
+                    || !isHoistable(assign.getRhs(), fieldsChange, checkedArrays)) {
+                continue;
+            }
+
+            var name = OllirInstructions.getAssigned(instruction);
+            if (name.isEmpty() || assignments.get(name.get()) != 1) {
+                continue;
+            }
+
+            boolean operandsInvariant = OllirInstructions.getUses(instruction).stream()
+                    .allMatch(used -> !assignments.containsKey(used) || invariantNames.contains(used));
+            // Every use must see the value of this assignment, which is the same in every iteration
+            int index = i;
+            boolean usedAfter = uses.getOrDefault(name.get(), List.of()).stream()
+                    .allMatch(use -> loop.body().get(use) && use != index && dominators.dominates(index, use));
+
+            if (operandsInvariant && usedAfter) {
+                invariant.add(instruction);
+                invariantNames.add(name.get());
+            }
+        }
+
+        return invariant;
+    }
+
+    /**
+     * @return the arrays whose length the loop reads every time it is entered, after instructions that cannot throw
+     * nor change anything, so the length of a null one throws before the loop does anything else
+     */
+    private static Set<String> findCheckedArrays(List<Instruction> instructions, Set<Instruction> labelled,
+                                                 Loop loop) {
+        Set<String> checked = new HashSet<>();
+
+        for (int i = loop.header(); i < instructions.size() && loop.body().get(i); i++) {
+            var instruction = instructions.get(i);
+            if (i != loop.header() && labelled.contains(instruction)
+                    || !(instruction instanceof AssignInstruction assign)) {
+                break;
+            }
+
+            if (assign.getRhs() instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+                checked.add(((Operand) call.getCaller()).getName());
+            } else if (!isHoistable(assign.getRhs(), false, Set.of())) {
+                break;
+            }
+        }
+
+        return checked;
+    }
+
+    /**
+     * Moves the instructions to a new block right before the loop, which only the paths from outside the loop go
+     * through.
+     *
+     * @return false if the loop cannot have such a block, and nothing changed
+     */
+    private boolean insertPreheader(Method method, Dominators dominators, Loop loop, List<Instruction> invariant) {
+        var instructions = method.getInstructions();
+        var header = dominators.getInstructions().get(loop.header());
+        Set<Instruction> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+        moved.addAll(invariant);
+
+        // Falling through to the header from the loop would now go through the new block
+        if (loop.header() > 0) {
+            var previous = dominators.getInstructions().get(loop.header() - 1);
+            boolean fallsThrough = previous.getInstType() != InstructionType.GOTO
+                    && previous.getInstType() != InstructionType.RETURN;
+            if (fallsThrough && loop.body().get(loop.header() - 1)) {
+                return false;
+            }
+        }
+
+        // Jumps from outside the loop go to the new block, the ones from the loop to the first instruction left
+        var headerLabels = method.getLabels().entrySet().stream()
+                .filter(entry -> entry.getValue() == header)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        List<String> outsideLabels = new ArrayList<>();
+        List<String> loopLabels = new ArrayList<>();
+        for (var label : headerLabels) {
+            boolean fromLoop = false;
+            boolean fromOutside = false;
+            for (int i = 0; i < dominators.getInstructions().size(); i++) {
+                if (label.equals(OllirInstructions.getJumpLabel(dominators.getInstructions().get(i)))) {
+                    fromLoop |= loop.body().get(i);
+                    fromOutside |= !loop.body().get(i);
+                }
+            }
+            if (fromLoop && fromOutside) {
+                return false;
+            }
+            (fromOutside ? outsideLabels : loopLabels).add(label);
+        }
+
+        // Only assignments move, so the header runs straight to the first instruction that stays
+        Instruction firstLeft = null;
+        for (int i = loop.header(); i < dominators.getInstructions().size(); i++) {
+            var instruction = dominators.getInstructions().get(i);
+            if (!moved.contains(instruction)) {
+                firstLeft = loop.body().get(i) ? instruction : null;
+                break;
+            }
+        }
+        if (firstLeft == null) {
+            return false;
+        }
+
+        instructions.removeIf(moved::contains);
+        int index = indexOfIdentity(instructions, firstLeft);
+        instructions.addAll(index, invariant);
+        for (var label : outsideLabels) {
+            method.getLabels().put(label, invariant.get(0));
+        }
+        for (var label : loopLabels) {
+            method.getLabels().put(label, firstLeft);
+        }
+
+        var loopName = loopLabels.isEmpty() ? "instruction " + (loop.header() + 1) : loopLabels.get(0);
+        hoisted.merge(method.getMethodName() + "/" + loopName, invariant.size(), Integer::sum);
+
+        return true;
+    }
+
+    private static int indexOfIdentity(List<Instruction> instructions, Instruction instruction) {
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) == instruction) {
+                return i;
+            }
+        }
+
+        throw new RuntimeException("Instruction is not in the method: " + instruction);
+    }
+
+    /**
+     * @return true if the value cannot change between iterations once its operands do not, and computing it cannot
+     * throw, or only throws where the loop would have thrown anyway
+     */
+    private static boolean isHoistable(Instruction rhs, boolean fieldsChange, Set<String> checkedArrays) {
+        return switch (rhs.getInstType()) {
+            case BINARYOPER -> ((BinaryOpInstruction) rhs).getOperation().getOpType() != OperationType.DIV;
+            case UNARYOPER -> true;
+            // An element of an array can change, and its index can be out of bounds
+            case NOPER -> !(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand);
+            case GETFIELD -> !fieldsChange;
+            case CALL -> rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength
+                    && checkedArrays.contains(((Operand) call.getCaller()).getName());
+            default -> false;
+        };
+    }
+}
@@ -4,10 +4,13 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp2024.ast.KindDispatch;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiFunction;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
@@ -16,14 +19,24 @@ import static pt.up.fe.comp2024.ast.Kind.*;
  */
 public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
 
+    private final KindDispatch<Void, OllirExprResult> dispatch = new KindDispatch<>();
+
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
     private final String END_STMT = ";\n";
 
     private final SymbolTable table;
 
-    public OllirExprGeneratorVisitor(SymbolTable table) {
+    private final OptUtils optUtils;
+
+    public OllirExprGeneratorVisitor(SymbolTable table, OptUtils optUtils) {
         this.table = table;
+        this.optUtils = optUtils;
+    }
+
+    @Override
+    protected BiFunction<JmmNode, Void, OllirExprResult> getVisit(JmmNode node) {
+        return dispatch.get(node, super::getVisit);
     }
 
     @Override
@@ -78,7 +91,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         var classType = TypeUtils.getExprType(node, table);
         var ollirType = OptUtils.toOllirType(classType);
 
-        String code = OptUtils.getTemp() + ollirType;
+        String code = optUtils.getTemp() + ollirType;
 
         computation.append(code).append(SPACE).append(ASSIGN).append(ollirType).append(SPACE)
                 .append("new").append("(").append(classType.getName()).append(")").append(ollirType).append(END_STMT);
@@ -94,7 +107,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         var classType = TypeUtils.getExprType(node, table);
         var ollirType = OptUtils.toOllirType(classType);
 
-        String code = OptUtils.getTemp() + ollirType;
+        String code = optUtils.getTemp() + ollirType;
 
         // Visit what's between brackets to get the computation
         var child = visit(node.getJmmChild(0));
@@ -135,7 +148,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             return new OllirExprResult(code, computation);
         }
 
-        String code = OptUtils.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node, table));
+        String code = optUtils.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node, table));
         computation.append(code).append(SPACE).append(ASSIGN).
                 append(OptUtils.toOllirType(TypeUtils.getExprType(node, table))).append(SPACE)
                 .append(name).append("[").append(index.getCode()).append("]")
@@ -146,9 +159,9 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
     private OllirExprResult visitArrayInit(JmmNode node, Void unused){
 
-        var numArgs = Integer.parseInt(node.getObject("numArrayArgs").toString());
+        var numArgs = NodeUtils.getIntegerAttribute(node, "numArrayArgs", "0");
 
-        String temp = OptUtils.getTemp();
+        String temp = optUtils.getTemp();
         String code = temp + OptUtils.toOllirType(TypeUtils.getExprType(node, table));
         StringBuilder computation = new StringBuilder();
 
@@ -186,7 +199,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         // Get the code
         Type resType = TypeUtils.getExprType(node, table);
         String resOllirType = OptUtils.toOllirType(resType);
-        String code = OptUtils.getTemp() + resOllirType;
+        String code = optUtils.getTemp() + resOllirType;
 
         computation.append(code).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE)
                 .append("arraylength").append("(").append(newArray).append(")").append(".i32").append(END_STMT);
@@ -212,6 +225,11 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             var assignLHS = assignStmt.get().getJmmChild(0);
             type = TypeUtils.getExprType(assignLHS, table);
         }
+        // Methods of imported classes in the classpath have an exact type, which may be void
+        var importedType = TypeUtils.getImportedReturnType(node, table);
+        if(importedType.isPresent()){
+            type = importedType.get();
+        }
         if(type == null){
             type = new Type("void", false);
         }
@@ -231,7 +249,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         // If it's not a void method, we assign the result to a temp variable
         boolean isVoid = type.getName().equals("void");
-        String code = !isVoid ? OptUtils.getTemp() + OptUtils.toOllirType(type) : "";
+        String code = !isVoid ? optUtils.getTemp() + OptUtils.toOllirType(type) : "";
         if(!isVoid){
             computation.append(code).append(SPACE).append(ASSIGN)
                     .append(OptUtils.toOllirType(type)).append(SPACE);
@@ -276,7 +294,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         // Get the code of the child
         Type resType = TypeUtils.getExprType(node, table);
         String resOllirType = OptUtils.toOllirType(resType);
-        String code = OptUtils.getTemp() + resOllirType;
+        String code = optUtils.getTemp() + resOllirType;
 
         computation.append(code).append(SPACE).append(ASSIGN).append(resOllirType).append(SPACE)
                 .append(node.get("op")).append(resOllirType).append(SPACE)
@@ -303,16 +321,18 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         // This is to avoid the creation of a temp variable
         // It's really ugly and I hate it but it's to simplify the jasmin generation to use the iinc instruction
         var assignNode = node.getAncestor(ASSIGN_STMT);
-        if(assignNode.isPresent()){
+        // Only when this is the whole right-hand side, not an argument or an operand nested in it
+        if(assignNode.isPresent() && node.getParent() == assignNode.get()){
             var assignLHS = assignNode.get().getJmmChild(0);
-            if(assignLHS.getKind().equals(VAR.toString())){
+            // A field is written with putfield, which cannot take an operation as its value
+            if(VAR.check(assignLHS) && !isField(assignLHS)){
                 var varName = assignLHS.get("name");
                 var assignRHSNode1 = node.getJmmChild(0);
                 var assignRHSNode2 = node.getJmmChild(1);
                 // If one of the binaryExpr operands is a variable and the other is an int literal
-                if(assignRHSNode1.getKind().equals(VAR.toString()) && assignRHSNode2.getKind().equals(INT_LITERAL.toString())){
+                if(VAR.check(assignRHSNode1) && INT_LITERAL.check(assignRHSNode2)){
                     var varName2 = assignRHSNode1.get("name");
-                    var intVal = Integer.parseInt(assignRHSNode2.get("value"));
+                    var intVal = NodeUtils.getIntegerAttribute(assignRHSNode2, "value", "0");
                     // If the variable names are the same and the int value is between -128 and 127
                     if(varName.equals(varName2) && intVal >= -128 && intVal <= 127){
                         String code = lhs.getCode() + SPACE + node.get("op") + ".i32" + SPACE +
@@ -321,9 +341,9 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                     }
                 }
                 // Same case as before but with the operands inverted
-                else if (assignRHSNode2.getKind().equals(VAR.toString()) && assignRHSNode1.getKind().equals(INT_LITERAL.toString())){
+                else if (VAR.check(assignRHSNode2) && INT_LITERAL.check(assignRHSNode1)){
                     var varName2 = assignRHSNode2.get("name");
-                    var intVal = Integer.parseInt(assignRHSNode1.get("value"));
+                    var intVal = NodeUtils.getIntegerAttribute(assignRHSNode1, "value", "0");
                     if(varName.equals(varName2) && intVal >= -128 && intVal <= 127){
                         String code = lhs.getCode() + SPACE + node.get("op") + ".i32" + SPACE +
                                 rhs.getCode();
@@ -334,13 +354,13 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             }
         }
 
-        String code = OptUtils.getTemp() + resOllirType;
+        String code = optUtils.getTemp() + resOllirType;
 
         var operator = node.get("op");
 
         // In case the operator is short-circuit
         if(operator.equals("&&")){
-            var labels = OptUtils.getIfLabels();
+            var labels = optUtils.getIfLabels();
             var trueLabel = labels.get(0);
             var falseLabel = labels.get(1);
             computation.append("if (").append(lhs.getCode()).append(") goto ").append(trueLabel).append(END_STMT);
@@ -381,7 +401,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         StringBuilder computation = new StringBuilder();
         // If var is a field, we want to use getfield instead of the default variable reference
         if(isField(node)){
-            var tempCode = OptUtils.getTemp() + ollirType;
+            var tempCode = optUtils.getTemp() + ollirType;
             computation.append(tempCode).append(SPACE).append(ASSIGN).append(ollirType).append(SPACE)
                     .append("getfield(").append("this").append(", ").append(code).append(")").append(ollirType).append(END_STMT);
             code = tempCode;
@@ -407,15 +427,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
     private boolean isField(JmmNode node){
         var methodParentName = node.getAncestor(METHOD_DECL).get().get("name");
-        if(table.getLocalVariables(methodParentName).stream().anyMatch(var -> var.getName().equals(node.get("name")))){
-            return false;
-        }
-        if(table.getParameters(methodParentName).stream().anyMatch(var -> var.getName().equals(node.get("name")))){
-            return false;
-        }
-        if(table.getFields().stream().anyMatch(var -> var.getName().equals(node.get("name")))){
-            return true;
-        }
-        return false;
+        var symbol = JmmSymbolTable.of(table).resolve(methodParentName, node.get("name"));
+        return symbol != null && symbol.scope() == JmmSymbolTable.Scope.FIELD;
     }
 }
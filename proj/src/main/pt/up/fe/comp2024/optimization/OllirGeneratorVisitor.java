@@ -4,9 +4,12 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.KindDispatch;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import java.util.List;
+import java.util.function.BiFunction;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
@@ -15,6 +18,8 @@ import static pt.up.fe.comp2024.ast.Kind.*;
  */
 public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
+    private final KindDispatch<Void, String> dispatch = new KindDispatch<>();
+
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
     private final String END_STMT = ";\n";
@@ -30,14 +35,23 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private final SymbolTable table;
 
+    private final OptUtils optUtils;
+
     private final OllirExprGeneratorVisitor exprVisitor;
 
     public OllirGeneratorVisitor(SymbolTable table) {
         this.table = table;
-        exprVisitor = new OllirExprGeneratorVisitor(table);
+        // Temps and labels are numbered per compilation, shared with the expression visitor
+        this.optUtils = new OptUtils();
+        exprVisitor = new OllirExprGeneratorVisitor(table, optUtils);
     }
 
 
+    @Override
+    protected BiFunction<JmmNode, Void, String> getVisit(JmmNode node) {
+        return dispatch.get(node, super::getVisit);
+    }
+
     @Override
     protected void buildVisitor() {
 
@@ -89,7 +103,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(condition.getComputation());
 
         // Get the next labels
-        var labels = OptUtils.getIfLabels();
+        var labels = optUtils.getIfLabels();
         var ifLabel = labels.get(0);
         var endifLabel = labels.get(1);
 
@@ -125,7 +139,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         StringBuilder code = new StringBuilder();
 
         // Get the next labels
-        var labels = OptUtils.getWhileLabels();
+        var labels = optUtils.getWhileLabels();
         var whileCondLabel = labels.get(0);
         var whileLoopLabel = labels.get(1);
         var whileEndLabel = labels.get(2);
@@ -417,18 +431,10 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     // Returns true if the node is a field, not a local or parameter
     public boolean isField(JmmNode node){
         // If the node is not a variable, it is not a field
-        if(!node.getKind().equals(VAR.toString())) return false;
+        if(!VAR.check(node)) return false;
 
         var methodParentName = node.getAncestor(METHOD_DECL).get().get("name");
-        if(table.getLocalVariables(methodParentName).stream().anyMatch(var -> var.getName().equals(node.get("name")))){
-            return false;
-        }
-        if(table.getParameters(methodParentName).stream().anyMatch(var -> var.getName().equals(node.get("name")))){
-            return false;
-        }
-        if(table.getFields().stream().anyMatch(var -> var.getName().equals(node.get("name")))){
-            return true;
-        }
-        return false;
+        var symbol = JmmSymbolTable.of(table).resolve(methodParentName, node.get("name"));
+        return symbol != null && symbol.scope() == JmmSymbolTable.Scope.FIELD;
     }
 }
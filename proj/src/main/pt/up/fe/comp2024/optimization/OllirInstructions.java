@@ -0,0 +1,86 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * What OLLIR instructions read, write and jump to, for the passes over them.
+ */
+public class OllirInstructions {
+
+    /**
+     * @return the variable the instruction assigns, if it assigns a whole variable
+     */
+    public static Optional<String> getAssigned(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign
+                && assign.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)) {
+            return Optional.of(dest.getName());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @return the names of the variables the instruction reads, including the arrays it writes an element of
+     */
+    public static Set<String> getUses(Instruction instruction) {
+        Stream<TreeNode> elements;
+        if (instruction instanceof AssignInstruction assign) {
+            elements = assign.getRhs().getDescendantsStream();
+            if (assign.getDest() instanceof ArrayOperand dest) {
+                elements = Stream.concat(elements, dest.getDescendantsAndSelfStream());
+            }
+        } else {
+            elements = instruction.getDescendantsStream();
+        }
+
+        return elements.filter(Operand.class::isInstance)
+                .map(element -> ((Operand) element).getName())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @return true if the instruction writes an element of an array
+     */
+    public static boolean writesArray(Instruction instruction) {
+        return instruction instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand;
+    }
+
+    /**
+     * @return true if the instruction calls a method, which can write fields and elements of arrays
+     */
+    public static boolean callsMethod(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign) {
+            return callsMethod(assign.getRhs());
+        }
+
+        return instruction instanceof CallInstruction call
+                && call.getInvocationType() != CallType.arraylength && call.getInvocationType() != CallType.NEW;
+    }
+
+    /**
+     * @return the label the instruction may jump to, or null if it does not jump
+     */
+    public static String getJumpLabel(Instruction instruction) {
+        if (instruction instanceof GotoInstruction jump) {
+            return jump.getLabel();
+        }
+        if (instruction instanceof CondBranchInstruction branch) {
+            return branch.getLabel();
+        }
+
+        return null;
+    }
+}
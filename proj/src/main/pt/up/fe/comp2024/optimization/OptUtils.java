@@ -2,39 +2,46 @@ package pt.up.fe.comp2024.optimization;
 
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.NodeUtils;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static pt.up.fe.comp2024.ast.Kind.TYPE;
 
+/**
+ * Helpers for OLLIR generation.
+ * <p>
+ * The temporary and label counters are per-instance, so each compilation must use its own OptUtils. This allows
+ * several classes to be compiled concurrently in the same JVM without sharing names.
+ */
 public class OptUtils {
-    private static int tempNumber = -1;
-    private static int ifLabelNumber = -1;
-    private static int whileLabelNumber = -1;
+    private int tempNumber = -1;
+    private int ifLabelNumber = -1;
+    private int whileLabelNumber = -1;
 
-    public static String getTemp() {
+    public String getTemp() {
 
         return getTemp("tmp");
     }
 
-    public static String getTemp(String prefix) {
+    public String getTemp(String prefix) {
 
         return prefix + getNextTempNum();
     }
 
-    public static int getNextTempNum() {
+    public int getNextTempNum() {
 
         tempNumber += 1;
         return tempNumber;
     }
 
-    public static List<String> getIfLabels() {
+    public List<String> getIfLabels() {
 
         return getIfLabels("if", "endif");
     }
 
-    public static List<String> getIfLabels(String prefix1, String prefix2) {
+    public List<String> getIfLabels(String prefix1, String prefix2) {
 
         int labelNum = getNextIfLabelNum();
 
@@ -47,18 +54,18 @@ public class OptUtils {
         return labels;
     }
 
-    public static int getNextIfLabelNum() {
+    public int getNextIfLabelNum() {
 
         ifLabelNumber += 1;
         return ifLabelNumber;
     }
 
-    public static List<String> getWhileLabels() {
+    public List<String> getWhileLabels() {
 
         return getWhileLabels("whileCond", "whileLoop", "whileEnd");
     }
 
-    public static List<String> getWhileLabels(String prefix1, String prefix2, String prefix3) {
+    public List<String> getWhileLabels(String prefix1, String prefix2, String prefix3) {
 
         int labelNum = getNextWhileLabelNum();
 
@@ -72,7 +79,7 @@ public class OptUtils {
         return labels;
     }
 
-    public static int getNextWhileLabelNum() {
+    public int getNextWhileLabelNum() {
 
         whileLabelNumber += 1;
         return whileLabelNumber;
@@ -83,7 +90,7 @@ public class OptUtils {
         TYPE.checkOrThrow(typeNode);
 
         String typeName = typeNode.get("name");
-        var isArray = typeNode.get("isArray").equals("true");
+        var isArray = NodeUtils.getBooleanAttribute(typeNode, "isArray", "false");
 
         return toOllirType(typeName, isArray);
     }
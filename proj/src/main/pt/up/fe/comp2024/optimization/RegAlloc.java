@@ -66,60 +66,15 @@ public class RegAlloc {
         }
     }
 
+    // Every variable the instruction reads, including the operands of calls, fields, branches and array indexes
     private Set<String> use(Node inst) {
-        var instType = inst.toInstruction().getInstType();
-        Set<String> use = new HashSet<>();
-        switch (instType){
-            case ASSIGN:
-                AssignInstruction assInst = (AssignInstruction) inst;
-                switch (assInst.getRhs().getInstType()) {
-                    case NOPER:
-                        SingleOpInstruction single_rhs = (SingleOpInstruction) assInst.getRhs();
-                        if (!single_rhs.getSingleOperand().isLiteral()) {
-                            Operand op = (Operand) single_rhs.getSingleOperand();
-                            use.add(op.getName());
-                        }
-                        break;
-                    case BINARYOPER:
-                        BinaryOpInstruction binary_rhs = (BinaryOpInstruction) assInst.getRhs();
-                        Operand op;
-                        if (!binary_rhs.getLeftOperand().isLiteral()) {
-                            op = (Operand) binary_rhs.getLeftOperand();
-                            use.add(op.getName());
-                        }
-                        if (!binary_rhs.getRightOperand().isLiteral()) {
-                            op = (Operand) binary_rhs.getRightOperand();
-                            use.add(op.getName());
-                        }
-                        break;
-                }
-                break;
-            case RETURN:
-                Operand op;
-                ReturnInstruction retInst = (ReturnInstruction) inst;
-                if (retInst.hasReturnValue()){
-                    Element e = retInst.getOperand();
-                    if (!e.isLiteral()) {
-                        op = (Operand) e;
-                        use.add(op.getName());
-                    }
-                }
-                break;
-        }
-        return use;
+        return new HashSet<>(OllirInstructions.getUses(inst.toInstruction()));
     }
 
+    // Storing into an element of an array reads the array, so only whole variables are defined
     private Set<String> def(Node inst) {
-        var instType = inst.toInstruction().getInstType();
         Set<String> def = new HashSet<>();
-        Operand op;
-        switch (instType) {
-            case ASSIGN:
-                AssignInstruction assInst = (AssignInstruction) inst;
-                op = (Operand) assInst.getDest();
-                def.add(op.getName());
-                break;
-        }
+        OllirInstructions.getAssigned(inst.toInstruction()).ifPresent(def::add);
         return def;
     }
 
@@ -140,6 +95,9 @@ public class RegAlloc {
                 var liveIn = new HashSet<>(this.sets.get(method).get(inst).a);
                 var liveOut = new HashSet<>(this.sets.get(method).get(inst).b);
                 liveOut.addAll(def(inst));
+                // Only locals are in the graph, parameters keep their registers
+                liveIn.retainAll(this.graph.get(method).keySet());
+                liveOut.retainAll(this.graph.get(method).keySet());
                 for (String a : liveIn) {
                     for (String b : liveIn) {
                         if (!a.equals(b)) {
@@ -0,0 +1,84 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Removes the OLLIR instructions that cannot be reached from the start of their method, e.g. the goto after a return
+ * at the end of a branch, using the control-flow graphs the 'cfg' pass built. The graphs are built again after.
+ */
+public class UnreachableCodeElimination {
+
+    private final ClassUnit ollirClass;
+
+    public UnreachableCodeElimination(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    /**
+     * @return true if an instruction was removed
+     */
+    public boolean run() {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            var reachable = getReachable(method);
+            if (reachable.size() == method.getInstructions().size()) {
+                continue;
+            }
+
+            method.getInstructions().removeIf(instruction -> !reachable.contains(instruction));
+            // Only unreachable jumps go to the labels of unreachable instructions
+            method.getLabels().values().removeIf(instruction -> !reachable.contains(instruction));
+            rebuildCFG(method);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private static Set<Node> getReachable(Method method) {
+        Set<Node> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        var worklist = new ArrayDeque<Node>();
+        worklist.add(method.getBeginNode());
+
+        while (!worklist.isEmpty()) {
+            var node = worklist.poll();
+            // The graph also goes from a return to the next instruction, which only a jump can reach
+            if (node instanceof Instruction instruction && instruction.getInstType() == InstructionType.RETURN) {
+                continue;
+            }
+
+            for (var successor : node.getSuccessors()) {
+                if (successor instanceof Instruction && reachable.add(successor)) {
+                    worklist.add(successor);
+                }
+            }
+        }
+
+        return reachable;
+    }
+
+    /**
+     * Builds the control-flow graph of a method again, after its instructions changed.
+     */
+    static void rebuildCFG(Method method) {
+        // Building the graph adds edges to the ones the nodes have
+        for (var node : method.getInstructions()) {
+            node.getSuccessors().clear();
+            node.getPredecessors().clear();
+        }
+        method.getBeginNode().getSuccessors().clear();
+        method.getEndNode().getPredecessors().clear();
+
+        method.buildCFG();
+    }
+}
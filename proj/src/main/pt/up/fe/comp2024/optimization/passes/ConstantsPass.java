@@ -0,0 +1,36 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.optimization.ssa.SparseConstantPropagation;
+import pt.up.fe.comp2024.optimization.ssa.SsaMethod;
+
+/**
+ * Constant propagation and folding together, with {@link SparseConstantPropagation} over each method. It finds every
+ * constant in one run, so the pass does not need to run again.
+ */
+public class ConstantsPass implements OptimizationPass<JmmSemanticsResult> {
+
+    public static final String NAME = "constants";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(JmmSemanticsResult semanticsResult) {
+        var table = semanticsResult.getSymbolTable();
+        boolean changed = false;
+
+        for (var classDecl : semanticsResult.getRootNode().getChildren(Kind.CLASS_DECL)) {
+            for (var methodDecl : classDecl.getChildren(Kind.METHOD_DECL)) {
+                var constants = new SparseConstantPropagation(SsaMethod.build(methodDecl, table));
+                constants.analyze();
+                changed |= constants.rewrite();
+            }
+        }
+
+        return changed;
+    }
+}
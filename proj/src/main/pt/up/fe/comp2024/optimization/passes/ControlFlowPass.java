@@ -0,0 +1,24 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+/**
+ * Builds the control-flow graphs of every method, for the passes that need them.
+ */
+public class ControlFlowPass implements OptimizationPass<OllirResult> {
+
+    public static final String NAME = "cfg";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(OllirResult ollirResult) {
+        ollirResult.getOllirClass().buildCFGs();
+
+        // Only adds information, the code is the same
+        return false;
+    }
+}
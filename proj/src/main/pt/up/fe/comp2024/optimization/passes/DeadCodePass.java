@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.optimization.DeadCodeElimination;
+
+/**
+ * Removes the branches that are never taken and the statements after a return, mostly left by the constants pass.
+ */
+public class DeadCodePass implements OptimizationPass<JmmSemanticsResult> {
+
+    public static final String NAME = "deadCode";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(JmmSemanticsResult semanticsResult) {
+        var deadCode = new DeadCodeElimination();
+        boolean changed = false;
+
+        for (var classDecl : semanticsResult.getRootNode().getChildren(Kind.CLASS_DECL)) {
+            for (var methodDecl : classDecl.getChildren(Kind.METHOD_DECL)) {
+                changed |= deadCode.run(methodDecl);
+            }
+        }
+
+        return changed;
+    }
+}
@@ -0,0 +1,23 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.GlobalValueNumbering;
+
+/**
+ * Replaces the computations of values a method already has in a variable, e.g. a repeated 'a[i]' or 'x * y', by a
+ * copy of that variable.
+ */
+public class GlobalValueNumberingPass implements OptimizationPass<OllirResult> {
+
+    public static final String NAME = "gvn";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(OllirResult ollirResult) {
+        return new GlobalValueNumbering(ollirResult.getOllirClass()).run();
+    }
+}
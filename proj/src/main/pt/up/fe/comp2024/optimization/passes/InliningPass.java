@@ -0,0 +1,38 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.optimization.Inliner;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+/**
+ * Replaces the calls to small methods of the class by their statements, so that the constants pass sees through
+ * them. It runs after the varargs pass, so the arguments of a varargs method are already in an array.
+ */
+public class InliningPass implements OptimizationPass<JmmSemanticsResult> {
+
+    public static final String NAME = "inline";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(JmmSemanticsResult semanticsResult) {
+        // The new locals must be declared in the table the OLLIR generation uses
+        if (!(semanticsResult.getSymbolTable() instanceof JmmSymbolTable table)) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (var classDecl : semanticsResult.getRootNode().getChildren(Kind.CLASS_DECL)) {
+            var inliner = new Inliner(classDecl, table);
+            for (var methodDecl : classDecl.getChildren(Kind.METHOD_DECL)) {
+                changed |= inliner.run(methodDecl);
+            }
+        }
+
+        return changed;
+    }
+}
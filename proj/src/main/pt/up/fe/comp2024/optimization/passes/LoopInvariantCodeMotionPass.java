@@ -0,0 +1,33 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.optimization.LoopInvariantCodeMotion;
+
+/**
+ * Moves the instructions that compute the same value in every iteration of a loop to before the loop, and reports how
+ * many were moved out of each loop.
+ */
+public class LoopInvariantCodeMotionPass implements OptimizationPass<OllirResult> {
+
+    public static final String NAME = "licm";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(OllirResult ollirResult) {
+        var licm = new LoopInvariantCodeMotion(ollirResult.getOllirClass());
+        boolean changed = licm.run();
+
+        licm.getHoisted().forEach((loop, count) -> {
+            var message = String.format("Moved %d instruction(s) out of the loop '%s'", count, loop);
+            ollirResult.getReports().add(Report.newLog(Stage.OPTIMIZATION, -1, -1, message, null));
+        });
+
+        return changed;
+    }
+}
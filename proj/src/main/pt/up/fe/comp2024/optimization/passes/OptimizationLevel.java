@@ -0,0 +1,47 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+/**
+ * Optimization levels, given with '-O0', '-O1', '-O2' or '-Os'. Each pass is registered with the levels that enable
+ * it.
+ */
+public enum OptimizationLevel {
+    /**
+     * Only the passes the code generation needs, for the fastest compilation.
+     */
+    O0("0"),
+    /**
+     * Cheap passes that make the code both faster and smaller, the same as '-o'.
+     */
+    O1("1"),
+    /**
+     * Every pass that makes the code faster, even if it takes longer to compile or makes the code larger.
+     */
+    O2("2"),
+    /**
+     * Every pass that makes the code smaller.
+     */
+    Os("s");
+
+    private final String name;
+
+    OptimizationLevel(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param name the level without the '-O', e.g. '2'
+     */
+    public static OptimizationLevel fromName(String name) {
+        for (var level : values()) {
+            if (level.name.equals(name)) {
+                return level;
+            }
+        }
+
+        throw new RuntimeException("Unknown optimization level '-O" + name + "', expected -O0, -O1, -O2 or -Os");
+    }
+
+    public String getName() {
+        return name;
+    }
+}
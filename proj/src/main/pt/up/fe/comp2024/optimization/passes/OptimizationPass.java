@@ -0,0 +1,31 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import java.util.Map;
+
+/**
+ * A transformation of the AST or of the OLLIR of a class, run by a {@link PassManager}.
+ *
+ * @param <T> what the pass transforms, either a JmmSemanticsResult or an OllirResult
+ */
+public interface OptimizationPass<T> {
+
+    /**
+     * @return the name of the pass, used in dependencies, in '-p' and in the telemetry
+     */
+    String getName();
+
+    /**
+     * Runs the pass once.
+     *
+     * @return true if the pass changed something, in which case a pass registered with more than one iteration runs
+     * again
+     */
+    boolean run(T unit);
+
+    /**
+     * @return true if an option other than the level asks for this pass, e.g. '-r' for the register allocation
+     */
+    default boolean isRequested(Map<String, String> config) {
+        return false;
+    }
+}
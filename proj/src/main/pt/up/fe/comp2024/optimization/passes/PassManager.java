@@ -0,0 +1,190 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs a sequence of optimization passes over the same unit.
+ * <p>
+ * Which passes run depends on the optimization level, on the options that request a pass (see
+ * {@link OptimizationPass#isRequested}) and on '-p', which enables or disables passes by name. The dependencies of a
+ * pass that runs also run, before it. Passes run in the order they were registered, and since a pass can only depend
+ * on passes registered before it, that order respects every dependency.
+ * <p>
+ * Each run of a pass is measured by the telemetry, as 'optimization/NAME', or 'optimization/NAME/iteration-N' for
+ * passes that can run more than once.
+ *
+ * @param <T> what the passes transform
+ */
+public class PassManager<T> {
+
+    private final Telemetry telemetry;
+    private final Map<String, Registration<T>> passes;
+
+    public PassManager(Telemetry telemetry) {
+        this.telemetry = telemetry;
+        this.passes = new LinkedHashMap<>();
+    }
+
+    /**
+     * How a pass was registered.
+     */
+    public static class Registration<T> {
+        private final OptimizationPass<T> pass;
+        private final Set<OptimizationLevel> levels;
+        private final List<String> dependencies;
+        private int maxIterations;
+
+        private Registration(OptimizationPass<T> pass) {
+            this.pass = pass;
+            this.levels = EnumSet.noneOf(OptimizationLevel.class);
+            this.dependencies = new ArrayList<>();
+            this.maxIterations = 1;
+        }
+
+        /**
+         * Enables the pass at the given levels. A pass without levels only runs when requested or as a dependency.
+         */
+        public Registration<T> atLevels(OptimizationLevel... levels) {
+            this.levels.addAll(List.of(levels));
+            return this;
+        }
+
+        /**
+         * Makes the pass run again while it changes something, at most the given number of times.
+         */
+        public Registration<T> maxIterations(int maxIterations) {
+            if (maxIterations < 1) {
+                throw new RuntimeException("Pass '" + pass.getName() + "' must run at least once");
+            }
+
+            this.maxIterations = maxIterations;
+            return this;
+        }
+
+        public OptimizationPass<T> getPass() {
+            return pass;
+        }
+
+        public Set<OptimizationLevel> getLevels() {
+            return levels;
+        }
+
+        public List<String> getDependencies() {
+            return dependencies;
+        }
+
+        public int getMaxIterations() {
+            return maxIterations;
+        }
+    }
+
+    /**
+     * Registers a pass after the ones already registered.
+     *
+     * @param dependencies names of passes, registered before this one, that must run before it
+     * @return the registration, to set the levels and the iterations of the pass
+     */
+    public Registration<T> register(OptimizationPass<T> pass, String... dependencies) {
+        var name = pass.getName();
+
+        if (passes.containsKey(name)) {
+            throw new RuntimeException("Pass '" + name + "' is already registered");
+        }
+
+        var registration = new Registration<>(pass);
+        for (var dependency : dependencies) {
+            if (!passes.containsKey(dependency)) {
+                throw new RuntimeException("Pass '" + name + "' depends on '" + dependency
+                        + "', which must be registered before it");
+            }
+            registration.dependencies.add(dependency);
+        }
+
+        passes.put(name, registration);
+        return registration;
+    }
+
+    public List<Registration<T>> getPasses() {
+        return List.copyOf(passes.values());
+    }
+
+    /**
+     * @return the names of the passes that run with the given options, in the order they run. Passes of '-p' that are
+     * not registered here are ignored, since they can belong to another manager
+     */
+    public List<String> getEnabledPasses(Map<String, String> config) {
+        var level = CompilerConfig.getOptimizationLevel(config);
+        var overrides = CompilerConfig.getPassOptions(config);
+
+        Set<String> enabled = new HashSet<>();
+        for (var registration : passes.values()) {
+            var name = registration.pass.getName();
+            boolean byDefault = registration.levels.contains(level) || registration.pass.isRequested(config);
+
+            if (overrides.getOrDefault(name, byDefault)) {
+                enabled.add(name);
+            }
+        }
+
+        // Dependencies are registered before their dependents, so going backwards adds them all
+        var registrations = new ArrayList<>(passes.values());
+        for (int i = registrations.size() - 1; i >= 0; i--) {
+            var registration = registrations.get(i);
+            if (!enabled.contains(registration.pass.getName())) {
+                continue;
+            }
+
+            for (var dependency : registration.dependencies) {
+                if (Boolean.FALSE.equals(overrides.get(dependency))) {
+                    throw new RuntimeException("Pass '" + registration.pass.getName() + "' needs '" + dependency
+                            + "', which was disabled with '-p'");
+                }
+                enabled.add(dependency);
+            }
+        }
+
+        return passes.keySet().stream().filter(enabled::contains).toList();
+    }
+
+    /**
+     * Runs the enabled passes over the given unit.
+     *
+     * @return the names of the passes that changed the unit
+     */
+    public List<String> run(T unit, Map<String, String> config) {
+        List<String> changed = new ArrayList<>();
+
+        for (var name : getEnabledPasses(config)) {
+            var registration = passes.get(name);
+
+            boolean passChanged = false;
+            for (int iteration = 1; iteration <= registration.maxIterations; iteration++) {
+                var stage = registration.maxIterations == 1 ?
+                        "optimization/" + name :
+                        "optimization/" + name + "/iteration-" + iteration;
+
+                boolean iterationChanged = telemetry.measure(stage, () -> registration.pass.run(unit));
+                passChanged |= iterationChanged;
+
+                if (!iterationChanged) {
+                    break;
+                }
+            }
+
+            if (passChanged) {
+                changed.add(name);
+            }
+        }
+
+        return changed;
+    }
+}
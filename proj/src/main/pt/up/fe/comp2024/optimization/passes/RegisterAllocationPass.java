@@ -0,0 +1,90 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.RegAlloc;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Allocates the locals of each method to as few registers as possible, and at most the number given with '-r'. If
+ * that is not enough, the number is increased until the allocation succeeds and an error is reported.
+ * <p>
+ * Runs when '-r' is given, or at '-O2' and '-Os' with no limit.
+ */
+public class RegisterAllocationPass implements OptimizationPass<OllirResult> {
+
+    public static final String NAME = "regAlloc";
+
+    private final Telemetry telemetry;
+
+    public RegisterAllocationPass(Telemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isRequested(Map<String, String> config) {
+        return CompilerConfig.getRegisterAllocation(config) >= 0;
+    }
+
+    @Override
+    public boolean run(OllirResult ollirResult) {
+        // 0 means no limit
+        int maxRegisters = Math.max(0, CompilerConfig.getRegisterAllocation(ollirResult.getConfig()));
+
+        var registers = getRegisters(ollirResult);
+
+        int ogMaxReg = maxRegisters;
+        boolean success;
+        do {
+            // The graphs were built by the 'cfg' pass for the first try
+            if (maxRegisters != ogMaxReg) {
+                ollirResult.getOllirClass().buildCFGs();
+            }
+
+            var regAlloc = new RegAlloc(ollirResult.getOllirClass(), maxRegisters);
+            success = telemetry.measure("regAlloc/" + maxRegisters, regAlloc::allocateRegisters);
+
+            maxRegisters++;
+        } while (!success);
+        maxRegisters--;
+
+        //If we had to increment the max register
+        if (maxRegisters != ogMaxReg) {
+            var message = String.format("%s register(s) is not enough. Cannot allocate with less than %s", ogMaxReg, maxRegisters);
+            Report error = Report.newError(
+                    Stage.OPTIMIZATION,
+                    0,
+                    0,
+                    message,
+                    null);
+            ollirResult.getReports().add(error);
+        }
+
+        return !registers.equals(getRegisters(ollirResult));
+    }
+
+    /**
+     * @return the register of each variable, by method
+     */
+    private static Map<String, Map<String, Integer>> getRegisters(OllirResult ollirResult) {
+        Map<String, Map<String, Integer>> registers = new HashMap<>();
+
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            Map<String, Integer> methodRegisters = new HashMap<>();
+            method.getVarTable().forEach((name, descriptor) -> methodRegisters.put(name, descriptor.getVirtualReg()));
+            registers.put(method.getMethodName(), methodRegisters);
+        }
+
+        return registers;
+    }
+}
@@ -0,0 +1,22 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.UnreachableCodeElimination;
+
+/**
+ * Removes the OLLIR instructions that no path from the start of their method reaches.
+ */
+public class UnreachableCodePass implements OptimizationPass<OllirResult> {
+
+    public static final String NAME = "unreachable";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(OllirResult ollirResult) {
+        return new UnreachableCodeElimination(ollirResult.getOllirClass()).run();
+    }
+}
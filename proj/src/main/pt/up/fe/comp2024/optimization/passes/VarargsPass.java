@@ -0,0 +1,25 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.optimization.ASTVisitor;
+
+/**
+ * Replaces the arguments of varargs calls by an array, which the OLLIR generation needs at every level.
+ */
+public class VarargsPass implements OptimizationPass<JmmSemanticsResult> {
+
+    public static final String NAME = "varargs";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean run(JmmSemanticsResult semanticsResult) {
+        new ASTVisitor(semanticsResult.getSymbolTable()).visit(semanticsResult.getRootNode());
+
+        // Runs only once, so there is no need to know if it changed anything
+        return false;
+    }
+}
@@ -0,0 +1,295 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over the SSA form of a method.
+ * <p>
+ * Every value starts as undefined and only goes down, to a constant and then to not constant, so the analysis
+ * reaches its fixpoint in one run. Blocks are only looked at once an edge to them is known to be taken, and a
+ * condition that is a constant only takes one of its edges, so the values assigned in branches that are never taken
+ * do not make the ones after the join not constant. The rewrite then replaces every expression that is a constant,
+ * and is not a literal already, by a literal, in the blocks that can be reached.
+ */
+public class SparseConstantPropagation {
+
+    // Values of the lattice: undefined is not in the map, constants are an Integer or a Boolean
+    private static final Object NOT_CONSTANT = new Object() {
+        @Override
+        public String toString() {
+            return "not constant";
+        }
+    };
+
+    private final SsaMethod method;
+    private final Map<SsaValue, Object> values = new HashMap<>();
+    private final Set<SsaEdge> executableEdges = new HashSet<>();
+    private final Set<SsaBlock> executableBlocks = new HashSet<>();
+    private final Deque<SsaEdge> flowWorklist = new ArrayDeque<>();
+    private final Deque<SsaValue> ssaWorklist = new ArrayDeque<>();
+
+    public SparseConstantPropagation(SsaMethod method) {
+        this.method = method;
+    }
+
+    /**
+     * Finds the constants of the method.
+     */
+    public void analyze() {
+        for (var value : method.getEntryValues()) {
+            values.put(value, NOT_CONSTANT);
+        }
+
+        executableBlocks.add(method.getEntry());
+        visitBlock(method.getEntry());
+
+        while (!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+            while (!flowWorklist.isEmpty()) {
+                var edge = flowWorklist.poll();
+                if (executableBlocks.add(edge.to())) {
+                    visitBlock(edge.to());
+                } else {
+                    edge.to().getPhis().forEach(this::evaluatePhi);
+                }
+            }
+
+            while (!ssaWorklist.isEmpty()) {
+                var value = ssaWorklist.poll();
+                for (var user : value.getUsers()) {
+                    if (executableBlocks.contains(user.getBlock())) {
+                        evaluate(user);
+                    }
+                }
+                for (var branch : value.getBranches()) {
+                    if (executableBlocks.contains(branch)) {
+                        evaluateBranch(branch);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the constant expressions of the blocks that can be reached by literals. Needs {@link #analyze()}.
+     *
+     * @return true if an expression was replaced
+     */
+    public boolean rewrite() {
+        boolean changed = false;
+
+        for (var block : method.getBlocks()) {
+            if (!executableBlocks.contains(block)) {
+                continue;
+            }
+
+            for (var stmt : block.getStatements()) {
+                var lhs = Kind.ASSIGN_STMT.check(stmt) ? stmt.getChild(0) : null;
+                for (int i = 0; i < stmt.getNumChildren(); i++) {
+                    var child = stmt.getChild(i);
+                    // The variable assigned is not read
+                    if (child == lhs && Kind.VAR.check(lhs)) {
+                        continue;
+                    }
+                    // Neither is the array element assigned, only its array and index
+                    changed |= child == lhs ? rewriteChildren(lhs) : rewrite(stmt, i);
+                }
+            }
+
+            var condition = block.getCondition();
+            if (condition != null) {
+                changed |= rewrite(condition.getParent(), condition.getIndexOfSelf());
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the block can be reached, as far as the analysis knows
+     */
+    public boolean isExecutable(SsaBlock block) {
+        return executableBlocks.contains(block);
+    }
+
+    /**
+     * @return the constant of an expression, an Integer or a Boolean, or null if it is not a constant
+     */
+    public Object getConstant(JmmNode expr) {
+        var value = evaluate(expr);
+        return value == null || value == NOT_CONSTANT ? null : value;
+    }
+
+    private boolean rewrite(JmmNode parent, int index) {
+        var expr = parent.getChild(index);
+        if (Kind.check(expr, Kind.INT_LITERAL, Kind.BOOL_LITERAL)) {
+            return false;
+        }
+
+        var value = evaluate(expr);
+        if (value instanceof Integer intValue) {
+            parent.setChild(CompactJmmNode.intLiteral(intValue), index);
+            return true;
+        }
+        if (value instanceof Boolean boolValue) {
+            parent.setChild(CompactJmmNode.boolLiteral(boolValue), index);
+            return true;
+        }
+
+        return rewriteChildren(expr);
+    }
+
+    private boolean rewriteChildren(JmmNode expr) {
+        boolean changed = false;
+        for (int i = 0; i < expr.getNumChildren(); i++) {
+            changed |= rewrite(expr, i);
+        }
+
+        return changed;
+    }
+
+    private void visitBlock(SsaBlock block) {
+        block.getPhis().forEach(this::evaluatePhi);
+
+        for (var stmt : block.getStatements()) {
+            var definition = method.getDefinition(stmt);
+            if (definition != null) {
+                evaluate(definition);
+            }
+        }
+
+        evaluateBranch(block);
+    }
+
+    private void evaluate(SsaValue value) {
+        if (value.getKind() == SsaValue.Kind.PHI) {
+            evaluatePhi(value);
+        } else {
+            setValue(value, evaluate(value.getAssignment().getChild(1)));
+        }
+    }
+
+    private void evaluatePhi(SsaValue phi) {
+        Object result = null;
+        var predecessors = phi.getBlock().getPredecessors();
+        for (int i = 0; i < predecessors.size(); i++) {
+            if (executableEdges.contains(predecessors.get(i))) {
+                result = meet(result, values.get(phi.getOperands().get(i)));
+            }
+        }
+
+        setValue(phi, result);
+    }
+
+    private void evaluateBranch(SsaBlock block) {
+        var condition = block.getCondition();
+        var value = condition == null ? NOT_CONSTANT : evaluate(condition);
+        if (value == null) {
+            return;
+        }
+
+        for (var edge : block.getSuccessors()) {
+            if (value == NOT_CONSTANT || value.equals(edge.when())) {
+                if (executableEdges.add(edge)) {
+                    flowWorklist.add(edge);
+                }
+            }
+        }
+    }
+
+    private void setValue(SsaValue value, Object newValue) {
+        var oldValue = values.get(value);
+        // Values only go down, so that the analysis ends
+        newValue = meet(oldValue, newValue);
+        if (newValue != null && !newValue.equals(oldValue)) {
+            values.put(value, newValue);
+            ssaWorklist.add(value);
+        }
+    }
+
+    private static Object meet(Object first, Object second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null || first.equals(second)) {
+            return first;
+        }
+
+        return NOT_CONSTANT;
+    }
+
+    /**
+     * @return the value of the expression: null if undefined, an Integer or a Boolean if constant, else NOT_CONSTANT
+     */
+    private Object evaluate(JmmNode expr) {
+        return switch (Kind.of(expr)) {
+            case INT_LITERAL -> expr instanceof CompactJmmNode compactNode
+                    ? compactNode.getIntValue()
+                    : NodeUtils.getIntegerAttribute(expr, "value", "0");
+            case BOOL_LITERAL -> expr instanceof CompactJmmNode compactNode
+                    ? compactNode.getBoolValue()
+                    : NodeUtils.getBooleanAttribute(expr, "value", "false");
+            case PAREN_EXPR -> evaluate(expr.getChild(0));
+            case VAR -> {
+                var value = method.getValue(expr);
+                yield value == null ? NOT_CONSTANT : values.get(value);
+            }
+            case UNARY_EXPR -> {
+                var operand = evaluate(expr.getChild(0));
+                yield operand instanceof Boolean boolValue ? !boolValue : operand;
+            }
+            case BINARY_EXPR -> evaluateBinaryExpr(expr);
+            // Calls, arrays and objects
+            default -> NOT_CONSTANT;
+        };
+    }
+
+    private Object evaluateBinaryExpr(JmmNode binaryExpr) {
+        var op = binaryExpr.get("op");
+        var left = evaluate(binaryExpr.getChild(0));
+
+        // The right side is only evaluated for some values of the left one, which must then be known
+        if (op.equals("&&") || op.equals("||")) {
+            if (!(left instanceof Boolean boolValue)) {
+                return left;
+            }
+            if (boolValue == op.equals("||")) {
+                return boolValue;
+            }
+            return evaluate(binaryExpr.getChild(1));
+        }
+
+        var right = evaluate(binaryExpr.getChild(1));
+        if (left == NOT_CONSTANT || right == NOT_CONSTANT) {
+            return NOT_CONSTANT;
+        }
+        if (left == null || right == null) {
+            return null;
+        }
+        if (!(left instanceof Integer leftValue) || !(right instanceof Integer rightValue)) {
+            return NOT_CONSTANT;
+        }
+
+        return switch (op) {
+            case "+" -> leftValue + rightValue;
+            case "-" -> leftValue - rightValue;
+            case "*" -> leftValue * rightValue;
+            // Division by zero is left to throw when the program runs
+            case "/" -> rightValue == 0 ? NOT_CONSTANT : leftValue / rightValue;
+            case "<" -> leftValue < rightValue;
+            case "<=" -> leftValue <= rightValue;
+            case ">" -> leftValue > rightValue;
+            case ">=" -> leftValue >= rightValue;
+            default -> NOT_CONSTANT;
+        };
+    }
+}
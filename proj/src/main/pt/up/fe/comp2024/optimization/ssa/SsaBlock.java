@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block: the phis at its start, then statements without control flow, and at last, when it branches, the
+ * condition that chooses between its two successors.
+ */
+public class SsaBlock {
+
+    private final int id;
+    private final List<SsaValue> phis = new ArrayList<>();
+    private final List<JmmNode> statements = new ArrayList<>();
+    private final List<SsaEdge> predecessors = new ArrayList<>();
+    private final List<SsaEdge> successors = new ArrayList<>();
+    private JmmNode condition;
+
+    SsaBlock(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the phis of the block, whose operands are in the order of {@link #getPredecessors()}
+     */
+    public List<SsaValue> getPhis() {
+        return phis;
+    }
+
+    /**
+     * @return the assignments, expression statements and returns of the block, in order
+     */
+    public List<JmmNode> getStatements() {
+        return statements;
+    }
+
+    public List<SsaEdge> getPredecessors() {
+        return predecessors;
+    }
+
+    public List<SsaEdge> getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * @return the condition of the if or while that ends the block, or null if it does not branch
+     */
+    public JmmNode getCondition() {
+        return condition;
+    }
+
+    void setCondition(JmmNode condition) {
+        this.condition = condition;
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id;
+    }
+}
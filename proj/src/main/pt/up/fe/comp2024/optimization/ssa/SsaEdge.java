@@ -0,0 +1,14 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+/**
+ * An edge of the control-flow graph of a method.
+ *
+ * @param when the value of the condition of 'from' that takes this edge, or null if 'from' does not branch
+ */
+public record SsaEdge(SsaBlock from, SsaBlock to, Boolean when) {
+
+    @Override
+    public String toString() {
+        return from.getId() + " -> " + to.getId() + (when == null ? "" : " (" + when + ")");
+    }
+}
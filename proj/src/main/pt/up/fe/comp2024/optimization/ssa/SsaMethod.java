@@ -0,0 +1,276 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The control-flow graph of a method in SSA form, over the statements of its AST.
+ * <p>
+ * Java-- only has if and while, so the graph is built in one walk over the statements, with the phis of an if at the
+ * block where its branches join and the ones of a while at the block of its condition, for the variables the loop
+ * assigns. This gives the same phis as placing them at the dominance frontiers, without computing them. Only the
+ * locals and parameters of the method are in SSA form; fields and array elements are not.
+ */
+public class SsaMethod {
+
+    private final JmmNode methodDecl;
+    private final Set<String> variables = new LinkedHashSet<>();
+    private final List<SsaBlock> blocks = new ArrayList<>();
+    private final List<SsaValue> entryValues = new ArrayList<>();
+    private final Map<JmmNode, SsaValue> uses = new IdentityHashMap<>();
+    private final Map<JmmNode, SsaValue> definitions = new IdentityHashMap<>();
+
+    // While building, the block where the next statement goes and the value each variable has there
+    private SsaBlock block;
+    private Map<String, SsaValue> current;
+
+    private SsaMethod(JmmNode methodDecl) {
+        this.methodDecl = methodDecl;
+    }
+
+    public static SsaMethod build(JmmNode methodDecl, SymbolTable table) {
+        var method = new SsaMethod(methodDecl);
+        var name = methodDecl.get("name");
+
+        table.getParameters(name).forEach(param -> method.variables.add(param.getName()));
+        table.getLocalVariables(name).forEach(local -> method.variables.add(local.getName()));
+
+        method.build();
+        return method;
+    }
+
+    private void build() {
+        block = newBlock();
+        current = new LinkedHashMap<>();
+        for (var variable : variables) {
+            var value = new SsaValue(SsaValue.Kind.ENTRY, variable, block, null);
+            entryValues.add(value);
+            current.put(variable, value);
+        }
+
+        for (int i = 0; i < methodDecl.getNumChildren(); i++) {
+            var child = methodDecl.getChild(i);
+            if (Kind.of(child).isStmt()) {
+                buildStmt(child);
+            }
+        }
+
+        block = null;
+        current = null;
+    }
+
+    public JmmNode getMethodDecl() {
+        return methodDecl;
+    }
+
+    public SsaBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * @return the blocks, the entry first; blocks after a return have no predecessors
+     */
+    public List<SsaBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * @return the values of the variables when the method starts
+     */
+    public List<SsaValue> getEntryValues() {
+        return Collections.unmodifiableList(entryValues);
+    }
+
+    /**
+     * @return the value read by a variable, or null if it is not a local or parameter, or it is assigned there
+     */
+    public SsaValue getValue(JmmNode var) {
+        return uses.get(var);
+    }
+
+    /**
+     * @return the value an assignment gives to a local or parameter, or null if it assigns something else
+     */
+    public SsaValue getDefinition(JmmNode assignStmt) {
+        return definitions.get(assignStmt);
+    }
+
+    private SsaBlock newBlock() {
+        var newBlock = new SsaBlock(blocks.size());
+        blocks.add(newBlock);
+        return newBlock;
+    }
+
+    private static void addEdge(SsaBlock from, SsaBlock to, Boolean when) {
+        var edge = new SsaEdge(from, to, when);
+        from.getSuccessors().add(edge);
+        to.getPredecessors().add(edge);
+    }
+
+    private void buildStmt(JmmNode stmt) {
+        switch (Kind.of(stmt)) {
+            case ASSIGN_STMT -> buildAssignStmt(stmt);
+            case EXPR_STMT -> {
+                readUses(stmt.getChild(0));
+                block.getStatements().add(stmt);
+            }
+            case RETURN_STMT -> {
+                readUses(stmt.getChild(0));
+                block.getStatements().add(stmt);
+                // Whatever follows cannot be reached
+                block = newBlock();
+            }
+            case MULT_STMT -> {
+                for (int i = 0; i < stmt.getNumChildren(); i++) {
+                    buildStmt(stmt.getChild(i));
+                }
+            }
+            case IF_STMT -> buildIfStmt(stmt);
+            case WHILE_STMT -> buildWhileStmt(stmt);
+            default -> throw new RuntimeException("Unexpected statement '" + stmt.getKind() + "'");
+        }
+    }
+
+    private void buildAssignStmt(JmmNode assignStmt) {
+        var lhs = assignStmt.getChild(0);
+        var rhsValues = readUses(assignStmt.getChild(1));
+
+        if (Kind.VAR.check(lhs) && variables.contains(lhs.get("name"))) {
+            var value = new SsaValue(SsaValue.Kind.ASSIGNMENT, lhs.get("name"), block, assignStmt);
+            rhsValues.forEach(used -> used.getUsers().add(value));
+            definitions.put(assignStmt, value);
+            current.put(value.getVariable(), value);
+        } else if (!Kind.VAR.check(lhs)) {
+            // The array and the index of an array element
+            readUses(lhs);
+        }
+
+        block.getStatements().add(assignStmt);
+    }
+
+    private void buildIfStmt(JmmNode ifStmt) {
+        var branch = block;
+        branch.setCondition(ifStmt.getChild(0));
+        readUses(ifStmt.getChild(0)).forEach(used -> used.getBranches().add(branch));
+
+        var before = current;
+        List<SsaBlock> ends = new ArrayList<>();
+        List<Map<String, SsaValue>> endValues = new ArrayList<>();
+        for (var when : List.of(true, false)) {
+            block = newBlock();
+            addEdge(branch, block, when);
+            current = new LinkedHashMap<>(before);
+            buildStmt(ifStmt.getChild(when ? 1 : 2));
+            ends.add(block);
+            endValues.add(current);
+        }
+
+        block = newBlock();
+        current = new LinkedHashMap<>(before);
+        for (var end : ends) {
+            addEdge(end, block, null);
+        }
+
+        for (var variable : variables) {
+            var thenValue = endValues.get(0).get(variable);
+            var elseValue = endValues.get(1).get(variable);
+            if (thenValue != elseValue) {
+                var phi = addPhi(variable);
+                addOperand(phi, thenValue);
+                addOperand(phi, elseValue);
+            }
+        }
+    }
+
+    private void buildWhileStmt(JmmNode whileStmt) {
+        var header = newBlock();
+        addEdge(block, header, null);
+        block = header;
+
+        // The variables the loop assigns have a phi, whose operand from the end of the body is only known after it
+        var body = whileStmt.getChild(1);
+        List<SsaValue> phis = new ArrayList<>();
+        for (var variable : getAssigned(body)) {
+            var before = current.get(variable);
+            var phi = addPhi(variable);
+            addOperand(phi, before);
+            phis.add(phi);
+        }
+
+        header.setCondition(whileStmt.getChild(0));
+        readUses(whileStmt.getChild(0)).forEach(used -> used.getBranches().add(header));
+        var afterCondition = current;
+
+        block = newBlock();
+        addEdge(header, block, true);
+        current = new LinkedHashMap<>(afterCondition);
+        buildStmt(body);
+        addEdge(block, header, null);
+        for (var phi : phis) {
+            addOperand(phi, current.get(phi.getVariable()));
+        }
+
+        block = newBlock();
+        addEdge(header, block, false);
+        current = afterCondition;
+    }
+
+    private SsaValue addPhi(String variable) {
+        var phi = new SsaValue(SsaValue.Kind.PHI, variable, block, null);
+        block.getPhis().add(phi);
+        current.put(variable, phi);
+        return phi;
+    }
+
+    private static void addOperand(SsaValue phi, SsaValue operand) {
+        phi.getOperands().add(operand);
+        operand.getUsers().add(phi);
+    }
+
+    private Set<String> getAssigned(JmmNode stmt) {
+        Set<String> assigned = new LinkedHashSet<>();
+        stmt.getDescendantsAndSelfStream()
+                .filter(Kind.ASSIGN_STMT::check)
+                .map(assignStmt -> assignStmt.getChild(0))
+                .filter(lhs -> Kind.VAR.check(lhs) && variables.contains(lhs.get("name")))
+                .forEach(lhs -> assigned.add(lhs.get("name")));
+
+        return assigned;
+    }
+
+    /**
+     * Records the value read by each variable of the expression.
+     *
+     * @return the values read
+     */
+    private List<SsaValue> readUses(JmmNode expr) {
+        List<SsaValue> read = new ArrayList<>();
+        readUses(expr, read);
+        return read;
+    }
+
+    private void readUses(JmmNode expr, List<SsaValue> read) {
+        if (Kind.VAR.check(expr)) {
+            var value = current.get(expr.get("name"));
+            if (value != null) {
+                uses.put(expr, value);
+                read.add(value);
+            }
+            return;
+        }
+
+        for (int i = 0; i < expr.getNumChildren(); i++) {
+            readUses(expr.getChild(i), read);
+        }
+    }
+}
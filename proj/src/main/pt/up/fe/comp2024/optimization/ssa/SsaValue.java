@@ -0,0 +1,81 @@
+package pt.up.fe.comp2024.optimization.ssa;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One definition of a local variable or parameter, which every use of the variable it reaches reads.
+ */
+public class SsaValue {
+
+    public enum Kind {
+        // The value of a parameter, or of a local before it is assigned
+        ENTRY,
+        ASSIGNMENT,
+        PHI
+    }
+
+    private final Kind kind;
+    private final String variable;
+    private final SsaBlock block;
+    private final JmmNode assignment;
+    private final List<SsaValue> operands = new ArrayList<>();
+
+    // What has to be evaluated again when this value changes
+    private final List<SsaValue> users = new ArrayList<>();
+    private final List<SsaBlock> branches = new ArrayList<>();
+
+    SsaValue(Kind kind, String variable, SsaBlock block, JmmNode assignment) {
+        this.kind = kind;
+        this.variable = variable;
+        this.block = block;
+        this.assignment = assignment;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getVariable() {
+        return variable;
+    }
+
+    public SsaBlock getBlock() {
+        return block;
+    }
+
+    /**
+     * @return the assignment statement, for a value of kind {@link Kind#ASSIGNMENT}
+     */
+    public JmmNode getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * @return the operands of a phi, one for each predecessor of its block
+     */
+    public List<SsaValue> getOperands() {
+        return operands;
+    }
+
+    /**
+     * @return the assignments whose right side reads this value, and the phis that take it as an operand
+     */
+    public List<SsaValue> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return the blocks whose condition reads this value
+     */
+    public List<SsaBlock> getBranches() {
+        return branches;
+    }
+
+    @Override
+    public String toString() {
+        return variable + "@" + block + "(" + kind + ")";
+    }
+}
@@ -0,0 +1,102 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+
+/**
+ * Converts the ANTLR parse tree into {@link CompactJmmNode}s, with the same kinds, attributes and children as the
+ * library converter, but reading the fields of each context directly instead of through reflection.
+ */
+public class JmmAstBuilder {
+
+    // Kind of each context class, e.g. BinaryExprContext is a BinaryExpr
+    private static final ClassValue<Kind> KINDS = new ClassValue<>() {
+        @Override
+        protected Kind computeValue(Class<?> contextClass) {
+            var className = contextClass.getSimpleName();
+            return Kind.fromString(className.substring(0, className.length() - "Context".length()));
+        }
+    };
+
+    public static JmmNode build(ParserRuleContext context) {
+        var node = new CompactJmmNode(KINDS.get(context.getClass()));
+
+        setPosition(node, context);
+        setAttributes(node, context);
+
+        if (context.children != null) {
+            for (var child : context.children) {
+                // Tokens are attributes, not nodes
+                if (child instanceof ParserRuleContext childContext) {
+                    node.add(build(childContext));
+                }
+            }
+        }
+
+        return node;
+    }
+
+    private static void setPosition(CompactJmmNode node, ParserRuleContext context) {
+        var start = context.getStart();
+        var stop = context.getStop() != null ? context.getStop() : start;
+
+        node.setPosition(start.getLine(), start.getCharPositionInLine(), stop.getLine(),
+                stop.getCharPositionInLine());
+    }
+
+    private static void setAttributes(CompactJmmNode node, ParserRuleContext context) {
+        if (context instanceof JavammParser.ExprContext expr) {
+            node.setNumArgs(expr.numArgs);
+            node.setNumArrayArgs(expr.numArrayArgs);
+        }
+
+        if (context instanceof JavammParser.ImportDeclContext importDecl) {
+            node.putObject("ID", importDecl.ID.getText());
+            // A mutable list, as in the library converter
+            node.putObject("name", new ArrayList<>(importDecl.name.stream().map(Token::getText).toList()));
+        } else if (context instanceof JavammParser.ClassDeclContext classDecl) {
+            node.setText(classDecl.name.getText());
+            if (classDecl.superName != null) {
+                node.putObject("superName", classDecl.superName.getText());
+            }
+        } else if (context instanceof JavammParser.VarDeclContext varDecl) {
+            node.setText(varDecl.name.getText());
+        } else if (context instanceof JavammParser.TypeContext type) {
+            node.setText(type.name.getText());
+            node.setArray(type.isArray);
+            node.setVarargs(type.isVarargs);
+        } else if (context instanceof JavammParser.MethodDeclContext methodDecl) {
+            node.setText(methodDecl.name.getText());
+            node.setPublic(methodDecl.isPublic);
+            node.setStatic(methodDecl.isStatic);
+            node.setNumParams(methodDecl.numParams);
+        } else if (context instanceof JavammParser.ParamContext param) {
+            node.setText(param.name.getText());
+        } else if (context instanceof JavammParser.VarContext var) {
+            node.setText(var.name.getText());
+        } else if (context instanceof JavammParser.ThisContext thisExpr) {
+            node.setText(thisExpr.name.getText());
+        } else if (context instanceof JavammParser.NewClassObjContext newClassObj) {
+            node.setText(newClassObj.name.getText());
+        } else if (context instanceof JavammParser.FunctionCallContext functionCall) {
+            node.setText(functionCall.func.getText());
+        } else if (context instanceof JavammParser.LengthCallContext lengthCall) {
+            node.setText(lengthCall.func.getText());
+        } else if (context instanceof JavammParser.BinaryExprContext binaryExpr) {
+            node.setText(binaryExpr.op.getText());
+        } else if (context instanceof JavammParser.UnaryExprContext unaryExpr) {
+            node.setText(unaryExpr.op.getText());
+        } else if (context instanceof JavammParser.IntLiteralContext intLiteral) {
+            // Literals that do not fit an int keep their text, and fail where they are used, as before
+            node.putObject("value", intLiteral.value.getText());
+        } else if (context instanceof JavammParser.BoolLiteralContext boolLiteral) {
+            node.setBoolValue(Boolean.parseBoolean(boolLiteral.value.getText()));
+        }
+    }
+}
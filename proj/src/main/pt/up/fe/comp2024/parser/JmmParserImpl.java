@@ -1,14 +1,26 @@
 package pt.up.fe.comp2024.parser;
 
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
-import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import pt.up.fe.comp.jmm.ast.antlr.JmmErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+import pt.up.fe.specs.util.SpecsSystem;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,8 +36,49 @@ import java.util.Map;
  * specific language governing permissions and limitations under the License. under the License.
  */
 
+/**
+ * Parses in two stages: first with SLL prediction, which is faster and enough for almost every program, giving up at
+ * the first syntax error; only then again with full LL prediction, which also gives the error reports.
+ * <p>
+ * The lexer and the parser are reused by the following compilations of the same thread. The DFA and the prediction
+ * context cache are static in the generated parser, so every thread shares them.
+ */
 public class JmmParserImpl implements JmmParser {
 
+    private static final ThreadLocal<ReusableParser> PARSERS = ThreadLocal.withInitial(ReusableParser::new);
+
+    private final Telemetry telemetry;
+
+    public JmmParserImpl() {
+        this(Telemetry.disabled());
+    }
+
+    public JmmParserImpl(Telemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * The lexer and parser of one thread, pointed at a new input for each parse.
+     */
+    private static class ReusableParser {
+        private final JavammLexer lexer;
+        private final JavammParser parser;
+
+        private ReusableParser() {
+            lexer = new JavammLexer(new ANTLRInputStream(""));
+            parser = new JavammParser(new CommonTokenStream(lexer));
+        }
+
+        private void reset(String jmmCode, PredictionMode predictionMode, ANTLRErrorStrategy errorStrategy) {
+            lexer.setInputStream(new ANTLRInputStream(jmmCode));
+            // A new token stream, since setTokenSource does not clear the end of file of the previous input
+            parser.setTokenStream(new CommonTokenStream(lexer));
+
+            parser.getInterpreter().setPredictionMode(predictionMode);
+            parser.setErrorHandler(errorStrategy);
+        }
+    }
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,24 +86,73 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        return telemetry.measure("parse", () -> parseCode(jmmCode, startingRule, config));
+    }
 
-        try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
-            // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
-            // Wrap lexer around a token stream
-            var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
+    private JmmParserResult parseCode(String jmmCode, String startingRule, Map<String, String> config) {
+        var reusable = PARSERS.get();
 
+        try {
+            reusable.reset(jmmCode, PredictionMode.SLL, new BailErrorStrategy());
+            try {
+                return parseRule(reusable, startingRule, config);
+            } catch (RuntimeException e) {
+                if (!isBailOut(e)) {
+                    throw e;
+                }
+            }
 
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            // Either a syntax error or a decision SLL cannot make, only full LL can tell
+            reusable.reset(jmmCode, PredictionMode.LL, new DefaultErrorStrategy());
+            return parseRule(reusable, startingRule, config);
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
+        } finally {
+            // Do not keep the tokens of this input alive until the next parse
+            reusable.reset("", PredictionMode.LL, new DefaultErrorStrategy());
         }
     }
+
+    /**
+     * Parses the given rule, and converts the parse tree into the AST if there were no errors.
+     */
+    private static JmmParserResult parseRule(ReusableParser reusable, String startingRule, Map<String, String> config) {
+        reusable.lexer.removeErrorListeners();
+        var lexerListener = new JmmErrorListener(Stage.LEXICAL);
+        reusable.lexer.addErrorListener(lexerListener);
+
+        reusable.parser.removeErrorListeners();
+        var parserListener = new JmmErrorListener(Stage.SYNTATIC);
+        reusable.parser.addErrorListener(parserListener);
+
+        var tree = startingRule.equals("program") ?
+                reusable.parser.program() :
+                (ParserRuleContext) SpecsSystem.invoke(reusable.parser, startingRule);
+
+        List<Report> reports = new ArrayList<>();
+        reports.addAll(lexerListener.getReports());
+        reports.addAll(parserListener.getReports());
+
+        if (reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR)) {
+            return new JmmParserResult(null, reports, config);
+        }
+
+        // Convert ANTLR CST to JmmNode AST
+        return new JmmParserResult(JmmAstBuilder.build(tree), reports, config);
+    }
+
+    /**
+     * @return true if the exception comes from the {@link BailErrorStrategy}, which the rule invocation may wrap
+     */
+    private static boolean isBailOut(Throwable exception) {
+        for (var cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
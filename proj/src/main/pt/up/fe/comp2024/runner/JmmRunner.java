@@ -0,0 +1,343 @@
+package pt.up.fe.comp2024.runner;
+
+import jasmin.ClassFile;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs compiled Java-- programs inside the current JVM, instead of writing their class files to a temporary folder
+ * and starting a new JVM for each one as {@link JasminResult#run()} does.
+ * <p>
+ * Each program is defined by its own class loader, with the Java-- libraries in its path and only the platform
+ * classes as parent, so programs do not see the compiler nor share static state (e.g. the input buffer of 'io').
+ * The standard streams are redirected per thread, so several programs can run at the same time.
+ * <p>
+ * A program that exceeds the timeout is interrupted and abandoned: its thread cannot be killed, but any further
+ * output fails, which stops programs stuck printing in a loop. Programs that call System.exit stop the whole JVM.
+ */
+public class JmmRunner {
+
+    // Compiled classes of the Java-- libraries, e.g. 'io'
+    public static final String LIBS_CLASSPATH = "libs-jmm/compiled";
+
+    // Same bound as JasminResult
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    // Return value of a program that did not finish, as given by SpecsSystem for processes that time out
+    private static final int TIMEOUT_RETURN_VALUE = -1;
+
+    // The Jasmin assembler keeps part of its state in static fields
+    private static final Object ASSEMBLER_LOCK = new Object();
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final URL[] classpath;
+    private final Duration timeout;
+    private final ExecutorService programs;
+
+    /**
+     * Creates a runner with the Java-- libraries in the classpath and the default timeout.
+     */
+    public JmmRunner() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    public JmmRunner(Duration timeout) {
+        this(List.of(new File(LIBS_CLASSPATH)), timeout);
+    }
+
+    /**
+     * @param classpath folders and jars where the classes used by the programs are
+     * @param timeout   how long a program can run before it is stopped
+     */
+    public JmmRunner(List<File> classpath, Duration timeout) {
+        this.classpath = classpath.stream().map(JmmRunner::toUrl).toArray(URL[]::new);
+        this.timeout = timeout;
+        // Daemon threads, so that an abandoned program does not keep the JVM alive
+        this.programs = Executors.newCachedThreadPool(task -> {
+            var thread = new Thread(task, "jmm-program-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static URL toUrl(File file) {
+        try {
+            return file.toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Invalid classpath entry '" + file + "'", e);
+        }
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Assembles Jasmin code in memory.
+     *
+     * @param jasminCode the Jasmin code of one class
+     * @param sourceName the name used in the error messages of the assembler
+     * @return the bytes of the class file
+     */
+    public static byte[] assemble(String jasminCode, String sourceName) {
+        synchronized (ASSEMBLER_LOCK) {
+            var classFile = new ClassFile();
+
+            try {
+                classFile.readJasmin(new StringReader(jasminCode), sourceName, true);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not assemble Jasmin code of '" + sourceName + "'", e);
+            }
+
+            if (classFile.errorCount() > 0) {
+                throw new RuntimeException("Found " + classFile.errorCount() + " errors while compiling Jasmin code.");
+            }
+
+            var bytes = new ByteArrayOutputStream();
+            try {
+                classFile.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not write class file of '" + sourceName + "'", e);
+            }
+
+            return bytes.toByteArray();
+        }
+    }
+
+    public RunResult run(JasminResult jasminResult) {
+        return run(jasminResult, List.of(), null);
+    }
+
+    /**
+     * Assembles the Jasmin code in memory and runs its main method.
+     *
+     * @param args  arguments for the program
+     * @param input input to give to the program, can be null
+     */
+    public RunResult run(JasminResult jasminResult, List<String> args, String input) {
+        var classFile = assemble(jasminResult.getJasminCode(), jasminResult.getClassName() + ".j");
+        return run(jasminResult.getClassName(), classFile, args, input);
+    }
+
+    public RunResult run(ClassFileResult classFileResult, List<String> args, String input) {
+        return run(classFileResult.getClassName(), classFileResult.getClassFile(), args, input);
+    }
+
+    /**
+     * Runs the main method of a class.
+     *
+     * @param className the name of the class
+     * @param classFile the bytes of its class file
+     * @param args      arguments for the program
+     * @param input     input to give to the program, can be null
+     * @return what the program printed, and how it ended
+     */
+    public RunResult run(String className, byte[] classFile, List<String> args, String input) {
+        StandardStreams.install();
+
+        var out = new CapturedOutput();
+        var err = new CapturedOutput();
+        var in = new TerminalInput(toStdin(input).getBytes(Charset.defaultCharset()));
+        var loader = new ProgramClassLoader(classpath, className, classFile);
+
+        Future<Integer> program = programs.submit(() -> {
+            StandardStreams.redirect(new StandardStreams.Redirection(out, err, in));
+            try {
+                return runMain(loader, className, args);
+            } finally {
+                StandardStreams.clear();
+            }
+        });
+
+        try {
+            int returnValue = program.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            closeLoader(loader);
+            return new RunResult(returnValue, out.getContents(), err.getContents(), false);
+        } catch (TimeoutException e) {
+            program.cancel(true);
+            out.close();
+            err.close();
+            // The loader is not closed, the program may still be running
+            return new RunResult(TIMEOUT_RETURN_VALUE, out.getContents(),
+                    err.getContents() + "Timed out after " + timeout.toMillis() + " ms", true);
+        } catch (InterruptedException e) {
+            program.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running '" + className + "'", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not run '" + className + "'", e.getCause());
+        }
+    }
+
+    /**
+     * Input is given line by line, as if typed in a terminal.
+     */
+    private static String toStdin(String input) {
+        if (input == null || input.isEmpty()) {
+            return "";
+        }
+
+        return input.lines().map(line -> line + System.lineSeparator()).collect(Collectors.joining());
+    }
+
+    /**
+     * Runs in the thread of the program, with the redirected streams. Mimics the messages and the exit codes of the
+     * java launcher.
+     */
+    private static int runMain(ClassLoader loader, String className, List<String> args) {
+        try {
+            var mainClass = Class.forName(className, true, loader);
+
+            Method main;
+            try {
+                main = mainClass.getDeclaredMethod("main", String[].class);
+            } catch (NoSuchMethodException e) {
+                main = null;
+            }
+
+            if (main == null || !Modifier.isStatic(main.getModifiers())) {
+                System.err.println("Error: Main method not found in class " + className);
+                return 1;
+            }
+
+            // The generated classes are not public
+            main.setAccessible(true);
+            main.invoke(null, (Object) args.toArray(String[]::new));
+            return 0;
+        } catch (InvocationTargetException e) {
+            printUncaught(e.getCause());
+            return 1;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            printUncaught(e);
+            return 1;
+        }
+    }
+
+    private static void printUncaught(Throwable throwable) {
+        System.err.print("Exception in thread \"main\" ");
+        throwable.printStackTrace();
+    }
+
+    private static void closeLoader(URLClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            // Only releases the open jars, nothing to do
+        }
+    }
+
+    /**
+     * Defines the class of the program, and loads the libraries it uses from the classpath. They must be in the same
+     * loader to share the default package.
+     */
+    private static class ProgramClassLoader extends URLClassLoader {
+        private final String className;
+        private final byte[] classFile;
+
+        ProgramClassLoader(URL[] classpath, String className, byte[] classFile) {
+            super(classpath, ClassLoader.getPlatformClassLoader());
+            this.className = className;
+            this.classFile = classFile;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (!name.equals(className)) {
+                return super.findClass(name);
+            }
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    /**
+     * Input of one program. Like a terminal, a read returns at most one line and nothing is available in advance,
+     * since 'io' creates a new reader for each line and would lose what a previous reader buffered.
+     */
+    private static class TerminalInput extends ByteArrayInputStream {
+
+        TerminalInput(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int lineEnd = pos;
+            while (lineEnd < count && buf[lineEnd] != '\n') {
+                lineEnd++;
+            }
+
+            // Includes the line terminator
+            int lineLength = Math.min(lineEnd + 1, count) - pos;
+            return super.read(b, off, Math.min(len, Math.max(lineLength, 0)));
+        }
+
+        @Override
+        public synchronized int available() {
+            // Otherwise readers keep reading past the end of the line
+            return 0;
+        }
+    }
+
+    /**
+     * Output of one program. Once closed, writing fails, so an abandoned program cannot keep filling it.
+     */
+    private static class CapturedOutput extends OutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private boolean closed = false;
+
+        @Override
+        public synchronized void write(int b) {
+            checkOpen();
+            bytes.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            checkOpen();
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+        }
+
+        synchronized String getContents() {
+            return bytes.toString(Charset.defaultCharset());
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("The program was stopped");
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pt.up.fe.comp2024.runner;
+
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+/**
+ * The outcome of running a program with {@link JmmRunner}, in the same shape as the output of a forked JVM.
+ */
+public class RunResult extends ProcessOutputAsString {
+
+    private final boolean timedOut;
+
+    public RunResult(int returnValue, String stdOut, String stdErr, boolean timedOut) {
+        super(returnValue, stdOut, stdErr);
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * @return true if the program was stopped because it ran for longer than the timeout of the runner
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
@@ -0,0 +1,131 @@
+package pt.up.fe.comp2024.runner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.Function;
+
+/**
+ * Redirects System.out, System.err and System.in per thread, so that programs running at the same time in the same
+ * JVM do not mix their input and output.
+ * <p>
+ * The redirection is inherited by the threads a program starts. Every other thread keeps using the streams that were
+ * installed before.
+ */
+class StandardStreams {
+
+    /**
+     * The streams of one program.
+     */
+    static class Redirection {
+        private final OutputStream out;
+        private final OutputStream err;
+        private final InputStream in;
+
+        Redirection(OutputStream out, OutputStream err, InputStream in) {
+            this.out = out;
+            this.err = err;
+            this.in = in;
+        }
+
+        OutputStream getOut() {
+            return out;
+        }
+
+        OutputStream getErr() {
+            return err;
+        }
+
+        InputStream getIn() {
+            return in;
+        }
+    }
+
+    private static final InheritableThreadLocal<Redirection> CURRENT = new InheritableThreadLocal<>();
+
+    /**
+     * Replaces the standard streams by streams that follow the redirection of the current thread. Does nothing if
+     * they are already installed, but installs them again if someone else replaced them meanwhile.
+     */
+    static synchronized void install() {
+        if (!(System.out instanceof RedirectedPrintStream)) {
+            System.setOut(new RedirectedPrintStream(System.out, Redirection::getOut));
+        }
+
+        if (!(System.err instanceof RedirectedPrintStream)) {
+            System.setErr(new RedirectedPrintStream(System.err, Redirection::getErr));
+        }
+
+        if (!(System.in instanceof RedirectedInputStream)) {
+            System.setIn(new RedirectedInputStream(System.in));
+        }
+    }
+
+    /**
+     * Redirects the standard streams of the current thread, and of the threads it starts from now on.
+     */
+    static void redirect(Redirection redirection) {
+        CURRENT.set(redirection);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    private static class RedirectedPrintStream extends PrintStream {
+
+        RedirectedPrintStream(OutputStream original, Function<Redirection, OutputStream> selector) {
+            // PrintStream already encodes and flushes in the caller thread, so the target can be chosen per write
+            super(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target().write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target().write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target().flush();
+                }
+
+                private OutputStream target() {
+                    var redirection = CURRENT.get();
+                    return redirection != null ? selector.apply(redirection) : original;
+                }
+            }, true);
+        }
+    }
+
+    private static class RedirectedInputStream extends InputStream {
+        private final InputStream original;
+
+        RedirectedInputStream(InputStream original) {
+            this.original = original;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+
+        private InputStream target() {
+            var redirection = CURRENT.get();
+            return redirection != null ? redirection.getIn() : original;
+        }
+    }
+}
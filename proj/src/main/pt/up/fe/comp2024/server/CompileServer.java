@@ -0,0 +1,145 @@
+package pt.up.fe.comp2024.server;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.Launcher;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running compiler that serves compile requests over a TCP port on the loopback interface, so repeated compilations do not pay for
+ * JVM startup, class loading and the warm-up of the ANTLR prediction caches.
+ * <p>
+ * Protocol: the client sends one command-line argument per line, followed by an empty line. The server answers with
+ * the same output as a batch compilation in {@link Launcher}, and ends with a line 'exit CODE'. The 'jmm' script is
+ * the client.
+ */
+public class CompileServer {
+
+    // Exercises the parser, every analysis pass and the code generators once at startup
+    private static final String WARM_UP_CODE = """
+            import io;
+            class WarmUp {
+                int field;
+                public int sum(int[] a, int n) {
+                    int i;
+                    int total;
+                    boolean done;
+                    i = 0;
+                    total = 0;
+                    done = false;
+                    while (i < n && !done) {
+                        if (a[i] < 0) { done = true; } else { total = total + a[i] * 2; }
+                        i = i + 1;
+                    }
+                    field = total;
+                    return total;
+                }
+                public static void main(String[] args) {
+                    WarmUp w;
+                    int[] a;
+                    w = new WarmUp();
+                    a = new int[3];
+                    a[0] = 1;
+                    io.println(w.sum(a, a.length));
+                }
+            }
+            """;
+
+    private final String address;
+    private final ExecutorService requests;
+
+    public CompileServer(String address) {
+        this.address = address;
+        // No virtual threads in Java 17, each request gets a (pooled) platform thread
+        this.requests = Executors.newCachedThreadPool();
+    }
+
+    public void run() {
+        warmUp();
+
+        try (var server = open()) {
+            System.out.println("Compile server listening on " + address);
+
+            while (true) {
+                var channel = server.accept();
+                requests.execute(() -> handle(channel));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Compile server on '" + address + "' stopped", e);
+        } finally {
+            requests.shutdown();
+        }
+    }
+
+    private ServerSocketChannel open() throws IOException {
+        var server = ServerSocketChannel.open();
+        // Only local clients are served
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+        return server;
+    }
+
+    private void warmUp() {
+        var config = CompilerConfig.getDefault();
+        JmmCompiler.compile(WARM_UP_CODE, new File("WarmUp.jmm"), config);
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel;
+             var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                     StandardCharsets.UTF_8));
+             var out = new PrintStream(Channels.newOutputStream(channel), true, StandardCharsets.UTF_8)) {
+
+            List<String> args = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                args.add(line);
+            }
+
+            out.println("exit " + compile(args, out));
+
+        } catch (IOException | RuntimeException e) {
+            // Nothing waits on the request, so this is the only place the failure can be reported
+            System.err.println("Compile request failed: " + e);
+        }
+    }
+
+    /**
+     * Compiles the files given in the arguments of a request, writing the reports to the given stream.
+     *
+     * @return the exit code of the request
+     */
+    private int compile(List<String> args, PrintStream out) {
+        Map<String, String> config;
+        try {
+            config = CompilerConfig.parseArgs(args.toArray(String[]::new));
+        } catch (RuntimeException e) {
+            out.println("error: " + e.getMessage());
+            return 2;
+        }
+
+        if (CompilerConfig.getServerAddress(config).isPresent()) {
+            out.println("error: option '-s' is not allowed in a compile request");
+            return 2;
+        }
+
+        int failed = Launcher.compile(config, out);
+
+        return failed > 0 ? 1 : 0;
+    }
+}
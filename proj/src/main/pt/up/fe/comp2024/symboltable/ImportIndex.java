@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.symboltable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The imports of a class, split once, so that checking a name is a hash lookup.
+ */
+public class ImportIndex {
+
+    // Every part of every import, since the passes accept any of them as an imported name
+    private final Set<String> names;
+
+    // Class name of each import, e.g. 'C' of 'a.b.C', to its internal name 'a/b/C'
+    private final Map<String, String> internalNames;
+
+    private ImportIndex(Collection<List<String>> imports) {
+        this.names = new HashSet<>();
+        this.internalNames = new HashMap<>();
+
+        for (var parts : imports) {
+            names.addAll(parts);
+            // The first import of a class name wins, as before
+            internalNames.putIfAbsent(parts.get(parts.size() - 1), String.join("/", parts));
+        }
+    }
+
+    /**
+     * @param imports imports as kept in the symbol table, e.g. '[a, b, C]'
+     */
+    public static ImportIndex fromSymbolTable(List<String> imports) {
+        return new ImportIndex(imports.stream()
+                .map(importName -> importName.substring(1, importName.length() - 1)) // Remove the square brackets
+                .map(importName -> Arrays.stream(importName.split(",")).map(String::trim).toList())
+                .toList());
+    }
+
+    /**
+     * @param imports imports as kept in OLLIR, e.g. 'a.b.C'
+     */
+    public static ImportIndex fromQualifiedNames(Collection<String> imports) {
+        return new ImportIndex(imports.stream()
+                .map(importName -> List.of(importName.split("\\.")))
+                .toList());
+    }
+
+    public boolean isImported(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * @return the internal name of the imported class, e.g. 'a/b/C' for 'C', or the given name if not imported
+     */
+    public String getInternalName(String className) {
+        return internalNames.getOrDefault(className, className);
+    }
+}
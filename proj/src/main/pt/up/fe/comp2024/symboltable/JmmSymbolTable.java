@@ -4,14 +4,43 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class JmmSymbolTable implements SymbolTable {
 
+    /**
+     * Where a variable is declared.
+     */
+    public enum Scope {
+        LOCAL,
+        PARAMETER,
+        FIELD
+    }
+
+    /**
+     * A variable and where it is declared.
+     */
+    public record ResolvedSymbol(Symbol symbol, Scope scope) {
+        public Type getType() {
+            return symbol.getType();
+        }
+    }
+
+    // Ids of the tables, so that nodes can keep their types without keeping the table, see TypeUtils#getExprType
+    private static final AtomicInteger LAST_ID = new AtomicInteger();
+
+    private final int id;
     private final List<String> imports;
     private final String className;
     private final String superName;
@@ -21,6 +50,15 @@ public class JmmSymbolTable implements SymbolTable {
     private final Map<String, List<Symbol>> params;
     private final Map<String, List<Symbol>> locals;
 
+    // Indexes by name, so that resolving a variable does not go through the lists
+    private final ImportIndex importIndex;
+    private final Set<String> methodSet;
+    private final Map<String, ResolvedSymbol> fieldIndex;
+    private final Map<String, Map<String, ResolvedSymbol>> methodIndex;
+
+    // Signatures of the imported classes, when a classpath was given
+    private ClassSignatureIndex classSignatures;
+
     public JmmSymbolTable(List<String> imports,
                           String className,
                           String superName,
@@ -29,6 +67,7 @@ public class JmmSymbolTable implements SymbolTable {
                           Map<String, Type> returnTypes,
                           Map<String, List<Symbol>> params,
                           Map<String, List<Symbol>> locals) {
+        this.id = LAST_ID.incrementAndGet();
         this.imports = imports;
         this.className = className;
         this.superName = superName;
@@ -37,6 +76,92 @@ public class JmmSymbolTable implements SymbolTable {
         this.returnTypes = returnTypes;
         this.params = params;
         this.locals = locals;
+
+        this.importIndex = ImportIndex.fromSymbolTable(imports);
+        this.methodSet = new HashSet<>(methods);
+        this.fieldIndex = new HashMap<>();
+        index(fields, Scope.FIELD, fieldIndex);
+        this.methodIndex = new HashMap<>();
+        for (var method : methods) {
+            Map<String, ResolvedSymbol> methodSymbols = new HashMap<>();
+            // Locals hide parameters, and the first declaration of a name hides the others
+            index(locals.getOrDefault(method, List.of()), Scope.LOCAL, methodSymbols);
+            index(params.getOrDefault(method, List.of()), Scope.PARAMETER, methodSymbols);
+            methodIndex.put(method, methodSymbols);
+        }
+    }
+
+    private static void index(List<Symbol> symbols, Scope scope, Map<String, ResolvedSymbol> index) {
+        for (var symbol : symbols) {
+            index.putIfAbsent(symbol.getName(), new ResolvedSymbol(symbol, scope));
+        }
+    }
+
+    /**
+     * @return the given table, or an indexed copy of it if it was not built by {@link JmmSymbolTableBuilder}
+     */
+    public static JmmSymbolTable of(SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable;
+        }
+
+        Map<String, Type> returnTypes = new HashMap<>();
+        Map<String, List<Symbol>> params = new HashMap<>();
+        Map<String, List<Symbol>> locals = new HashMap<>();
+        for (var method : table.getMethods()) {
+            returnTypes.put(method, table.getReturnType(method));
+            params.put(method, table.getParameters(method));
+            locals.put(method, table.getLocalVariables(method));
+        }
+
+        return new JmmSymbolTable(table.getImports(), table.getClassName(), table.getSuper(), table.getFields(),
+                table.getMethods(), returnTypes, params, locals);
+    }
+
+    /**
+     * Finds the declaration of a variable used in the given method: a local, else a parameter, else a field.
+     *
+     * @return the variable and its scope, or null if it is not declared
+     */
+    public ResolvedSymbol resolve(String method, String name) {
+        var methodSymbols = methodIndex.get(method);
+        if (methodSymbols != null) {
+            var symbol = methodSymbols.get(name);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+
+        return fieldIndex.get(name);
+    }
+
+    /**
+     * Declares one more local in a method, e.g. for code the optimizations add to it. Its name must not be used in the
+     * method yet, nor be a field, since the types already computed for the method do not change.
+     */
+    public void addLocalVariable(String method, Symbol local) {
+        List<Symbol> methodLocals = new ArrayList<>(locals.getOrDefault(method, List.of()));
+        methodLocals.add(local);
+        locals.put(method, List.copyOf(methodLocals));
+
+        methodIndex.computeIfAbsent(method, name -> new HashMap<>())
+                .putIfAbsent(local.getName(), new ResolvedSymbol(local, Scope.LOCAL));
+    }
+
+    public ImportIndex getImportIndex() {
+        return importIndex;
+    }
+
+    public Optional<ClassSignatureIndex> getClassSignatures() {
+        return Optional.ofNullable(classSignatures);
+    }
+
+    public void setClassSignatures(ClassSignatureIndex classSignatures) {
+        this.classSignatures = classSignatures;
+    }
+
+    public boolean hasMethod(String method) {
+        return methodSet.contains(method);
     }
 
     @Override
@@ -44,6 +169,13 @@ public class JmmSymbolTable implements SymbolTable {
         return imports;
     }
 
+    /**
+     * @return a number that identifies this table among the tables created so far
+     */
+    public int getId() {
+        return id;
+    }
+
     @Override
     public String getClassName() {
         return className;
@@ -4,9 +4,11 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -34,6 +36,41 @@ public class JmmSymbolTableBuilder {
         return new JmmSymbolTable(imports, className, superName, fields, methods, returnTypes, params, locals);
     }
 
+    /**
+     * Builds the table of the class where one method was replaced by another, from the entries of the other methods
+     * in the given table.
+     *
+     * @param methodName the name of the replaced method, which must be declared only once
+     */
+    public static JmmSymbolTable replaceMethod(JmmSymbolTable table, String methodName, JmmNode newMethod) {
+        var methods = new ArrayList<>(table.getMethods());
+        SpecsCheck.checkArgument(methods.indexOf(methodName) == methods.lastIndexOf(methodName)
+                && methods.contains(methodName), () -> "Expected a single method '" + methodName + "'");
+
+        Map<String, Type> returnTypes = new HashMap<>();
+        Map<String, List<Symbol>> params = new HashMap<>();
+        Map<String, List<Symbol>> locals = new HashMap<>();
+        for (var method : methods) {
+            if (!method.equals(methodName)) {
+                returnTypes.put(method, table.getReturnType(method));
+                params.put(method, table.getParameters(method));
+                locals.put(method, table.getLocalVariables(method));
+            }
+        }
+
+        String newName = newMethod.get("name");
+        methods.set(methods.indexOf(methodName), newName);
+        returnTypes.put(newName, getReturnType(newMethod));
+        params.put(newName, getParamsList(newMethod));
+        locals.put(newName, getLocalsList(newMethod));
+
+        var newTable = new JmmSymbolTable(table.getImports(), table.getClassName(), table.getSuper(),
+                table.getFields(), List.copyOf(methods), returnTypes, params, locals);
+        table.getClassSignatures().ifPresent(newTable::setClassSignatures);
+
+        return newTable;
+    }
+
     private static List<String> buildImports(JmmNode root) {
 
         return root.getChildren(IMPORT_DECL).stream()
@@ -52,11 +89,7 @@ public class JmmSymbolTableBuilder {
         Map<String, Type> map = new HashMap<>();
 
         classDecl.getChildren(METHOD_DECL).stream()
-                .forEach(method -> {
-                    Type type = TypeUtils.getType(method.getChild(0));
-                    type.putObject("isVarargs", method.getChild(0).get("isVarargs").equals("true"));
-                    map.put(method.get("name"), type);
-                });
+                .forEach(method -> map.put(method.get("name"), getReturnType(method)));
 
         return map;
     }
@@ -65,11 +98,7 @@ public class JmmSymbolTableBuilder {
         Map<String, List<Symbol>> map = new HashMap<>();
 
         classDecl.getChildren(METHOD_DECL).stream()
-                .forEach(method -> map.put(method.get("name"), method.getChildren(PARAM).stream().map(param -> {
-                    Type type = TypeUtils.getType(param.getChild(0));
-                    type.putObject("isVarargs", param.getChild(0).get("isVarargs").equals("true"));
-                    return new Symbol(type, param.get("name"));
-                }).toList()));
+                .forEach(method -> map.put(method.get("name"), getParamsList(method)));
 
         return map;
     }
@@ -92,11 +121,26 @@ public class JmmSymbolTableBuilder {
                 .toList();
     }
 
+    private static Type getReturnType(JmmNode methodDecl) {
+        Type type = TypeUtils.getType(methodDecl.getChild(0));
+        type.putObject("isVarargs", NodeUtils.getBooleanAttribute(methodDecl.getChild(0), "isVarargs", "false"));
+        return type;
+    }
+
+    private static List<Symbol> getParamsList(JmmNode methodDecl) {
+        return methodDecl.getChildren(PARAM).stream()
+                .map(param -> {
+                    Type type = TypeUtils.getType(param.getChild(0));
+                    type.putObject("isVarargs", NodeUtils.getBooleanAttribute(param.getChild(0), "isVarargs", "false"));
+                    return new Symbol(type, param.get("name"));
+                }).toList();
+    }
+
     private static List<Symbol> getLocalsList(JmmNode methodDecl) {
         return methodDecl.getChildren(VAR_DECL).stream()
                 .map(local -> {
                     Type type = TypeUtils.getType(local.getChild(0));
-                    type.putObject("isVarargs", local.getChild(0).get("isVarargs").equals("true"));
+                    type.putObject("isVarargs", NodeUtils.getBooleanAttribute(local.getChild(0), "isVarargs", "false"));
                     return new Symbol(type, local.get("name"));
                 }).toList();
     }
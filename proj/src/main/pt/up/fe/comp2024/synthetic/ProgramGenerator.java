@@ -0,0 +1,263 @@
+package pt.up.fe.comp2024.synthetic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid Java-- programs of a configurable size, for benchmarks and scaling tests. The same seed and sizes
+ * always give the same program.
+ * <p>
+ * Every program passes semantic analysis, and when it has no imports other than 'io' it also runs: loops are bounded
+ * by counters that only the loop updates, array indexes are below the length of the array, divisors are non-zero
+ * literals and each method only calls the method declared before it.
+ */
+public class ProgramGenerator {
+
+    public static final String CLASS_NAME = "Synthetic";
+
+    // Length of the array of each method, greater than any loop bound and index literal
+    private static final int ARRAY_LENGTH = 8;
+
+    // Iterations of each loop, kept small since nested loops multiply them
+    private static final int LOOP_BOUND = 3;
+
+    private final Random random;
+
+    private int methods = 10;
+    private int statements = 20;
+    private int locals = 6;
+    private int loopDepth = 2;
+    private int expressionDepth = 3;
+    private int imports = 0;
+
+    // State of the method being generated
+    private List<String> intLocals;
+    private List<String> booleanLocals;
+    private StringBuilder code;
+
+    public ProgramGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param methods number of methods, besides main
+     */
+    public ProgramGenerator methods(int methods) {
+        this.methods = Math.max(1, methods);
+        return this;
+    }
+
+    /**
+     * @param statements number of statements of each method, counting the ones nested in ifs and loops
+     */
+    public ProgramGenerator statements(int statements) {
+        this.statements = Math.max(1, statements);
+        return this;
+    }
+
+    /**
+     * @param locals number of int and boolean locals of each method, besides loop counters and the array
+     */
+    public ProgramGenerator locals(int locals) {
+        this.locals = Math.max(1, locals);
+        return this;
+    }
+
+    /**
+     * @param loopDepth maximum nesting of while loops
+     */
+    public ProgramGenerator loopDepth(int loopDepth) {
+        this.loopDepth = Math.max(0, loopDepth);
+        return this;
+    }
+
+    /**
+     * @param expressionDepth maximum depth of the expression trees
+     */
+    public ProgramGenerator expressionDepth(int expressionDepth) {
+        this.expressionDepth = Math.max(0, expressionDepth);
+        return this;
+    }
+
+    /**
+     * @param imports number of imported classes besides 'io', each used in a call statement of every method
+     */
+    public ProgramGenerator imports(int imports) {
+        this.imports = Math.max(0, imports);
+        return this;
+    }
+
+    public String generate() {
+        code = new StringBuilder();
+
+        code.append("import io;\n");
+        for (int i = 0; i < imports; i++) {
+            code.append("import Imported").append(i).append(";\n");
+        }
+
+        code.append("\nclass ").append(CLASS_NAME).append(" {\n\n");
+        code.append("    int total;\n\n");
+
+        for (int i = 0; i < methods; i++) {
+            generateMethod(i);
+        }
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("        ").append(CLASS_NAME).append(" program;\n");
+        code.append("        int result;\n");
+        code.append("        program = new ").append(CLASS_NAME).append("();\n");
+        code.append("        result = program.method").append(methods - 1).append("(").append(LOOP_BOUND)
+                .append(");\n");
+        code.append("        io.println(result);\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private void generateMethod(int index) {
+        intLocals = new ArrayList<>();
+        booleanLocals = new ArrayList<>();
+
+        // At least one int local, about a quarter of booleans
+        intLocals.add("v0");
+        for (int i = 1; i < locals; i++) {
+            if (random.nextInt(4) == 0) {
+                booleanLocals.add("b" + i);
+            } else {
+                intLocals.add("v" + i);
+            }
+        }
+
+        code.append("    public int method").append(index).append("(int n) {\n");
+
+        for (var local : intLocals) {
+            line(1, "int " + local + ";");
+        }
+        for (var local : booleanLocals) {
+            line(1, "boolean " + local + ";");
+        }
+        for (int level = 0; level < loopDepth; level++) {
+            line(1, "int c" + level + ";");
+        }
+        line(1, "int[] values;");
+
+        // Locals must be assigned before they are read
+        line(1, "values = new int[" + ARRAY_LENGTH + "];");
+        for (int i = 0; i < intLocals.size(); i++) {
+            line(1, intLocals.get(i) + " = " + i + ";");
+        }
+        for (var local : booleanLocals) {
+            line(1, local + " = " + random.nextBoolean() + ";");
+        }
+
+        // The call to the previous method and the imported calls are part of the statements
+        int remaining = statements;
+        if (index > 0) {
+            line(1, "v0 = v0 + this.method" + (index - 1) + "(" + intExpression(1) + ");");
+            remaining--;
+        }
+        for (int i = 0; i < imports && remaining > 0; i++, remaining--) {
+            line(1, "Imported" + i + ".use(" + intExpression(1) + ");");
+        }
+
+        generateStatements(remaining, 1, 0);
+
+        line(1, "total = " + intLocals.get(random.nextInt(intLocals.size())) + ";");
+        line(1, "return " + intExpression(expressionDepth) + ";");
+        code.append("    }\n\n");
+    }
+
+    /**
+     * Generates the given number of statements, counting the nested ones.
+     */
+    private void generateStatements(int count, int indent, int loopLevel) {
+        while (count > 0) {
+            int kind = random.nextInt(10);
+
+            if (kind == 0 && count >= 3) {
+                // Both branches need at least one statement
+                int thenCount = 1 + random.nextInt(count - 2);
+                int elseCount = Math.max(1, Math.min(count - 1 - thenCount, 1 + random.nextInt(3)));
+                line(indent, "if (" + booleanExpression(expressionDepth) + ") {");
+                generateStatements(thenCount, indent + 1, loopLevel);
+                line(indent, "} else {");
+                generateStatements(elseCount, indent + 1, loopLevel);
+                line(indent, "}");
+                count -= 1 + thenCount + elseCount;
+            } else if (kind == 1 && count >= 2 && loopLevel < loopDepth) {
+                var counter = "c" + loopLevel;
+                int bodyCount = 1 + random.nextInt(Math.min(count - 1, statements / 2 + 1));
+                line(indent, counter + " = 0;");
+                line(indent, "while (" + counter + " < " + LOOP_BOUND + ") {");
+                generateStatements(bodyCount, indent + 1, loopLevel + 1);
+                line(indent + 1, counter + " = " + counter + " + 1;");
+                line(indent, "}");
+                count -= 1 + bodyCount;
+            } else if (kind == 2) {
+                line(indent, "values[" + random.nextInt(ARRAY_LENGTH) + "] = " + intExpression(expressionDepth) + ";");
+                count--;
+            } else if (kind == 3 && !booleanLocals.isEmpty()) {
+                line(indent, pick(booleanLocals) + " = " + booleanExpression(expressionDepth) + ";");
+                count--;
+            } else {
+                line(indent, pick(intLocals) + " = " + intExpression(expressionDepth) + ";");
+                count--;
+            }
+        }
+    }
+
+    private String intExpression(int depth) {
+        if (depth <= 0 || random.nextInt(4) == 0) {
+            return intLeaf();
+        }
+
+        return switch (random.nextInt(6)) {
+            case 0 -> intExpression(depth - 1) + " + " + intExpression(depth - 1);
+            case 1 -> intExpression(depth - 1) + " - " + intExpression(depth - 1);
+            case 2 -> intExpression(depth - 1) + " * " + intExpression(depth - 1);
+            case 3 -> "(" + intExpression(depth - 1) + ") / " + (1 + random.nextInt(9));
+            case 4 -> "(" + intExpression(depth - 1) + " + " + intExpression(depth - 1) + ")";
+            default -> intExpression(depth - 1) + " - " + intLeaf();
+        };
+    }
+
+    private String intLeaf() {
+        return switch (random.nextInt(6)) {
+            case 0 -> String.valueOf(random.nextInt(10));
+            case 1 -> "n";
+            case 2 -> "values[" + random.nextInt(ARRAY_LENGTH) + "]";
+            case 3 -> "values.length";
+            default -> pick(intLocals);
+        };
+    }
+
+    private String booleanExpression(int depth) {
+        if (depth <= 0 || random.nextInt(3) == 0) {
+            return booleanLeaf();
+        }
+
+        return switch (random.nextInt(3)) {
+            case 0 -> booleanExpression(depth - 1) + " && " + booleanExpression(depth - 1);
+            case 1 -> "!(" + booleanExpression(depth - 1) + ")";
+            default -> intExpression(depth - 1) + " < " + intExpression(depth - 1);
+        };
+    }
+
+    private String booleanLeaf() {
+        if (!booleanLocals.isEmpty() && random.nextBoolean()) {
+            return pick(booleanLocals);
+        }
+
+        return pick(intLocals) + " < " + intLeaf();
+    }
+
+    private String pick(List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+
+    private void line(int indent, String line) {
+        code.append("    ".repeat(indent + 1)).append(line).append("\n");
+    }
+}
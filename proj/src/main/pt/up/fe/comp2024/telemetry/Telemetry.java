@@ -0,0 +1,175 @@
+package pt.up.fe.comp2024.telemetry;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each stage of one compilation.
+ * <p>
+ * CPU time and allocations are read from the {@link ThreadMXBean} of the thread that runs each stage, so a stage that
+ * hands work to other threads, e.g. the analysis with '-j', only counts what its own thread did. Stages can be
+ * measured from several threads at once. Values the JVM does not support are reported as -1.
+ */
+public class Telemetry {
+
+    private static final Gson GSON = new Gson();
+
+    // Runs the stages without measuring them, used when '-t' is not given
+    private static final Telemetry DISABLED = new Telemetry(false);
+
+    private final boolean enabled;
+    private final List<StageMeasurement> stages;
+
+    private Telemetry(boolean enabled) {
+        this.enabled = enabled;
+        // Written a few dozen times per compilation, and read while other stages may still be recorded
+        this.stages = new CopyOnWriteArrayList<>();
+    }
+
+    public static Telemetry enabled() {
+        return new Telemetry(true);
+    }
+
+    public static Telemetry disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return a new instance that records measurements if telemetry was enabled with '-t', or a disabled one
+     */
+    public static Telemetry fromConfig(Map<String, String> config) {
+        return CompilerConfig.getTelemetry(config) ? enabled() : disabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Measurements of one stage.
+     */
+    public static class StageMeasurement {
+        private final String stage;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        public StageMeasurement(String stage, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.stage = stage;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    /**
+     * Runs the given stage, recording its measurements if telemetry is enabled.
+     *
+     * @param stage  the name of the stage, e.g. 'optimization/constants/iteration-1'
+     * @param action the work of the stage
+     * @return the value returned by the stage
+     */
+    public <T> T measure(String stage, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+
+        long wallStart = System.nanoTime();
+        long cpuStart = cpuTime();
+        long allocatedStart = allocatedBytes();
+
+        try {
+            return action.get();
+        } finally {
+            // Also recorded if the stage throws, the exception is reported by the caller
+            long allocatedEnd = allocatedBytes();
+            long cpuEnd = cpuTime();
+            long wallEnd = System.nanoTime();
+
+            stages.add(new StageMeasurement(stage,
+                    wallEnd - wallStart,
+                    cpuStart < 0 ? -1 : cpuEnd - cpuStart,
+                    allocatedStart < 0 ? -1 : allocatedEnd - allocatedStart));
+        }
+    }
+
+    public void measure(String stage, Runnable action) {
+        measure(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a stage that was timed by the caller, e.g. one made of many small pieces of work. Its CPU time and
+     * allocations are reported as -1.
+     *
+     * @param stage     the name of the stage
+     * @param wallNanos how long the stage took
+     */
+    public void record(String stage, long wallNanos) {
+        if (enabled) {
+            stages.add(new StageMeasurement(stage, wallNanos, -1, -1));
+        }
+    }
+
+    public List<StageMeasurement> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * @return the measurements as a JSON object with the given file name and a list of stages, in the order they ran
+     */
+    public String toJson(String inputFile) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("file", inputFile);
+        json.put("stages", stages);
+
+        return GSON.toJson(json);
+    }
+
+    private static long cpuTime() {
+        var threads = ManagementFactory.getThreadMXBean();
+
+        if (!threads.isCurrentThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    private static long allocatedBytes() {
+        // Allocation counters are only available in the HotSpot extension of the bean
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -19,6 +19,7 @@ import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.runner.JmmRunner;
 import pt.up.fe.specs.util.SpecsCollections;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsStrings;
@@ -46,6 +47,9 @@ import static org.junit.Assert.fail;
  */
 public class CpUtils {
 
+    // Runs the generated programs in this JVM, instead of starting a new one for each
+    private static final JmmRunner RUNNER = new JmmRunner();
+
     // (if((\w\w)|_icmp\w+)\s+\w+)
     // (if_icmpeq | if_icmpne | if_icmplt | if_icmpge | if_icmpgt | if_icmple | ifeq | ifne | iflt | ifge | ifgt | ifle)
     public static final String IF_REGEX = "((if_icmpeq|if_icmpne|if_icmplt|if_icmpge|if_icmpgt|if_icmple|ifeq|ifne|iflt|ifge|ifgt|ifle)\\s+\\w+)";
@@ -528,7 +532,13 @@ public class CpUtils {
 
     public static void runJasmin(JasminResult jasminResult, String expected) {
         try {
-            var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+            var runResult = RUNNER.run(jasminResult);
+            if (runResult.isTimedOut()) {
+                fail("Jasmin execution timed out after " + RUNNER.getTimeout().toMillis() + " ms:\n"
+                        + jasminResult.getJasminCode());
+            }
+
+            var output = SpecsStrings.normalizeFileContents(runResult.getOutput(), true);
             assertEquals("Jasmin output", expected, output, jasminResult);
         } catch (Exception e) {
             throw new RuntimeException("Problems while running Jasmin code:\n" + jasminResult.getJasminCode(), e);
@@ -0,0 +1,74 @@
+package pt.up.fe.comp;
+
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.runner.JmmRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Helpers shared by the tests of the optimizations, which compile small programs given as code.
+ */
+public class OptimizationTestUtils {
+
+    // The class name comes from the code, the file only identifies the compilation
+    private static final File INPUT_FILE = new File("Test.jmm");
+
+    /**
+     * @return the semantic analysis of the code, which must have no reports
+     */
+    public static JmmSemanticsResult analyze(String code) {
+        var parserResult = new JmmParserImpl().parse(code, CompilerConfig.getDefault());
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        assertTrue(semanticsResult.getReports().toString(), semanticsResult.getReports().isEmpty());
+        return semanticsResult;
+    }
+
+    public static JmmNode getMethod(JmmSemanticsResult semanticsResult, String name) {
+        return semanticsResult.getRootNode().getDescendants(Kind.METHOD_DECL).stream()
+                .filter(methodDecl -> methodDecl.get("name").equals(name))
+                .findFirst().orElseThrow();
+    }
+
+    /**
+     * @return the OLLIR of the code without optimizations, parsed again and with its control-flow graphs
+     */
+    public static OllirResult toOllir(String code) {
+        var config = CompilerConfig.getDefault();
+        var ollirCode = JmmCompiler.compile(code, INPUT_FILE, config)
+                .getOllirResult().orElseThrow().getOllirCode();
+
+        var ollirResult = new OllirResult(ollirCode, config);
+        ollirResult.getOllirClass().buildCFGs();
+        return ollirResult;
+    }
+
+    public static Method getMethod(OllirResult ollirResult, String name) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> method.getMethodName().equals(name))
+                .findFirst().orElseThrow();
+    }
+
+    /**
+     * Compiles the code at the given optimization level and runs it.
+     *
+     * @return what the program printed
+     */
+    public static String run(String code, String level) {
+        var config = CompilerConfig.getDefault();
+        config.put("optimizationLevel", level);
+        var result = JmmCompiler.compile(code, INPUT_FILE, config);
+        assertTrue(result.getReports().toString(), result.isSuccess());
+
+        return new JmmRunner().run(result.getJasminResult().orElseThrow()).getStdOut();
+    }
+}
@@ -0,0 +1,46 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.BatchCompiler;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    private static final String OLLIR_FOLDER = "test/pt/up/fe/comp/cp2/ollir";
+
+    @Test
+    public void folderIsExpanded() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + OLLIR_FOLDER});
+
+        assertTrue(CompilerConfig.isBatch(config));
+        assertFalse(CompilerConfig.getInputFiles(config).isEmpty());
+        assertTrue(CompilerConfig.getInputFiles(config).stream().allMatch(file -> file.getName().endsWith(".jmm")));
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + OLLIR_FOLDER});
+        var inputFiles = CompilerConfig.getInputFiles(config);
+
+        var parallelResults = new BatchCompiler(config).compile(inputFiles);
+        assertEquals(inputFiles.size(), parallelResults.size());
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File inputFile = inputFiles.get(i);
+            var sequential = JmmCompiler.compile(inputFile, CompilerConfig.forInputFile(config, inputFile));
+            var parallel = parallelResults.get(i);
+
+            assertEquals(inputFile, parallel.getInputFile());
+            assertTrue(parallel.getReports().toString(), parallel.isSuccess());
+
+            // Temps and labels are numbered per compilation, so the generated code must not depend on scheduling
+            assertEquals(sequential.getOllirResult().orElseThrow().getOllirCode(),
+                    parallel.getOllirResult().orElseThrow().getOllirCode());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.comp2024.cache.BuildCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.*;
+
+public class BuildCacheTest {
+
+    private static final String INPUT_FILE = "test/pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void hitReturnsSameOutputs() throws IOException {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE,
+                "-c=" + temp.newFolder().getAbsolutePath()});
+        var cache = BuildCache.fromConfig(config).orElseThrow();
+
+        var first = JmmCompiler.compile(new File(INPUT_FILE), config);
+        assertTrue(first.getReports().toString(), first.isSuccess());
+        assertEquals(1, cache.getMisses());
+
+        var second = JmmCompiler.compile(new File(INPUT_FILE), config);
+        assertTrue(second.getReports().toString(), second.isSuccess());
+        assertEquals(1, cache.getHits());
+
+        // A hit does not run the pipeline
+        assertTrue(second.getOllirResult().isEmpty());
+        assertEquals(first.getOllirCode(), second.getOllirCode());
+        assertEquals(first.getJasminResult().orElseThrow().getJasminCode(),
+                second.getJasminResult().orElseThrow().getJasminCode());
+    }
+
+    @Test
+    public void hitReplaysReports() throws IOException {
+        var code = """
+                class Hoist {
+                    public int sum(int[] a, int k) {
+                        int i;
+                        int s;
+                        i = 0;
+                        s = 0;
+                        while (i < a.length) {
+                            s = s + a[i] * (k + 2);
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """;
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE,
+                "-c=" + temp.newFolder().getAbsolutePath()});
+        config.put("optimizationLevel", "2");
+
+        var first = JmmCompiler.compile(code, new File("Hoist.jmm"), config);
+        var second = JmmCompiler.compile(code, new File("Hoist.jmm"), config);
+        assertEquals(1, BuildCache.fromConfig(config).orElseThrow().getHits());
+
+        // The reports of the pipeline, without the log of the cache outcome
+        var firstReports = first.getReports().subList(0, first.getReports().size() - 1);
+        var secondReports = second.getReports().subList(0, second.getReports().size() - 1);
+        assertTrue(firstReports.stream().anyMatch(report -> report.getMessage().contains("out of the loop")));
+        assertEquals(firstReports.toString(), secondReports.toString());
+    }
+
+    @Test
+    public void launcherCachesSingleFile() throws IOException {
+        var folder = new File(temp.getRoot(), "cache");
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE, "-c=" + folder.getAbsolutePath()});
+
+        var output = new ByteArrayOutputStream();
+        assertEquals(0, Launcher.compile(config, new PrintStream(output, true, StandardCharsets.UTF_8)));
+        assertEquals(0, Launcher.compile(config, new PrintStream(output, true, StandardCharsets.UTF_8)));
+
+        var files = folder.list((dir, name) -> name.endsWith(".entry"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        assertTrue(output.toString(StandardCharsets.UTF_8).contains("Build cache hit"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws IOException {
+        var folder = temp.newFolder().toPath();
+        var entry = new BuildCache.Entry("A", "A {}", "x".repeat(1000), null, List.of());
+        var cache = new BuildCache(folder, 3500);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, entry);
+        }
+
+        // Each entry takes a bit more than 1000 bytes, so only three fit
+        var files = Objects.requireNonNull(folder.toFile().listFiles());
+        long size = 0;
+        for (var file : files) {
+            size += file.length();
+        }
+        assertEquals(3, files.length);
+        assertTrue(String.valueOf(size), size <= 3500);
+    }
+
+    @Test
+    public void failedStoreIsWarning() throws IOException {
+        // A file where the folder should be
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE,
+                "-c=" + temp.newFile().getAbsolutePath()});
+
+        var result = JmmCompiler.compile(new File(INPUT_FILE), config);
+        assertTrue(result.getReports().toString(), result.isSuccess());
+        assertTrue(result.getReports().stream().anyMatch(report -> report.getType() == ReportType.WARNING
+                && report.getMessage().startsWith("Could not write build cache entry")));
+    }
+
+    @Test
+    public void keyDependsOnOptions() {
+        var code = "class A {}";
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE});
+        var optimized = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE, "-o"});
+
+        assertEquals(BuildCache.key(code, config), BuildCache.key(code, CompilerConfig.getDefault()));
+        assertNotEquals(BuildCache.key(code, config), BuildCache.key(code, optimized));
+        assertNotEquals(BuildCache.key(code, config), BuildCache.key(code + " ", config));
+    }
+}
@@ -0,0 +1,222 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.runner.JmmRunner;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Differential test of the class file backend against the Jasmin backend: both classes must pass the bytecode
+ * verifier, declare the same members and print the same output.
+ */
+public class ClassFileBackendTest {
+
+    private static final String OLLIR_FOLDER = "test/pt/up/fe/comp/cpf/4_jasmin";
+
+    // The other files of this folder are not valid OLLIR
+    private static final List<String> OLLIR_FILES = List.of(
+            "test/pt/up/fe/comp/cp2/jasmin/OllirToJasminArithmetics.ollir",
+            "test/pt/up/fe/comp/cp2/jasmin/OllirToJasminBasic.ollir",
+            "test/pt/up/fe/comp/cp2/jasmin/OllirToJasminFields.ollir",
+            "test/pt/up/fe/comp/cp2/jasmin/OllirToJasminInvoke.ollir",
+            "test/pt/up/fe/comp/cp2/jasmin/Simple.ollir");
+
+    // Java-- programs, so the backends also see the OLLIR of this compiler and not only the hand-written one
+    private static final List<String> JMM_FOLDERS = List.of(
+            "test/pt/up/fe/comp/cp2/jasmin",
+            "test/pt/up/fe/comp/cp2/ollir",
+            "test/pt/up/fe/comp/cpf/3_ollir",
+            "test/pt/up/fe/comp/cpf/4_jasmin",
+            "test/pt/up/fe/comp/cpf/5_optimizations");
+
+    // Calls a varargs method without arguments, which the semantic analysis does not accept yet
+    private static final List<String> JMM_REJECTED = List.of(
+            "test/pt/up/fe/comp/cpf/3_ollir/arrays/ArrayVarArgs.jmm");
+
+    /**
+     * Loads the generated class and the Java-- libraries, which must be in the same loader to share the default
+     * package.
+     */
+    private static class SingleClassLoader extends URLClassLoader {
+        private final String className;
+        private final byte[] classFile;
+
+        SingleClassLoader(String className, byte[] classFile) throws IOException {
+            super(new URL[]{new File(JmmRunner.LIBS_CLASSPATH).toURI().toURL()});
+            this.className = className;
+            this.classFile = classFile;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (!name.equals(className)) {
+                return super.findClass(name);
+            }
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    @Test
+    public void sameBehaviourAsJasmin() throws Exception {
+        var ollirFiles = new ArrayList<>(SpecsIo.getFilesRecursive(new File(OLLIR_FOLDER), "ollir"));
+        ollirFiles.sort(Comparator.comparing(File::getPath));
+        OLLIR_FILES.stream().map(File::new).forEach(ollirFiles::add);
+        assertFalse(ollirFiles.isEmpty());
+
+        for (var ollirFile : ollirFiles) {
+            assertSameBehaviour(ollirFile.getPath(),
+                    new OllirResult(SpecsIo.read(ollirFile), CompilerConfig.getDefault()));
+        }
+    }
+
+    @Test
+    public void sameBehaviourAsJasminFromJmm() throws Exception {
+        List<File> jmmFiles = new ArrayList<>();
+        for (var folder : JMM_FOLDERS) {
+            jmmFiles.addAll(SpecsIo.getFilesRecursive(new File(folder), "jmm"));
+        }
+        jmmFiles.sort(Comparator.comparing(File::getPath));
+        assertFalse(jmmFiles.isEmpty());
+
+        for (var jmmFile : jmmFiles) {
+            if (JMM_REJECTED.contains(jmmFile.getPath().replace('\\', '/'))) {
+                continue;
+            }
+
+            var result = JmmCompiler.compile(jmmFile, CompilerConfig.getDefault());
+            assertTrue(jmmFile.getPath() + ": " + result.getReports(), result.isSuccess());
+
+            assertSameBehaviour(jmmFile.getPath(), result.getOllirResult().orElseThrow());
+        }
+    }
+
+    private static void assertSameBehaviour(String name, OllirResult ollirResult) throws Exception {
+        var className = ollirResult.getOllirClass().getClassName();
+
+        var jasminClassFile = Files.readAllBytes(new JasminBackendImpl().toJasmin(ollirResult).compile().toPath());
+        var directClassFile = new ClassFileBackendImpl().toClassFile(ollirResult).getClassFile();
+
+        Class<?> jasminClass;
+        try {
+            jasminClass = Class.forName(className, true, new SingleClassLoader(className, jasminClassFile));
+        } catch (NoClassDefFoundError | VerifyError e) {
+            // Extends a class that is not available, or reads a local before assigning it, which Java-- allows: the
+            // direct class must fail the same way
+            try {
+                Class.forName(className, true, new SingleClassLoader(className, directClassFile));
+                fail(name + ": expected " + e);
+            } catch (NoClassDefFoundError | VerifyError error) {
+                assertEquals(name, e.getClass(), error.getClass());
+                if (e instanceof NoClassDefFoundError) {
+                    assertEquals(name, e.getMessage(), error.getMessage());
+                }
+            }
+            return;
+        }
+        var directClass = loadVerified(name, new SingleClassLoader(className, directClassFile), className);
+
+        assertEquals(name, members(jasminClass), members(directClass));
+        assertEquals(name, runMain(jasminClass), runMain(directClass));
+    }
+
+    @Test
+    public void pipelineWithClassFileBackend() {
+        var inputFile = "test/pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm";
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + inputFile, "-b=class"});
+        var result = JmmCompiler.compile(new File(inputFile), config);
+
+        assertTrue(result.getReports().toString(), result.isSuccess());
+        assertTrue(result.getJasminResult().isEmpty());
+
+        var classFile = result.getClassFileResult().orElseThrow().getClassFile();
+        assertEquals(0xCAFEBABE, ((classFile[0] & 0xFF) << 24) | ((classFile[1] & 0xFF) << 16)
+                | ((classFile[2] & 0xFF) << 8) | (classFile[3] & 0xFF));
+    }
+
+    @Test
+    public void launcherWithClassFileBackend() {
+        var inputFile = "test/pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm";
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + inputFile, "-b=class", "-t"});
+
+        var output = new ByteArrayOutputStream();
+        assertEquals(0, Launcher.compile(config, new PrintStream(output, true, StandardCharsets.UTF_8)));
+
+        // A single file goes through the same pipeline as a batch, with the backend given in the options
+        var printed = output.toString(StandardCharsets.UTF_8);
+        assertTrue(printed, printed.contains("\"stage\":\"classFile\""));
+        assertFalse(printed, printed.contains("\"stage\":\"jasmin\""));
+    }
+
+    private static Class<?> loadVerified(String name, ClassLoader loader, String className) {
+        try {
+            var loadedClass = Class.forName(className, true, loader);
+            // Methods are verified when the class is linked, which getDeclaredMethods forces
+            loadedClass.getDeclaredMethods();
+            return loadedClass;
+        } catch (ClassNotFoundException | VerifyError | ClassFormatError e) {
+            throw new AssertionError("Invalid class file for " + name + ": " + e, e);
+        }
+    }
+
+    private static List<String> members(Class<?> loadedClass) {
+        var methods = Arrays.stream(loadedClass.getDeclaredMethods()).map(java.lang.reflect.Method::toString);
+        var fields = Arrays.stream(loadedClass.getDeclaredFields()).map(java.lang.reflect.Field::toString);
+        var constructors = Arrays.stream(loadedClass.getDeclaredConstructors())
+                .map(java.lang.reflect.Constructor::toString);
+
+        return java.util.stream.Stream.of(methods, fields, constructors)
+                .flatMap(stream -> stream)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * @return what main prints, or an empty string if the class has no main
+     */
+    private static String runMain(Class<?> loadedClass) throws IllegalAccessException, IOException {
+        java.lang.reflect.Method main;
+        try {
+            main = loadedClass.getDeclaredMethod("main", String[].class);
+        } catch (NoSuchMethodException e) {
+            return "";
+        }
+        assertTrue(Modifier.isStatic(main.getModifiers()));
+        // The generated classes are not public
+        main.setAccessible(true);
+
+        var originalOut = System.out;
+        try (var output = new ByteArrayOutputStream(); var printStream = new PrintStream(output, true)) {
+            System.setOut(printStream);
+            try {
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                printStream.print("exception: " + e.getCause().getClass().getName());
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } finally {
+            System.setOut(originalOut);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.classpath.ClassFileReader;
+import pt.up.fe.comp2024.classpath.ClassSignatureIndex;
+import pt.up.fe.comp2024.runner.JmmRunner;
+
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ClassSignatureIndexTest {
+
+    private static final JmmRunner RUNNER = new JmmRunner();
+
+    // Ignores the result of a method that returns int, and passes it to another imported method
+    private static final String RANDOM_CODE = """
+            import io;
+            import MathUtils;
+            class Random {
+                public static void main(String[] args) {
+                    MathUtils.random(1, 1);
+                    io.println(MathUtils.random(2, 2));
+                }
+            }
+            """;
+
+    private static Map<String, String> config(String... args) {
+        var options = Arrays.copyOf(args, args.length + 1);
+        options[args.length] = "-i=test/pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm";
+        return CompilerConfig.parseArgs(options);
+    }
+
+    private static Path libraryClass(String className) {
+        return Path.of(TestUtils.getLibsClasspath(), className + ".class");
+    }
+
+    @Test
+    public void readsClassFile() throws Exception {
+        var signature = ClassFileReader.read(ByteBuffer.wrap(Files.readAllBytes(libraryClass("MathUtils"))));
+
+        assertEquals("MathUtils", signature.getName());
+        assertEquals("java/lang/Object", signature.getSuperName());
+        assertEquals("[static random(II)I]", signature.getMethods("random").toString());
+        assertEquals(List.of("I", "I"), signature.getMethods("random").get(0).getParameterDescriptors());
+    }
+
+    @Test
+    public void findsOverloads() {
+        var index = new ClassSignatureIndex(List.of(Path.of(TestUtils.getLibsClasspath())), null);
+
+        assertEquals("(I)V", index.findCall("io", "println", "(I)V", true).orElseThrow().getDescriptor());
+        assertEquals("(Ljava/lang/String;)V",
+                index.findCall("io", "println", "(Ljava/lang/String;)V", true).orElseThrow().getDescriptor());
+        // The result of read is popped when it is not used
+        assertEquals("()I", index.findCall("io", "read", "()V", true).orElseThrow().getDescriptor());
+        // Not static, and no overload with two parameters of these types
+        assertTrue(index.findCall("io", "read", "()I", false).isEmpty());
+        assertTrue(index.findCall("io", "println", "(II)V", true).isEmpty());
+
+        assertEquals("I", index.findMethod("MathUtils", "random", 2).orElseThrow().getReturnDescriptor());
+        // The overloads of print with one parameter all return void
+        assertEquals("V", index.findMethod("io", "print", 1).orElseThrow().getReturnDescriptor());
+        assertTrue(index.findMethod("Missing", "foo", 0).isEmpty());
+    }
+
+    @Test
+    public void exactDescriptorsInBothBackends() {
+        var jasminResult = JmmCompiler.compile(RANDOM_CODE, new File("Random.jmm"),
+                config("-l=" + TestUtils.getLibsClasspath()));
+        assertTrue(jasminResult.getReports().toString(), jasminResult.isSuccess());
+        assertEquals("2", RUNNER.run(jasminResult.getJasminResult().orElseThrow()).getStdOut().trim());
+
+        var classFileResult = JmmCompiler.compile(RANDOM_CODE, new File("Random.jmm"),
+                config("-l=" + TestUtils.getLibsClasspath(), "-b=class"));
+        assertTrue(classFileResult.getReports().toString(), classFileResult.isSuccess());
+        var result = RUNNER.run(classFileResult.getClassFileResult().orElseThrow(), List.of(), null);
+        assertEquals(result.getStdErr(), "2", result.getStdOut().trim());
+    }
+
+    @Test
+    public void cachesSignaturesOnDisk() throws Exception {
+        var classpath = Files.createTempDirectory("classpath");
+        var cacheFile = Files.createTempDirectory("cache").resolve("signatures.bin");
+        var classFile = Files.copy(libraryClass("MathUtils"), classpath.resolve("MathUtils.class"));
+        var lastModified = Files.getLastModifiedTime(classFile);
+
+        var index = new ClassSignatureIndex(List.of(classpath), cacheFile);
+        var signature = index.getClass("MathUtils");
+        assertTrue(signature.isPresent());
+        // Written once at the end of the compilation
+        assertFalse(Files.exists(cacheFile));
+        index.flush();
+        assertTrue(Files.isRegularFile(cacheFile));
+
+        // Same size and time, so another index does not read the class file again
+        Files.write(classFile, new byte[(int) Files.size(classFile)]);
+        Files.setLastModifiedTime(classFile, lastModified);
+        var cached = new ClassSignatureIndex(List.of(classpath), cacheFile).getClass("MathUtils");
+        assertEquals(signature.get().getMethods().toString(), cached.orElseThrow().getMethods().toString());
+
+        // A modified class is read again
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(lastModified.toMillis() + 2000));
+        assertTrue(new ClassSignatureIndex(List.of(classpath), cacheFile).getClass("MathUtils").isEmpty());
+    }
+
+    @Test
+    public void readsChangedClassesAgain() throws Exception {
+        var classpath = Files.createTempDirectory("classpath");
+        var classFile = Files.copy(libraryClass("MathUtils"), classpath.resolve("MathUtils.class"));
+        var index = new ClassSignatureIndex(List.of(classpath), null);
+        assertFalse(index.getClass("MathUtils").orElseThrow().getMethods("random").isEmpty());
+
+        // The same index, as in a compile server, sees the new class file
+        var lastModified = Files.getLastModifiedTime(classFile);
+        Files.copy(libraryClass("io"), classFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(lastModified.toMillis() + 2000));
+        assertTrue(index.getClass("MathUtils").orElseThrow().getMethods("random").isEmpty());
+
+        // And the classes added after a lookup
+        assertTrue(index.getClass("io").isEmpty());
+        Files.copy(libraryClass("io"), classpath.resolve("io.class"));
+        assertTrue(index.getClass("io").isPresent());
+    }
+
+    @Test
+    public void failuresFallBackSilently() throws Exception {
+        var classpath = Files.createTempDirectory("classpath");
+        Files.write(classpath.resolve("Broken.class"), new byte[]{1, 2, 3});
+        Files.copy(libraryClass("MathUtils"), classpath.resolve("MathUtils.class"));
+        // The folder of the cache is a file, so the cache cannot be written
+        var cacheFile = Files.createTempFile("cache", ".tmp").resolve("signatures.bin");
+
+        var originalErr = System.err;
+        var err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true));
+        try {
+            var index = new ClassSignatureIndex(List.of(classpath), cacheFile);
+            assertTrue(index.getClass("Broken").isEmpty());
+            assertTrue(index.getClass("MathUtils").isPresent());
+            index.flush();
+        } finally {
+            System.setErr(originalErr);
+        }
+
+        // Library code does not interleave messages with the output of batch and server compilations
+        assertEquals("", err.toString());
+    }
+
+    @Test
+    public void popsLongResults() throws Exception {
+        var classpath = Files.createTempDirectory("classpath");
+        var source = Files.writeString(classpath.resolve("Clock.java"),
+                "public class Clock { public static long now() { return 1L; } }");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, source.toString()));
+
+        var code = """
+                import Clock;
+                class Ticks {
+                    public static void main(String[] args) {
+                        Clock.now();
+                    }
+                }
+                """;
+        var result = JmmCompiler.compile(code, new File("Ticks.jmm"), config("-l=" + classpath));
+        assertTrue(result.getReports().toString(), result.isSuccess());
+
+        // The long takes two slots of the stack until it is popped
+        var jasminCode = result.getJasminResult().orElseThrow().getJasminCode();
+        assertTrue(jasminCode, jasminCode.contains("invokestatic Clock/now()J"));
+        assertTrue(jasminCode, jasminCode.contains("pop2"));
+        assertTrue(jasminCode, jasminCode.contains(".limit stack 2"));
+    }
+}
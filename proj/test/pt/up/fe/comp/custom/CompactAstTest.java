@@ -0,0 +1,225 @@
+package pt.up.fe.comp.custom;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.KindDispatch;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CompactAstTest {
+
+    /**
+     * Kind, hierarchy and each attribute with the class of its value, so that both trees must match exactly.
+     */
+    static String describe(JmmNode node) {
+        var builder = new StringBuilder();
+        describe(node, "", builder);
+        return builder.toString();
+    }
+
+    private static void describe(JmmNode node, String indent, StringBuilder builder) {
+        var attributes = node.getAttributes().stream()
+                .sorted()
+                .map(attribute -> attribute + "=" + node.getObject(attribute) + ":"
+                        + node.getObject(attribute).getClass().getSimpleName())
+                .collect(Collectors.joining(", "));
+
+        builder.append(indent).append(node.getHierarchy()).append(" ").append(attributes).append("\n");
+        for (var child : node.getChildren()) {
+            describe(child, indent + "  ", builder);
+        }
+    }
+
+    private static JmmNode parseWithLibrary(String code) {
+        var lex = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lex));
+        return AntlrParser.parse(lex, parser, "program", CompilerConfig.getDefault()).getRootNode();
+    }
+
+    @Test
+    public void sameTreeAsLibraryConverter() throws IOException {
+        var parser = new JmmParserImpl();
+
+        try (var files = Files.walk(Path.of("test"))) {
+            for (var file : files.filter(path -> path.toString().endsWith(".jmm")).toList()) {
+                var code = SpecsIo.read(file.toFile());
+                var expected = parseWithLibrary(code);
+                var actual = parser.parse(code, CompilerConfig.getDefault()).getRootNode();
+
+                // Programs with syntax errors have no tree in either
+                if (expected == null) {
+                    assertNull(file.toString(), actual);
+                    continue;
+                }
+                assertEquals(file.toString(), describe(expected), describe(actual));
+            }
+        }
+    }
+
+    @Test
+    public void typedAttributes() {
+        var code = "import a.b; class A extends B { int[] f; public static int m(int... xs) { return xs[0] + 2; } }";
+        var root = new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode();
+
+        var method = root.getDescendants(Kind.METHOD_DECL.getNodeName()).get(0);
+        assertTrue(method instanceof CompactJmmNode);
+        assertTrue(((CompactJmmNode) method).isStatic());
+        assertEquals(1, NodeUtils.getIntegerAttribute(method, "numParams", "0"));
+        assertTrue(NodeUtils.getBooleanAttribute(method.getChild(1).getChild(0), "isVarargs", "false"));
+
+        var literal = (CompactJmmNode) root.getDescendants(Kind.INT_LITERAL.getNodeName()).get(1);
+        assertEquals(2, literal.getIntValue());
+        assertEquals("2", literal.get("value"));
+        assertEquals(1, literal.getLine());
+        assertEquals(Integer.valueOf(0), literal.getObject("numArgs"));
+    }
+
+    @Test
+    public void updatesReplaceTypedValues() {
+        var call = new CompactJmmNode(Kind.FUNCTION_CALL);
+        call.putObject("numArgs", 2);
+        call.putObject("numArgs", "3");
+        assertEquals(3, NodeUtils.getIntegerAttribute(call, "numArgs", "0"));
+
+        // Not an int, kept as text as the library converter does
+        var literal = CompactJmmNode.intLiteral(1);
+        literal.putObject("value", "99999999999");
+        assertEquals("99999999999", literal.get("value"));
+
+        var copy = (CompactJmmNode) literal.copyNode();
+        assertEquals("99999999999", copy.get("value"));
+        assertFalse(call.hasAttribute("op"));
+    }
+
+    // Nothing is printed to the output of the compiler, which can be JSON
+    @Test(expected = RuntimeException.class)
+    public void removingMissingChildFails() {
+        var parent = new CompactJmmNode(Kind.MULT_STMT);
+        parent.add(new CompactJmmNode(Kind.EXPR_STMT));
+
+        parent.removeChild(new CompactJmmNode(Kind.EXPR_STMT));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void detachingRootFails() {
+        var parent = new CompactJmmNode(Kind.MULT_STMT);
+        var child = new CompactJmmNode(Kind.EXPR_STMT);
+        parent.add(child);
+
+        assertSame(child, child.detach());
+        child.detach();
+    }
+
+    @Test
+    public void largePositionsAreKept() {
+        var node = new CompactJmmNode(Kind.VAR);
+        node.setPosition(3_000_000, 5000, 3_000_001, 2);
+
+        assertEquals(3_000_000, NodeUtils.getLine(node));
+        assertEquals(5000, NodeUtils.getColumn(node));
+        assertEquals("3000001", node.get("lineEnd"));
+    }
+
+    @Test
+    public void kindsWithoutStrings() {
+        var root = new JmmParserImpl().parse("class A { int m() { return 1; } }", CompilerConfig.getDefault())
+                .getRootNode();
+        var literal = root.getDescendants(Kind.INT_LITERAL.getNodeName()).get(0);
+        var libraryLiteral = parseWithLibrary("class A { int m() { return 1; } }")
+                .getDescendants(Kind.INT_LITERAL.getNodeName()).get(0);
+
+        assertEquals(Kind.INT_LITERAL, Kind.of(literal));
+        assertEquals(Kind.INT_LITERAL, Kind.of(libraryLiteral));
+        assertTrue(Kind.INT_LITERAL.check(literal));
+        assertTrue(literal.isInstance(Kind.INT_LITERAL));
+        assertTrue(literal.isInstance("Expr"));
+        assertFalse(literal.isInstance(Kind.RETURN_STMT));
+    }
+
+    @Test
+    public void dispatchKeepsHierarchyLookup() {
+        var visitor = new PreorderJmmVisitor<List<String>, Void>() {
+            private final KindDispatch<List<String>, Void> dispatch = new KindDispatch<>();
+
+            @Override
+            protected void buildVisitor() {
+                addVisit(Kind.INT_LITERAL, (node, visits) -> add(visits, "literal"));
+                addVisit("Expr", (node, visits) -> add(visits, "expr"));
+                addVisit("Stmt", (node, visits) -> add(visits, "stmt"));
+                setDefaultVisit((node, visits) -> null);
+            }
+
+            @Override
+            protected BiFunction<JmmNode, List<String>, Void> getVisit(JmmNode node) {
+                return dispatch.get(node, super::getVisit);
+            }
+
+            private Void add(List<String> visits, String visit) {
+                visits.add(visit);
+                return null;
+            }
+        };
+
+        var code = "class A { int m(int a) { a = 2 + a; return 1; } }";
+        List<String> visits = new ArrayList<>();
+        visitor.visit(new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode(), visits);
+
+        // Same visits as with the nodes of the library
+        List<String> libraryVisits = new ArrayList<>();
+        visitor.visit(parseWithLibrary(code), libraryVisits);
+
+        assertEquals(List.of("stmt", "expr", "expr", "literal", "expr", "stmt", "literal"), visits);
+        assertEquals(visits, libraryVisits);
+    }
+
+    @Test
+    public void typesAreKeptUntilTheTreeChanges() {
+        var code = "class A { int m(int a, boolean b) { a = (a); return 1; } }";
+        var root = new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode();
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var paren = (CompactJmmNode) root.getDescendants(Kind.PAREN_EXPR.getNodeName()).get(0);
+        var type = TypeUtils.getExprType(paren, table);
+        assertEquals("int", type.getName());
+        assertSame(type, TypeUtils.getExprType(paren, table));
+        assertEquals(table.getId(), ((CompactJmmNode) paren.getChild(0)).getTypeTableId());
+
+        // Another table computes it again, keeping the same type
+        var otherTable = JmmSymbolTableBuilder.build(root);
+        assertSame(type, TypeUtils.getExprType(paren, otherTable));
+        assertEquals(otherTable.getId(), paren.getTypeTableId());
+
+        // Renaming the variable drops the type of the variable and of the parenthesis
+        paren.getChild(0).put("name", "b");
+        assertNull(paren.getType());
+        assertEquals("boolean", TypeUtils.getExprType(paren, table).getName());
+
+        // As replacing it
+        paren.setChild(CompactJmmNode.intLiteral(1), 0);
+        assertEquals("int", TypeUtils.getExprType(paren, table).getName());
+    }
+}
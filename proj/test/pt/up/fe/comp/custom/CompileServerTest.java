@@ -0,0 +1,119 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pt.up.fe.comp2024.server.CompileServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompileServerTest {
+
+    private static final String CODE = """
+            class Served {
+                public int twice(int x) {
+                    return x * 2;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static int port;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+
+        var server = new Thread(() -> new CompileServer(String.valueOf(port)).run());
+        server.setDaemon(true);
+        server.start();
+    }
+
+    /**
+     * Sends a request the way the 'jmm' script does, waiting for the server to finish its warm-up.
+     *
+     * @return the lines of the answer
+     */
+    private static List<String> request(String... args) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+
+        while (true) {
+            try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                 var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+
+                for (var arg : args) {
+                    out.println(arg);
+                }
+                out.println();
+
+                List<String> lines = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines.add(line);
+                }
+                return lines;
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @Test
+    public void compilesRequest() throws IOException, InterruptedException {
+        var file = Files.createTempFile("Served", ".jmm");
+        Files.writeString(file, CODE);
+
+        var answer = request("-i=" + file.toAbsolutePath());
+        assertEquals(answer.toString(), "exit 0", answer.get(answer.size() - 1));
+    }
+
+    @Test
+    public void clientSendsAbsolutePaths() throws IOException, InterruptedException {
+        // Waits for the warm-up, the client script does not retry
+        request("-i=Missing.jmm", "-s=" + port);
+
+        // The client runs in another folder than the server, with relative paths
+        var folder = Files.createTempDirectory("client");
+        Files.writeString(folder.resolve("Served.jmm"), CODE);
+
+        var client = new ProcessBuilder("bash", new File("jmm").getAbsolutePath(), "-i=Served.jmm", "-c=cache",
+                "-l=classes:")
+                .directory(folder.toFile())
+                .redirectErrorStream(true);
+        client.environment().put("JMM_SERVER_PORT", String.valueOf(port));
+        var process = client.start();
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertEquals(output, 0, process.waitFor());
+        // The cache is written in the folder of the client
+        try (var entries = Files.list(folder.resolve("cache"))) {
+            assertEquals(output, 1, entries.filter(entry -> entry.toString().endsWith(".entry")).count());
+        }
+    }
+
+    @Test
+    public void rejectsNestedServer() throws IOException, InterruptedException {
+        var answer = request("-i=Missing.jmm", "-s=" + port);
+        assertEquals(answer.toString(), "exit 2", answer.get(answer.size() - 1));
+    }
+}
@@ -0,0 +1,170 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import org.specs.comp.ollir.InstructionType;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.UnreachableCodeElimination;
+import pt.up.fe.comp2024.optimization.passes.ConstantsPass;
+import pt.up.fe.comp2024.optimization.passes.DeadCodePass;
+import pt.up.fe.comp2024.runner.JmmRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp.OptimizationTestUtils.analyze;
+import static pt.up.fe.comp.OptimizationTestUtils.getMethod;
+
+public class DeadCodeEliminationTest {
+
+    private static final String CODE = """
+            import io;
+            class Dead {
+                public int branches(boolean b) {
+                    int x;
+                    x = 0;
+                    if (true) {
+                        x = 1;
+                    } else {
+                        x = 2;
+                    }
+                    if (false) {
+                        x = 3;
+                    } else {
+                        if (b) {
+                            x = x + 4;
+                            return x;
+                            x = 5;
+                        } else {
+                            x = x + 6;
+                        }
+                    }
+                    while (false) {
+                        x = 7;
+                    }
+                    return x;
+                }
+                public int afterConstants() {
+                    int a;
+                    int y;
+                    a = 3;
+                    if (a < 2) {
+                        y = 1;
+                    } else {
+                        y = 2;
+                    }
+                    while (a < 3) {
+                        y = y + 1;
+                    }
+                    return y;
+                }
+                public static void main(String[] args) {
+                    Dead d;
+                    d = new Dead();
+                    io.println(d.branches(true));
+                    io.println(d.branches(false));
+                    io.println(d.afterConstants());
+                }
+            }
+            """;
+
+    // The goto after the return of the else branch cannot be reached
+    private static final String RETURN_IN_ELSE = """
+            import io;
+            class Unreachable {
+                public int sign(int x) {
+                    int s;
+                    if (x < 0) {
+                        s = 0 - 1;
+                    } else {
+                        s = 1;
+                        return s;
+                    }
+                    return s;
+                }
+                public static void main(String[] args) {
+                    Unreachable u;
+                    u = new Unreachable();
+                    io.println(u.sign(0 - 5));
+                    io.println(u.sign(5));
+                }
+            }
+            """;
+
+    private static String run(String code, boolean optimize) {
+        var config = CompilerConfig.getDefault();
+        config.put("optimize", Boolean.toString(optimize));
+        var result = JmmCompiler.compile(code, new File("Dead.jmm"), config);
+        assertTrue(result.getReports().toString(), result.isSuccess());
+
+        return new JmmRunner().run(result.getJasminResult().orElseThrow()).getStdOut();
+    }
+
+    @Test
+    public void removesBranchesNeverTaken() {
+        var result = analyze(CODE);
+        assertTrue(new DeadCodePass().run(result));
+
+        var branches = getMethod(result, "branches");
+        // Only the if on b is left, and nothing after its return
+        assertEquals(1, branches.getDescendants(Kind.IF_STMT).size());
+        assertEquals(0, branches.getDescendants(Kind.WHILE_STMT).size());
+        var returnInBranch = branches.getDescendants(Kind.RETURN_STMT).get(0);
+        assertEquals(returnInBranch.getParent().getNumChildren() - 1, returnInBranch.getIndexOfSelf());
+
+        // The statements of the branches taken are now in the method
+        assertEquals(Kind.ASSIGN_STMT, Kind.of(branches.getChild(4)));
+        assertEquals(Kind.IF_STMT, Kind.of(branches.getChild(5)));
+        assertEquals(Kind.RETURN_STMT, Kind.of(branches.getChild(6)));
+
+        assertFalse(new DeadCodePass().run(result));
+    }
+
+    @Test
+    public void removesBranchesFoldedByConstants() {
+        var result = analyze(CODE);
+        new ConstantsPass().run(result);
+        new DeadCodePass().run(result);
+
+        var afterConstants = getMethod(result, "afterConstants");
+        assertEquals(0, afterConstants.getDescendants(Kind.IF_STMT).size());
+        assertEquals(0, afterConstants.getDescendants(Kind.WHILE_STMT).size());
+        assertEquals("2", afterConstants.getDescendants(Kind.RETURN_STMT).get(0).getChild(0).get("value"));
+    }
+
+    @Test
+    public void removesUnreachableInstructions() {
+        var config = CompilerConfig.getDefault();
+        var ollirCode = JmmCompiler.compile(RETURN_IN_ELSE, new File("Unreachable.jmm"), config)
+                .getOllirResult().orElseThrow().getOllirCode();
+
+        var ollirResult = new OllirResult(ollirCode, config);
+        ollirResult.getOllirClass().buildCFGs();
+        var sign = ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> method.getMethodName().equals("sign"))
+                .findFirst().orElseThrow();
+        int instructions = sign.getInstructions().size();
+
+        assertTrue(new UnreachableCodeElimination(ollirResult.getOllirClass()).run());
+        assertEquals(instructions - 1, sign.getInstructions().size());
+        for (int i = 1; i < sign.getInstructions().size(); i++) {
+            var previous = sign.getInstructions().get(i - 1).getInstType();
+            assertFalse(previous == InstructionType.RETURN
+                    && sign.getInstructions().get(i).getInstType() == InstructionType.GOTO);
+        }
+        assertFalse(new UnreachableCodeElimination(ollirResult.getOllirClass()).run());
+
+        var output = new JmmRunner().run(new JasminBackendImpl().toJasmin(ollirResult)).getStdOut();
+        assertEquals(run(RETURN_IN_ELSE, false), output);
+    }
+
+    @Test
+    public void sameOutputAsWithoutOptimizations() {
+        assertEquals("5\n7\n2\n", run(CODE, false).replace("\r\n", "\n"));
+        assertEquals(run(CODE, false), run(CODE, true));
+        assertEquals(run(RETURN_IN_ELSE, false), run(RETURN_IN_ELSE, true));
+    }
+}
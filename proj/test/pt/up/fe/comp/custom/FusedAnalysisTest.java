@@ -0,0 +1,190 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.AnalysisPass;
+import pt.up.fe.comp2024.analysis.AnalysisVisitor;
+import pt.up.fe.comp2024.analysis.FusedAnalysis;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.analysis.ParallelAnalysis;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class FusedAnalysisTest {
+
+    /**
+     * Reports the name of every method, with an error for the ones called 'bad'.
+     */
+    private static class MethodNames extends AnalysisVisitor {
+        @Override
+        protected void buildVisitor() {
+            addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
+        }
+
+        private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+            var name = method.get("name");
+            // Only semantic reports stop the analysis
+            var stage = name.equals("bad") ? Stage.SEMANTIC : Stage.OPTIMIZATION;
+            addReport(new Report(ReportType.LOG, stage, -1, getClass().getSimpleName() + ": " + name));
+            return null;
+        }
+    }
+
+    private static class Fails extends AnalysisVisitor {
+        @Override
+        protected void buildVisitor() {
+            addVisit(Kind.RETURN_STMT, (node, table) -> {
+                throw new RuntimeException("Fails");
+            });
+        }
+    }
+
+    // Same as JmmAnalysisImpl did before passes were fused
+    private static List<Report> analyzeSequentially(List<AnalysisPass> passes, JmmNode root, SymbolTable table) {
+        List<Report> reports = new ArrayList<>();
+
+        for (var pass : passes) {
+            try {
+                reports.addAll(pass.analyze(root, table));
+                if (reports.stream().anyMatch(report -> report.getStage() == Stage.SEMANTIC)) {
+                    break;
+                }
+            } catch (Exception e) {
+                reports.add(Report.newError(Stage.SEMANTIC, -1, -1,
+                        "Problem while executing analysis pass '" + pass.getClass() + "'", e));
+            }
+        }
+
+        return reports;
+    }
+
+    private static String describe(List<Report> reports) {
+        return reports.stream()
+                .map(report -> report.getType() + " " + report.getLine() + ":" + report.getColumn() + " "
+                        + report.getMessage())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static JmmNode parse(String code) {
+        return new JmmParserImpl().parse(code, CompilerConfig.getDefault()).getRootNode();
+    }
+
+    @Test
+    public void sameReportsAsSequentialPasses() throws IOException {
+        try (var files = Files.walk(Path.of("test"))) {
+            for (var file : files.filter(path -> path.toString().endsWith(".jmm")).toList()) {
+                var root = parse(SpecsIo.read(file.toFile()));
+                if (root == null) {
+                    continue;
+                }
+                var table = JmmSymbolTableBuilder.build(root);
+
+                var expected = analyzeSequentially(JmmAnalysisImpl.createPasses(), root, table);
+                var actual = new FusedAnalysis(JmmAnalysisImpl.createPasses()).analyze(root, table);
+
+                assertEquals(file.toString(), describe(expected), describe(actual));
+            }
+        }
+    }
+
+    @Test
+    public void sameReportsWithMethodsInParallel() throws IOException {
+        var analysis = new ParallelAnalysis(JmmAnalysisImpl::createPasses, ForkJoinPool.commonPool());
+
+        List<String> programs = new ArrayList<>();
+        try (var files = Files.walk(Path.of("test"))) {
+            for (var file : files.filter(path -> path.toString().endsWith(".jmm")).toList()) {
+                programs.add(SpecsIo.read(file.toFile()));
+            }
+        }
+        programs.add(new ProgramGenerator(7).methods(40).statements(30).generate());
+
+        for (var program : programs) {
+            var root = parse(program);
+            if (root == null) {
+                continue;
+            }
+            var table = JmmSymbolTableBuilder.build(root);
+
+            var expected = new FusedAnalysis(JmmAnalysisImpl.createPasses()).analyze(root, table);
+            assertEquals(program, describe(expected), describe(analysis.analyze(root, table)));
+        }
+    }
+
+    @Test
+    public void methodsInParallelKeepSourceOrder() {
+        var code = new StringBuilder("class A {");
+        for (int i = 0; i < 20; i++) {
+            code.append(" public int m").append(i).append("() { return 1; }");
+        }
+        code.append(" public int bad() { return 1; } }");
+        var root = parse(code.toString());
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var sequential = new FusedAnalysis(List.of(new MethodNames(), new Fails())).analyze(root, table);
+        var parallel = new ParallelAnalysis(() -> List.of(new MethodNames(), new Fails()), ForkJoinPool.commonPool())
+                .analyze(root, table);
+
+        assertEquals(21, parallel.size());
+        assertEquals(describe(sequential), describe(parallel));
+    }
+
+    @Test
+    public void stopsAfterFirstPassWithErrors() {
+        var root = parse("class A { public int good() { return 1; } public int bad() { return 2; } }");
+        var table = JmmSymbolTableBuilder.build(root);
+
+        List<AnalysisPass> passes = List.of(new MethodNames(), new Fails(), new MethodNames(), new MethodNames());
+        var reports = new FusedAnalysis(passes).analyze(root, table);
+
+        // The first pass has errors, so the others are not reported
+        assertEquals(describe(analyzeSequentially(List.of(new MethodNames(), new Fails(), new MethodNames(),
+                new MethodNames()), root, table)), describe(reports));
+        assertEquals(2, reports.size());
+    }
+
+    @Test
+    public void failedPassIsReportedAfterNextPass() {
+        var root = parse("class A { public int good() { return 1; } public int other() { return 2; } }");
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var reports = new FusedAnalysis(List.of(new Fails(), new MethodNames(), new MethodNames())).analyze(root,
+                table);
+
+        assertEquals(describe(analyzeSequentially(List.of(new Fails(), new MethodNames(), new MethodNames()), root,
+                table)), describe(reports));
+        assertTrue(reports.get(0).getMessage().startsWith("Problem while executing analysis pass"));
+        assertEquals(3, reports.size());
+    }
+
+    @Test
+    public void passesCanAnalyseSeveralTrees() {
+        var analysis = new FusedAnalysis(List.of(new MethodNames()));
+
+        var first = parse("class A { public int m() { return 1; } }");
+        var second = parse("class B { public int n() { return 1; } }");
+
+        assertEquals("LOG -1:-1 MethodNames: m",
+                describe(analysis.analyze(first, JmmSymbolTableBuilder.build(first))));
+        assertEquals("LOG -1:-1 MethodNames: n",
+                describe(analysis.analyze(second, JmmSymbolTableBuilder.build(second))));
+    }
+}
@@ -0,0 +1,120 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.GlobalValueNumbering;
+import pt.up.fe.comp2024.runner.JmmRunner;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp.OptimizationTestUtils.getMethod;
+import static pt.up.fe.comp.OptimizationTestUtils.run;
+import static pt.up.fe.comp.OptimizationTestUtils.toOllir;
+
+public class GlobalValueNumberingTest {
+
+    private static final String CODE = """
+            import io;
+            class Gvn {
+                int f;
+                public int twice(int[] a, int i, int x, int y) {
+                    int r;
+                    int s;
+                    r = a[i] + a[i];
+                    s = x * y;
+                    if (x < y) {
+                        r = r + y * x;
+                    } else {
+                        r = r - x * y;
+                    }
+                    a[i] = r;
+                    r = r + a[i] + f;
+                    f = this.bump();
+                    r = r + f + x * y;
+                    x = x + 1;
+                    return r + x * y;
+                }
+                public int bump() {
+                    int t;
+                    t = f + 1;
+                    f = t;
+                    return t;
+                }
+                public static void main(String[] args) {
+                    Gvn g;
+                    int[] a;
+                    g = new Gvn();
+                    a = [4, 5, 6];
+                    io.println(g.twice(a, 1, 2, 3));
+                    io.println(g.twice(a, 2, 5, 1));
+                }
+            }
+            """;
+
+    /**
+     * @return the right side of the first assignment of the given variable
+     */
+    private static Instruction getRhs(Method method, String dest) {
+        return method.getInstructions().stream()
+                .filter(instruction -> instruction instanceof AssignInstruction assign
+                        && !(assign.getDest() instanceof ArrayOperand)
+                        && ((Operand) assign.getDest()).getName().equals(dest))
+                .map(instruction -> ((AssignInstruction) instruction).getRhs())
+                .findFirst().orElseThrow();
+    }
+
+    private static void assertCopyOf(String expected, Instruction rhs) {
+        assertEquals(InstructionType.NOPER, rhs.getInstType());
+        var operand = ((SingleOpInstruction) rhs).getSingleOperand();
+        assertFalse(operand instanceof ArrayOperand);
+        assertEquals(expected, ((Operand) operand).getName());
+    }
+
+    @Test
+    public void replacesRepeatedComputations() {
+        var ollirResult = toOllir(CODE);
+        var gvn = new GlobalValueNumbering(ollirResult.getOllirClass());
+        assertTrue(gvn.run());
+        assertEquals(4, gvn.getReplaced());
+
+        var twice = getMethod(ollirResult, "twice");
+        // The second a[i], then x * y in both branches, as y * x too, and after them
+        assertCopyOf("tmp0", getRhs(twice, "tmp1"));
+        assertCopyOf("tmp3", getRhs(twice, "tmp5"));
+        assertCopyOf("tmp3", getRhs(twice, "tmp7"));
+        assertCopyOf("tmp3", getRhs(twice, "tmp16"));
+        // The label of the replaced assignment moves to the copy
+        assertTrue(twice.getInstructions().contains(twice.getLabels().get("if0")));
+
+        assertFalse(new GlobalValueNumbering(ollirResult.getOllirClass()).run());
+
+        var output = new JmmRunner().run(new JasminBackendImpl().toJasmin(ollirResult)).getStdOut();
+        assertEquals(run(CODE, "0"), output);
+    }
+
+    @Test
+    public void keepsValuesChangedInBetween() {
+        var ollirResult = toOllir(CODE);
+        new GlobalValueNumbering(ollirResult.getOllirClass()).run();
+
+        var twice = getMethod(ollirResult, "twice");
+        // a[i] after a store to the array, f after a call, and x * y after x changes
+        assertEquals(InstructionType.NOPER, getRhs(twice, "tmp9").getInstType());
+        assertTrue(((SingleOpInstruction) getRhs(twice, "tmp9")).getSingleOperand() instanceof ArrayOperand);
+        assertEquals(InstructionType.GETFIELD, getRhs(twice, "tmp14").getInstType());
+        assertEquals(InstructionType.BINARYOPER, getRhs(twice, "tmp18").getInstType());
+    }
+
+    @Test
+    public void sameOutputAsWithoutOptimizations() {
+        assertEquals("48\n28\n", run(CODE, "0").replace("\r\n", "\n"));
+        assertEquals(run(CODE, "0"), run(CODE, "2"));
+        assertEquals(run(CODE, "0"), run(CODE, "s"));
+    }
+}
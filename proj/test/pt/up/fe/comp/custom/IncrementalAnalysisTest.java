@@ -0,0 +1,208 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.AnalysisPass;
+import pt.up.fe.comp2024.analysis.AnalysisVisitor;
+import pt.up.fe.comp2024.analysis.IncrementalAnalysis;
+import pt.up.fe.comp2024.analysis.IncrementalAnalysis.TextEdit;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class IncrementalAnalysisTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int field;
+                public int first(int a) {
+                    return a;
+                }
+                public int second(int b) {
+                    int c;
+                    c = this.first(b);
+                    return c;
+                }
+                public boolean third() {
+                    int d;
+                    d = true;
+                    return false;
+                }
+            }
+            """;
+
+    /**
+     * Records the methods it is given, to know which were analysed again.
+     */
+    private static class AnalysedMethods extends AnalysisVisitor {
+        private final List<String> methods;
+
+        private AnalysedMethods(List<String> methods) {
+            this.methods = methods;
+        }
+
+        @Override
+        protected void buildVisitor() {
+            addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
+        }
+
+        private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+            methods.add(method.get("name"));
+            return null;
+        }
+    }
+
+    private final List<String> analysedMethods = new ArrayList<>();
+
+    private final IncrementalAnalysis analysis = new IncrementalAnalysis(() -> {
+        List<AnalysisPass> passes = new ArrayList<>(JmmAnalysisImpl.createPasses());
+        passes.add(new AnalysedMethods(analysedMethods));
+        return passes;
+    });
+
+    /**
+     * Applies the edit to the code, with lines from 1 and columns from 0.
+     */
+    private static String apply(String code, TextEdit edit) {
+        return code.substring(0, offset(code, edit.startLine(), edit.startColumn())) + edit.text()
+                + code.substring(offset(code, edit.endLine(), edit.endColumn()));
+    }
+
+    private static int offset(String code, int line, int column) {
+        int offset = 0;
+        for (int i = 1; i < line; i++) {
+            offset = code.indexOf('\n', offset) + 1;
+        }
+
+        return offset + column;
+    }
+
+    private static String describe(List<Report> reports) {
+        return reports.stream()
+                .map(report -> report.getType() + " " + report.getLine() + ":" + report.getColumn() + " "
+                        + report.getMessage())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String describeTree(JmmNode root) {
+        return root.getDescendantsAndSelfStream()
+                .map(CompactJmmNode.class::cast)
+                .map(node -> node.getKind() + " " + node.getLine() + ":" + node.getColumn() + "-"
+                        + node.getLineEnd() + ":" + node.getColumnEnd())
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Checks that the incremental result is the one of analysing the new code from scratch.
+     */
+    private static void assertSameAsFullAnalysis(String code, JmmSemanticsResult result) {
+        var parserResult = new JmmParserImpl().parse(code, CompilerConfig.getDefault());
+        var expected = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+
+        assertEquals(describe(expected.getReports()), describe(result.getReports()));
+        assertEquals(expected.getRootNode().toTree(), result.getRootNode().toTree());
+        assertEquals(describeTree(expected.getRootNode()), describeTree(result.getRootNode()));
+        assertEquals(expected.getSymbolTable().print(), result.getSymbolTable().print());
+    }
+
+    private JmmSemanticsResult edit(JmmSemanticsResult previous, String[] code, TextEdit edit) {
+        analysedMethods.clear();
+        code[0] = apply(code[0], edit);
+        var result = analysis.update(previous, code[0], edit);
+        assertSameAsFullAnalysis(code[0], result);
+        return result;
+    }
+
+    @Test
+    public void bodyEditAnalysesOnlyThatMethod() {
+        String[] code = {CODE};
+        var result = analysis.analyze(code[0], CompilerConfig.getDefault());
+        assertSameAsFullAnalysis(code[0], result);
+
+        // Two lines in the body of first, which moves the error in third
+        result = edit(result, code, new TextEdit(5, 8, 5, 8, "int x;\n        x = 1;\n        "));
+        assertEquals(List.of("first"), analysedMethods);
+        assertEquals(1, result.getReports().size());
+        assertEquals(16, result.getReports().get(0).getLine());
+
+        // A new error in second, on the same line as before
+        result = edit(result, code, new TextEdit(11, 12, 11, 25, "true"));
+        assertEquals(List.of("second"), analysedMethods);
+        assertEquals(2, result.getReports().size());
+
+        // Removing the lines again
+        result = edit(result, code, new TextEdit(5, 8, 7, 8, ""));
+        assertEquals(List.of("first"), analysedMethods);
+    }
+
+    @Test
+    public void editsInLargeClass() {
+        String[] code = {new ProgramGenerator(7).methods(30).statements(10).generate()};
+        var result = analysis.analyze(code[0], CompilerConfig.getDefault());
+
+        // An error at the start of some methods, moving the ones after them, and then without it
+        var lines = List.of(code[0].split("\n"));
+        for (int method : List.of(20, 3, 11)) {
+            int start = lines.indexOf("    public int method" + method + "(int n) {");
+            int line = start + lines.subList(start, lines.size()).indexOf("        v0 = 0;") + 1;
+
+            result = edit(result, code, new TextEdit(line, 8, line, 8, "v0 = true;\n        "));
+            assertEquals(List.of("method" + method), analysedMethods);
+            result = edit(result, code, new TextEdit(line, 8, line + 1, 8, ""));
+            assertEquals(List.of("method" + method), analysedMethods);
+        }
+    }
+
+    @Test
+    public void signatureChangeAnalysesCallers() {
+        String[] code = {CODE};
+        var result = analysis.analyze(code[0], CompilerConfig.getDefault());
+
+        // first now returns a boolean, which second assigns to an int
+        result = edit(result, code, new TextEdit(4, 11, 4, 14, "boolean"));
+        assertEquals(List.of("first", "second"), analysedMethods);
+
+        // Renaming it leaves the call undeclared
+        result = edit(result, code, new TextEdit(4, 19, 4, 24, "other"));
+        assertEquals(List.of("other", "second"), analysedMethods);
+
+        // And back
+        edit(result, code, new TextEdit(4, 19, 4, 24, "first"));
+        assertEquals(List.of("first", "second"), analysedMethods);
+    }
+
+    @Test
+    public void otherEditsAnalyseEverything() {
+        String[] code = {CODE};
+        var result = analysis.analyze(code[0], CompilerConfig.getDefault());
+
+        // A field
+        result = edit(result, code, new TextEdit(3, 4, 3, 7, "boolean"));
+        assertEquals(List.of("first", "second", "third"), analysedMethods);
+
+        // A method that becomes two
+        result = edit(result, code, new TextEdit(5, 17, 5, 17, "} public int extra() { return 1;"));
+        assertEquals(4, analysedMethods.size());
+
+        // A syntax error, and then its fix
+        code[0] = apply(code[0], new TextEdit(5, 0, 5, 0, "x"));
+        result = analysis.update(result, code[0], new TextEdit(5, 0, 5, 0, "x"));
+        assertNull(result.getRootNode());
+        assertFalse(result.getReports().isEmpty());
+
+        edit(result, code, new TextEdit(5, 0, 5, 1, ""));
+    }
+}
@@ -0,0 +1,200 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.optimization.passes.InliningPass;
+import pt.up.fe.comp2024.optimization.passes.VarargsPass;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp.OptimizationTestUtils.getMethod;
+import static pt.up.fe.comp.OptimizationTestUtils.run;
+
+public class InliningTest {
+
+    private static final String CODE = """
+            import io;
+            class Inline {
+                int total;
+                public int square(int x) {
+                    int y;
+                    y = x * x;
+                    return y;
+                }
+                public int sum(int... values) {
+                    int i;
+                    int s;
+                    i = 0;
+                    s = 0;
+                    while (i < values.length) {
+                        s = s + values[i];
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public void add(int x) {
+                    total = total + x;
+                }
+                public int fact(int n) {
+                    int r;
+                    if (n < 2) {
+                        r = 1;
+                    } else {
+                        r = n * this.fact(n - 1);
+                    }
+                    return r;
+                }
+                public int twice(int x) {
+                    return this.square(x) + this.square(x + 1);
+                }
+                public int loop(int n) {
+                    int i;
+                    int y;
+                    i = 0;
+                    y = 0;
+                    while (i < n) {
+                        y = y + this.square(i);
+                        this.add(y);
+                        i = i + 1;
+                    }
+                    return y + this.sum(1, 2, 3) + total;
+                }
+                public static void main(String[] args) {
+                    Inline in;
+                    int y;
+                    in = new Inline();
+                    y = 3;
+                    in.square(y);
+                    io.println(in.square(y));
+                    io.println(in.twice(y));
+                    io.println(in.loop(4));
+                    io.println(in.fact(5));
+                }
+            }
+            """;
+
+    // Once inlined, the field is incremented by a literal
+    private static final String FIELD_CODE = """
+            import io;
+            import inlined0_x;
+            class Counter {
+                int count;
+                public void add(int x) {
+                    count = count + x;
+                }
+                public int run() {
+                    this.add(1);
+                    this.add(2);
+                    return count;
+                }
+                public static void main(String[] args) {
+                    Counter c;
+                    c = new Counter();
+                    io.println(c.run());
+                }
+            }
+            """;
+
+    private static JmmSemanticsResult inline(String code) {
+        var parserResult = new JmmParserImpl().parse(code, CompilerConfig.getDefault());
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        assertTrue(semanticsResult.getReports().toString(), semanticsResult.getReports().isEmpty());
+
+        new VarargsPass().run(semanticsResult);
+        assertTrue(new InliningPass().run(semanticsResult));
+        return semanticsResult;
+    }
+
+    private static long countCalls(JmmNode methodDecl, String name) {
+        return methodDecl.getDescendants(Kind.FUNCTION_CALL).stream()
+                .filter(call -> call.get("func").equals(name))
+                .count();
+    }
+
+    @Test
+    public void inlinesSmallMethods() {
+        var result = inline(CODE);
+
+        var loop = getMethod(result, "loop");
+        assertEquals(0, countCalls(loop, "square"));
+        assertEquals(0, countCalls(loop, "add"));
+        assertEquals(0, countCalls(loop, "sum"));
+
+        // Calls on a local created with 'new' of the class are inlined too
+        var main = getMethod(result, "main");
+        assertEquals(0, countCalls(main, "square"));
+        assertEquals(0, countCalls(main, "twice"));
+        // The call whose value is not used is replaced by the statements of square
+        assertTrue(main.getChildren(Kind.EXPR_STMT).stream()
+                .allMatch(exprStmt -> Kind.FUNCTION_CALL.check(exprStmt.getChild(0))));
+    }
+
+    @Test
+    public void keepsRecursiveAndLargeMethods() {
+        var result = inline(CODE);
+
+        // The recursive call is only inlined up to the maximum depth
+        assertTrue(countCalls(getMethod(result, "fact"), "fact") > 0);
+        // loop is too large, and main cannot reach the field 'total' through 'in'
+        assertEquals(1, countCalls(getMethod(result, "main"), "loop"));
+    }
+
+    @Test
+    public void declaresRenamedLocals() {
+        var result = inline(CODE);
+        var table = result.getSymbolTable();
+
+        // square is inlined twice in twice, each time with its own locals
+        var twice = getMethod(result, "twice");
+        var names = new HashSet<String>();
+        for (var varDecl : twice.getChildren(Kind.VAR_DECL)) {
+            assertTrue(names.add(varDecl.get("name")));
+        }
+        assertEquals(twice.getChildren(Kind.VAR_DECL).size(), table.getLocalVariables("twice").size());
+        assertEquals(names.size(), table.getLocalVariables("twice").stream()
+                .filter(local -> names.contains(local.getName()))
+                .count());
+
+        // The varargs parameter of sum is an array local in loop
+        var values = table.getLocalVariables("loop").stream()
+                .filter(local -> local.getName().endsWith("_values"))
+                .findFirst().orElseThrow();
+        assertTrue(values.getType().isArray());
+
+        // The value returned by square, named after neither the method nor its locals
+        assertTrue(table.getLocalVariables("twice").stream()
+                .noneMatch(local -> local.getName().equals("square") || local.getName().startsWith("y")));
+    }
+
+    @Test
+    public void avoidsImportedNames() {
+        var result = inline(FIELD_CODE);
+
+        var locals = result.getSymbolTable().getLocalVariables("run").stream()
+                .map(Symbol::getName)
+                .toList();
+        assertFalse(locals.contains("inlined0_x"));
+        assertTrue(locals.contains("inlined0_x_0"));
+    }
+
+    @Test
+    public void incrementsFieldOfInlinedMethod() {
+        assertEquals("3\n", run(FIELD_CODE, "0").replace("\r\n", "\n"));
+        assertEquals(run(FIELD_CODE, "0"), run(FIELD_CODE, "1"));
+        assertEquals(run(FIELD_CODE, "0"), run(FIELD_CODE, "2"));
+        assertEquals(run(FIELD_CODE, "0"), run(FIELD_CODE, "s"));
+    }
+
+    @Test
+    public void sameOutputAsWithoutOptimizations() {
+        assertEquals("9\n25\n40\n120\n", run(CODE, "0").replace("\r\n", "\n"));
+        assertEquals(run(CODE, "0"), run(CODE, "2"));
+    }
+}
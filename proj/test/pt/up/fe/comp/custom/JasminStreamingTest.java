@@ -0,0 +1,42 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class JasminStreamingTest {
+
+    private static final String OLLIR_FOLDER = "test/pt/up/fe/comp/cpf/4_jasmin";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void fileMatchesString() throws IOException {
+        var backend = new JasminBackendImpl();
+
+        for (var ollirFile : SpecsIo.getFilesRecursive(new File(OLLIR_FOLDER), "ollir")) {
+            var ollirResult = new OllirResult(SpecsIo.read(ollirFile), CompilerConfig.getDefault());
+            var expected = backend.toJasmin(ollirResult).getJasminCode();
+
+            // A fresh OllirResult, the generators must not depend on a previous run
+            var jasminFile = temp.newFile().toPath();
+            var reports = backend.toJasminFile(new OllirResult(SpecsIo.read(ollirFile), CompilerConfig.getDefault()),
+                    jasminFile);
+
+            assertTrue(reports.toString(), reports.isEmpty());
+            assertEquals(ollirFile.getPath(), expected, Files.readString(jasminFile, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.runner.JmmRunner;
+import pt.up.fe.specs.util.SpecsIo;
+import utils.ProjectTestUtils;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class JmmRunnerTest {
+
+    private static final JmmRunner RUNNER = new JmmRunner();
+
+    // Reads two numbers with 'io' and prints their sum
+    private static final String SUM_JASMIN = """
+            .class public Sum
+            .super java/lang/Object
+
+            .method public static main([Ljava/lang/String;)V
+               .limit stack 2
+               .limit locals 1
+               invokestatic io/read()I
+               invokestatic io/read()I
+               iadd
+               invokestatic io/println(I)V
+               return
+            .end method
+            """;
+
+    private static JasminResult compile(String code) {
+        var result = JmmCompiler.compile(code, new File("Test.jmm"), CompilerConfig.getDefault());
+        assertTrue(result.getReports().toString(), result.isSuccess());
+        return result.getJasminResult().orElseThrow();
+    }
+
+    @Test
+    public void sameOutputAsForkedJvm() {
+        var ollirFile = new File("test/pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleWhileStat.ollir");
+        var jasminResult = new JasminBackendImpl().toJasmin(
+                new OllirResult(SpecsIo.read(ollirFile), CompilerConfig.getDefault()));
+
+        var result = RUNNER.run(jasminResult);
+
+        assertEquals(0, result.getReturnValue());
+        assertFalse(result.isTimedOut());
+        assertEquals(jasminResult.run(), result.getOutput());
+    }
+
+    @Test
+    public void readsInput() {
+        var jasminResult = new JasminResult("Sum", SUM_JASMIN, List.of());
+
+        assertEquals("5", RUNNER.run(jasminResult, List.of(), "2\n3").getStdOut().trim());
+    }
+
+    @Test
+    public void uncaughtException() {
+        var jasminResult = compile("""
+                import io;
+                class Fails {
+                    public static void main(String[] args) {
+                        int[] a;
+                        a = new int[1];
+                        io.println(1);
+                        io.println(a[2]);
+                    }
+                }
+                """);
+
+        var result = RUNNER.run(jasminResult);
+
+        assertEquals(1, result.getReturnValue());
+        assertEquals("1", result.getStdOut().trim());
+        assertTrue(result.getStdErr(), result.getStdErr().startsWith(
+                "Exception in thread \"main\" java.lang.ArrayIndexOutOfBoundsException"));
+    }
+
+    @Test
+    public void timeout() {
+        var jasminResult = compile("""
+                import io;
+                class Loops {
+                    public static void main(String[] args) {
+                        while (true) {
+                            io.println(1);
+                        }
+                    }
+                }
+                """);
+
+        var result = new JmmRunner(Duration.ofMillis(200)).run(jasminResult);
+
+        assertTrue(result.isTimedOut());
+        assertNotEquals(0, result.getReturnValue());
+    }
+
+    @Test(expected = AssertionError.class)
+    public void runJasminFailsOnTimeout() {
+        var jasminResult = compile("""
+                class Spins {
+                    public static void main(String[] args) {
+                        int i;
+                        i = 0;
+                        while (i < 1) {
+                        }
+                    }
+                }
+                """);
+
+        // Without an expected output only a timeout can fail
+        ProjectTestUtils.runJasmin(jasminResult, null);
+    }
+
+    @Test
+    public void concurrentRunsAreIsolated() throws Exception {
+        // 'io' buffers the numbers it reads in a static field, each run must see only its own input
+        var jasminResult = new JasminResult("Sum", SUM_JASMIN, List.of());
+
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> outputs = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                var input = i + " " + i;
+                Callable<String> run = () -> RUNNER.run(jasminResult, List.of(), input).getOutput().trim();
+                outputs.add(executor.submit(run));
+            }
+
+            for (int i = 0; i < outputs.size(); i++) {
+                assertEquals(String.valueOf(2 * i), outputs.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.LoopInvariantCodeMotion;
+import pt.up.fe.comp2024.runner.JmmRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp.OptimizationTestUtils.getMethod;
+import static pt.up.fe.comp.OptimizationTestUtils.run;
+import static pt.up.fe.comp.OptimizationTestUtils.toOllir;
+
+public class LoopInvariantCodeMotionTest {
+
+    private static final String CODE = """
+            import io;
+            class Licm {
+                int scale;
+                public int sum(int[] a, int k) {
+                    int i;
+                    int s;
+                    int j;
+                    i = 0;
+                    s = 0;
+                    while (i < a.length) {
+                        j = 0;
+                        while (j < a.length) {
+                            s = s + a[j] * (k + 2) + scale;
+                            j = j + 1;
+                        }
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public int variant(int[] a, int k) {
+                    int i;
+                    int s;
+                    int last;
+                    i = 0;
+                    s = 0;
+                    last = 0;
+                    while (i < 3) {
+                        s = s + a[1] + 10 / k;
+                        this.set(s);
+                        s = s + scale;
+                        last = k * 2;
+                        i = i + 1;
+                    }
+                    return s + last;
+                }
+                public int set(int value) {
+                    scale = value;
+                    return value;
+                }
+                public static void main(String[] args) {
+                    Licm l;
+                    int[] a;
+                    l = new Licm();
+                    a = [1, 2, 3];
+                    io.println(l.sum(a, 3));
+                    io.println(l.variant(a, 5));
+                }
+            }
+            """;
+
+    // The loop never runs and the array is null, so its length must not be read
+    private static final String NULL_CODE = """
+            import io;
+            class Licm {
+                int[] f;
+                public int[] getF() {
+                    return f;
+                }
+                public int count(int n) {
+                    int[] a;
+                    int i;
+                    int s;
+                    int t;
+                    a = this.getF();
+                    i = 0;
+                    s = 0;
+                    while (i < n) {
+                        s = s + 1;
+                        t = a.length;
+                        s = s + t;
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static void main(String[] args) {
+                    Licm l;
+                    l = new Licm();
+                    io.println(l.count(0));
+                }
+            }
+            """;
+
+    @Test
+    public void hoistsInvariantInstructions() {
+        var ollirResult = toOllir(CODE);
+        var licm = new LoopInvariantCodeMotion(ollirResult.getOllirClass());
+        assertTrue(licm.run());
+
+        // The length, k + 2 and the field, out of the inner loop and then out of the outer one with the length of its
+        // condition
+        assertEquals(3, (int) licm.getHoisted().get("sum/whileCond1"));
+        assertEquals(4, (int) licm.getHoisted().get("sum/whileCond0"));
+
+        var sum = getMethod(ollirResult, "sum");
+        var outerLoop = sum.getInstructions().indexOf(sum.getLabels().get("whileCond0"));
+        for (int i = outerLoop; i < sum.getInstructions().size(); i++) {
+            var instruction = sum.getInstructions().get(i);
+            assertFalse(instruction.toString(), instruction.getDescendantsAndSelfStream()
+                    .anyMatch(node -> node instanceof CallInstruction call
+                            && call.getInvocationType() == CallType.arraylength));
+        }
+
+        var output = new JmmRunner().run(new JasminBackendImpl().toJasmin(ollirResult)).getStdOut();
+        assertEquals(run(CODE, "0"), output);
+    }
+
+    @Test
+    public void keepsVariantAndThrowingInstructions() {
+        var ollirResult = toOllir(CODE);
+        var variant = getMethod(ollirResult, "variant");
+        int instructions = variant.getInstructions().size();
+
+        var licm = new LoopInvariantCodeMotion(ollirResult.getOllirClass());
+        licm.run();
+
+        // a[1] and 10 / k can throw, the field is written by the call, and last is used after the loop, so only k * 2
+        // moves
+        assertEquals(1, (int) licm.getHoisted().get("variant/whileCond2"));
+        assertEquals(instructions, variant.getInstructions().size());
+        var loop = variant.getInstructions().indexOf(variant.getLabels().get("whileCond2"));
+        var moved = (AssignInstruction) variant.getInstructions().get(loop - 1);
+        assertEquals(OperationType.MUL, ((BinaryOpInstruction) moved.getRhs()).getOperation().getOpType());
+    }
+
+    @Test
+    public void reportsHoistedInstructions() {
+        var config = CompilerConfig.getDefault();
+        config.put("optimizationLevel", "2");
+        var result = JmmCompiler.compile(CODE, new File("Licm.jmm"), config);
+
+        assertTrue(result.getReports().stream()
+                .anyMatch(report -> report.getType() == ReportType.LOG
+                        && report.getMessage().contains("4 instruction(s) out of the loop 'sum/whileCond0'")));
+    }
+
+    @Test
+    public void sameOutputAsWithoutOptimizations() {
+        assertEquals("90\n66\n", run(CODE, "0").replace("\r\n", "\n"));
+        assertEquals(run(CODE, "0"), run(CODE, "2"));
+    }
+
+    @Test
+    public void keepsLengthOfArrayTheLoopMayNotRead() {
+        for (var level : new String[]{"0", "2", "s"}) {
+            assertEquals(level, "0\n", run(NULL_CODE, level).replace("\r\n", "\n"));
+        }
+
+        var ollirResult = toOllir(NULL_CODE);
+        var licm = new LoopInvariantCodeMotion(ollirResult.getOllirClass());
+        licm.run();
+        assertFalse(licm.getHoisted().containsKey("count/whileCond0"));
+    }
+}
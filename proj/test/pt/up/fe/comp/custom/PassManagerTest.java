@@ -0,0 +1,189 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.passes.OptimizationLevel;
+import pt.up.fe.comp2024.optimization.passes.OptimizationPass;
+import pt.up.fe.comp2024.optimization.passes.PassManager;
+import pt.up.fe.comp2024.runner.JmmRunner;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PassManagerTest {
+
+    private static final String INPUT_FILE = "test/pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm";
+
+    // Locals read only by calls, fields, array stores and branches, which the register allocation must keep apart
+    private static final String CALLS = """
+            import io;
+            class Calls {
+                int total;
+                public int add(int x, int y) {
+                    int s;
+                    s = x + y;
+                    total = total + s;
+                    return s;
+                }
+                public static void main(String[] args) {
+                    Calls c;
+                    int a;
+                    int b;
+                    int[] values;
+                    c = new Calls();
+                    a = 2;
+                    b = 3;
+                    values = new int[2];
+                    io.println(c.add(a, b));
+                    values[0] = a + 6;
+                    if (b < values[0]) {
+                        io.println(values[0]);
+                    } else {
+                        io.println(b);
+                    }
+                    io.println(c.add(b, a) + c.add(a, 0) + 3);
+                }
+            }
+            """;
+
+    private static Map<String, String> config(String... args) {
+        List<String> allArgs = new ArrayList<>(List.of(args));
+        allArgs.add("-i=" + INPUT_FILE);
+        return CompilerConfig.parseArgs(allArgs.toArray(String[]::new));
+    }
+
+    /**
+     * Records its runs, and changes the unit the given number of times.
+     */
+    private static class CountingPass implements OptimizationPass<List<String>> {
+        private final String name;
+        private int changes;
+
+        CountingPass(String name, int changes) {
+            this.name = name;
+            this.changes = changes;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean run(List<String> runs) {
+            runs.add(name);
+            return changes-- > 0;
+        }
+    }
+
+    @Test
+    public void levels() {
+        assertEquals(OptimizationLevel.O0, CompilerConfig.getOptimizationLevel(config()));
+        assertEquals(OptimizationLevel.O1, CompilerConfig.getOptimizationLevel(config("-o")));
+        assertEquals(OptimizationLevel.O2, CompilerConfig.getOptimizationLevel(config("-O2")));
+        assertEquals(OptimizationLevel.Os, CompilerConfig.getOptimizationLevel(config("-O=s")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unknownLevel() {
+        config("-O3");
+    }
+
+    @Test
+    public void passesOfEachLevel() {
+        var ast = JmmOptimizationImpl.astPasses(Telemetry.disabled());
+        var ollir = JmmOptimizationImpl.ollirPasses(Telemetry.disabled());
+
+        assertEquals(List.of("varargs"), ast.getEnabledPasses(config("-O0")));
+        assertEquals(List.of(), ollir.getEnabledPasses(config("-O0")));
+        assertEquals(List.of("varargs", "constants", "deadCode"), ast.getEnabledPasses(config("-O1")));
+        assertEquals(List.of("cfg", "unreachable", "gvn", "licm", "regAlloc"), ollir.getEnabledPasses(config("-O2")));
+
+        // '-r' asks for the register allocation at any level
+        assertEquals(List.of("cfg", "regAlloc"), ollir.getEnabledPasses(config("-O0", "-r=4")));
+        assertEquals(List.of("varargs", "inline", "deadCode"), ast.getEnabledPasses(config("-O2", "-p=-constants")));
+    }
+
+    @Test
+    public void dependenciesRunFirst() {
+        var manager = new PassManager<List<String>>(Telemetry.disabled());
+        manager.register(new CountingPass("first", 0));
+        manager.register(new CountingPass("second", 0), "first").atLevels(OptimizationLevel.O1);
+
+        List<String> runs = new ArrayList<>();
+        manager.run(runs, config("-O1"));
+        assertEquals(List.of("first", "second"), runs);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void disabledDependency() {
+        var manager = new PassManager<List<String>>(Telemetry.disabled());
+        manager.register(new CountingPass("first", 0));
+        manager.register(new CountingPass("second", 0), "first").atLevels(OptimizationLevel.O1);
+
+        manager.run(new ArrayList<>(), config("-O1", "-p=-first"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void dependencyRegisteredLater() {
+        var manager = new PassManager<List<String>>(Telemetry.disabled());
+        manager.register(new CountingPass("third", 0), "fourth");
+    }
+
+    @Test
+    public void iterationsAreBounded() {
+        var manager = new PassManager<List<String>>(Telemetry.enabled());
+        manager.register(new CountingPass("fixpoint", 2)).atLevels(OptimizationLevel.O1).maxIterations(10);
+        manager.register(new CountingPass("endless", 100)).atLevels(OptimizationLevel.O1).maxIterations(4);
+
+        List<String> runs = new ArrayList<>();
+        var changed = manager.run(runs, config("-O1"));
+
+        // Runs until it changes nothing, or the limit
+        assertEquals(3, runs.stream().filter("fixpoint"::equals).count());
+        assertEquals(4, runs.stream().filter("endless"::equals).count());
+        assertEquals(List.of("fixpoint", "endless"), changed);
+    }
+
+    @Test
+    public void unknownPass() {
+        var result = JmmCompiler.compile(new File(INPUT_FILE), config("-p=+inlining"));
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    public void everyLevelRuns() {
+        for (var level : List.of("-O0", "-O1", "-O2", "-Os")) {
+            var result = JmmCompiler.compile(new File(INPUT_FILE), config(level, "-t"));
+            assertTrue(level + ": " + result.getReports(), result.isSuccess());
+
+            var output = new JmmRunner().run(result.getJasminResult().orElseThrow());
+            assertEquals(level, 0, output.getReturnValue());
+
+            var stages = result.getTelemetry().orElseThrow().getStages().stream()
+                    .map(Telemetry.StageMeasurement::getStage)
+                    .toList();
+            assertEquals(level, !level.equals("-O0"), stages.contains("optimization/constants"));
+        }
+    }
+
+    @Test
+    public void sameOutputAtEveryLevel() {
+        for (var level : List.of("0", "1", "2", "s")) {
+            var config = CompilerConfig.getDefault();
+            config.put("optimizationLevel", level);
+            var result = JmmCompiler.compile(CALLS, new File("Calls.jmm"), config);
+            assertTrue(level + ": " + result.getReports(), result.isSuccess());
+
+            var output = new JmmRunner().run(result.getJasminResult().orElseThrow());
+            assertEquals(level + ": " + output.getStdErr(), "5\n8\n10\n", output.getStdOut().replace("\r\n", "\n"));
+        }
+    }
+}
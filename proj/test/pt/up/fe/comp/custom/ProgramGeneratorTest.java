@@ -0,0 +1,52 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.runner.JmmRunner;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProgramGeneratorTest {
+
+    private static final JmmRunner RUNNER = new JmmRunner();
+
+    @Test
+    public void sameSeedSameProgram() {
+        assertEquals(new ProgramGenerator(42).methods(5).generate(), new ProgramGenerator(42).methods(5).generate());
+        assertNotEquals(new ProgramGenerator(42).methods(5).generate(),
+                new ProgramGenerator(43).methods(5).generate());
+    }
+
+    @Test
+    public void programsCompileAndRun() {
+        for (long seed = 0; seed < 20; seed++) {
+            var code = new ProgramGenerator(seed)
+                    .methods(1 + (int) seed % 5)
+                    .statements(5 + (int) seed * 2)
+                    .locals(1 + (int) seed % 7)
+                    .loopDepth((int) seed % 4)
+                    .expressionDepth((int) seed % 5)
+                    .generate();
+
+            var result = JmmCompiler.compile(code, new File("Synthetic.jmm"), CompilerConfig.getDefault());
+            assertTrue("Seed " + seed + ": " + result.getReports() + "\n" + code, result.isSuccess());
+
+            var output = RUNNER.run(result.getJasminResult().orElseThrow(), List.of(), null);
+            assertEquals("Seed " + seed + ": " + output.getOutput() + "\n" + code, 0, output.getReturnValue());
+        }
+    }
+
+    @Test
+    public void importsPassSemanticAnalysis() {
+        var code = new ProgramGenerator(7).methods(3).imports(4).generate();
+
+        var result = JmmCompiler.compile(code, new File("Synthetic.jmm"), CompilerConfig.getDefault());
+        assertTrue(result.getReports().toString(), result.isSuccess());
+        assertTrue(code.contains("import Imported3;"));
+    }
+}
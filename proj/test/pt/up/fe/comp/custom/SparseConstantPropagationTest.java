@@ -0,0 +1,170 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.optimization.passes.ConstantsPass;
+import pt.up.fe.comp2024.runner.JmmRunner;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp.OptimizationTestUtils.analyze;
+
+public class SparseConstantPropagationTest {
+
+    private static final String CODE = """
+            import io;
+            class Constants {
+                public int merge(boolean b) {
+                    int a;
+                    int c;
+                    if (b) {
+                        a = 2;
+                        c = 1;
+                    } else {
+                        a = 2;
+                        c = 3;
+                    }
+                    io.println(c);
+                    return a * 5;
+                }
+                public int deadBranch() {
+                    int a;
+                    int d;
+                    a = 4;
+                    if (a < 3) {
+                        d = 7;
+                    } else {
+                        d = a + 1;
+                    }
+                    return d;
+                }
+                public int nestedLoops(int n) {
+                    int i;
+                    int j;
+                    int k;
+                    int sum;
+                    k = 3;
+                    i = 0;
+                    sum = 0;
+                    while (i < n) {
+                        j = 0;
+                        while (j < k) {
+                            sum = sum + k * 2;
+                            j = j + 1;
+                        }
+                        i = i + 1;
+                    }
+                    return sum + k;
+                }
+                public int loopNeverEntered() {
+                    int i;
+                    int x;
+                    i = 10;
+                    x = 1;
+                    while (i < 5) {
+                        x = x + 1;
+                    }
+                    return x;
+                }
+                public boolean logic() {
+                    boolean t;
+                    boolean f;
+                    t = 1 < 2;
+                    f = !t;
+                    return !(f && t) && t;
+                }
+                public int divisionByZero() {
+                    int z;
+                    z = 0;
+                    return 1 / z;
+                }
+                public static void main(String[] args) {
+                    Constants c;
+                    c = new Constants();
+                    io.println(c.merge(true));
+                    io.println(c.merge(false));
+                    io.println(c.deadBranch());
+                    io.println(c.nestedLoops(2));
+                    io.println(c.loopNeverEntered());
+                }
+            }
+            """;
+
+    private static JmmNode getReturned(JmmSemanticsResult semanticsResult, String method) {
+        return semanticsResult.getRootNode().getDescendants(Kind.METHOD_DECL).stream()
+                .filter(methodDecl -> methodDecl.get("name").equals(method))
+                .findFirst().orElseThrow()
+                .getDescendants(Kind.RETURN_STMT).get(0)
+                .getChild(0);
+    }
+
+    private static String describe(JmmNode expr) {
+        return expr.getKind() + (expr.hasAttribute("value") ? " " + expr.get("value") : "");
+    }
+
+    @Test
+    public void foldsWhatTheAstVisitorsMissed() {
+        var result = analyze(CODE);
+        assertTrue(new ConstantsPass().run(result));
+
+        // Both branches assign the same constant
+        assertEquals("IntLiteral 10", describe(getReturned(result, "merge")));
+        // Only the else branch is taken
+        assertEquals("IntLiteral 5", describe(getReturned(result, "deadBranch")));
+        // The loop body is never taken, so x keeps its value
+        assertEquals("IntLiteral 1", describe(getReturned(result, "loopNeverEntered")));
+        assertEquals("BoolLiteral true", describe(getReturned(result, "logic")));
+
+        // k is the same in every iteration of both loops, sum is not
+        var nestedLoops = getReturned(result, "nestedLoops");
+        assertEquals("BinaryExpr", describe(nestedLoops));
+        assertEquals("Var", describe(nestedLoops.getChild(0)));
+        assertEquals("IntLiteral 3", describe(nestedLoops.getChild(1)));
+        var loopBody = result.getRootNode().getDescendants(Kind.WHILE_STMT).get(1).getChild(1);
+        assertEquals("IntLiteral 6", describe(loopBody.getDescendants(Kind.BINARY_EXPR).get(0).getChild(1)));
+        assertEquals("IntLiteral 3", describe(result.getRootNode().getDescendants(Kind.WHILE_STMT).get(1)
+                .getChild(0).getChild(1)));
+
+        // c is different in each branch
+        var println = result.getRootNode().getDescendants(Kind.FUNCTION_CALL).get(0);
+        assertEquals("Var", describe(println.getChild(1)));
+
+        // Left to throw when the program runs
+        var division = getReturned(result, "divisionByZero");
+        assertEquals("BinaryExpr", describe(division));
+        assertEquals("IntLiteral 0", describe(division.getChild(1)));
+    }
+
+    @Test
+    public void reachesFixpointInOneRun() {
+        var result = analyze(CODE);
+        assertTrue(new ConstantsPass().run(result));
+
+        var tree = result.getRootNode().toTree();
+        assertFalse(new ConstantsPass().run(result));
+        assertEquals(tree, result.getRootNode().toTree());
+    }
+
+    @Test
+    public void sameOutputAsWithoutOptimizations() {
+        var config = CompilerConfig.getDefault();
+        // Same as '-o'
+        var optimizedConfig = CompilerConfig.getDefault();
+        optimizedConfig.put("optimize", "true");
+
+        List<String> outputs = List.of(config, optimizedConfig).stream()
+                .map(options -> JmmCompiler.compile(CODE, new File("Constants.jmm"), options))
+                .peek(result -> assertTrue(result.getReports().toString(), result.isSuccess()))
+                .map(result -> new JmmRunner().run(result.getJasminResult().orElseThrow()).getStdOut())
+                .toList();
+
+        assertEquals("1\n10\n3\n10\n5\n39\n1\n", outputs.get(0).replace("\r\n", "\n"));
+        assertEquals(outputs.get(0), outputs.get(1));
+    }
+}
@@ -0,0 +1,70 @@
+package pt.up.fe.comp.custom;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.symboltable.ImportIndex;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable.Scope;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableIndexTest {
+
+    private static final String CODE = """
+            class A {
+                int a;
+                boolean b;
+                int c;
+                public int m(boolean a, int b) {
+                    int[] b;
+                    return 0;
+                }
+                public int n() {
+                    return a;
+                }
+            }
+            """;
+
+    @Test
+    public void innermostDeclarationWins() {
+        var table = JmmSymbolTable.of(TestUtils.analyse(CODE).getSymbolTable());
+
+        assertEquals(Scope.PARAMETER, table.resolve("m", "a").scope());
+        assertEquals("boolean", table.resolve("m", "a").getType().getName());
+        assertEquals(Scope.LOCAL, table.resolve("m", "b").scope());
+        assertTrue(table.resolve("m", "b").getType().isArray());
+        assertEquals(Scope.FIELD, table.resolve("m", "c").scope());
+        assertEquals(Scope.FIELD, table.resolve("n", "a").scope());
+
+        assertNull(table.resolve("n", "d"));
+        // Unknown methods only see the fields
+        assertEquals(Scope.FIELD, table.resolve("o", "a").scope());
+    }
+
+    @Test
+    public void methods() {
+        var table = JmmSymbolTable.of(TestUtils.analyse(CODE).getSymbolTable());
+
+        assertTrue(table.hasMethod("m"));
+        assertFalse(table.hasMethod("a"));
+    }
+
+    @Test
+    public void imports() {
+        var imports = ImportIndex.fromSymbolTable(List.of("[io]", "[a, b, C]", "[x, C]"));
+
+        assertTrue(imports.isImported("C"));
+        // Any part of an import is accepted, as the passes always did
+        assertTrue(imports.isImported("b"));
+        assertFalse(imports.isImported("D"));
+
+        assertEquals("a/b/C", imports.getInternalName("C"));
+        assertEquals("io", imports.getInternalName("io"));
+        assertEquals("D", imports.getInternalName("D"));
+
+        var ollirImports = ImportIndex.fromQualifiedNames(List.of("a.b.C"));
+        assertEquals("a/b/C", ollirImports.getInternalName("C"));
+    }
+}
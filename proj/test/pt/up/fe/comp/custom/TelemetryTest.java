@@ -0,0 +1,116 @@
+package pt.up.fe.comp.custom;
+
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.telemetry.Telemetry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class TelemetryTest {
+
+    private static final String INPUT_FILE = "test/pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm";
+
+    @Test
+    public void disabledByDefault() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE});
+        var result = JmmCompiler.compile(new File(INPUT_FILE), config);
+
+        assertTrue(result.getReports().toString(), result.isSuccess());
+        assertTrue(result.getTelemetry().isEmpty());
+    }
+
+    @Test
+    public void recordsEveryStage() {
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE, "-t", "-o", "-r=10"});
+        var result = JmmCompiler.compile(new File(INPUT_FILE), config);
+
+        assertTrue(result.getReports().toString(), result.isSuccess());
+        var stages = result.getTelemetry().orElseThrow().getStages().stream()
+                .map(Telemetry.StageMeasurement::getStage)
+                .toList();
+
+        assertEquals("parse", stages.get(0));
+        assertTrue(stages.contains("symbolTable"));
+        assertTrue(stages.contains("analysis"));
+        assertTrue(stages.contains("optimization/constants"));
+        assertTrue(stages.contains("ollir"));
+        assertTrue(stages.contains("regAlloc/10"));
+        assertEquals("jasmin", stages.get(stages.size() - 1));
+    }
+
+    @Test
+    public void jsonHasOneObjectPerStage() {
+        var telemetry = Telemetry.enabled();
+        telemetry.measure("first", () -> {
+        });
+        int value = telemetry.measure("second", () -> 42);
+
+        assertEquals(42, value);
+
+        var json = JsonParser.parseString(telemetry.toJson("A.jmm")).getAsJsonObject();
+        assertEquals("A.jmm", json.get("file").getAsString());
+
+        var stages = json.getAsJsonArray("stages");
+        assertEquals(2, stages.size());
+        assertEquals("second", stages.get(1).getAsJsonObject().get("stage").getAsString());
+        assertTrue(stages.get(1).getAsJsonObject().get("wallNanos").getAsLong() >= 0);
+    }
+
+    @Test
+    public void recordsEachAnalysisPass() {
+        // Sequential and with the methods analysed in parallel
+        for (var parallel : new String[]{"-t", "-j"}) {
+            var config = CompilerConfig.parseArgs(new String[]{"-i=" + INPUT_FILE, "-t", parallel});
+            var result = JmmCompiler.compile(new File(INPUT_FILE), config);
+
+            assertTrue(result.getReports().toString(), result.isSuccess());
+            var stages = result.getTelemetry().orElseThrow().getStages().stream()
+                    .map(Telemetry.StageMeasurement::getStage)
+                    .toList();
+
+            for (var pass : JmmAnalysisImpl.createPasses()) {
+                var stage = "analysis/" + pass.getClass().getSimpleName();
+                assertEquals(stage, 1, stages.stream().filter(stage::equals).count());
+            }
+        }
+    }
+
+    @Test
+    public void recordsStagesFromSeveralThreads() throws Exception {
+        var telemetry = Telemetry.enabled();
+        var threads = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                var stage = "stage-" + i;
+                tasks.add(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        telemetry.measure(stage, () -> {
+                        });
+                    }
+                    return null;
+                });
+            }
+
+            for (var future : threads.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        assertEquals(8000, telemetry.getStages().size());
+        assertEquals(8000, JsonParser.parseString(telemetry.toJson("Test.jmm")).getAsJsonObject()
+                .getAsJsonArray("stages").size());
+    }
+}
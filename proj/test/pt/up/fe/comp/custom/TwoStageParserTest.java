@@ -0,0 +1,56 @@
+package pt.up.fe.comp.custom;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.synthetic.ProgramGenerator;
+
+import static org.junit.Assert.*;
+
+public class TwoStageParserTest {
+
+    @Test
+    public void reusedParserGivesSameTree() {
+        var code = new ProgramGenerator(1).methods(5).generate();
+        var parser = new JmmParserImpl();
+
+        var first = parser.parse(code, CompilerConfig.getDefault());
+        var second = parser.parse(code, CompilerConfig.getDefault());
+
+        TestUtils.noErrors(first);
+        assertEquals(first.getRootNode().toTree(), second.getRootNode().toTree());
+    }
+
+    @Test
+    public void sameTreeAsFullLL() {
+        var code = new ProgramGenerator(2).methods(20).loopDepth(3).expressionDepth(5).generate();
+        var twoStage = new JmmParserImpl().parse(code, CompilerConfig.getDefault());
+
+        var lex = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lex));
+        var fullLL = AntlrParser.parse(lex, parser, "program", CompilerConfig.getDefault());
+
+        TestUtils.noErrors(twoStage);
+        assertEquals(CompactAstTest.describe(fullLL.getRootNode()), CompactAstTest.describe(twoStage.getRootNode()));
+    }
+
+    @Test
+    public void syntaxErrorAfterValidProgram() {
+        var parser = new JmmParserImpl();
+
+        TestUtils.noErrors(parser.parse("class A { int a; }", CompilerConfig.getDefault()));
+
+        // The bail-out of the first stage is not reported, only the errors of the second
+        var result = parser.parse("class A { int a }", CompilerConfig.getDefault());
+        TestUtils.mustFail(result);
+        assertNull(result.getRootNode());
+
+        TestUtils.noErrors(parser.parse("class B { }", CompilerConfig.getDefault()));
+    }
+}
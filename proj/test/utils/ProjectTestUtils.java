@@ -3,6 +3,7 @@ package utils;
 import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.runner.JmmRunner;
 import pt.up.fe.specs.util.SpecsCollections;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsStrings;
@@ -22,9 +23,13 @@ import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ProjectTestUtils {
 
+    // Runs the generated programs in this JVM, instead of starting a new one for each
+    private static final JmmRunner RUNNER = new JmmRunner();
+
     // private static final File RANDOM_TEST_FOLDER = SpecsIo.newRandomFolder();
 
     public static File getRandomFolder() {
@@ -324,7 +329,13 @@ public class ProjectTestUtils {
     }
 
     public static void runJasmin(JasminResult jasminResult, String expected) {
-        var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+        var runResult = RUNNER.run(jasminResult);
+        if (runResult.isTimedOut()) {
+            fail("Jasmin execution timed out after " + RUNNER.getTimeout().toMillis() + " ms:\n"
+                    + jasminResult.getJasminCode());
+        }
+
+        var output = SpecsStrings.normalizeFileContents(runResult.getOutput(), true);
 
         // No expected output, just run test
         if (expected == null) {